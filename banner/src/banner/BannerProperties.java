@@ -45,6 +45,7 @@ public class BannerProperties
 	private int order;
 	private boolean useFeatureInduction;
 	private TextDirection textDirection;
+	private int trainingThreads;
 	
 	private BannerProperties()
 	{
@@ -95,6 +96,7 @@ public class BannerProperties
 			bannerProperties.order = Integer.parseInt(properties.getProperty("order", "2"));
 			bannerProperties.useFeatureInduction = Boolean.parseBoolean(properties.getProperty("useFeatureInduction", "false"));
 			bannerProperties.textDirection = TextDirection.valueOf(properties.getProperty("textDirection", "Forward"));
+			bannerProperties.trainingThreads = Integer.parseInt(properties.getProperty("trainingThreads", "1"));
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
@@ -157,6 +159,14 @@ public class BannerProperties
 		return useFeatureInduction;
 	}
 
+    /**
+     * @return The number of threads to use for training, default is 1. Each thread needs its own lemmatiser and part-of-speech tagger, so
+     *         each thread uses a separate instance loaded with {@link #load(String)}
+     */
+	public int getTrainingThreads() {
+		return trainingThreads;
+	}
+
     /**
      * @return Whether or not to include numeric normalization features
      */
@@ -179,6 +189,7 @@ public class BannerProperties
 		System.out.println("CRF order is " + order);
 		System.out.println("Using feature induction: " + useFeatureInduction);
 		System.out.println("Text textDirection: " + textDirection);
+		System.out.println("Training threads: " + trainingThreads);
 	}
 	
 }
\ No newline at end of file
@@ -14,7 +14,11 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -43,7 +47,6 @@ public class CRFTagger implements Tagger
 
     // TODO Add support for TextDirection.Union and TextDirection.Intersection
 
-    private static String GREEK = "(alpha|beta|gamma|delta|epsilon|zeta|eta|theta|iota|kappa|lambda|mu|nu|xi|omicron|pi|rho|sigma|tau|upsilon|phi|chi|psi|omega)";
     private CRF4 forwardCRF;
     private CRF4 reverseCRF;
     private String2TokenSequencePipe basePipe;
@@ -96,6 +99,8 @@ public class CRFTagger implements Tagger
             String2TokenSequencePipe basePipe = (String2TokenSequencePipe)ois.readObject();
             basePipe.setLemmatiser(lemmatiser);
             basePipe.setPosTagger(posTagger);
+            compileRegexPipes(forwardCRF);
+            compileRegexPipes(reverseCRF);
             int order = ois.readInt();
             boolean useFeatureInduction = ois.readBoolean();
             TagFormat format = (TagFormat)ois.readObject();
@@ -109,36 +114,21 @@ public class CRFTagger implements Tagger
     }
 
 
+    /**
+     * Replaces the {@link RegexMatches} pipes of a model trained with an earlier version with the equivalent {@link OrthographicFeatures}
+     * pipes, which compute the same features faster.
+     */
+    private static void compileRegexPipes(CRF4 crf)
+    {
+        if (crf != null && crf.getInputPipe() instanceof SerialPipes)
+            OrthographicFeatures.compileRegexPipes((SerialPipes)crf.getInputPipe());
+    }
+
+
     private static void setupPipes(ArrayList<Pipe> pipes)
     {
-        pipes.add(new RegexMatches("ALPHA", Pattern.compile("[A-Za-z]+")));
-        pipes.add(new RegexMatches("INITCAPS", Pattern.compile("[A-Z].*")));
-        pipes.add(new RegexMatches("UPPER-LOWER", Pattern.compile("[A-Z][a-z].*")));
-        pipes.add(new RegexMatches("LOWER-UPPER", Pattern.compile("[a-z]+[A-Z]+.*")));
-        pipes.add(new RegexMatches("ALLCAPS", Pattern.compile("[A-Z]+")));
-        pipes.add(new RegexMatches("MIXEDCAPS", Pattern.compile("[A-Z][a-z]+[A-Z][A-Za-z]*")));
-        pipes.add(new RegexMatches("SINGLECHAR", Pattern.compile("[A-Za-z]")));
-        pipes.add(new RegexMatches("SINGLEDIGIT", Pattern.compile("[0-9]")));
-        pipes.add(new RegexMatches("DOUBLEDIGIT", Pattern.compile("[0-9][0-9]")));
-        pipes.add(new RegexMatches("NUMBER", Pattern.compile("[0-9,]+")));
-        pipes.add(new RegexMatches("HASDIGIT", Pattern.compile(".*[0-9].*")));
-        pipes.add(new RegexMatches("ALPHANUMERIC", Pattern.compile(".*[0-9].*[A-Za-z].*")));
-        pipes.add(new RegexMatches("ALPHANUMERIC", Pattern.compile(".*[A-Za-z].*[0-9].*")));
-        pipes.add(new RegexMatches("LETTERS_NUMBERS", Pattern.compile("[0-9]+[A-Za-z]+")));
-        pipes.add(new RegexMatches("NUMBERS_LETTERS", Pattern.compile("[A-Za-z]+[0-9]+")));
-
-        pipes.add(new RegexMatches("HAS_DASH", Pattern.compile(".*-.*")));
-        pipes.add(new RegexMatches("HAS_QUOTE", Pattern.compile(".*'.*")));
-        pipes.add(new RegexMatches("HAS_SLASH", Pattern.compile(".*/.*")));
-
-        // Start second set of new features (to handle improvements in
-        // BaseTokenizer)
-        pipes.add(new RegexMatches("REALNUMBER", Pattern.compile("(-|\\+)?[0-9,]+(\\.[0-9]*)?%?")));
-        pipes.add(new RegexMatches("REALNUMBER", Pattern.compile("(-|\\+)?[0-9,]*(\\.[0-9]+)?%?")));
-        pipes.add(new RegexMatches("START_MINUS", Pattern.compile("-.*")));
-        pipes.add(new RegexMatches("START_PLUS", Pattern.compile("\\+.*")));
-        pipes.add(new RegexMatches("END_PERCENT", Pattern.compile(".*%")));
-        // End second set
+        // ALPHA, INITCAPS, .., END_PERCENT; same features as the RegexMatches pipes used before
+        pipes.add(OrthographicFeatures.createShapeFeatures());
 
         pipes.add(new TokenTextCharPrefix("2PREFIX=", 2));
         pipes.add(new TokenTextCharPrefix("3PREFIX=", 3));
@@ -149,9 +139,8 @@ public class CRFTagger implements Tagger
         pipes.add(new TokenTextCharNGrams("CHARNGRAM=", new int[] {2, 3}, true));
         // pipes.add(new LexiconMembership()); // Use this for determining
         // whether word in a lexicon
-        pipes.add(new RegexMatches("ROMAN", Pattern.compile("[IVXDLCM]+", Pattern.CASE_INSENSITIVE)));
-        pipes.add(new RegexMatches("GREEK", Pattern.compile(GREEK, Pattern.CASE_INSENSITIVE)));
-        pipes.add(new RegexMatches("ISPUNCT", Pattern.compile("[`~!@#$%^&*()-=_+\\[\\]\\\\{}|;\':\\\",./<>?]+")));
+        // ROMAN, GREEK, ISPUNCT
+        pipes.add(OrthographicFeatures.createSymbolFeatures());
         pipes.add(new OffsetConjunctions(new int[][] { {-2}, {2}}));
         pipes.add(new TokenSequence2FeatureVectorSequence(true, true));
     }
@@ -181,34 +170,197 @@ public class CRFTagger implements Tagger
      */
     public static CRFTagger train(List<Sentence> sentences, int order, boolean useFeatureInduction, TagFormat format, TextDirection textDirection,
                                   Lemmatiser lemmatiser, dragon.nlp.tool.Tagger posTagger, boolean useNumericalNormalization)
+    {
+        return train(sentences, order, useFeatureInduction, format, textDirection, new Lemmatiser[] {lemmatiser},
+                     new dragon.nlp.tool.Tagger[] {posTagger}, useNumericalNormalization);
+    }
+
+
+    /**
+     * Trains and returns a {@link CRFTagger} on the specified {@link Sentence}s, like
+     * {@link #train(List, int, boolean, TagFormat, TextDirection, Lemmatiser, dragon.nlp.tool.Tagger, boolean)}, but converts the sentences to
+     * feature vectors using several threads. The lemmatiser and part-of-speech tagger are not thread-safe, so each thread needs its own: the number
+     * of threads is the number of lemmatisers given.
+     * <p>
+     * The features and labels are added to the alphabets in the order of the sentences, so the trained tagger does not depend on the number of
+     * threads. The sentences for both text directions are converted before training. The CRFs themselves are trained one after another, as the
+     * MALLET optimizer keeps its step size in a static field.
+     * 
+     * @param sentences
+     *        The {@link Sentence}s to train the tagger on
+     * @param order
+     *        The CRF order to use
+     * @param useFeatureInduction
+     *        Whether or not to use feature induction
+     * @param format
+     *        The {@link TagFormat} to use
+     * @param textDirection
+     *        The {@link TextDirection} to use
+     * @param lemmatisers
+     *        One {@link Lemmatiser} per thread; the first is kept by the returned tagger
+     * @param posTaggers
+     *        One part-of-speech {@link dragon.nlp.tool.Tagger} per thread, same length as lemmatisers
+     * @param useNumericalNormalization
+     *        Whether to use numeric normalization
+     * @return A trained CRFTagger; ready to tag unseen sentences or be output to disk
+     */
+    public static CRFTagger train(List<Sentence> sentences, int order, boolean useFeatureInduction, TagFormat format, TextDirection textDirection,
+                                  Lemmatiser[] lemmatisers, dragon.nlp.tool.Tagger[] posTaggers, boolean useNumericalNormalization)
     {
         if (sentences.size() == 0)
             throw new RuntimeException("Number of sentences must be greater than zero");
-        String2TokenSequencePipe localBasePipe = new String2TokenSequencePipe(lemmatiser, posTagger, useNumericalNormalization);
+        if (lemmatisers.length == 0 || lemmatisers.length != posTaggers.length)
+            throw new IllegalArgumentException("Need one lemmatiser and one part-of-speech tagger per thread");
+        String2TokenSequencePipe[] basePipes = new String2TokenSequencePipe[lemmatisers.length];
+        for (int i = 0; i < basePipes.length; i++)
+            basePipes[i] = new String2TokenSequencePipe(lemmatisers[i], posTaggers[i], useNumericalNormalization);
+        String2TokenSequencePipe localBasePipe = basePipes[0];
         ArrayList<Pipe> pipes = new ArrayList<Pipe>();
         pipes.add(localBasePipe);
         setupPipes(pipes);
-        Pipe pipe = new SerialPipes(pipes);
-        CRF4 forwardCRF = null;
+        SerialPipes pipe = new SerialPipes(pipes);
+        for (int i = 1; i < basePipes.length; i++)
+            basePipes[i].setTargetAlphabet(pipe.getTargetAlphabet());
         if (textDirection == TextDirection.Intersection)
             throw new UnsupportedOperationException("TextDirection.Intersection not yet supported");
+
+        InstanceList forwardInstances = null;
         if (textDirection.doForward())
-            forwardCRF = train(sentences, order, useFeatureInduction, format, pipe, false);
+            forwardInstances = createInstances(sentences, format, pipe, basePipes, false);
+        // Feature induction may add features to the alphabet while training the forward CRF, so convert the reverse sentences afterwards
+        InstanceList reverseInstances = null;
+        if (textDirection.doReverse() && !useFeatureInduction)
+            reverseInstances = createInstances(sentences, format, pipe, basePipes, true);
+
+        CRF4 forwardCRF = null;
+        if (textDirection.doForward())
+            forwardCRF = train(forwardInstances, order, useFeatureInduction, pipe);
+        forwardInstances = null;
         CRF4 reverseCRF = null;
         if (textDirection.doReverse())
-            reverseCRF = train(sentences, order, useFeatureInduction, format, pipe, true);
+        {
+            if (reverseInstances == null)
+                reverseInstances = createInstances(sentences, format, pipe, basePipes, true);
+            reverseCRF = train(reverseInstances, order, useFeatureInduction, pipe);
+        }
         return new CRFTagger(forwardCRF, reverseCRF, localBasePipe, order, useFeatureInduction, format, textDirection);
     }
 
 
-    private static CRF4 train(List<Sentence> sentences, int order, boolean useFeatureInduction, TagFormat format, Pipe pipe, boolean reverse)
+    /**
+     * An {@link Instance} that is piped outside of its pipe, one pipe after another.
+     */
+    private static class PipedInstance extends Instance
     {
-        InstanceList instances = new InstanceList(pipe);
-        for (Sentence sentence : sentences)
+        private static final long serialVersionUID = 1L;
+
+
+        PipedInstance(Object data, Object name)
         {
-            String text = sentence.getTrainingText(format, reverse);
-            instances.add(new Instance(text, null, sentence.getTag(), null, pipe));
+            super(data, null, name, null);
         }
+
+
+        void setPipe(SerialPipes pipe)
+        {
+            super.setPipe(pipe);
+        }
+    }
+
+
+    /**
+     * Converts the sentences to instances for training, with as many threads as there are base pipes. The last pipe, which adds the features to
+     * the data alphabet, is run on the sentences in their order; the labels are added to the target alphabet in the order of the sentences before
+     * any sentence is converted. Both alphabets are then the same as when piping the sentences one after another.
+     * 
+     * @param sentences
+     * @param format
+     * @param pipe
+     *        The pipe of the CRF; its first pipe is basePipes[0]
+     * @param basePipes
+     *        One {@link String2TokenSequencePipe} per thread, all using the target alphabet of pipe
+     * @param reverse
+     * @return
+     */
+    private static InstanceList createInstances(List<Sentence> sentences, TagFormat format, final SerialPipes pipe,
+                                                String2TokenSequencePipe[] basePipes, boolean reverse)
+    {
+        final int threads = basePipes.length;
+        final String[] texts = new String[sentences.size()];
+        final PipedInstance[] instances = new PipedInstance[sentences.size()];
+        for (int i = 0; i < texts.length; i++)
+        {
+            texts[i] = sentences.get(i).getTrainingText(format, reverse);
+            instances[i] = new PipedInstance(texts[i], sentences.get(i).getTag());
+            basePipes[0].addLabels(texts[i]);
+        }
+
+        final int last = pipe.size() - 1;
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            final int thread = t;
+            final Pipe basePipe = basePipes[t];
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    for (int i = thread; i < instances.length; i += threads)
+                    {
+                        Instance carrier = basePipe.pipe(instances[i]);
+                        for (int p = 1; p < last; p++)
+                            carrier = pipe.getPipe(p).pipe(carrier);
+                    }
+                    return null;
+                }
+            });
+        }
+        if (threads == 1)
+        {
+            try
+            {
+                tasks.get(0).call();
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+        else
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try
+            {
+                for (Future<Object> future : executor.invokeAll(tasks))
+                    future.get();
+            }
+            catch (InterruptedException e)
+            {
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new RuntimeException(e.getCause());
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+
+        InstanceList instanceList = new InstanceList(pipe);
+        for (PipedInstance instance : instances)
+        {
+            pipe.getPipe(last).pipe(instance);
+            instance.setPipe(pipe);
+            instanceList.add(instance);
+        }
+        return instanceList;
+    }
+
+
+    private static CRF4 train(InstanceList instances, int order, boolean useFeatureInduction, Pipe pipe)
+    {
         CRF4 crf = new CRF4(pipe, null);
         if (order == 1)
             crf.addStatesForLabelsConnectedAsIn(instances);
@@ -285,7 +437,19 @@ public class CRFTagger implements Tagger
 
     private void getPositionsAndTypes(Sentence sentence, TagPosition[] positions, MentionType[] types, boolean reverse)
     {
-        Instance instance = new Instance(sentence.getTrainingText(format, reverse), null, sentence.getTag(), null, forwardCRF.getInputPipe());
+        String text = sentence.getTrainingText(format, reverse);
+        Pipe inputPipe = forwardCRF.getInputPipe();
+        Instance instance;
+        if (inputPipe instanceof SerialPipes && ((SerialPipes)inputPipe).getPipe(0) != basePipe)
+        {
+            // A copy made with copy(): replace the base pipe of the model with the own one
+            SerialPipes pipes = (SerialPipes)inputPipe;
+            instance = basePipe.pipe(new Instance(text, null, sentence.getTag(), null));
+            for (int p = 1; p < pipes.size(); p++)
+                instance = pipes.getPipe(p).pipe(instance);
+        }
+        else
+            instance = new Instance(text, null, sentence.getTag(), null, inputPipe);
         Sequence tags = forwardCRF.viterbiPath((Sequence)instance.getData()).output();
         if (positions.length != tags.size())
             throw new IllegalArgumentException();
@@ -308,6 +472,39 @@ public class CRFTagger implements Tagger
     }
 
 
+    /**
+     * Sets the lemmatiser and part-of-speech tagger used when tagging. Neither is thread-safe, so a tagger used while another thread trains or
+     * tags with the same lemmatiser or part-of-speech tagger needs its own.
+     * 
+     * @param lemmatiser
+     *        The {@link Lemmatiser} to use
+     * @param posTagger
+     *        The part-of-speech {@link dragon.nlp.tool.Tagger} to use
+     */
+    public void setLemmatiserAndPosTagger(Lemmatiser lemmatiser, dragon.nlp.tool.Tagger posTagger)
+    {
+        basePipe.setLemmatiser(lemmatiser);
+        basePipe.setPosTagger(posTagger);
+    }
+
+
+    /**
+     * Returns a tagger that shares the models of this tagger, but has its own base pipe with the specified lemmatiser and part-of-speech tagger.
+     * The models are only read while tagging, so this tagger and its copies can tag in parallel, one thread each, without loading the model
+     * file once per thread.
+     * 
+     * @param lemmatiser
+     *        The {@link Lemmatiser} to use, not used by any other thread
+     * @param posTagger
+     *        The part-of-speech {@link dragon.nlp.tool.Tagger} to use, not used by any other thread
+     * @return A new CRFTagger sharing the models of this one
+     */
+    public CRFTagger copy(Lemmatiser lemmatiser, dragon.nlp.tool.Tagger posTagger)
+    {
+        return new CRFTagger(forwardCRF, reverseCRF, basePipe.copy(lemmatiser, posTagger), order, useFeatureInduction, format, textDirection);
+    }
+
+
     /**
      * @return The {@link TagFormat} used by this tagger
      */
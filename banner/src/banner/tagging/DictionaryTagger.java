@@ -6,21 +6,38 @@
 
 package banner.tagging;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import banner.Sentence;
 import banner.tokenization.Token;
 import banner.tokenization.Tokenizer;
+import banner.util.CompactTrie;
 import banner.util.Trie;
 
 /**
  * This class represents a very simple dictionary-based tagger. All text subsequences which match an entry will be tagged, without regard to the
  * context. No facilities for text processing (such as case-folding) are provided.
+ * <p>
+ * Entries are collected in a {@link Trie}, which is converted to a {@link CompactTrie} before the first sentence is tagged. The compact form can
+ * be written to a file with {@link #write(File)} and loaded again with {@link #load(File, Tokenizer, boolean)}, which is much faster than adding
+ * the entries again.
+ * <p>
+ * All entries must be added before the dictionary is compiled: afterwards, the dictionary is immutable and {@link #add(String, MentionType)}
+ * throws an {@link IllegalStateException}. A compiled dictionary can be shared by several threads tagging in parallel.
  * 
  * @author Bob
  */
@@ -31,7 +48,12 @@ public class DictionaryTagger implements Tagger
 
     private Tokenizer tokenizer;
     private boolean filterContainedMentions;
+    /** The entries while adding, null once compiled */
     private Trie<String, MentionType> entities;
+    /** The entries for tagging, null while adding */
+    private volatile CompactTrie compiledEntities;
+    /** The types of the compiled entries, indexed by the values of compiledEntities */
+    private List<MentionType> types;
 
 
     /**
@@ -71,9 +93,13 @@ public class DictionaryTagger implements Tagger
      *        The text to find
      * @param type
      *        The {@link MentionType} to tag the text with
+     * @throws IllegalStateException
+     *         If the dictionary is already compiled
      */
-    public void add(String text, MentionType type)
+    public synchronized void add(String text, MentionType type)
     {
+        if (entities == null)
+            throw new IllegalStateException("Entries cannot be added to a compiled dictionary: " + text);
         MentionType previousType = entities.add(process(text), type);
         if (previousType != null && !previousType.equals(type))
             throw new IllegalArgumentException("Text is already associated with a different tag: " + text);
@@ -124,21 +150,111 @@ public class DictionaryTagger implements Tagger
     }
 
 
+    /**
+     * Converts the entries to the compact form used for tagging. This is done automatically before tagging the first sentence and before writing
+     * the dictionary; no entries can be added afterwards.
+     */
+    public synchronized void compile()
+    {
+        if (compiledEntities != null)
+            return;
+        List<MentionType> compiledTypes = new ArrayList<MentionType>();
+        CompactTrie trie = CompactTrie.build(entities, compiledTypes);
+        types = compiledTypes;
+        entities = null;
+        // Published last, so that threads which see the trie also see the types
+        compiledEntities = trie;
+    }
+
+
+    private CompactTrie getCompiledEntities()
+    {
+        CompactTrie trie = compiledEntities;
+        if (trie != null)
+            return trie;
+        compile();
+        return compiledEntities;
+    }
+
+
+    /**
+     * Writes the dictionary to the specified file, in its compact form.
+     * 
+     * @param f
+     *        The file to write to
+     * @throws IOException
+     */
+    public void write(File f) throws IOException
+    {
+        CompactTrie trie = getCompiledEntities();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(f))));
+        try
+        {
+            out.writeInt(types.size());
+            for (MentionType type : types)
+                out.writeUTF(type.getText());
+            trie.write(out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    /**
+     * Loads a dictionary written with {@link #write(File)}.
+     * 
+     * @param f
+     *        The file to read from
+     * @param tokenizer
+     *        The {@link Tokenizer} to use for breaking new entries into tokens; should be the same as for the entries in the file
+     * @param filterContainedMentions
+     *        Whether mentions which are contained in another mention should be added
+     * @return A new {@link DictionaryTagger} containing the entries in the file
+     * @throws IOException
+     */
+    public static DictionaryTagger load(File f, Tokenizer tokenizer, boolean filterContainedMentions) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f))));
+        try
+        {
+            DictionaryTagger tagger = new DictionaryTagger(tokenizer, filterContainedMentions);
+            int size = in.readInt();
+            List<MentionType> types = new ArrayList<MentionType>(size);
+            for (int i = 0; i < size; i++)
+                types.add(MentionType.getType(in.readUTF()));
+            CompactTrie trie = CompactTrie.read(in);
+            tagger.types = types;
+            tagger.entities = null;
+            tagger.compiledEntities = trie;
+            return tagger;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
     public void tag(Sentence sentence)
     {
+        CompactTrie trie = getCompiledEntities();
         List<Token> tokens = sentence.getTokens();
+        int[] tokenIds = new int[tokens.size()];
+        for (int i = 0; i < tokenIds.length; i++)
+            tokenIds[i] = trie.getTokenId(tokens.get(i).getText());
         // Lookup mentions
         ArrayList<Mention> mentions = new ArrayList<Mention>();
         for (int startIndex = 0; startIndex < tokens.size(); startIndex++)
         {
-            Trie<String, MentionType> t = entities;
-            for (int currentIndex = startIndex; currentIndex < tokens.size() && t != null; currentIndex++)
+            int node = CompactTrie.ROOT;
+            for (int currentIndex = startIndex; currentIndex < tokens.size() && node >= 0; currentIndex++)
             {
-                MentionType type = t.getValue();
-                if (type != null)
-                    mentions.add(new Mention(sentence, type, startIndex, currentIndex));
-                Token currentToken = tokens.get(currentIndex);
-                t = t.getChild(currentToken.getText());
+                int type = trie.getValue(node);
+                if (type >= 0)
+                    mentions.add(new Mention(sentence, types.get(type), startIndex, currentIndex));
+                node = trie.getChild(node, tokenIds[currentIndex]);
             }
         }
         // Add mentions found
@@ -158,8 +274,10 @@ public class DictionaryTagger implements Tagger
     /**
      * @return The number of entries in this dictionary
      */
-    public int size()
+    public synchronized int size()
     {
+        if (entities == null)
+            return compiledEntities.size();
         return entities.size();
     }
 }
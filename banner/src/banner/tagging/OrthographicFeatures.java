@@ -0,0 +1,389 @@
+/*
+ Copyright (c) 2007 Arizona State University, Dept. of Computer Science and Dept. of Biomedical Informatics.
+ This file is part of the BANNER Named Entity Recognition System, http://banner.sourceforge.net
+ This software is provided under the terms of the Common Public License, version 1.0, as published by http://www.opensource.org.  For further information, see the file 'LICENSE.txt' included with this distribution.
+ */
+
+package banner.tagging;
+
+import java.lang.reflect.Field;
+import java.util.regex.Pattern;
+
+import edu.umass.cs.mallet.base.pipe.Pipe;
+import edu.umass.cs.mallet.base.pipe.SerialPipes;
+import edu.umass.cs.mallet.base.pipe.tsf.RegexMatches;
+import edu.umass.cs.mallet.base.types.Instance;
+import edu.umass.cs.mallet.base.types.Token;
+import edu.umass.cs.mallet.base.types.TokenSequence;
+
+/**
+ * Adds the orthographic features used by the {@link CRFTagger} (ALPHA, INITCAPS, HASDIGIT, ROMAN, GREEK, ISPUNCT, etc.) to each token. All features
+ * are computed in one pass over the characters of the token, instead of matching the token against one regular expression per feature.
+ * <p>
+ * The features added to each token, and the order in which they are added, are the same as those of the {@link RegexMatches} pipes this pipe
+ * replaces, so the resulting feature vectors are the same. Models trained with these RegexMatches pipes can use this pipe instead, see
+ * {@link #compileRegexPipes(SerialPipes)}.
+ */
+public class OrthographicFeatures extends Pipe
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final String GREEK = "(alpha|beta|gamma|delta|epsilon|zeta|eta|theta|iota|kappa|lambda|mu|nu|xi|omicron|pi|rho|sigma|tau|upsilon|phi|chi|psi|omega)";
+
+    private static final String[] GREEK_LETTERS = GREEK.substring(1, GREEK.length() - 1).split("\\|");
+
+    /**
+     * Feature names, in the order of the RegexMatches pipes the CRFTagger used. ALPHANUMERIC and REALNUMBER occur twice, as they are defined by
+     * two patterns each.
+     */
+    static final String[] FEATURES = {"ALPHA", "INITCAPS", "UPPER-LOWER", "LOWER-UPPER", "ALLCAPS", "MIXEDCAPS", "SINGLECHAR", "SINGLEDIGIT",
+            "DOUBLEDIGIT", "NUMBER", "HASDIGIT", "ALPHANUMERIC", "ALPHANUMERIC", "LETTERS_NUMBERS", "NUMBERS_LETTERS", "HAS_DASH", "HAS_QUOTE",
+            "HAS_SLASH", "REALNUMBER", "REALNUMBER", "START_MINUS", "START_PLUS", "END_PERCENT", "ROMAN", "GREEK", "ISPUNCT"};
+
+    /**
+     * The patterns that define the features in {@link #FEATURES}. Used for tokens containing line terminators, and to recognize equivalent
+     * RegexMatches pipes.
+     */
+    static final Pattern[] PATTERNS = {Pattern.compile("[A-Za-z]+"), Pattern.compile("[A-Z].*"), Pattern.compile("[A-Z][a-z].*"),
+            Pattern.compile("[a-z]+[A-Z]+.*"), Pattern.compile("[A-Z]+"), Pattern.compile("[A-Z][a-z]+[A-Z][A-Za-z]*"), Pattern.compile("[A-Za-z]"),
+            Pattern.compile("[0-9]"), Pattern.compile("[0-9][0-9]"), Pattern.compile("[0-9,]+"), Pattern.compile(".*[0-9].*"),
+            Pattern.compile(".*[0-9].*[A-Za-z].*"), Pattern.compile(".*[A-Za-z].*[0-9].*"), Pattern.compile("[0-9]+[A-Za-z]+"),
+            Pattern.compile("[A-Za-z]+[0-9]+"), Pattern.compile(".*-.*"), Pattern.compile(".*'.*"), Pattern.compile(".*/.*"),
+            Pattern.compile("(-|\\+)?[0-9,]+(\\.[0-9]*)?%?"), Pattern.compile("(-|\\+)?[0-9,]*(\\.[0-9]+)?%?"), Pattern.compile("-.*"),
+            Pattern.compile("\\+.*"), Pattern.compile(".*%"), Pattern.compile("[IVXDLCM]+", Pattern.CASE_INSENSITIVE),
+            Pattern.compile(GREEK, Pattern.CASE_INSENSITIVE), Pattern.compile("[`~!@#$%^&*()-=_+\\[\\]\\\\{}|;\':\\\",./<>?]+")};
+
+    private static final int ALPHA = 0;
+    private static final int INITCAPS = 1;
+    private static final int UPPER_LOWER = 2;
+    private static final int LOWER_UPPER = 3;
+    private static final int ALLCAPS = 4;
+    private static final int MIXEDCAPS = 5;
+    private static final int SINGLECHAR = 6;
+    private static final int SINGLEDIGIT = 7;
+    private static final int DOUBLEDIGIT = 8;
+    private static final int NUMBER = 9;
+    private static final int HASDIGIT = 10;
+    private static final int DIGIT_LETTER = 11;
+    private static final int LETTER_DIGIT = 12;
+    private static final int LETTERS_NUMBERS = 13;
+    private static final int NUMBERS_LETTERS = 14;
+    private static final int HAS_DASH = 15;
+    private static final int HAS_QUOTE = 16;
+    private static final int HAS_SLASH = 17;
+    private static final int REALNUMBER = 18;
+    private static final int OPTIONAL_REALNUMBER = 19;
+    private static final int START_MINUS = 20;
+    private static final int START_PLUS = 21;
+    private static final int END_PERCENT = 22;
+    private static final int ROMAN = 23;
+    private static final int GREEK_LETTER = 24;
+    private static final int ISPUNCT = 25;
+
+    /** Punctuation matched by the ISPUNCT pattern, except for the range from ')' to '=' */
+    private static final String PUNCTUATION = "`~!@#$%^&*(_+[]\\{}|;':\",./<>?";
+
+    private static final String ROMAN_DIGITS = "IVXDLCMivxdlcm";
+
+    /** First (inclusive) and last (exclusive) index of the features added by this pipe */
+    private int first;
+    private int last;
+
+
+    private OrthographicFeatures(int first, int last)
+    {
+        this.first = first;
+        this.last = last;
+    }
+
+
+    /**
+     * @return A pipe adding the features ALPHA to END_PERCENT, which the CRFTagger adds before the prefix and suffix features
+     */
+    public static OrthographicFeatures createShapeFeatures()
+    {
+        return new OrthographicFeatures(ALPHA, ROMAN);
+    }
+
+
+    /**
+     * @return A pipe adding the features ROMAN, GREEK and ISPUNCT, which the CRFTagger adds after the character n-gram features
+     */
+    public static OrthographicFeatures createSymbolFeatures()
+    {
+        return new OrthographicFeatures(ROMAN, FEATURES.length);
+    }
+
+
+    @Override
+    public Instance pipe(Instance carrier)
+    {
+        TokenSequence ts = (TokenSequence)carrier.getData();
+        for (int i = 0; i < ts.size(); i++)
+        {
+            Token token = ts.getToken(i);
+            int features = getFeatures(token.getText());
+            for (int f = first; f < last; f++)
+                if ((features & (1 << f)) != 0)
+                    token.setFeatureValue(FEATURES[f], 1.0);
+        }
+        return carrier;
+    }
+
+
+    /**
+     * Determines which of the {@link #PATTERNS} match the given text.
+     *
+     * @param text
+     *        The text of a token
+     * @return A bit set; bit f is set if pattern f matches the entire text
+     */
+    static int getFeatures(String text)
+    {
+        int length = text.length();
+        int letters = 0, upper = 0, digits = 0, digitsOrCommas = 0, romanDigits = 0, punctuation = 0;
+        int leadingLower = 0, leadingLetters = 0, leadingDigits = 0;
+        int firstLetter = -1, lastLetter = -1, firstDigit = -1, lastDigit = -1;
+        boolean dash = false, quote = false, slash = false;
+
+        for (int i = 0; i < length; i++)
+        {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+                return matchPatterns(text);
+            boolean isUpper = c >= 'A' && c <= 'Z';
+            boolean isLower = c >= 'a' && c <= 'z';
+            boolean isDigit = c >= '0' && c <= '9';
+            if (isUpper || isLower)
+            {
+                letters++;
+                if (firstLetter < 0)
+                    firstLetter = i;
+                lastLetter = i;
+                if (isUpper)
+                    upper++;
+            }
+            if (isDigit)
+            {
+                digits++;
+                if (firstDigit < 0)
+                    firstDigit = i;
+                lastDigit = i;
+            }
+            if (isDigit || c == ',')
+                digitsOrCommas++;
+            if (leadingLower == i && isLower)
+                leadingLower++;
+            if (leadingLetters == i && (isUpper || isLower))
+                leadingLetters++;
+            if (leadingDigits == i && isDigit)
+                leadingDigits++;
+            if (ROMAN_DIGITS.indexOf(c) >= 0)
+                romanDigits++;
+            if ((c >= ')' && c <= '=') || PUNCTUATION.indexOf(c) >= 0)
+                punctuation++;
+            if (c == '-')
+                dash = true;
+            else if (c == '\'')
+                quote = true;
+            else if (c == '/')
+                slash = true;
+        }
+
+        char firstChar = length > 0 ? text.charAt(0) : 0;
+        boolean startsUpper = firstChar >= 'A' && firstChar <= 'Z';
+        int features = 0;
+        if (length > 0 && letters == length)
+            features |= 1 << ALPHA;
+        if (startsUpper)
+            features |= 1 << INITCAPS;
+        if (startsUpper && length > 1 && text.charAt(1) >= 'a' && text.charAt(1) <= 'z')
+            features |= 1 << UPPER_LOWER;
+        if (leadingLower > 0 && leadingLower < length && isUpper(text.charAt(leadingLower)))
+            features |= 1 << LOWER_UPPER;
+        if (length > 0 && upper == length)
+            features |= 1 << ALLCAPS;
+        if (startsUpper && letters == length && isMixedCaps(text))
+            features |= 1 << MIXEDCAPS;
+        if (length == 1 && letters == 1)
+            features |= 1 << SINGLECHAR;
+        if (length == 1 && digits == 1)
+            features |= 1 << SINGLEDIGIT;
+        if (length == 2 && digits == 2)
+            features |= 1 << DOUBLEDIGIT;
+        if (length > 0 && digitsOrCommas == length)
+            features |= 1 << NUMBER;
+        if (digits > 0)
+            features |= 1 << HASDIGIT;
+        if (firstDigit >= 0 && firstDigit < lastLetter)
+            features |= 1 << DIGIT_LETTER;
+        if (firstLetter >= 0 && firstLetter < lastDigit)
+            features |= 1 << LETTER_DIGIT;
+        if (leadingDigits > 0 && leadingDigits < length && letters == length - leadingDigits)
+            features |= 1 << LETTERS_NUMBERS;
+        if (leadingLetters > 0 && leadingLetters < length && digits == length - leadingLetters)
+            features |= 1 << NUMBERS_LETTERS;
+        if (dash)
+            features |= 1 << HAS_DASH;
+        if (quote)
+            features |= 1 << HAS_QUOTE;
+        if (slash)
+            features |= 1 << HAS_SLASH;
+        if (isRealNumber(text, true))
+            features |= 1 << REALNUMBER;
+        if (isRealNumber(text, false))
+            features |= 1 << OPTIONAL_REALNUMBER;
+        if (firstChar == '-')
+            features |= 1 << START_MINUS;
+        if (firstChar == '+')
+            features |= 1 << START_PLUS;
+        if (length > 0 && text.charAt(length - 1) == '%')
+            features |= 1 << END_PERCENT;
+        if (length > 0 && romanDigits == length)
+            features |= 1 << ROMAN;
+        if (letters == length && isGreekLetter(text))
+            features |= 1 << GREEK_LETTER;
+        if (length > 0 && punctuation == length)
+            features |= 1 << ISPUNCT;
+        return features;
+    }
+
+
+    private static boolean isUpper(char c)
+    {
+        return c >= 'A' && c <= 'Z';
+    }
+
+
+    /**
+     * Checks for [A-Z][a-z]+[A-Z][A-Za-z]*, given that the text starts with an upper case letter and contains letters only.
+     */
+    private static boolean isMixedCaps(String text)
+    {
+        int i = 1;
+        while (i < text.length() && text.charAt(i) >= 'a' && text.charAt(i) <= 'z')
+            i++;
+        return i > 1 && i < text.length() && isUpper(text.charAt(i));
+    }
+
+
+    /**
+     * Checks for (-|\+)?[0-9,]+(\.[0-9]*)?%? if the integer part is required, and for (-|\+)?[0-9,]*(\.[0-9]+)?%? otherwise.
+     */
+    private static boolean isRealNumber(String text, boolean requireIntegerPart)
+    {
+        int length = text.length();
+        int i = 0;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            i++;
+        int integerStart = i;
+        while (i < length && ((text.charAt(i) >= '0' && text.charAt(i) <= '9') || text.charAt(i) == ','))
+            i++;
+        if (requireIntegerPart && i == integerStart)
+            return false;
+        if (i < length && text.charAt(i) == '.')
+        {
+            i++;
+            int fractionStart = i;
+            while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9')
+                i++;
+            if (!requireIntegerPart && i == fractionStart)
+                return false;
+        }
+        if (i < length && text.charAt(i) == '%')
+            i++;
+        return i == length;
+    }
+
+
+    /**
+     * Checks whether the text is the name of a Greek letter, ignoring case; the text has to consist of ASCII letters only.
+     */
+    private static boolean isGreekLetter(String text)
+    {
+        if (text.length() < 2 || text.length() > 7)
+            return false;
+        for (String letter : GREEK_LETTERS)
+            if (letter.equalsIgnoreCase(text))
+                return true;
+        return false;
+    }
+
+
+    /**
+     * Determines the features by matching each pattern; for texts where '.' in a pattern would not match every character.
+     */
+    private static int matchPatterns(String text)
+    {
+        int features = 0;
+        for (int f = 0; f < PATTERNS.length; f++)
+            if (PATTERNS[f].matcher(text).matches())
+                features |= 1 << f;
+        return features;
+    }
+
+
+    /**
+     * Replaces each sequence of {@link RegexMatches} pipes that adds the same features as one of the pipes returned by
+     * {@link #createShapeFeatures()} and {@link #createSymbolFeatures()} with that pipe. Used for models trained before this pipe existed, as
+     * their pipes are serialized with the model. The feature vectors created by the pipes do not change.
+     *
+     * @param serialPipes
+     *        The pipes of a CRF
+     * @return The number of RegexMatches pipes replaced
+     */
+    public static int compileRegexPipes(SerialPipes serialPipes)
+    {
+        return compileRegexPipes(serialPipes, ALPHA, ROMAN) + compileRegexPipes(serialPipes, ROMAN, FEATURES.length);
+    }
+
+
+    private static int compileRegexPipes(SerialPipes serialPipes, int first, int last)
+    {
+        int count = last - first;
+        for (int p = 0; p + count <= serialPipes.size(); p++)
+        {
+            boolean equivalent = true;
+            for (int f = 0; f < count && equivalent; f++)
+                equivalent = isEquivalent(serialPipes.getPipe(p + f), first + f);
+            if (equivalent)
+            {
+                OrthographicFeatures pipe = new OrthographicFeatures(first, last);
+                pipe.setParent(serialPipes);
+                serialPipes.replacePipe(p, pipe);
+                for (int f = 1; f < count; f++)
+                    serialPipes.removePipe(p + 1);
+                return count;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Checks whether the pipe is a {@link RegexMatches} pipe adding the given feature using the same pattern.
+     */
+    private static boolean isEquivalent(Pipe pipe, int feature)
+    {
+        if (pipe == null || pipe.getClass() != RegexMatches.class)
+            return false;
+        try
+        {
+            Field featureField = RegexMatches.class.getDeclaredField("feature");
+            Field regexField = RegexMatches.class.getDeclaredField("regex");
+            featureField.setAccessible(true);
+            regexField.setAccessible(true);
+            Pattern regex = (Pattern)regexField.get(pipe);
+            return FEATURES[feature].equals(featureField.get(pipe)) && regex != null && PATTERNS[feature].pattern().equals(regex.pattern())
+                    && PATTERNS[feature].flags() == regex.flags();
+        }
+        catch (NoSuchFieldException e)
+        {
+            return false;
+        }
+        catch (IllegalAccessException e)
+        {
+            return false;
+        }
+    }
+}
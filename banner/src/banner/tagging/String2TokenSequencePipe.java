@@ -50,6 +50,39 @@ public class String2TokenSequencePipe extends Pipe
     }
 
 
+    /**
+     * Returns a new pipe that adds the same features and uses the same target alphabet as this pipe, but with the specified lemmatiser and
+     * part-of-speech tagger. Used to pipe sentences for one model in several threads.
+     * 
+     * @param lemmatiser
+     *        The {@link Lemmatiser} for the new pipe
+     * @param posTagger
+     *        The part-of-speech {@link Tagger} for the new pipe
+     * @return
+     */
+    public String2TokenSequencePipe copy(Lemmatiser lemmatiser, Tagger posTagger)
+    {
+        String2TokenSequencePipe copy = new String2TokenSequencePipe(lemmatiser, posTagger, useNumericNormalization);
+        copy.setTargetAlphabet(getTargetAlphabet());
+        return copy;
+    }
+
+
+    /**
+     * Adds the tags of a sentence to the target alphabet, in the order in which {@link #pipe(Instance)} would add them. Used before piping several
+     * sentences in parallel, so that the alphabet does not depend on the order in which threads finish.
+     * 
+     * @param sentenceLines
+     *        The training text of a sentence
+     */
+    public void addLabels(String sentenceLines)
+    {
+        LabelAlphabet labels = (LabelAlphabet)getTargetAlphabet();
+        for (String token : sentenceLines.trim().split("\\s+"))
+            labels.lookupLabel(token.split("\\|")[1]);
+    }
+
+
     @Override
     public Instance pipe(Instance carrier)
     {
@@ -60,6 +93,11 @@ public class String2TokenSequencePipe extends Pipe
         LabelSequence target = new LabelSequence((LabelAlphabet)getTargetAlphabet(), tokens.length);
         StringBuffer source = new StringBuffer();
 
+        // The part-of-speech tags depend on the whole sentence, tag it once
+        int[] pos = null;
+        if (posTagger != null)
+            pos = getPOS(tokens);
+
         for (int i = 0; i < tokens.length; i++)
         {
             String[] split = tokens[i].split("\\|");
@@ -69,10 +107,8 @@ public class String2TokenSequencePipe extends Pipe
 
             // Add features to token
             token.setFeatureValue("W=" + text.toLowerCase(), 1);
-            int[] pos = null;
-            if (posTagger != null)
+            if (pos != null)
             {
-                pos = getPOS(tokens);
                 token.setFeatureValue("POS=" + pos[i], 1);
             }
             if (lemmatiser != null)
@@ -109,37 +145,83 @@ public class String2TokenSequencePipe extends Pipe
     }
 
 
+    /**
+     * Replaces each digit with 0.
+     */
     private String getNumberClass(String text)
     {
-        text = text.replaceAll("[0-9]", "0");
-        return text;
+        return getCharacterClasses(text, false, false);
     }
 
 
+    /**
+     * Replaces each upper case letter with A, lower case letter with a, digit with 0, and any other character with x.
+     */
     private String getWordClass(String text)
     {
-        text = text.replaceAll("[A-Z]", "A");
-        text = text.replaceAll("[a-z]", "a");
-        text = text.replaceAll("[0-9]", "0");
-        text = text.replaceAll("[^A-Za-z0-9]", "x");
-        return text;
+        return getCharacterClasses(text, true, false);
     }
 
 
+    /**
+     * Replaces each sequence of digits with 0.
+     */
     private String getBriefNumberClass(String text)
     {
-        text = text.replaceAll("[0-9]+", "0");
-        return text;
+        return getCharacterClasses(text, false, true);
     }
 
 
+    /**
+     * Replaces each sequence of upper case letters with A, lower case letters with a, digits with 0, and other characters with x.
+     */
     private static String getBriefWordClass(String text)
     {
-        text = text.replaceAll("[A-Z]+", "A");
-        text = text.replaceAll("[a-z]+", "a");
-        text = text.replaceAll("[0-9]+", "0");
-        text = text.replaceAll("[^A-Za-z0-9]+", "x");
-        return text;
+        return getCharacterClasses(text, true, true);
+    }
+
+
+    /**
+     * Maps the characters of the text to their classes in one pass; gives the same result as replacing [A-Z], [a-z], [0-9] and [^A-Za-z0-9]
+     * (or sequences of them, if brief) with regular expressions.
+     * 
+     * @param text
+     * @param allClasses
+     *        If false, only digits are replaced and all other characters are kept
+     * @param brief
+     *        Whether to replace sequences of characters of the same class with a single character
+     * @return
+     */
+    static String getCharacterClasses(String text, boolean allClasses, boolean brief)
+    {
+        StringBuilder classes = new StringBuilder(text.length());
+        char previous = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            char charClass;
+            if (c >= '0' && c <= '9')
+                charClass = '0';
+            else if (!allClasses)
+                charClass = 0;
+            else if (c >= 'A' && c <= 'Z')
+                charClass = 'A';
+            else if (c >= 'a' && c <= 'z')
+                charClass = 'a';
+            else
+            {
+                charClass = 'x';
+                // A supplementary character is one match of [^A-Za-z0-9]
+                if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1)))
+                    i++;
+            }
+            if (charClass == 0)
+                classes.append(c);
+            else if (!brief || charClass != previous)
+                classes.append(charClass);
+            previous = charClass;
+        }
+        return classes.toString();
     }
 
 
@@ -0,0 +1,361 @@
+/* 
+ Copyright (c) 2007 Arizona State University, Dept. of Computer Science and Dept. of Biomedical Informatics.
+ This file is part of the BANNER Named Entity Recognition System, http://banner.sourceforge.net
+ This software is provided under the terms of the Common Public License, version 1.0, as published by http://www.opensource.org.  For further information, see the file 'LICENSE.txt' included with this distribution.
+ */
+
+package banner.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, array-based version of a {@link Trie} from lists of strings (tokens) to values. Each distinct token is mapped to an int ID, and
+ * the nodes are stored breadth-first in a few int arrays: the children of a node are contiguous and sorted by token ID, and are found by binary
+ * search. Node 0 is the root. Values are stored as indices into a table of distinct values, which is kept by the caller.
+ * <p>
+ * Compared to a {@link Trie}, there is no object per node, so large dictionaries need much less memory, and a trie can be written to and read
+ * from a file quickly.
+ */
+public class CompactTrie
+{
+
+    /** The index of the root node */
+    public static final int ROOT = 0;
+
+    private static final int VERSION = 1;
+
+    private String[] tokens;
+    private Map<String, Integer> tokenIds;
+    /** The children of node n are the nodes firstChild[n] + 1 to firstChild[n + 1], inclusive */
+    private int[] firstChild;
+    /** The token ID leading to node n + 1 */
+    private int[] childTokens;
+    /** The index of the value of each node, or -1 */
+    private int[] values;
+
+
+    private CompactTrie(String[] tokens, int[] firstChild, int[] childTokens, int[] values)
+    {
+        this.tokens = tokens;
+        this.firstChild = firstChild;
+        this.childTokens = childTokens;
+        this.values = values;
+        tokenIds = new HashMap<String, Integer>(tokens.length * 2);
+        for (int id = 0; id < tokens.length; id++)
+            tokenIds.put(tokens[id], Integer.valueOf(id));
+    }
+
+
+    /**
+     * Creates a {@link CompactTrie} with the same mappings as the specified {@link Trie}.
+     * 
+     * @param trie
+     *        The {@link Trie} to copy
+     * @param valueTable
+     *        Receives the distinct values of the trie, in the order of their indices; values already in the list are reused
+     * @return A new {@link CompactTrie}
+     */
+    public static <V> CompactTrie build(Trie<String, V> trie, List<V> valueTable)
+    {
+        Map<V, Integer> valueIndices = new HashMap<V, Integer>();
+        for (int i = 0; i < valueTable.size(); i++)
+            valueIndices.put(valueTable.get(i), Integer.valueOf(i));
+        List<String> tokens = new ArrayList<String>();
+        Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+
+        // Breadth-first, so that the children of each node get consecutive indices
+        List<Trie<String, V>> nodes = new ArrayList<Trie<String, V>>();
+        nodes.add(trie);
+        IntList firstChild = new IntList();
+        IntList childTokens = new IntList();
+        IntList values = new IntList();
+        for (int n = 0; n < nodes.size(); n++)
+        {
+            Trie<String, V> node = nodes.get(n);
+            V value = node.getValue();
+            if (value == null)
+                values.add(-1);
+            else
+            {
+                Integer index = valueIndices.get(value);
+                if (index == null)
+                {
+                    index = Integer.valueOf(valueTable.size());
+                    valueTable.add(value);
+                    valueIndices.put(value, index);
+                }
+                values.add(index.intValue());
+            }
+
+            firstChild.add(nodes.size() - 1);
+            List<String> keys = new ArrayList<String>(node.getChildKeys());
+            int[] ids = new int[keys.size()];
+            for (int k = 0; k < ids.length; k++)
+            {
+                Integer id = tokenIds.get(keys.get(k));
+                if (id == null)
+                {
+                    id = Integer.valueOf(tokens.size());
+                    tokens.add(keys.get(k));
+                    tokenIds.put(keys.get(k), id);
+                }
+                ids[k] = id.intValue();
+            }
+            Arrays.sort(ids);
+            for (int id : ids)
+            {
+                childTokens.add(id);
+                nodes.add(node.getChild(tokens.get(id)));
+            }
+        }
+        firstChild.add(nodes.size() - 1);
+        return new CompactTrie(tokens.toArray(new String[tokens.size()]), firstChild.toArray(), childTokens.toArray(), values.toArray());
+    }
+
+
+    /**
+     * Returns the ID of the specified token
+     * 
+     * @param token
+     * @return The ID of the token, or -1 if no key contains the token
+     */
+    public int getTokenId(String token)
+    {
+        Integer id = tokenIds.get(token);
+        if (id == null)
+            return -1;
+        return id.intValue();
+    }
+
+
+    /**
+     * Returns the IDs of the specified tokens, -1 for tokens which no key contains
+     * 
+     * @param tokens
+     * @return The token IDs
+     */
+    public int[] getTokenIds(List<String> tokens)
+    {
+        int[] ids = new int[tokens.size()];
+        int i = 0;
+        for (String token : tokens)
+            ids[i++] = getTokenId(token);
+        return ids;
+    }
+
+
+    /**
+     * Returns the child of a node for the specified token
+     * 
+     * @param node
+     *        The index of the node
+     * @param tokenId
+     *        The ID of the token
+     * @return The index of the child, or -1 if there is no such child
+     */
+    public int getChild(int node, int tokenId)
+    {
+        if (tokenId < 0)
+            return -1;
+        int index = Arrays.binarySearch(childTokens, firstChild[node], firstChild[node + 1], tokenId);
+        if (index < 0)
+            return -1;
+        return index + 1;
+    }
+
+
+    /**
+     * @param node
+     *        The index of the node
+     * @return The index of the value of the node, or -1 if the node has no value
+     */
+    public int getValue(int node)
+    {
+        return values[node];
+    }
+
+
+    /**
+     * Returns the index of the value for the specified key
+     * 
+     * @param keys
+     * @return The index of the value, or -1 if the key has no value
+     */
+    public int getValue(List<String> keys)
+    {
+        int node = ROOT;
+        for (String key : keys)
+        {
+            node = getChild(node, getTokenId(key));
+            if (node < 0)
+                return -1;
+        }
+        return values[node];
+    }
+
+
+    /**
+     * Finds the longest key which matches the token sequence at the specified position.
+     * 
+     * @param tokenIds
+     *        The token sequence, as returned by {@link #getTokenIds(List)}
+     * @param start
+     *        The position in the sequence where the key must start
+     * @return The end (exclusive) of the longest matching key that has a value, or -1 if there is none
+     */
+    public int getLongestMatch(int[] tokenIds, int start)
+    {
+        int end = -1;
+        int node = ROOT;
+        for (int index = start; node >= 0; index++)
+        {
+            if (values[node] >= 0)
+                end = index;
+            if (index == tokenIds.length)
+                break;
+            node = getChild(node, tokenIds[index]);
+        }
+        return end;
+    }
+
+
+    /**
+     * Creates a {@link Trie} with the same mappings as this {@link CompactTrie}, e.g. to add more keys
+     * 
+     * @param valueTable
+     *        The values, in the order of their indices
+     * @return A new {@link Trie}
+     */
+    public <V> Trie<String, V> toTrie(List<V> valueTable)
+    {
+        List<Trie<String, V>> nodes = new ArrayList<Trie<String, V>>(values.length);
+        nodes.add(new Trie<String, V>());
+        for (int n = 0; n < values.length; n++)
+        {
+            Trie<String, V> node = nodes.get(n);
+            if (values[n] >= 0)
+                node.setValue(valueTable.get(values[n]));
+            for (int child = firstChild[n] + 1; child <= firstChild[n + 1]; child++)
+            {
+                String token = tokens[childTokens[child - 1]];
+                node.add(Collections.singletonList(token), null);
+                nodes.add(node.getChild(token));
+            }
+        }
+        return nodes.get(ROOT);
+    }
+
+
+    /**
+     * @return The number of mappings in this {@link CompactTrie}
+     */
+    public int size()
+    {
+        int size = 0;
+        for (int value : values)
+            if (value >= 0)
+                size++;
+        return size;
+    }
+
+
+    /**
+     * @return The number of nodes in this {@link CompactTrie}, including the root
+     */
+    public int getNodeCount()
+    {
+        return values.length;
+    }
+
+
+    /**
+     * Writes this {@link CompactTrie} to the specified stream, see {@link #read(DataInputStream)}
+     * 
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(VERSION);
+        out.writeInt(tokens.length);
+        for (String token : tokens)
+            out.writeUTF(token);
+        writeArray(out, firstChild);
+        writeArray(out, childTokens);
+        writeArray(out, values);
+    }
+
+
+    /**
+     * Reads a {@link CompactTrie} written with {@link #write(DataOutputStream)}
+     * 
+     * @param in
+     * @return A new {@link CompactTrie}
+     * @throws IOException
+     */
+    public static CompactTrie read(DataInputStream in) throws IOException
+    {
+        int version = in.readInt();
+        if (version != VERSION)
+            throw new IOException("Unknown trie version: " + version);
+        String[] tokens = new String[in.readInt()];
+        for (int id = 0; id < tokens.length; id++)
+            tokens[id] = in.readUTF();
+        int[] firstChild = readArray(in);
+        int[] childTokens = readArray(in);
+        int[] values = readArray(in);
+        if (firstChild.length != values.length + 1 || childTokens.length != values.length - 1)
+            throw new IOException("Inconsistent trie");
+        return new CompactTrie(tokens, firstChild, childTokens, values);
+    }
+
+
+    private static void writeArray(DataOutputStream out, int[] array) throws IOException
+    {
+        out.writeInt(array.length);
+        for (int value : array)
+            out.writeInt(value);
+    }
+
+
+    private static int[] readArray(DataInputStream in) throws IOException
+    {
+        int[] array = new int[in.readInt()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = in.readInt();
+        return array;
+    }
+
+
+    /**
+     * A growable list of ints
+     */
+    private static class IntList
+    {
+        private int[] values = new int[16];
+        private int size = 0;
+
+
+        void add(int value)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+}
@@ -6,15 +6,19 @@
 
 package banner.util;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A Trie (also known as a prefix tree) essentially maps from a list of objects (keys) to a value. The interface is very similar, therefore, to the
  * interface for {@link Map}, except that the key is a {@link List} of objects. This data structure allows searching in O(m) time, where m is the
  * depth of the tree.
+ * <p>
+ * Leaves do not allocate a map for their children. For large dictionaries of strings that do not change any more, see {@link CompactTrie}.
  * 
  * @author Bob
  * @param <K>
@@ -24,6 +28,7 @@ public class Trie<K, V>
 {
 
     private V value;
+    /** Created when the first child is added */
     private Map<K, Trie<K, V>> children;
 
 
@@ -36,7 +41,6 @@ public class Trie<K, V>
     public Trie(V value)
     {
         this.value = value;
-        children = new HashMap<K, Trie<K, V>>();
     }
 
 
@@ -59,6 +63,8 @@ public class Trie<K, V>
         while (current != null && keyIterator.hasNext())
         {
             K nextKey = keyIterator.next();
+            if (current.children == null)
+                current.children = new HashMap<K, Trie<K, V>>(4);
             Trie<K, V> next = current.children.get(nextKey);
             if (next == null)
             {
@@ -75,10 +81,23 @@ public class Trie<K, V>
 
     public Trie<K, V> getChild(K key)
     {
+        if (children == null)
+            return null;
         return children.get(key);
     }
 
 
+    /**
+     * @return The keys of the children of this node
+     */
+    public Set<K> getChildKeys()
+    {
+        if (children == null)
+            return Collections.emptySet();
+        return Collections.unmodifiableSet(children.keySet());
+    }
+
+
     public V getValue(List<K> keys)
     {
         Trie<K, V> current = this;
@@ -86,7 +105,7 @@ public class Trie<K, V>
         while (current != null && keyIterator.hasNext())
         {
             K nextKey = keyIterator.next();
-            current = current.children.get(nextKey);
+            current = current.getChild(nextKey);
         }
         if (current == null)
             return null;
@@ -104,8 +123,9 @@ public class Trie<K, V>
         int size = 0;
         if (value != null)
             size++;
-        for (Trie<K, V> child : children.values())
-            size += child.size();
+        if (children != null)
+            for (Trie<K, V> child : children.values())
+                size += child.size();
         return size;
     }
 
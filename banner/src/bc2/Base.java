@@ -14,10 +14,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 
+import banner.BannerProperties;
 import banner.Sentence;
+import banner.tagging.CRFTagger;
 import banner.tagging.Mention;
 import banner.tagging.MentionType;
 import banner.tokenization.Token;
@@ -25,6 +28,68 @@ import banner.tokenization.Tokenizer;
 
 public abstract class Base {
 
+	/**
+	 * Returns the random numbers for sampling sentences and assigning them to folds. The seed is derived from the given string, e.g. the number
+	 * of the cross, so that running the same cross again yields the same folds.
+	 * 
+	 * @param seed
+	 *        A number, any other string, or null for 0
+	 * @return
+	 */
+	protected static Random getRandom(String seed)
+	{
+		if (seed == null)
+			return new Random(0);
+		try
+		{
+			return new Random(Long.parseLong(seed.trim()));
+		}
+		catch (NumberFormatException e)
+		{
+			return new Random(seed.hashCode());
+		}
+	}
+
+	/**
+	 * Returns the given properties followed by further copies loaded from the same file, one per training thread. Each copy has its own
+	 * lemmatiser and part-of-speech tagger, which are not thread-safe.
+	 * 
+	 * @param filename
+	 * @param properties
+	 *        The properties loaded from filename
+	 * @return
+	 */
+	protected static BannerProperties[] getCopies(String filename, BannerProperties properties)
+	{
+		BannerProperties[] copies = new BannerProperties[Math.max(1, properties.getTrainingThreads())];
+		copies[0] = properties;
+		for (int i = 1; i < copies.length; i++)
+			copies[i] = BannerProperties.load(filename);
+		return copies;
+	}
+
+	/**
+	 * Trains a {@link CRFTagger} with the settings of the first properties, using one thread per copy of the properties to convert the sentences.
+	 * 
+	 * @param sentences
+	 * @param properties
+	 *        Copies of the same {@link BannerProperties}, see {@link #getCopies(String, BannerProperties)}
+	 * @return
+	 */
+	protected static CRFTagger train(List<Sentence> sentences, BannerProperties[] properties)
+	{
+		dragon.nlp.tool.Lemmatiser[] lemmatisers = new dragon.nlp.tool.Lemmatiser[properties.length];
+		dragon.nlp.tool.Tagger[] posTaggers = new dragon.nlp.tool.Tagger[properties.length];
+		for (int i = 0; i < properties.length; i++)
+		{
+			lemmatisers[i] = properties[i].getLemmatiser();
+			posTaggers[i] = properties[i].getPosTagger();
+		}
+		BannerProperties first = properties[0];
+		return CRFTagger.train(sentences, first.getOrder(), first.isUseFeatureInduction(), first.getTagFormat(), first.getTextDirection(),
+				lemmatisers, posTaggers, first.isUseNumericNormalization());
+	}
+
 	protected static HashMap<String, LinkedList<Base.Tag>> getTags(BufferedReader tagFile) throws IOException
 	{
 	    HashMap<String, LinkedList<Base.Tag>> tags = new HashMap<String, LinkedList<Base.Tag>>();
@@ -17,9 +17,16 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +42,9 @@ import banner.tokenization.Tokenizer;
 /**
  * Performs a 2-fold cross validation: partitions the data into two sets of roughly equal size, trains a model on each and then tests each model on
  * the unseen partition. To perform 5 x 2 cross validation, simply execute this 5 times.
+ * <p>
+ * The partitions are chosen at random, seeded with the number of the cross, so that a cross can be repeated. With more than one training thread
+ * (property <tt>trainingThreads</tt>), the model for the first partition is tested while the model for the second partition is trained.
  */
 public class Evaluate2Fold extends Base
 {
@@ -47,6 +57,9 @@ public class Evaluate2Fold extends Base
 
     private static BannerProperties properties;
 
+    /** One copy of the properties for each training thread, the first is {@link #properties} */
+    private static BannerProperties[] copies;
+
 
     /**
      * @param args
@@ -58,6 +71,7 @@ public class Evaluate2Fold extends Base
 
         properties = BannerProperties.load(args[0]);
         properties.log();
+        copies = getCopies(args[0], properties);
         BufferedReader sentenceFile = new BufferedReader(new FileReader(args[1]));
         String tagFilename = args[2];
         String directory = args[3];
@@ -82,13 +96,14 @@ public class Evaluate2Fold extends Base
             HashMap<String, LinkedList<Base.Tag>> tags = getTags(tagFile);
             tagFile.close();
 
+            Random random = getRandom(cross);
             String line = sentenceFile.readLine();
             while (line != null)
             {
                 int space = line.indexOf(' ');
                 String id = line.substring(0, space).trim();
                 String sentence = line.substring(space).trim();
-                if (percentage == null || Math.random() < percentage.doubleValue())
+                if (percentage == null || random.nextDouble() < percentage.doubleValue())
                 {
                     ids.add(id);
                     id2Sentence.put(id, getSentence(id, sentence, properties.getTokenizer(), tags));
@@ -118,7 +133,7 @@ public class Evaluate2Fold extends Base
             {
                 String id = ids.get(index);
                 Sentence sentence = id2Sentence.get(id);
-                if (Math.random() < 0.5)
+                if (random.nextDouble() < 0.5)
                 {
                     ids_A.add(id);
                     idFile_A.println(id);
@@ -148,23 +163,56 @@ public class Evaluate2Fold extends Base
             String mentionFilename_B = directory + "/mention_B" + cross + ".txt";
 
             // Train on fold A & output model
-            CRFTagger tagger = train(ids_A, modelFilename_A);
+            CRFTagger tagger = train(ids_A, modelFilename_A, copies);
             sysOut.println("Completed training for fold A of cross #" + cross + ": " + (System.currentTimeMillis() - start));
             System.gc();
 
-            // Test on fold B & output results
-            test(ids_B, tagger, outputFilename_B, mentionFilename_B);
-            sysOut.println("Completed testing for fold A of cross #" + cross + ": " + (System.currentTimeMillis() - start));
-            tagger = null;
-            System.gc();
+            if (copies.length == 1)
+            {
+                // Test on fold B & output results
+                test(ids_B, tagger, properties, outputFilename_B, mentionFilename_B);
+                sysOut.println("Completed testing for fold A of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+                tagger = null;
+                System.gc();
 
-            // Train on fold B & output model
-            tagger = train(ids_B, modelFilename_B);
-            sysOut.println("Completed training for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
-            System.gc();
+                // Train on fold B & output model
+                tagger = train(ids_B, modelFilename_B, copies);
+                sysOut.println("Completed training for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+                System.gc();
+            }
+            else
+            {
+                // Test on fold B with the last copy of the properties, while training on fold B with the others
+                final BannerProperties testProperties = copies[copies.length - 1];
+                tagger.setLemmatiserAndPosTagger(testProperties.getLemmatiser(), testProperties.getPosTagger());
+                final CRFTagger tagger_A = tagger;
+                final ArrayList<String> testIds = ids_B;
+                final String outputFilename = outputFilename_B;
+                final String mentionFilename = mentionFilename_B;
+                final String testMessage = "Completed testing for fold A of cross #" + cross + ": ";
+                final long testStart = start;
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                Future<Object> testing = executor.submit(new Callable<Object>()
+                {
+                    public Object call() throws IOException
+                    {
+                        test(testIds, tagger_A, testProperties, outputFilename, mentionFilename);
+                        sysOut.println(testMessage + (System.currentTimeMillis() - testStart));
+                        return null;
+                    }
+                });
+                executor.shutdown();
+                tagger = null;
+
+                // Train on fold B & output model
+                tagger = train(ids_B, modelFilename_B, Arrays.copyOf(copies, copies.length - 1));
+                sysOut.println("Completed training for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+                waitFor(testing);
+                System.gc();
+            }
 
             // Test on fold A & output results
-            test(ids_A, tagger, outputFilename_A, mentionFilename_A);
+            test(ids_A, tagger, properties, outputFilename_A, mentionFilename_A);
             sysOut.println("Completed testing for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
             System.gc();
         }
@@ -176,23 +224,47 @@ public class Evaluate2Fold extends Base
     }
 
 
-    private static CRFTagger train(ArrayList<String> ids, String modelFile) throws IOException
+    private static CRFTagger train(ArrayList<String> ids, String modelFile, BannerProperties[] copies) throws IOException
     {
         sysOut.println("\tGetting sentence list");
         List<Sentence> sentences = new ArrayList<Sentence>(ids.size());
         for (String id : ids)
             sentences.add(id2Sentence.get(id));
         sysOut.println("\tTraining data loaded, starting training");
-        CRFTagger tagger = CRFTagger.train(sentences, properties.getOrder(), properties.isUseFeatureInduction(), properties.getTagFormat(),
-                                           properties.getTextDirection(), properties.getLemmatiser(), properties.getPosTagger(),
-                                           properties.isUseNumericNormalization());
+        CRFTagger tagger = train(sentences, copies);
         sysOut.println("\tTraining complete, saving model");
         tagger.write(new File(modelFile));
         return tagger;
     }
 
 
-    private static void test(ArrayList<String> ids, CRFTagger tagger, String outputFilename, String mentionFilename) throws IOException
+    /**
+     * Waits until the given task is done and rethrows its exception, if any.
+     * 
+     * @param task
+     * @throws IOException
+     */
+    private static void waitFor(Future<?> task) throws IOException
+    {
+        try
+        {
+            task.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+
+    private static void test(ArrayList<String> ids, CRFTagger tagger, BannerProperties properties, String outputFilename,
+                             String mentionFilename) throws IOException
     {
         PrintWriter outputFile = new PrintWriter(new BufferedWriter(new FileWriter(outputFilename)));
         PrintWriter mentionFile = new PrintWriter(new BufferedWriter(new FileWriter(mentionFilename)));
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,6 +35,7 @@ public class TrainModel extends Base
     public static void main(String[] args) throws IOException
     {
         BannerProperties properties = BannerProperties.load(args[0]);
+        BannerProperties[] copies = getCopies(args[0], properties);
         BufferedReader sentenceFile = new BufferedReader(new FileReader(args[1]));
         String tagFilename = args[2];
         String directory = args[3];
@@ -60,9 +62,10 @@ public class TrainModel extends Base
         Tokenizer tokenizer = properties.getTokenizer();
         String line = sentenceFile.readLine();
         List<Sentence> sentences = new ArrayList<Sentence>();
+        Random random = getRandom(null);
         while (line != null)
         {
-            if (percentage == null || Math.random() < percentage.doubleValue())
+            if (percentage == null || random.nextDouble() < percentage.doubleValue())
             {
                 int space = line.indexOf(' ');
                 String id = line.substring(0, space).trim();
@@ -76,9 +79,7 @@ public class TrainModel extends Base
         sysOut.println("Getting sentence list");
 
         sysOut.println("Training data loaded, starting training");
-        CRFTagger tagger = CRFTagger.train(sentences, properties.getOrder(), properties.isUseFeatureInduction(), properties.getTagFormat(),
-                                           properties.getTextDirection(), properties.getLemmatiser(), properties.getPosTagger(),
-                                           properties.isUseNumericNormalization());
+        CRFTagger tagger = train(sentences, copies);
         sysOut.println("Training complete, saving model");
         tagger.write(new File(directory + "/model.bin"));
     }
@@ -17,10 +17,17 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,16 +45,22 @@ import bc2.Base;
 /**
  * Performs a 2-fold cross validation: partitions the data into two sets of roughly equal size, trains a model on each and then tests each model on
  * the unseen partition. To perform 5 x 2 cross validation, simply execute this 5 times.
+ * <p>
+ * The partitions are chosen at random, seeded with the number of the cross, so that a cross can be repeated. With more than one training thread
+ * (property <tt>trainingThreads</tt>), the model for the first partition is tested while the model for the second partition is trained.
  */
 public class Evaluate2Fold extends Base
 {
 
     public static PrintStream sysOut;
 
-    static HashMap<String, Sentence> id2Sentence = new HashMap<String, Sentence>();
+    static HashMap<String, Sentence> id2Sentence = new LinkedHashMap<String, Sentence>();
 
     private static BannerProperties properties;
 
+    /** One copy of the properties for each training thread, the first is {@link #properties} */
+    private static BannerProperties[] copies;
+
 
     /**
      * @param args
@@ -59,6 +72,7 @@ public class Evaluate2Fold extends Base
 
         properties = BannerProperties.load(args[0]);
         properties.log();
+        copies = getCopies(args[0], properties);
         BufferedReader sentenceFile = new BufferedReader(new FileReader(args[1]));
         BufferedReader diseaseMentionFile = new BufferedReader(new FileReader(args[2]));
         BufferedReader treatmentMentionFile = new BufferedReader(new FileReader(args[3]));
@@ -88,13 +102,14 @@ public class Evaluate2Fold extends Base
         treatmentMentionFile.close();
 
         // Get the sentences
+        Random random = getRandom(cross);
         String line = sentenceFile.readLine();
         while (line != null)
         {
             int space = line.indexOf(' ');
             String id = line.substring(0, space).trim();
             String sentence = line.substring(space).trim();
-            if (percentage == null || Math.random() < percentage.doubleValue())
+            if (percentage == null || random.nextDouble() < percentage.doubleValue())
             {
                 id2Sentence.put(id, getSentence(id, sentence, properties.getTokenizer(), tags));
             }
@@ -122,7 +137,7 @@ public class Evaluate2Fold extends Base
         for (String id : id2Sentence.keySet())
         {
             Sentence sentence = id2Sentence.get(id);
-            if (Math.random() < 0.5)
+            if (random.nextDouble() < 0.5)
             {
                 sentences_A.add(sentence);
                 mentionsTest_A.addAll(sentence.getMentions());
@@ -150,29 +165,63 @@ public class Evaluate2Fold extends Base
         String mentionFilename_B = directory + "/mention_B" + cross + ".txt";
 
         // Train on fold A & output model
-        CRFTagger tagger = train(sentences_A, modelFilename_A);
+        CRFTagger tagger = train(sentences_A, modelFilename_A, copies);
         sysOut.println("Completed training for fold A of cross #" + cross + ": " + (System.currentTimeMillis() - start));
         System.gc();
 
-        // Test on fold B & output results
-        Set<Mention> mentionsFound_B = test(sentences_B, tagger, outputFilename_B, mentionFilename_B);
-        sysOut.println("Completed testing for fold A of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+        Set<Mention> mentionsFound_B;
+        if (copies.length == 1)
+        {
+            // Test on fold B & output results
+            mentionsFound_B = test(sentences_B, tagger, properties, outputFilename_B, mentionFilename_B);
+            sysOut.println("Completed testing for fold A of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+            tagger = null;
+            System.gc();
+
+            // Train on fold B & output model
+            tagger = train(sentences_B, modelFilename_B, copies);
+            sysOut.println("Completed training for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+            System.gc();
+        }
+        else
+        {
+            // Test on fold B with the last copy of the properties, while training on fold B with the others
+            final BannerProperties testProperties = copies[copies.length - 1];
+            tagger.setLemmatiserAndPosTagger(testProperties.getLemmatiser(), testProperties.getPosTagger());
+            final CRFTagger tagger_A = tagger;
+            final ArrayList<Sentence> testSentences = sentences_B;
+            final String outputFilename = outputFilename_B;
+            final String mentionFilename = mentionFilename_B;
+            final String testMessage = "Completed testing for fold A of cross #" + cross + ": ";
+            final long testStart = start;
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            Future<Set<Mention>> testing = executor.submit(new Callable<Set<Mention>>()
+            {
+                public Set<Mention> call() throws IOException
+                {
+                    Set<Mention> mentions = test(testSentences, tagger_A, testProperties, outputFilename, mentionFilename);
+                    sysOut.println(testMessage + (System.currentTimeMillis() - testStart));
+                    return mentions;
+                }
+            });
+            executor.shutdown();
+            tagger = null;
+
+            // Train on fold B & output model
+            tagger = train(sentences_B, modelFilename_B, Arrays.copyOf(copies, copies.length - 1));
+            sysOut.println("Completed training for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
+            mentionsFound_B = testing.get();
+            System.gc();
+        }
         sysOut.println("cross #" + cross + ", B");
         double[] results;
         results = Base.getResults(mentionsTest_B, mentionsFound_B);
         Evaluate2Fold.sysOut.println("precision: " + results[1]);
         Evaluate2Fold.sysOut.println("   recall: " + results[2]);
         Evaluate2Fold.sysOut.println("f-measure: " + results[0]);
-        tagger = null;
-        System.gc();
-
-        // Train on fold B & output model
-        tagger = train(sentences_B, modelFilename_B);
-        sysOut.println("Completed training for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
-        System.gc();
 
         // Test on fold A & output results
-        Set<Mention> mentionsFound_A = test(sentences_A, tagger, outputFilename_A, mentionFilename_A);
+        Set<Mention> mentionsFound_A = test(sentences_A, tagger, properties, outputFilename_A, mentionFilename_A);
         sysOut.println("Completed testing for fold B of cross #" + cross + ": " + (System.currentTimeMillis() - start));
         sysOut.println("cross #" + cross + ", A");
         results = Base.getResults(mentionsTest_A, mentionsFound_A);
@@ -188,20 +237,18 @@ public class Evaluate2Fold extends Base
     }
 
 
-    private static CRFTagger train(ArrayList<Sentence> sentences, String modelFile) throws IOException
+    private static CRFTagger train(ArrayList<Sentence> sentences, String modelFile, BannerProperties[] copies) throws IOException
     {
         sysOut.println("\tStarting training");
-        CRFTagger tagger = CRFTagger.train(sentences, properties.getOrder(), properties.isUseFeatureInduction(), properties.getTagFormat(),
-                                           properties.getTextDirection(), properties.getLemmatiser(), properties.getPosTagger(),
-                                           properties.isUseNumericNormalization());
+        CRFTagger tagger = train(sentences, copies);
         sysOut.println("\tTraining complete, saving model");
         tagger.write(new File(modelFile));
         return tagger;
     }
 
 
-    private static Set<Mention> test(ArrayList<Sentence> sentences, CRFTagger tagger, String outputFilename, String mentionFilename)
-                                                                                                                                    throws IOException
+    private static Set<Mention> test(ArrayList<Sentence> sentences, CRFTagger tagger, BannerProperties properties, String outputFilename,
+                                     String mentionFilename) throws IOException
     {
         PrintWriter outputFile = new PrintWriter(new BufferedWriter(new FileWriter(outputFilename)));
         Tokenizer tokenizer = properties.getTokenizer();
@@ -0,0 +1,132 @@
+/* 
+ Copyright (c) 2007 Arizona State University, Dept. of Computer Science and Dept. of Biomedical Informatics.
+ This file is part of the BANNER Named Entity Recognition System, http://banner.sourceforge.net
+ This software is provided under the terms of the Common Public License, version 1.0, as published by http://www.opensource.org.  For further information, see the file 'LICENSE.txt' included with this distribution.
+ */
+
+package banner.tagging;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import banner.BannerProperties.TextDirection;
+import banner.tagging.TaggedToken.TagFormat;
+import banner.Sentence;
+import banner.tokenization.SimpleTokenizer;
+import banner.tokenization.Token;
+import banner.tokenization.Tokenizer;
+import dragon.nlp.tool.Lemmatiser;
+
+import static org.junit.Assert.assertEquals;
+
+public class CRFTaggerTest {
+
+	private static final String[] WORDS = {"the", "protein", "binds", "to", "cells", "in", "human", "expression", "of", "was", "increased", "by",
+			"receptor", "kinase", "activity", "and", "mice", "with", "-", "(", ")", ",", "alpha"};
+
+	private static final String[] GENES = {"p53", "IL-2", "TNF-alpha", "BRCA1", "CD25", "MyoD", "Hsp70", "NF-kappaB", "c-Myc", "EGFR"};
+
+	private static final Tokenizer tokenizer = new SimpleTokenizer();
+
+	/**
+	 * Creates random sentences, where gene names are marked as mentions if requested.
+	 */
+	private static List<Sentence> createSentences(long seed, int count, boolean addMentions) {
+		Random random = new Random(seed);
+		List<Sentence> sentences = new ArrayList<Sentence>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder text = new StringBuilder();
+			List<Integer> geneStarts = new ArrayList<Integer>();
+			int length = 6 + random.nextInt(10);
+			for (int w = 0; w < length; w++) {
+				if (text.length() > 0)
+					text.append(' ');
+				if (random.nextInt(5) == 0) {
+					geneStarts.add(text.length());
+					text.append(GENES[random.nextInt(GENES.length)]);
+				} else
+					text.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			Sentence sentence = new Sentence("S" + seed + "_" + i, text.toString());
+			tokenizer.tokenize(sentence);
+			if (addMentions) {
+				List<Token> tokens = sentence.getTokens();
+				for (int t = 0; t < tokens.size(); t++) {
+					if (!geneStarts.contains(tokens.get(t).getStart()))
+						continue;
+					int end = t + 1;
+					while (end < tokens.size() && tokens.get(end).getStart() == tokens.get(end - 1).getEnd())
+						end++;
+					sentence.addOrMergeMention(new Mention(sentence, MentionType.getType("GENE"), t, end));
+				}
+			}
+			sentences.add(sentence);
+		}
+		return sentences;
+	}
+
+	/**
+	 * Tags unseen sentences and returns the mentions found, as token offsets.
+	 */
+	private static List<String> tag(CRFTagger tagger) {
+		List<String> mentions = new ArrayList<String>();
+		for (Sentence sentence : createSentences(2, 30, false)) {
+			tagger.tag(sentence);
+			for (Mention mention : sentence.getMentions())
+				mentions.add(sentence.getTag() + " " + mention.getStart() + " " + mention.getEnd());
+		}
+		return mentions;
+	}
+
+	private static CRFTagger train(List<Sentence> sentences, int threads) {
+		return CRFTagger.train(sentences, 1, false, TagFormat.IOB, TextDirection.Union, new Lemmatiser[threads],
+				new dragon.nlp.tool.Tagger[threads], true);
+	}
+
+	@Test
+	public void testTrainingIsIndependentOfThreads() {
+		List<Sentence> sentences = createSentences(1, 60, true);
+		List<String> expected = tag(train(sentences, 1));
+		assertEquals(true, expected.size() > 0);
+		assertEquals(expected, tag(train(sentences, 3)));
+	}
+
+	@Test
+	public void testCopiesSharingTheModelTagInParallel() throws Exception {
+		File file = File.createTempFile("CRFTaggerTest", ".bin");
+		file.deleteOnExit();
+		train(createSentences(1, 60, true), 1).write(file);
+		final CRFTagger tagger = CRFTagger.load(file, null, null);
+		List<String> expected = tag(tagger);
+		assertEquals(true, expected.size() > 0);
+
+		List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+		for (int t = 0; t < 4; t++) {
+			tasks.add(new Callable<List<String>>() {
+				public List<String> call() {
+					CRFTagger copy = tagger.copy(null, null);
+					List<String> mentions = new ArrayList<String>();
+					for (int r = 0; r < 5; r++)
+						mentions = tag(copy);
+					return mentions;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (Future<List<String>> future : executor.invokeAll(tasks))
+				assertEquals(expected, future.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(expected, tag(tagger));
+	}
+}
@@ -6,6 +6,8 @@
 
 package banner.tagging;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import junit.framework.JUnit4TestAdapter;
@@ -21,6 +23,7 @@ import org.junit.Test;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class DictionaryTaggerTest {
 
@@ -79,6 +82,48 @@ public class DictionaryTaggerTest {
 
 	}
 
+	@Test
+	public void testWriteAndLoad() throws IOException {
+		NaiveTokenizer tokenizer = new NaiveTokenizer();
+		DictionaryTagger dictionaryTagger = new DictionaryTagger(tokenizer,
+				true);
+		dictionaryTagger.add("GENES", MentionType.getType("GENE"));
+		dictionaryTagger.add("axon guidance", MentionType.getType("BIOP"));
+		dictionaryTagger.add("C.elegans", MentionType.getType("ORGM"));
+		Sentence sentence = new Sentence(
+				"What [GENES] are involved axon guidance in C.elegans?");
+		tokenizer.tokenize(sentence);
+		dictionaryTagger.tag(sentence);
+		assertEquals(3, sentence.getMentions().size());
+
+		// The dictionary is compiled for tagging, so no entries can be added
+		try {
+			dictionaryTagger.add("involved in", MentionType.getType("ACTION"));
+			fail("Entry added to a compiled dictionary");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(3, dictionaryTagger.size());
+
+		File file = File.createTempFile("dictionary", ".bin");
+		file.deleteOnExit();
+		dictionaryTagger.write(file);
+		DictionaryTagger loaded = DictionaryTagger.load(file, tokenizer, true);
+		file.delete();
+		assertEquals(3, loaded.size());
+
+		sentence = new Sentence(
+				"What [GENES] are involved axon guidance in C.elegans?");
+		tokenizer.tokenize(sentence);
+		loaded.tag(sentence);
+		List<Mention> mentions = sentence.getMentions();
+		assertEquals(3, mentions.size());
+		assertEquals(MentionType.getType("GENE"), mentions.get(0).getType());
+		assertEquals(MentionType.getType("BIOP"), mentions.get(1).getType());
+		assertEquals(MentionType.getType("ORGM"), mentions.get(2).getType());
+		assertEquals(3, mentions.get(2).getTokens().size());
+	}
+
 	/**
 	 * JUnit3 test adapter, this will allow the junit 4 test to be run under the
 	 * current version of ant
@@ -0,0 +1,128 @@
+/* 
+ Copyright (c) 2007 Arizona State University, Dept. of Computer Science and Dept. of Biomedical Informatics.
+ This file is part of the BANNER Named Entity Recognition System, http://banner.sourceforge.net
+ This software is provided under the terms of the Common Public License, version 1.0, as published by http://www.opensource.org.  For further information, see the file 'LICENSE.txt' included with this distribution.
+ */
+
+package banner.tagging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import edu.umass.cs.mallet.base.pipe.Pipe;
+import edu.umass.cs.mallet.base.pipe.SerialPipes;
+import edu.umass.cs.mallet.base.pipe.tsf.RegexMatches;
+import edu.umass.cs.mallet.base.pipe.tsf.TokenTextCharNGrams;
+import edu.umass.cs.mallet.base.pipe.tsf.TokenTextCharPrefix;
+import edu.umass.cs.mallet.base.types.Instance;
+import edu.umass.cs.mallet.base.types.Token;
+import edu.umass.cs.mallet.base.types.TokenSequence;
+import edu.umass.cs.mallet.base.util.PropertyList;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrthographicFeaturesTest {
+
+	private static final String CHARACTERS = "aZbY09,.-+%'/ivxlIVXL`~!@#$^&*()=_[]\\{}|;:\"<>?é\n";
+
+	private static int matchPatterns(String text) {
+		int features = 0;
+		for (int f = 0; f < OrthographicFeatures.PATTERNS.length; f++)
+			if (OrthographicFeatures.PATTERNS[f].matcher(text).matches())
+				features |= 1 << f;
+		return features;
+	}
+
+	@Test
+	public void testSingleCharacters() {
+		assertEquals(matchPatterns(""), OrthographicFeatures.getFeatures(""));
+		for (char c = 0; c < Character.MAX_VALUE; c++) {
+			String text = String.valueOf(c);
+			assertEquals(text, matchPatterns(text), OrthographicFeatures.getFeatures(text));
+		}
+	}
+
+	@Test
+	public void testTokens() {
+		String[] tokens = {"p53", "IL-2", "TNFalpha", "Alpha", "KAPPA", "omicron", "alphas", "mRNA", "McKay", "McK", "Mc", "2a", "a2", "1,000.5%",
+				"-3.", "+.5", ".", "-", "%", "+%", "III", "ivx", "(", "()-=", "a-b", "5'", "and/or"};
+		for (String token : tokens)
+			assertEquals(token, matchPatterns(token), OrthographicFeatures.getFeatures(token));
+
+		Random random = new Random(0);
+		for (int i = 0; i < 200000; i++) {
+			StringBuilder token = new StringBuilder();
+			int length = random.nextInt(7);
+			for (int c = 0; c < length; c++)
+				token.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+			String text = token.toString();
+			assertEquals(text, matchPatterns(text), OrthographicFeatures.getFeatures(text));
+		}
+	}
+
+	private static SerialPipes createRegexPipes() {
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int f = 0; f < 23; f++)
+			pipes.add(new RegexMatches(OrthographicFeatures.FEATURES[f], OrthographicFeatures.PATTERNS[f]));
+		pipes.add(new TokenTextCharPrefix("2PREFIX=", 2));
+		pipes.add(new TokenTextCharNGrams("CHARNGRAM=", new int[] {2, 3}, true));
+		for (int f = 23; f < 26; f++)
+			pipes.add(new RegexMatches(OrthographicFeatures.FEATURES[f], OrthographicFeatures.PATTERNS[f]));
+		return new SerialPipes(pipes);
+	}
+
+	@Test
+	public void testCompileRegexPipes() {
+		SerialPipes regexPipes = createRegexPipes();
+		SerialPipes compiledPipes = createRegexPipes();
+		assertEquals(26, OrthographicFeatures.compileRegexPipes(compiledPipes));
+		assertEquals(4, compiledPipes.size());
+
+		String[] texts = {"The", "IL-2", "receptor", "alpha", "(", "CD25", ")", "binds", "1,000", "III", "5'", "-", "2.5%"};
+		TokenSequence regexTokens = new TokenSequence();
+		TokenSequence compiledTokens = new TokenSequence();
+		for (String text : texts) {
+			regexTokens.add(new Token(text));
+			compiledTokens.add(new Token(text));
+		}
+		regexPipes.pipe(new Instance(regexTokens, null, null, null));
+		compiledPipes.pipe(new Instance(compiledTokens, null, null, null));
+		for (int i = 0; i < texts.length; i++)
+			assertEquals(texts[i], getFeatures(regexTokens.getToken(i)), getFeatures(compiledTokens.getToken(i)));
+	}
+
+	@Test
+	public void testNoCompileForOtherPatterns() {
+		List<Pipe> pipes = new ArrayList<Pipe>();
+		for (int f = 23; f < 26; f++)
+			pipes.add(new RegexMatches(OrthographicFeatures.FEATURES[f], Pattern.compile(OrthographicFeatures.PATTERNS[f].pattern())));
+		assertEquals(0, OrthographicFeatures.compileRegexPipes(new SerialPipes(pipes)));
+	}
+
+	@Test
+	public void testCharacterClasses() {
+		String[] texts = {"", "IL-2Ralpha", "p53", "a--b", "1,000.55", "été", "x𝛼y", "𝛼𝛽", "AAbb00..", "\ud800"};
+		for (String text : texts) {
+			assertEquals(text.replaceAll("[0-9]", "0"), String2TokenSequencePipe.getCharacterClasses(text, false, false));
+			assertEquals(text.replaceAll("[0-9]+", "0"), String2TokenSequencePipe.getCharacterClasses(text, false, true));
+			assertEquals(text.replaceAll("[A-Z]", "A").replaceAll("[a-z]", "a").replaceAll("[0-9]", "0").replaceAll("[^A-Za-z0-9]", "x"),
+					String2TokenSequencePipe.getCharacterClasses(text, true, false));
+			assertEquals(text.replaceAll("[A-Z]+", "A").replaceAll("[a-z]+", "a").replaceAll("[0-9]+", "0").replaceAll("[^A-Za-z0-9]+", "x"),
+					String2TokenSequencePipe.getCharacterClasses(text, true, true));
+		}
+	}
+
+	private static String getFeatures(Token token) {
+		StringBuilder features = new StringBuilder();
+		PropertyList.Iterator iterator = token.getFeatures().iterator();
+		while (iterator.hasNext()) {
+			iterator.nextProperty();
+			features.append(iterator.getKey()).append('=').append(iterator.getNumericValue()).append(' ');
+		}
+		return features.toString();
+	}
+}
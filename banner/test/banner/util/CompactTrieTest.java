@@ -0,0 +1,123 @@
+/* 
+ Copyright (c) 2007 Arizona State University, Dept. of Computer Science and Dept. of Biomedical Informatics.
+ This file is part of the BANNER Named Entity Recognition System, http://banner.sourceforge.net
+ This software is provided under the terms of the Common Public License, version 1.0, as published by http://www.opensource.org.  For further information, see the file 'LICENSE.txt' included with this distribution.
+ */
+
+package banner.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.JUnit4TestAdapter;
+import static org.junit.Assert.assertEquals;
+
+public class CompactTrieTest {
+
+	private static Trie<String, String> createTrie() {
+		Trie<String, String> t = new Trie<String, String>();
+		t.add(Arrays.asList("1"), "1*");
+		t.add(Arrays.asList("1", "2"), "2*");
+		t.add(Arrays.asList("1", "2", "3"), "3*");
+		t.add(Arrays.asList("1a"), "1a*");
+		t.add(Arrays.asList("4", "5", "6"), "1*");
+		return t;
+	}
+
+	@Test
+	public void testSimple() {
+		List<String> values = new ArrayList<String>();
+		CompactTrie t = CompactTrie.build(createTrie(), values);
+		assertEquals(5, t.size());
+		assertEquals(8, t.getNodeCount());
+		assertEquals(4, values.size());
+		assertEquals(-1, t.getValue(CompactTrie.ROOT));
+		assertEquals(-1, t.getTokenId("7"));
+		assertEquals(-1, t.getChild(CompactTrie.ROOT, -1));
+
+		assertEquals("1*", values.get(t.getValue(Arrays.asList("1"))));
+		assertEquals("2*", values.get(t.getValue(Arrays.asList("1", "2"))));
+		assertEquals("3*", values.get(t.getValue(Arrays.asList("1", "2", "3"))));
+		assertEquals("1a*", values.get(t.getValue(Arrays.asList("1a"))));
+		assertEquals("1*", values.get(t.getValue(Arrays.asList("4", "5", "6"))));
+		assertEquals(-1, t.getValue(Arrays.asList("4", "5")));
+		assertEquals(-1, t.getValue(Arrays.asList("2")));
+		assertEquals(-1, t.getValue(Arrays.asList("1", "2", "3", "4")));
+
+		int node = t.getChild(CompactTrie.ROOT, t.getTokenId("1"));
+		assertEquals(true, node > 0);
+		assertEquals(-1, t.getChild(node, t.getTokenId("1a")));
+		assertEquals("2*", values.get(t.getValue(t.getChild(node, t.getTokenId("2")))));
+	}
+
+	@Test
+	public void testLongestMatch() {
+		CompactTrie t = CompactTrie.build(createTrie(), new ArrayList<String>());
+		int[] tokens = t.getTokenIds(Arrays.asList("0", "1", "2", "4", "1", "2", "3", "4", "5"));
+		assertEquals(-1, tokens[0]);
+		assertEquals(-1, t.getLongestMatch(tokens, 0));
+		assertEquals(3, t.getLongestMatch(tokens, 1));
+		assertEquals(-1, t.getLongestMatch(tokens, 2));
+		assertEquals(7, t.getLongestMatch(tokens, 4));
+		assertEquals(-1, t.getLongestMatch(tokens, 7));
+		assertEquals(-1, t.getLongestMatch(tokens, 9));
+
+		tokens = t.getTokenIds(Arrays.asList("1", "2"));
+		assertEquals(2, t.getLongestMatch(tokens, 0));
+	}
+
+	@Test
+	public void testRandom() throws IOException {
+		Random random = new Random(1);
+		Trie<String, Integer> trie = new Trie<String, Integer>();
+		List<List<String>> keys = new ArrayList<List<String>>();
+		for (int i = 0; i < 2000; i++) {
+			List<String> key = new ArrayList<String>();
+			int length = 1 + random.nextInt(4);
+			for (int k = 0; k < length; k++)
+				key.add("t" + random.nextInt(30));
+			keys.add(key);
+			trie.add(key, Integer.valueOf(random.nextInt(5)));
+		}
+		List<Integer> values = new ArrayList<Integer>();
+		CompactTrie compact = CompactTrie.build(trie, values);
+
+		// Write and read back
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		compact.write(out);
+		out.close();
+		CompactTrie read = CompactTrie.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		Trie<String, Integer> copy = compact.toTrie(values);
+		assertEquals(trie.size(), compact.size());
+		assertEquals(trie.size(), read.size());
+		assertEquals(trie.size(), copy.size());
+		for (List<String> key : keys) {
+			Integer expected = trie.getValue(key);
+			assertEquals(expected, values.get(compact.getValue(key)));
+			assertEquals(expected, values.get(read.getValue(key)));
+			assertEquals(expected, copy.getValue(key));
+			for (int end = key.size() - 1; end > 0; end--)
+				assertEquals(trie.getValue(key.subList(0, end)) == null, compact.getValue(key.subList(0, end)) < 0);
+		}
+	}
+
+	/**
+	 * JUnit3 test adapter, this will allow the junit 4 test to be run under the
+	 * current version of ant
+	 */
+	public static junit.framework.Test suite() {
+		return new JUnit4TestAdapter(CompactTrieTest.class);
+	}
+
+}
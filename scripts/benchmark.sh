@@ -0,0 +1,8 @@
+# Measures the throughput of dictionary lookup, each filter, and the entire
+# pipeline on the 100 test documents; runs offline with an in-process dictionary
+# built from texts/test100/test100.genelist.
+# To compare with an earlier run, store its results with -out=file and pass
+# -baseline=file; benchmarks that got slower by more than 20% are reported as
+# REGRESSION, and the exit code is 1.
+
+java -Xmx2G -cp lib/gnat.jar:lib/mysql-connector.jar gnat.tests.PipelineBenchmark "$@" texts/test100 texts/test100/test100.genelist
@@ -5,6 +5,6 @@ java -cp lib/gnat.jar:lib/mysql-connector.jar gnat.client.JustAnnotate -nodir te
 
 # Evaluate
 echo "Evaluating"
-python texts/test100/bc2scoring.py texts/test100/test100.genelist test100.result.out
+java -cp lib/gnat.jar gnat.evaluation.BioCreativeScorer texts/test100/test100.genelist test100.result.out
 
 
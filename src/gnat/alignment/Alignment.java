@@ -41,6 +41,41 @@ public class Alignment {
 
 	protected SubstitutionMatrix sm;
 
+	/**
+	 * Rows of the dynamic programming table, gap scores and characters for score-only alignments.
+	 * Can be reused for any number of alignments, but only by one thread at a time; see {@link CharAlignment}.
+	 */
+	public static final class Workspace {
+		float[] previous = new float[16];
+		float[] current = new float[16];
+		float[] gaps2 = new float[16];
+		char[] chars1 = new char[16];
+		char[] chars2 = new char[16];
+
+		public Workspace () {
+		}
+
+		void ensureCapacity (int length) {
+			if (previous.length <= length) {
+				int size = Math.max(length + 1, previous.length * 2);
+				previous = new float[size];
+				current = new float[size];
+				gaps2 = new float[size];
+				chars1 = new char[size];
+				chars2 = new char[size];
+			}
+		}
+	}
+
+	static final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+		@Override protected Workspace initialValue () {
+			return new Workspace();
+		}
+	};
+
+	/** Returned by {@link #getAlignmentScore(Phrase, Phrase, float)} when an alignment was stopped because it could not reach the minimum score. */
+	public static final float BELOW_MIN_SCORE = Float.NEGATIVE_INFINITY;
+
 	/**
 	 * 	Creates a new alignment object.
 	 *
@@ -605,16 +640,75 @@ public class Alignment {
 
 	/**
 	 * Returns the weight or score for the alignment of two phrases. <BR>
-	 * Unlike in method align, only one traceback path is processed to compute the score.
+	 * Unlike in method align, no traceback is done: the score is the last cell of the table,
+	 * computed with only two rows of it, see {@link #getAlignmentScore(Phrase, Phrase, float)}.
 	 *
 	 * */
 	public float getAlignmentScore(Phrase p1, Phrase p2) {
-		Phrase[] firstAlignment =
-			singleTraceback(
-				makePointer(makeTable(p1, p2), p1, p2),
-				p1.length(),
-				p2.length());
-		return getScore(firstAlignment[0], firstAlignment[1]);
+		return getAlignmentScore(p1, p2, Float.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Returns the weight or score for the alignment of two phrases, or {@link #BELOW_MIN_SCORE} as soon
+	 * as it is clear that the score will be lower than <tt>minScore</tt>. <BR>
+	 * Keeps only two rows of the table, in a workspace that each thread reuses; stopping early requires
+	 * {@link SubstitutionMatrix#getMaxScore()}.
+	 *
+	 * */
+	public float getAlignmentScore(Phrase p1, Phrase p2, float minScore) {
+		return scoreOnly(p1.getWords(), p2.getWords(), minScore, workspaces.get());
+	}
+
+	/**
+	 * Computes the last cell of the table built by {@link #makeTable(Phrase, Phrase)}, row by row.
+	 * After each row, stops if no path through that row can reach <tt>minScore</tt>.
+	 *
+	 * */
+	float scoreOnly(Word[] w1, Word[] w2, float minScore, Workspace workspace) {
+		int n = w1.length;
+		int m = w2.length;
+		workspace.ensureCapacity(m);
+		float[] previous = workspace.previous;
+		float[] current = workspace.current;
+		float[] gaps2 = workspace.gaps2;
+
+		float maxStep = sm.getMaxScore();
+		boolean prune = minScore > Float.NEGATIVE_INFINITY && !Float.isInfinite(maxStep) && !Float.isNaN(maxStep);
+		// allow for rounding errors when comparing the bound to minScore
+		float margin = 1e-4f * (n + m + 1);
+
+		previous[0] = 0;
+		for (int j = 0; j < m; j++) {
+			gaps2[j] = sm.getScore(w2[j], Alignment.WORDGAP);
+			previous[j + 1] = previous[j] + gaps2[j];
+		}
+
+		for (int i = 1; i <= n; i++) {
+			Word word1 = w1[i - 1];
+			float gap1 = sm.getScore(word1, Alignment.WORDGAP);
+			current[0] = previous[0] + gap1;
+			for (int j = 1; j <= m; j++) {
+				float value = Math.max(previous[j] + gap1, current[j - 1] + gaps2[j - 1]);
+				current[j] = Math.max(value, previous[j - 1] + sm.getScore(word1, w2[j - 1]));
+			}
+
+			if (prune && i < n) {
+				// every path to the last cell passes through this row and gains at most maxStep per step from there
+				float bound = Float.NEGATIVE_INFINITY;
+				for (int j = 0; j <= m; j++) {
+					int steps = (maxStep >= 0) ? (n - i) + (m - j) : Math.max(n - i, m - j);
+					bound = Math.max(bound, current[j] + maxStep * steps);
+				}
+				if (bound < minScore - margin)
+					return BELOW_MIN_SCORE;
+			}
+
+			float[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return previous[m];
 	}
 
 	/**
@@ -0,0 +1,330 @@
+package gnat.alignment;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable alignment of strings, character by character, that can be shared by any number of threads.
+ * Scores are the same as those of {@link Alignment#getAlignmentScore(Phrase, Phrase)} (or of
+ * {@link LocalAlignment#getLocalAlignmentScore(Phrase, Phrase, float)}) for phrases with one Word per character and the tag <tt>CHAR</tt>,
+ * see {@link gnat.utils.AlignmentHelper#toPhrase(String)}.
+ * <br><br>
+ * The scores of the substitution matrix for all pairs of ASCII characters, and for each ASCII character against a gap,
+ * are looked up once and stored in dense arrays; other characters are scored by the substitution matrix, which
+ * therefore has to be thread-safe as well (like {@link CharSubstitutionMatrix}).
+ * <br><br>
+ * All data of a single alignment is kept in a {@link Alignment.Workspace} that the caller supplies; a thread can reuse
+ * its workspace for all alignments. Methods without a workspace use one per thread.
+ *
+ */
+public class CharAlignment {
+
+	/** Characters below this value have precomputed scores. */
+	static final int PRECOMPUTED = 128;
+
+	private final SubstitutionMatrix sm;
+
+	/** Local (Smith-Waterman) instead of global (Needleman-Wunsch) alignment. */
+	private final boolean local;
+
+	/** Lowest value of a cell in a local alignment, see {@link LocalAlignment#getRestartValue()}. */
+	private final float restartValue;
+
+	/** Score of substituting character c1 with c2, at c1 * PRECOMPUTED + c2. */
+	private final float[] substitutionScores = new float[PRECOMPUTED * PRECOMPUTED];
+
+	/** Score of aligning a character with a gap. */
+	private final float[] gapScores = new float[PRECOMPUTED];
+
+	/** Highest substitution or gap score, used to stop alignments that cannot reach a minimum score. */
+	private final float maxScore;
+
+
+	/**
+	 * Creates a global alignment for the given substitution matrix.
+	 * @param sm
+	 */
+	public CharAlignment (SubstitutionMatrix sm) {
+		this(sm, false, 0);
+	}
+
+
+	/**
+	 * Creates a global or local alignment for the given substitution matrix.
+	 * @param sm
+	 * @param local - local alignment, as {@link LocalAlignment}
+	 * @param restartValue - lowest value of a cell in a local alignment; ignored for global alignments
+	 */
+	public CharAlignment (SubstitutionMatrix sm, boolean local, float restartValue) {
+		this.sm = sm;
+		this.local = local;
+		this.restartValue = restartValue;
+
+		Word[] words = new Word[PRECOMPUTED];
+		for (int c = 0; c < PRECOMPUTED; c++)
+			words[c] = toWord((char)c);
+		for (int c1 = 0; c1 < PRECOMPUTED; c1++) {
+			gapScores[c1] = sm.getScore(words[c1], Alignment.WORDGAP);
+			for (int c2 = 0; c2 < PRECOMPUTED; c2++)
+				substitutionScores[c1 * PRECOMPUTED + c2] = sm.getScore(words[c1], words[c2]);
+		}
+		this.maxScore = sm.getMaxScore();
+	}
+
+
+	/**
+	 * Returns a global alignment that scores like the given alignment; null if that is not a plain
+	 * {@link Alignment} (for instance, a {@link LocalAlignment}, whose scores depend on its tracebacks).
+	 * @param alignment
+	 * @return
+	 */
+	public static CharAlignment forAlignment (Alignment alignment) {
+		if (alignment == null || alignment.getClass() != Alignment.class)
+			return null;
+		return new CharAlignment(alignment.getSubstitutionsmatrix());
+	}
+
+
+	public SubstitutionMatrix getSubstitutionMatrix () {
+		return sm;
+	}
+
+
+	public boolean isLocal () {
+		return local;
+	}
+
+
+	public float getRestartValue () {
+		return restartValue;
+	}
+
+
+	private static Word toWord (char c) {
+		return new Word(String.valueOf(c), "CHAR");
+	}
+
+
+	private float getScore (char c1, char c2) {
+		if (c1 < PRECOMPUTED && c2 < PRECOMPUTED)
+			return substitutionScores[c1 * PRECOMPUTED + c2];
+		return sm.getScore(toWord(c1), toWord(c2));
+	}
+
+
+	private float getGapScore (char c) {
+		if (c < PRECOMPUTED)
+			return gapScores[c];
+		return sm.getScore(toWord(c), Alignment.WORDGAP);
+	}
+
+
+	/**
+	 * Returns the score for the alignment of two strings, using a workspace of the current thread.
+	 * @param s1
+	 * @param s2
+	 * @return
+	 */
+	public float getAlignmentScore (String s1, String s2) {
+		return getAlignmentScore(s1, s2, Float.NEGATIVE_INFINITY, Alignment.workspaces.get());
+	}
+
+
+	/**
+	 * Returns the score for the alignment of two strings, or {@link Alignment#BELOW_MIN_SCORE} as soon as
+	 * it is clear that the score will be lower than <tt>minScore</tt>.
+	 * @param s1
+	 * @param s2
+	 * @param minScore
+	 * @param workspace - used for this alignment only, cannot be shared with other threads at the same time
+	 * @return
+	 */
+	public float getAlignmentScore (String s1, String s2, float minScore, Alignment.Workspace workspace) {
+		int n = s1.length();
+		int m = s2.length();
+		workspace.ensureCapacity(Math.max(n, m));
+		char[] chars1 = workspace.chars1;
+		char[] chars2 = workspace.chars2;
+		s1.getChars(0, n, chars1, 0);
+		s2.getChars(0, m, chars2, 0);
+		if (local)
+			return localScore(chars1, n, chars2, m, minScore, workspace);
+		return globalScore(chars1, n, chars2, m, minScore, workspace);
+	}
+
+
+	/**
+	 * See {@link Alignment#scoreOnly(Word[], Word[], float, Alignment.Workspace)}.
+	 */
+	private float globalScore (char[] chars1, int n, char[] chars2, int m, float minScore, Alignment.Workspace workspace) {
+		float[] previous = workspace.previous;
+		float[] current = workspace.current;
+		float[] gaps2 = workspace.gaps2;
+
+		boolean prune = minScore > Float.NEGATIVE_INFINITY && !Float.isInfinite(maxScore) && !Float.isNaN(maxScore);
+		float margin = 1e-4f * (n + m + 1);
+
+		previous[0] = 0;
+		for (int j = 0; j < m; j++) {
+			gaps2[j] = getGapScore(chars2[j]);
+			previous[j + 1] = previous[j] + gaps2[j];
+		}
+
+		for (int i = 1; i <= n; i++) {
+			char c1 = chars1[i - 1];
+			float gap1 = getGapScore(c1);
+			current[0] = previous[0] + gap1;
+			if (c1 < PRECOMPUTED) {
+				int row = c1 * PRECOMPUTED;
+				for (int j = 1; j <= m; j++) {
+					char c2 = chars2[j - 1];
+					float substitution = (c2 < PRECOMPUTED) ? substitutionScores[row + c2] : getScore(c1, c2);
+					float value = Math.max(previous[j] + gap1, current[j - 1] + gaps2[j - 1]);
+					current[j] = Math.max(value, previous[j - 1] + substitution);
+				}
+			} else {
+				for (int j = 1; j <= m; j++) {
+					float value = Math.max(previous[j] + gap1, current[j - 1] + gaps2[j - 1]);
+					current[j] = Math.max(value, previous[j - 1] + getScore(c1, chars2[j - 1]));
+				}
+			}
+
+			if (prune && i < n) {
+				float bound = Float.NEGATIVE_INFINITY;
+				for (int j = 0; j <= m; j++) {
+					int steps = (maxScore >= 0) ? (n - i) + (m - j) : Math.max(n - i, m - j);
+					bound = Math.max(bound, current[j] + maxScore * steps);
+				}
+				if (bound < minScore - margin)
+					return Alignment.BELOW_MIN_SCORE;
+			}
+
+			float[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return previous[m];
+	}
+
+
+	/**
+	 * See {@link LocalAlignment#scoreOnly(Word[], Word[], float, Alignment.Workspace)}.
+	 */
+	private float localScore (char[] chars1, int n, char[] chars2, int m, float minScore, Alignment.Workspace workspace) {
+		float[] previous = workspace.previous;
+		float[] current = workspace.current;
+		float[] gaps2 = workspace.gaps2;
+
+		boolean prune = minScore > Float.NEGATIVE_INFINITY && maxScore >= 0 && !Float.isInfinite(maxScore) && !Float.isNaN(maxScore);
+		float margin = 1e-4f * (n + m + 1);
+
+		for (int j = 0; j <= m; j++)
+			previous[j] = 0;
+		for (int j = 0; j < m; j++)
+			gaps2[j] = getGapScore(chars2[j]);
+
+		float best = 0;
+		for (int i = 1; i <= n; i++) {
+			char c1 = chars1[i - 1];
+			float gap1 = getGapScore(c1);
+			current[0] = 0;
+			for (int j = 1; j <= m; j++) {
+				float value = Math.max(previous[j] + gap1, current[j - 1] + gaps2[j - 1]);
+				value = Math.max(value, previous[j - 1] + getScore(c1, chars2[j - 1]));
+				current[j] = Math.max(restartValue, value);
+				if (current[j] > best)
+					best = current[j];
+			}
+
+			if (prune && i < n) {
+				float bound = Math.max(best, Math.max(restartValue, 0) + maxScore * ((n - i) + m));
+				for (int j = 0; j <= m; j++)
+					bound = Math.max(bound, current[j] + maxScore * ((n - i) + (m - j)));
+				if (bound < minScore - margin)
+					return Alignment.BELOW_MIN_SCORE;
+			}
+
+			float[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Returns the alignment score of the mention against each synonym, normalized by the score of the longer
+	 * of the two aligned with itself, as {@link gnat.utils.AlignmentHelper#getMatchScore(Alignment, Phrase, Phrase, float, float)}.
+	 * Synonyms that are more than <tt>lengthFactor</tt> times longer or shorter than the mention get Integer.MIN_VALUE.
+	 * @param mention
+	 * @param synonyms
+	 * @param lengthFactor
+	 * @param workspace
+	 * @return
+	 */
+	public float[] getMatchScores (String mention, List<String> synonyms, float lengthFactor, Alignment.Workspace workspace) {
+		float[] scores = new float[synonyms.size()];
+		float mentionSelfScore = getAlignmentScore(mention, mention, Float.NEGATIVE_INFINITY, workspace);
+		int s = 0;
+		for (String synonym: synonyms)
+			scores[s++] = getMatchScore(mention, mentionSelfScore, synonym, lengthFactor, Float.NEGATIVE_INFINITY, workspace);
+		return scores;
+	}
+
+
+	/**
+	 * Returns the highest normalized alignment score of the mention against any of the synonyms, see
+	 * {@link #getMatchScores(String, List, float, Alignment.Workspace)}, if it is at least <tt>minMatchValue</tt>.
+	 * Otherwise, returns some score below <tt>minMatchValue</tt>: alignments stop as soon as they cannot reach it,
+	 * and the remaining synonyms are skipped once one synonym reached it.
+	 * @param mention
+	 * @param mentionSelfScore - score of the mention aligned with itself
+	 * @param synonyms
+	 * @param lengthFactor
+	 * @param minMatchValue
+	 * @param workspace
+	 * @return
+	 */
+	public float getBestMatchScore (String mention, float mentionSelfScore, Collection<String> synonyms, float lengthFactor,
+			float minMatchValue, Alignment.Workspace workspace) {
+		float best = Integer.MIN_VALUE;
+		Iterator<String> it = synonyms.iterator();
+		while (it.hasNext()) {
+			float score = getMatchScore(mention, mentionSelfScore, it.next(), lengthFactor, minMatchValue, workspace);
+			if (score > best) {
+				best = score;
+				if (best >= minMatchValue && minMatchValue > Float.NEGATIVE_INFINITY)
+					break;
+			}
+		}
+		return best;
+	}
+
+
+	/**
+	 * Returns the normalized alignment score of the mention against one synonym.
+	 */
+	private float getMatchScore (String mention, float mentionSelfScore, String synonym, float lengthFactor,
+			float minMatchValue, Alignment.Workspace workspace) {
+		int length1 = mention.length();
+		int length2 = synonym.length();
+		if (length1 > lengthFactor * length2 || length2 > lengthFactor * length1)
+			return Integer.MIN_VALUE;
+
+		float normalization;
+		if (length2 > length1)
+			normalization = getAlignmentScore(synonym, synonym, Float.NEGATIVE_INFINITY, workspace);
+		else
+			normalization = mentionSelfScore;
+
+		float minScore = Float.NEGATIVE_INFINITY;
+		if (normalization > 0 && minMatchValue > Float.NEGATIVE_INFINITY)
+			minScore = minMatchValue * normalization;
+
+		return getAlignmentScore(mention, synonym, minScore, workspace) / normalization;
+	}
+
+}
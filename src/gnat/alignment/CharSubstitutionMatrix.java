@@ -42,4 +42,9 @@ public class CharSubstitutionMatrix extends SubstitutionMatrix {
 		return -1.5f;
 	}
 
+	/** An identical character scores 1, which is the highest score. */
+	public float getMaxScore(){
+		return 1;
+	}
+
 }
@@ -144,6 +144,81 @@ public class LocalAlignment extends Alignment{
 		}
 	}
 	
+	/**
+	 * Returns the score of the single traceback from the last cell of the local alignment table,
+	 * as {@link Alignment#getAlignmentScore(Phrase, Phrase)} always did for local alignments; builds
+	 * the full table. <tt>minScore</tt> is ignored, the score is always exact.<br>
+	 * For the highest score of any local alignment, see {@link #getLocalAlignmentScore(Phrase, Phrase, float)}.
+	 */
+	public float getAlignmentScore(Phrase p1, Phrase p2, float minScore){
+		Phrase[] firstAlignment =
+			singleTraceback(
+				makePointer(makeTable(p1, p2), p1, p2),
+				p1.length(),
+				p2.length());
+		return getScore(firstAlignment[0], firstAlignment[1]);
+	}
+
+	/**
+	 * Returns the highest score of any local alignment of the two phrases, without a traceback, or
+	 * {@link #BELOW_MIN_SCORE} as soon as it is clear that the score will be lower than <tt>minScore</tt>.<br>
+	 * With a restart value of 0, this is the score align() returns; it keeps only two rows of the table.
+	 */
+	public float getLocalAlignmentScore(Phrase p1, Phrase p2, float minScore){
+		return scoreOnly(p1.getWords(), p2.getWords(), minScore, workspaces.get());
+	}
+
+	/**
+	 * Computes the highest cell of the table built by {@link #makeTable(Phrase, Phrase)}, row by row.
+	 * 
+	 * */
+	float scoreOnly(Word[] w1, Word[] w2, float minScore, Workspace workspace){
+		int n = w1.length;
+		int m = w2.length;
+		workspace.ensureCapacity(m);
+		float[] previous = workspace.previous;
+		float[] current = workspace.current;
+		float[] gaps2 = workspace.gaps2;
+
+		float maxStep = sm.getMaxScore();
+		boolean prune = minScore > Float.NEGATIVE_INFINITY && maxStep >= 0 && !Float.isInfinite(maxStep) && !Float.isNaN(maxStep);
+		float margin = 1e-4f * (n + m + 1);
+
+		for (int j = 0; j <= m; j++)
+			previous[j] = 0;
+		for (int j = 0; j < m; j++)
+			gaps2[j] = sm.getScore(w2[j], Alignment.WORDGAP);
+
+		float best = 0;
+		for (int i = 1; i <= n; i++) {
+			Word word1 = w1[i - 1];
+			float gap1 = sm.getScore(word1, Alignment.WORDGAP);
+			current[0] = 0;
+			for (int j = 1; j <= m; j++) {
+				float value = Math.max(previous[j] + gap1, current[j - 1] + gaps2[j - 1]);
+				value = Math.max(value, previous[j - 1] + sm.getScore(word1, w2[j - 1]));
+				current[j] = Math.max(restartValue, value);
+				if (current[j] > best)
+					best = current[j];
+			}
+
+			if (prune && i < n) {
+				// later cells extend a cell of this row or restart, and gain at most maxStep per step
+				float bound = Math.max(best, Math.max(restartValue, 0) + maxStep * ((n - i) + m));
+				for (int j = 0; j <= m; j++)
+					bound = Math.max(bound, current[j] + maxStep * ((n - i) + (m - j)));
+				if (bound < minScore - margin)
+					return BELOW_MIN_SCORE;
+			}
+
+			float[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return best;
+	}
+
 	/**
 	 * 
 	 * 
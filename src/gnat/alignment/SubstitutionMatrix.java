@@ -10,5 +10,14 @@ package gnat.alignment;
 public abstract class SubstitutionMatrix {
 
 	public abstract float getScore (Word original, Word replacement);
+
+	/**
+	 * Returns an upper bound for {@link #getScore(Word, Word)}, including gaps; used to stop
+	 * alignments that cannot reach a minimum score. Infinity by default, which never stops them.
+	 * @return
+	 */
+	public float getMaxScore () {
+		return Float.POSITIVE_INFINITY;
+	}
 	
 }
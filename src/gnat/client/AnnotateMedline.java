@@ -2,6 +2,7 @@ package gnat.client;
 
 import gnat.ConstantsNei;
 import gnat.ISGNProperties;
+import gnat.filter.Filter;
 import gnat.filter.nei.GeneRepositoryLoader;
 import gnat.filter.nei.IdentifyAllFilter;
 import gnat.filter.nei.ImmediateContextFilter;
@@ -15,32 +16,27 @@ import gnat.filter.nei.UnspecificNameFilter;
 import gnat.filter.ner.DefaultSpeciesRecognitionFilter;
 import gnat.filter.ner.RunAllGeneDictionaries;
 import gnat.preprocessing.NameRangeExpander;
-import gnat.representation.Gene;
-import gnat.representation.IdentificationStatus;
 import gnat.representation.RecognizedEntity;
 import gnat.representation.Text;
-import gnat.representation.TextAnnotation;
 import gnat.representation.TextFactory;
-import gnat.utils.Sorting;
-import gnat.utils.StringHelper;
+import gnat.representation.MedlineXmlReader;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.StringWriter;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A simple processing pipeline that takes a directory as input, reads all XML files (Medline/PubMed XML format)
@@ -60,6 +56,10 @@ import java.util.concurrent.TimeUnit;
  * on ports specified in config/taxonToServerPorts, on the server specified under 'dictionaryServer'  
  * in isgn_properties.xml.
  * <br><br>
+ * Several files can be annotated at the same time (<tt>--threads</tt>). Each completed file is recorded in a
+ * {@link CheckpointManifest}, so that an interrupted job can be restarted with the same parameters and will
+ * skip all files that it annotated before. A file for which a dictionary server failed counts as not annotated.
+ * <br><br>
  * TODO Note: in MedlineCitationSets, currently loses all entries in DeleteCitation elements
  * 
  * @author Joerg Hakenberg
@@ -114,11 +114,17 @@ public class AnnotateMedline {
 			System.out.println(" <dir>     -  directory with one or more .xml or .xml.gz files");
 			System.out.println("Optional parameters:");
 			System.out.println(" -g        -  Print only those texts to the output that have a gene");
+			System.out.println(" -z        -  Write gzipped output files (.annotated.xml.gz)");
 			System.out.println(" -v        -  Set verbosity level for progress and debugging information");
 			System.out.println("              Default: 0; warnings: 1, status: 2, ... debug: 6");
 			System.out.println(" --outdir  -  Folder in which to write the output XML");
 			System.out.println("              By default, will write into the current directory.");
 			System.out.println(" --ignore <file>  -  Ignore the files listed in <file>");
+			System.out.println(" -t <n>, --threads <n>  -  Annotate <n> files at the same time; default: 1");
+			System.out.println(" -b <n>, --batch <n>    -  Run the pipeline on <n> texts at a time, to limit the");
+			System.out.println("              memory needed for large files; 0: all texts of a file. Default: 1000");
+			System.out.println(" --checkpoint <file>    -  Manifest of the files annotated completely, which");
+			System.out.println("              a rerun will skip. Default: <outdir>/annotateMedline.checkpoint");
 			System.exit(1);
 		}
 		
@@ -126,6 +132,10 @@ public class AnnotateMedline {
 		String dir = "";        // directory to read from
 		String outDir = ".";    // 
 		boolean skipNoGeneAbstracts = false;
+		boolean gzipOutput = false;
+		int threads = 1;
+		int batchSize = 1000;
+		String checkpointFile = null;
 		Set<String> xml_files_to_ignore = new HashSet<String>();
 		for (int a = 0; a < args.length; a++) {
 			// parameter is -v to regulate verbosity at runtime
@@ -137,6 +147,16 @@ public class AnnotateMedline {
 				outDir = args[a].replaceFirst("^\\-\\-?[Oo][Uu][Tt][Dd][Ii][Rr]\\=", "");
 			else if (args[a].toLowerCase().equals("-g")) 
 				skipNoGeneAbstracts = true;
+			else if (args[a].toLowerCase().matches("\\-(z|\\-gzip)")) 
+				gzipOutput = true;
+			else if (args[a].toLowerCase().matches("\\-(t|\\-threads)")) 
+				threads = Integer.parseInt(args[++a]);
+			else if (args[a].toLowerCase().matches("\\-\\-?threads\\=\\d+")) 
+				threads = Integer.parseInt(args[a].replaceFirst("^.+\\=", ""));
+			else if (args[a].toLowerCase().matches("\\-\\-?checkpoint")) 
+				checkpointFile = args[++a];
+			else if (args[a].toLowerCase().matches("\\-(b|\\-batch)")) 
+				batchSize = Integer.parseInt(args[++a]);
 			else if (args[a].toLowerCase().matches("\\-\\-?i(gnore)?")) {
 				String ignorefile = args[++a];
 				try {
@@ -224,42 +244,224 @@ public class AnnotateMedline {
 			System.exit(1);
 		}
 
-		// loop through all XML files, creating a Run each and process them individually
-		int c_file = 0;
-		long starttime = System.currentTimeMillis();
-		for (String filename: filelist) {
-			c_file++;
-			if (c_file == 1)
-				System.err.println("#INFO annotating " + filename + " (" + c_file + " out of " + filelist.size() + ")");
-			else {
-				long delta = System.currentTimeMillis() - starttime;
-				//float msec_per_file  = (float)delta / (float)c_file;
-				//float msec_all_files = filelist.size() * msec_per_file;
-				//float min_all_files  = msec_all_files / 1000f / 60f;
-				
-				String time = String.format("%d min %02d sec", 
-					    TimeUnit.MILLISECONDS.toMinutes(delta),
-					    TimeUnit.MILLISECONDS.toSeconds(delta) - 
-					    TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(delta))
-					);
-				//System.err.println("#INFO annotating " + filename + " (" + c_file + " out of " + filelist.size() +
-				//	", ETA " + min_all_files + "min");
-				System.err.println("#INFO annotating " + filename + " (" + c_file + " out of " + filelist.size() +
-					", ETA " + time + " (based on previously annotated file)");
+		// files annotated completely are listed in the checkpoint manifest
+		if (checkpointFile == null)
+			checkpointFile = outDir + "/annotateMedline.checkpoint";
+
+		// skip all files that a previous run annotated completely
+		CheckpointManifest manifest = null;
+		try {
+			manifest = new CheckpointManifest(checkpointFile);
+			List<String> completed = new LinkedList<String>();
+			for (String filename: filelist)
+				if (manifest.isCompleted(new File(dir + "/" + filename)))
+					completed.add(filename);
+			filelist.removeAll(completed);
+			if (completed.size() > 0)
+				System.err.println("#INFO skipping " + completed.size() + " input files that were annotated before, see " + checkpointFile);
+		} catch (IOException ioe) {
+			System.err.println("#ERROR reading the checkpoint file " + checkpointFile + ": " + ioe.getMessage());
+			System.exit(4);
+		}
+		if (filelist.size() == 0) {
+			System.err.println("#INFO all input files were annotated before.");
+			System.exit(0);
+		}
+
+		// resources that are read-only after loading are shared by the pipelines for all files
+		TextFactory.readPubmed2Go();
+		// construct a dictionary for human, mouse, yeast, fruit fly genes only
+		RunAllGeneDictionaries afewDictionaryFilters = new RunAllGeneDictionaries();
+		afewDictionaryFilters.setLimitToTaxons(9606, 10090, 10116, 559292, 7227);
+		// a file without the annotations of a failed dictionary server must not be marked as completed
+		afewDictionaryFilters.setFailOnServerError(true);
+		StopWordFilter stopWordFilter = new StopWordFilter(ISGNProperties.get("stopWords"));
+
+		final Annotator annotator = new Annotator(dir, outDir, verbosity, skipNoGeneAbstracts, gzipOutput, batchSize,
+				afewDictionaryFilters, stopWordFilter, manifest, filelist.size());
+
+		// annotate the files on a pool of workers, creating a Run for each file
+		if (threads < 1) threads = 1;
+		if (threads > 1)
+			System.err.println("#INFO annotating " + filelist.size() + " files with " + threads + " threads");
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		for (final String filename: filelist) {
+			workers.execute(new Runnable() {
+				public void run () {
+					annotator.annotate(filename);
+				}
+			});
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} catch (InterruptedException ie) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		if (annotator.failed.get() > 0) {
+			System.err.println("#ERROR could not annotate " + annotator.failed.get() + " out of " + filelist.size() +
+				" files; rerun to annotate only these files.");
+			System.exit(5);
+		}
+	}
+
+
+	/**
+	 * Annotates single Medline files, one pipeline per file, and records completed files in the checkpoint manifest.
+	 * Can be called for several files at the same time; filters that are read-only after loading are shared.
+	 */
+	public static class Annotator {
+		final String dir;
+		final String outDir;
+		final int verbosity;
+		final boolean skipNoGeneAbstracts;
+		final boolean gzipOutput;
+		/** Number of texts in one Run, 0 for all texts of a file. */
+		final int batchSize;
+		final RunAllGeneDictionaries afewDictionaryFilters;
+		final StopWordFilter stopWordFilter;
+		final CheckpointManifest manifest;
+
+		/** Number of files to annotate, used to estimate the remaining time. */
+		final int total;
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger done = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final long starttime = System.currentTimeMillis();
+
+		public Annotator (String dir, String outDir, int verbosity, boolean skipNoGeneAbstracts, boolean gzipOutput, int batchSize,
+				RunAllGeneDictionaries afewDictionaryFilters, StopWordFilter stopWordFilter, CheckpointManifest manifest, int total) {
+			this.dir = dir;
+			this.outDir = outDir;
+			this.verbosity = verbosity;
+			this.skipNoGeneAbstracts = skipNoGeneAbstracts;
+			this.gzipOutput = gzipOutput;
+			this.batchSize = batchSize;
+			this.afewDictionaryFilters = afewDictionaryFilters;
+			this.stopWordFilter = stopWordFilter;
+			this.manifest = manifest;
+			this.total = total;
+		}
+
+
+		/**
+		 * Returns the number of files that could not be annotated.
+		 * @return
+		 */
+		public int getFailed () {
+			return failed.get();
+		}
+
+
+		/**
+		 * Annotates one file and marks it as completed, or reports the error.
+		 * @param filename - name of the file in {@link #dir}
+		 */
+		public void annotate (String filename) {
+			System.err.println("#INFO annotating " + filename + " (" + started.incrementAndGet() + " out of " + total + ")");
+			try {
+				annotateFile(filename);
+				manifest.markCompleted(new File(dir + "/" + filename));
+			} catch (Throwable e) {
+				// also errors such as OutOfMemoryError, so that the file counts as failed
+				failed.incrementAndGet();
+				System.err.println("#ERROR annotating " + filename + ": " + e);
+				e.printStackTrace();
+				return;
 			}
-			
-			// each pipeline is handled by a "Run"
-			Run run = new Run();
-			run.verbosity = verbosity;
-			
+
+			// estimate the remaining time from the files completed so far
+			int c_done = done.incrementAndGet();
+			long delta = System.currentTimeMillis() - starttime;
+			long remaining = delta / c_done * (total - c_done - failed.get());
+			String time = String.format("%d min %02d sec",
+				    TimeUnit.MILLISECONDS.toMinutes(remaining),
+				    TimeUnit.MILLISECONDS.toSeconds(remaining) -
+				    TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(remaining))
+				);
+			System.err.println("#INFO annotated " + filename + " (" + c_done + " out of " + total + " done, ETA " + time + ")");
+		}
+
+
+		/**
+		 * Runs the pipeline on the texts of one file, {@link #batchSize} texts at a time, and writes the
+		 * annotated XML; throws an IOException if any output file could not be written completely.
+		 * @param filename - name of the file in {@link #dir}
+		 * @throws IOException
+		 */
+		void annotateFile (String filename) throws IOException {
+			// the same filters process all texts of this file
+			List<Filter> filters = createFilters();
+
+			// Texts belonging to a document set (one XML document with multiple texts) are written
+			// into one annotated XML file per input file, in the order of the input
+			Map<String, AnnotatedXmlWriter> file2writer = new LinkedHashMap<String, AnnotatedXmlWriter>();
+
 			//////////
 			// INPUT
-			run.setTextRepository(TextFactory.loadTextRepositoryFromMedlineFile(dir + "/" + filename));
-			
-			//////////
-			// PROCESSING
-			// Plug together a processing pipeline: add filters to the Run
-			
+			// read one text at a time; GO codes for PubMed IDs were loaded once, for all files
+			MedlineXmlReader reader = TextFactory.openMedlineSetXmlfile(dir + "/" + filename);
+			IOException error = null;
+			try {
+				while (reader.hasNext()) {
+					// each batch of texts is handled by a "Run"
+					Run run = new Run();
+					run.verbosity = verbosity;
+					while (reader.hasNext() && (batchSize <= 0 || run.getTextRepository().size() < batchSize))
+						run.addText(reader.next());
+
+					String assumeSpecies = ISGNProperties.get("assumeSpecies");
+					if (assumeSpecies != null && assumeSpecies.length() > 0) {
+						String[] species = assumeSpecies.split("[\\;\\,]\\s*");
+						for (String spec: species) {
+							if (!spec.matches("\\d+")) continue;
+							int tax = Integer.parseInt(spec);
+							for (Text text : run.getTextRepository().getTexts())
+								text.addTaxonId(tax);
+						}
+					}
+
+					//////////
+					// RUN
+					for (Filter filter: filters)
+						run.addFilter(filter);
+
+					// Run all filters, affecting run.context, run.textRepository, and run.geneRepository
+					run.runFilters();
+
+					//////////
+					// OUTPUT
+					if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.STATUS))
+						System.err.println("#Writing output file(s)...");
+					writeTexts(run, file2writer);
+				}
+
+			} catch (IOException ioe) {
+				error = ioe;
+			} finally {
+				for (AnnotatedXmlWriter writer: file2writer.values()) {
+					try {
+						writer.close();
+					} catch (IOException ioe) {
+						if (error == null) error = ioe;
+					}
+				}
+				reader.close();
+			}
+			if (error != null)
+				throw error;
+		}
+
+
+		/**
+		 * Plugs together the processing pipeline for one file.
+		 * @return
+		 */
+		List<Filter> createFilters () {
+			List<Filter> filters = new LinkedList<Filter>();
+
 			//////////
 			// Pre-processing filters here:
 	        boolean keepTextIntact = true;
@@ -267,204 +469,79 @@ public class AnnotateMedline {
 	        if (keeptemp.toLowerCase().matches("(0|no|false)"))
 	        	keepTextIntact = false;
 	        if (!keepTextIntact)
-	        	run.addFilter(new NameRangeExpander());
+	        	filters.add(new NameRangeExpander());
 
 			//////////
 			// NER filters here:
 			// default species NER: spots human, mouse, rat, yeast, and fly only
-			run.addFilter(new DefaultSpeciesRecognitionFilter());
-			String assumeSpecies = ISGNProperties.get("assumeSpecies");
-			if (assumeSpecies != null && assumeSpecies.length() > 0) {
-				String[] species = assumeSpecies.split("[\\;\\,]\\s*");
-				for (String spec: species) {
-					if (!spec.matches("\\d+")) continue;
-					int tax = Integer.parseInt(spec);
-					for (Text text : run.getTextRepository().getTexts())
-						text.addTaxonId(tax);
-				}
-			}
-			
-			// construct a dictionary for human, mouse, yeast, fruit fly genes only
-			RunAllGeneDictionaries afewDictionaryFilters = new RunAllGeneDictionaries();
-			afewDictionaryFilters.setLimitToTaxons(9606, 10090, 10116, 559292, 7227);
-			run.addFilter(afewDictionaryFilters);
-	
+			filters.add(new DefaultSpeciesRecognitionFilter());
+
+			// dictionary for human, mouse, yeast, fruit fly genes only, shared by all files
+			filters.add(afewDictionaryFilters);
+
 			//////////
 			// NER post-processing filters here:
-			run.addFilter(new RecognizedEntityUnifier());
-	
+			filters.add(new RecognizedEntityUnifier());
+
 			// include a few disambiguation filters that do not need specific information on each candidate gene
 			// thus, these work on the gene's name and its context in the text
-			run.addFilter(new ImmediateContextFilter());
-			
+			filters.add(new ImmediateContextFilter());
+
 			// strictFPs_2_2_context_all.object contains data on the context defined by two tokens left and two tokens right of a gene name
-			//run.addFilter(new LeftRightContextFilter("data/strictFPs_2_2_context_all.object", "data/nonStrictFPs_2_2_context_all.object", 0d, 2, 2));
-	
+			//filters.add(new LeftRightContextFilter("data/strictFPs_2_2_context_all.object", "data/nonStrictFPs_2_2_context_all.object", 0d, 2, 2));
+
 			//
-			run.addFilter(new ImmediateContextFilter());
-			
+			filters.add(new ImmediateContextFilter());
+
 			// load the gene repository to obtain information on each gene (if only the species)
 			// not loading gene repository will produce an empty result at the end
-			run.addFilter(new GeneRepositoryLoader(GeneRepositoryLoader.RetrievalMethod.DATABASE));
-	
+			filters.add(new GeneRepositoryLoader(GeneRepositoryLoader.RetrievalMethod.DATABASE));
+
 			//
-			run.addFilter(new StopWordFilter(ISGNProperties.get("stopWords")));
+			filters.add(stopWordFilter);
 			//
-			run.addFilter(new UnambiguousMatchFilter());
+			filters.add(new UnambiguousMatchFilter());
 			//
-			run.addFilter(new UnspecificNameFilter());
+			filters.add(new UnspecificNameFilter());
 			//
-			//run.addFilter(new AlignmentFilter(AlignmentHelper.globalAlignment, 0.7f));
+			//filters.add(new AlignmentFilter(AlignmentHelper.globalAlignment, 0.7f));
 			//
-			run.addFilter(new NameValidationFilter());
-			
+			filters.add(new NameValidationFilter());
+
 			// filter by the number of occurrences of each organism
-			run.addFilter(new SpeciesFrequencyFilter());
-			
+			filters.add(new SpeciesFrequencyFilter());
+
 			// Final disambiguation filter
-			run.addFilter(new MultiSpeciesDisambiguationFilter(
+			filters.add(new MultiSpeciesDisambiguationFilter(
 					Integer.parseInt(ISGNProperties.get("disambiguationThreshold")),
 					Integer.parseInt(ISGNProperties.get("maxIdsForCandidatePrediction"))));
-			
+
 			// Mark everything that "survived" until here as OK, will be reported in output
 			// Only for high-recall runs
 			String tuning = ISGNProperties.get("tuning");
 			if (tuning != null && tuning.equalsIgnoreCase("recall"))
-				run.addFilter(new IdentifyAllFilter());
-			
-		
-			//////////
-			// RUN
-			
-			// Run all filters, affecting run.context, run.textRepository, and run.geneRepository
-			run.runFilters();
-
-			
-			//////////
-			// OUTPUT
-			if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.STATUS))
-				System.err.println("#Writing output file(s)...");
+				filters.add(new IdentifyAllFilter());
 
+			return filters;
+		}
 
-			// For texts belonging to a document set (one XML document with multiple texts),
-			// store the annotated XML in a buffer before writing the actual XML set file(s)
-			// Input can come from multiple such document set files, therefore the two maps, which also
-			// store the file type (mostly to distinguish medline xml vs plain xml)
-			Map<String, StringBuilder> file2buffer  = new HashMap<String, StringBuilder>();
-			Map<String, Text.SourceTypes> file2type = new HashMap<String, Text.SourceTypes>();
 
+		/**
+		 * Writes the annotated XML of all texts of the run, either into the document set of its input file
+		 * or into a file of its own.
+		 * @param run
+		 * @param file2writer - open output files, by name
+		 * @throws IOException
+		 */
+		void writeTexts (Run run, Map<String, AnnotatedXmlWriter> file2writer) throws IOException {
 			// loop through all texts, generate the annotated XML
 			// and write the new content to file(s)
-			Collection<Text> texts = run.getTextRepository().getTexts();
-			// TODO the output is currently not in the order of input!
-			// especially for PubmedArticleSet XML files it might be better to retain the input order
-			// (within one XML file)
-			for (Text text: texts) {
-
-				// sort entities by position within each text, insert into the text from back to end
-				List<RecognizedEntity> entitiesBackwards = new LinkedList<RecognizedEntity>();
-				entitiesBackwards.addAll(run.context.getRecognizedEntitiesInText(text));
-				Collections.sort(entitiesBackwards, new Sorting.RecognizedEntitySorter());
-				Collections.reverse(entitiesBackwards);
-				
+			for (Text text: run.getTextRepository().getTexts()) {
+
 				// do not print abstracts that don't have genes (command line parameter)
-				if (skipNoGeneAbstracts && entitiesBackwards.size() == 0)
+				if (skipNoGeneAbstracts && run.context.getRecognizedEntitiesInText(text).size() == 0)
 					continue;
 
-				// start with the plain text ...
-				String annotatedText = text.plainText;
-				// ... and insert markup for all recognized entities
-				for (RecognizedEntity se: entitiesBackwards) {
-					TextAnnotation ta = se.getAnnotation();
-					ta.setType(TextAnnotation.Type.GENE);
-					//System.err.print(text.getID()
-					//		+ "\t" + se.entity.getBegin() + "\t" + se.entity.getEnd()
-					//		+ "\t" + se.entity.getName() + "\t" + ta.getType().toString());
-					IdentificationStatus idStatus = run.context.getIdentificationStatus(se);
-					String geneId = idStatus.getId();
-					//System.err.println("\t" + geneId + "\t" + idStatus.getIdCandidates());
-					Set<String> otherIds_set = new TreeSet<String>();
-					otherIds_set.addAll(idStatus.getIdCandidates());
-					if (otherIds_set != null && otherIds_set.size() > 0 && geneId != null)
-						otherIds_set.remove(geneId);
-					String otherIds = "";
-					if (otherIds_set.size() > 0)
-						otherIds = StringHelper.joinStringSet(otherIds_set, ";");
-
-					// insert the gene's ID into the XML
-					// in some cases, candidate IDs with the same score are returned
-					// pick the first ID and set as main ID
-					// add the other IDs in a separate XML attribute
-					String insert = "<";
-					if (geneId == null || geneId.length() == 0) {
-						annotatedText = annotatedText.substring(0, se.getEnd() + 1) + "</" + xml_tag_mention + ">" + annotatedText.substring(se.getEnd() + 1);
-
-						insert += xml_tag_mention;
-						if (otherIds.length() > 0)
-							insert += " " + xml_attribute_candidate_ids + "=\"" + otherIds + "\"";
-					} else {
-						annotatedText = annotatedText.substring(0, se.getEnd() + 1) + "</" + xml_tag + ">" + annotatedText.substring(se.getEnd() + 1);
-
-						insert += xml_tag;
-						insert += " " + xml_attribute_id + "=\"" + geneId + "\"";
-						if (otherIds.length() > 0)
-							insert += " " + xml_attribute_other_ids + "=\"" + otherIds + "\"";
-						// get the Gene object for the (main) gene ID
-						// and from that, get the official symbol (if known)
-						// and add to XML attribute
-						Gene gene = run.getGene(geneId);
-						String symbol = "";
-						if (gene != null && gene.officialSymbol != null && gene.officialSymbol.length() > 0)
-							symbol = gene.officialSymbol;
-						if (symbol.matches("\\s*[\\;\\,]\\s*"))
-							symbol = symbol.split("\\s*[\\,\\;]\\s*")[0].trim();
-						if (symbol.length() > 0)
-							insert += " " + xml_attribute_symbol + "=\"" + gene.officialSymbol + "\"";
-						if (gene.getTaxon() > 0)
-							insert += " " + xml_attribute_species + "=\"" + gene.getTaxon() + "\"";
-
-						float score = run.context.getConfidenceScore(gene, text.ID);
-						if (score >= 0.0)
-							insert +=  " " + xml_attribute_score + "=\"" + score + "\"";
-					}
-
-					insert += ">";
-					annotatedText = annotatedText.substring(0, se.getBegin()) + insert + annotatedText.substring(se.getBegin());
-				}
-
-				//System.err.println("#Annotated text:\n"+annotatedText+"\n----------");
-
-				//if (entitiesBackwards.size() == 0) {
-				//	if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.WARNINGS))
-				//		ConstantsNei.OUT.println("Found no genes in text " + text.getPMID());
-				//}
-
-				if (text.sourceType == Text.SourceTypes.PLAIN) {
-					//System.err.println("#text="+text.getID() + ", source="+text.sourceType.toString());
-					annotatedText = "<text id=\"" + text.getID() + "\">\n" + annotatedText + "\n</text>";
-					text.annotatedXml = annotatedText;
-
-				} else if (text.sourceType == Text.SourceTypes.MEDLINE_XML || text.sourceType == Text.SourceTypes.MEDLINES_XML ) {
-					// get the first sentence from the text, by finding the first sentence end mark
-					// assumes it is the full title of the paper
-					// TODO better to store (and annotate!) the title separately, since some titles consist of multiple sentences
-					String annotatedTitle = annotatedText.replaceFirst("^(.+?[\\.\\!\\?])\\s.*$", "$1");
-					text.annotateXmlTitle(annotatedTitle);
-
-					// assume the 2nd and following sentences are the abstract
-					String annotatedAbstract = annotatedText.replaceFirst("^.+?[\\.\\!\\?]\\s(.*)$", "$1");
-					text.annotateXmlAbstract(annotatedAbstract);
-				}
-
-				// if the XML tag used to mark gene names has a prefix ("prefix:TAG"), we need to bind this prefix
-				if (xml_tag.indexOf(":") > 0) {
-					String prefix = xml_tag.replaceFirst("^(.+?)\\:.*$", "$1"); 
-					text.addPrefixToXml(prefix);
-				}
-
-				//
-				text.buildJDocumentFromAnnotatedXml();
-
 				// write annotated text to file:
 				// either into one or more document sets (file(s) with more than one text) ...
 				if (text.sourceType == Text.SourceTypes.MEDLINES_XML) {
@@ -475,89 +552,68 @@ public class AnnotateMedline {
 						basefilename = basefilename.replaceFirst("\\.xml$", ".annotated.xml");
 					else
 						basefilename = basefilename.replaceFirst(".medline", ".annotated.medline");
-
-					String x = text.toXmlString();
-					// texts that are part of a collection within one file get stored
-					// in a buffer for that file; we're storing this buffer in memory
-					// and write it to disk, together with appropriate XML root elements,
-					// once all texts were processed here
-					if (file2buffer.containsKey(basefilename)) {
-						StringBuilder buf = file2buffer.get(basefilename);
-						buf.append(x);
-						//buf.append("\n");
-						file2buffer.put(basefilename, buf);
-					} else {
-						StringBuilder buf = new StringBuilder();
-						buf.append(x);
-						//buf.append("\n");
-						file2buffer.put(basefilename, buf);
-						file2type.put(basefilename, Text.SourceTypes.MEDLINES_XML);
+					if (gzipOutput)
+						basefilename += ".gz";
+
+					AnnotatedXmlWriter writer = file2writer.get(basefilename);
+					if (writer == null) {
+						String outfile = basefilename;
+						if (outDir.length() > 0)
+							outfile = outDir + "/" + outfile;
+						writer = new AnnotatedXmlWriter(outfile);
+						file2writer.put(basefilename, writer);
 					}
-					// ... or individually
+					writer.writeText(text, run);
+
+				// ... or individually
 				} else {
-					// we write individual files directly to the disk:
-					String outfileName = text.getID() + ".annotated.xml";
-					if (outDir.length() > 0) text.toXmlFile(outfileName);
-					else					 text.toXmlFile(outDir + "/" + outfileName);
+					writeIndividualText(text, run, outDir);
 				}
 
-				// or, if no gene was recognized in the current text:
-				//} else {
-				//	Text aText = run.getTextRepository().getText(text_id);
-				//	String outfileName = aText.getID() + "_nogenesfound.annotated.xml";
-				//	aText.toXmlFile(outDir + "/" + outfileName);
-				//}
-
-
 			} // foreach text
+		}
 
+	}
+	
+	/**
+	 * Writes a single annotated text into its own XML file, named after the text ID.
+	 * @param text
+	 * @param run
+	 * @param outDir
+	 * @throws IOException
+	 */
+	static void writeIndividualText (Text text, Run run, String outDir) throws IOException {
+		List<RecognizedEntity> entities = AnnotatedXmlWriter.getSortedEntities(text, run);
+
+		if (text.sourceType == Text.SourceTypes.PLAIN) {
+			StringWriter annotatedText = new StringWriter();
+			AnnotatedXmlWriter.writeAnnotatedText(annotatedText, text, run, 0, text.plainText.length(), entities, 0);
+			text.annotatedXml = "<text id=\"" + text.getID() + "\">\n" + annotatedText + "\n</text>";
+
+		} else if (text.sourceType == Text.SourceTypes.MEDLINE_XML || text.sourceType == Text.SourceTypes.MEDLINES_XML) {
+			// the first sentence is the title, the 2nd and following sentences are the abstract
+			int split = AnnotatedXmlWriter.getTitleEnd(text.plainText, entities);
+			StringWriter annotatedTitle = new StringWriter();
+			int e = AnnotatedXmlWriter.writeAnnotatedText(annotatedTitle, text, run, 0, split, entities, 0);
+			text.annotateXmlTitle(annotatedTitle.toString());
+			if (split < text.plainText.length()) {
+				StringWriter annotatedAbstract = new StringWriter();
+				AnnotatedXmlWriter.writeAnnotatedText(annotatedAbstract, text, run, split + 1, text.plainText.length(), entities, e);
+				text.annotateXmlAbstract(annotatedAbstract.toString());
+			}
+		}
 
+		// if the XML tag used to mark gene names has a prefix ("prefix:TAG"), we need to bind this prefix
+		if (xml_tag.indexOf(":") > 0) {
+			String prefix = xml_tag.replaceFirst("^(.+?)\\:.*$", "$1"); 
+			text.addPrefixToXml(prefix);
+		}
 
-			if (file2buffer.size() > 0) {
-				//System.err.println("#Writing file collections");
-				for (String basefilename: file2buffer.keySet()) {
-					StringBuilder buf = file2buffer.get(basefilename);
-					Text.SourceTypes type = file2type.get(basefilename);
-
-					String outfile = basefilename;
-					if (outDir.length() > 0)
-						outfile = outDir + "/" + outfile;
-
-					try {
-						BufferedWriter bw = new BufferedWriter(new FileWriter(outfile));
-						if (type == Text.SourceTypes.PUBMEDS_XML)
-							bw.write("<?xml version=\"1.0\"?>\n" + 
-									"<!DOCTYPE PubmedArticleSet PUBLIC \"-//NLM//DTD PubMedArticle, 1st January 2012//EN\" \"http://www.ncbi.nlm.nih.gov/corehtml/query/DTD/pubmed_120101.dtd\">\n" +
-							"<PubmedArticleSet>\n");
-						else if (type == Text.SourceTypes.MEDLINES_XML)
-							bw.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + 
-									"<!DOCTYPE MedlineCitationSet PUBLIC \"-//NLM//DTD Medline Citation, 1st January, 2012//EN\" \"http://www.nlm.nih.gov/databases/dtd/nlmmedlinecitationset_120101.dtd\">\n" +
-							"<MedlineCitationSet>\n");
-						else
-							bw.write("<?xml version=\"1.0\"?>\n" +
-							"<DocumentSet>\n");
-
-						bw.write(buf.toString());
-
-						if (type == Text.SourceTypes.PUBMEDS_XML)
-							bw.write("\n</PubmedArticleSet>");
-						else if (type == Text.SourceTypes.MEDLINES_XML)
-							bw.write("\n</MedlineCitationSet>");
-						else
-							bw.write("\n</DocumentSet>");
-
-						bw.close();
-					} catch (IOException ioe) {
-						ioe.printStackTrace();
-					}
-				}
-			} // for each input file from which texts were taken (here: always 1) 
-			
-			// haha
-			System.gc();
+		text.buildJDocumentFromAnnotatedXml();
 
-		} // for each Medline XML file
-			
+		String outfileName = text.getID() + ".annotated.xml";
+		if (outDir.length() > 0) text.toXmlFile(outDir + "/" + outfileName);
+		else					 text.toXmlFile(outfileName);
 	}
 	
 }
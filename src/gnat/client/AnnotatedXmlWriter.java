@@ -0,0 +1,322 @@
+package gnat.client;
+
+import gnat.representation.Gene;
+import gnat.representation.IdentificationStatus;
+import gnat.representation.RecognizedEntity;
+import gnat.representation.Text;
+import gnat.representation.TextAnnotation;
+import gnat.utils.Sorting;
+import gnat.utils.StringHelper;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the texts of a Medline citation set into one XML file, with inline annotations for the genes
+ * found by a {@link Run}; element and attribute names are those of {@link AnnotateMedline}.
+ * <br><br>
+ * Each citation is written as in the input XML, except for the ArticleTitle and the first AbstractText,
+ * which get the annotated title and abstract, and further AbstractText elements with attributes
+ * (structured abstracts), which are removed. The annotated text is produced in a single pass over the
+ * plain text and the entities sorted by position, escaping the text while it is written.
+ * Citations are written in the order of {@link #writeText(Text, Run)}.
+ * <br><br>
+ * Usage:<br>
+ * <tt>AnnotatedXmlWriter writer = new AnnotatedXmlWriter("medline12n0123.annotated.xml.gz");</tt><br>
+ * <tt>for (Text text: run.getTextRepository().getTexts())</tt><br>
+ * <tt>&nbsp;&nbsp;writer.writeText(text, run);</tt><br>
+ * <tt>writer.close();</tt>
+ */
+public class AnnotatedXmlWriter {
+
+	private static final Pattern TITLE = Pattern.compile("<ArticleTitle>.*</ArticleTitle>", Pattern.UNIX_LINES | Pattern.MULTILINE);
+	private static final Pattern ABSTRACT = Pattern.compile("<AbstractText[^>]*>.*</AbstractText>", Pattern.UNIX_LINES | Pattern.MULTILINE);
+	private static final Pattern FURTHER_ABSTRACT = Pattern.compile("<AbstractText[^>]+>.*</AbstractText>", Pattern.UNIX_LINES | Pattern.MULTILINE);
+
+	private final Writer out;
+
+
+	/**
+	 * Opens the file and writes the XML declaration and the root element of a MedlineCitationSet.
+	 * @param filename - gzipped if it ends with .gz
+	 * @throws IOException
+	 */
+	public AnnotatedXmlWriter (String filename) throws IOException {
+		out = openWriter(filename);
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+				"<!DOCTYPE MedlineCitationSet PUBLIC \"-//NLM//DTD Medline Citation, 1st January, 2012//EN\" \"http://www.nlm.nih.gov/databases/dtd/nlmmedlinecitationset_120101.dtd\">\n");
+		out.write("<MedlineCitationSet");
+		// if the XML tag used to mark gene names has a prefix ("prefix:TAG"), we need to bind this prefix
+		if (AnnotateMedline.xml_tag.indexOf(":") > 0) {
+			String prefix = AnnotateMedline.xml_tag.replaceFirst("^(.+?)\\:.*$", "$1");
+			out.write(" xmlns:" + prefix + "=\"http://gnat.sourceforge.net\"");
+		}
+		out.write(">\n");
+	}
+
+
+	/**
+	 * Returns a buffered UTF-8 writer for the file, gzipped if the name ends with .gz.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static Writer openWriter (String filename) throws IOException {
+		OutputStream stream = new FileOutputStream(filename);
+		if (filename.endsWith(".gz"))
+			stream = new GZIPOutputStream(stream, 65536);
+		return new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), 65536);
+	}
+
+
+	/**
+	 * Writes the citation of the text with annotations for all entities the run found in it.
+	 * @param text - a text loaded from Medline XML, with {@link Text#originalXml}
+	 * @param run
+	 * @throws IOException
+	 */
+	public void writeText (Text text, Run run) throws IOException {
+		List<RecognizedEntity> entities = getSortedEntities(text, run);
+		String xml = text.originalXml;
+		int split = getTitleEnd(text.plainText, entities);
+
+		int position = 0;
+		Matcher title = TITLE.matcher(xml);
+		Matcher abstractText = ABSTRACT.matcher(xml);
+		boolean hasTitle = title.find();
+		boolean hasAbstract = split < text.plainText.length() && abstractText.find();
+
+		int e = 0;
+		if (hasTitle) {
+			out.write(xml, position, title.start() - position);
+			out.write("<ArticleTitle>");
+			e = writeAnnotatedText(out, text, run, 0, Math.min(split, text.plainText.length()), entities, e);
+			out.write("</ArticleTitle>");
+			position = title.end();
+		}
+		if (hasAbstract && abstractText.start() >= position) {
+			out.write(xml, position, abstractText.start() - position);
+			out.write("<AbstractText>");
+			// the abstract starts after the whitespace that follows the title
+			writeAnnotatedText(out, text, run, split + 1, text.plainText.length(), entities, e);
+			out.write("</AbstractText>");
+			position = abstractText.end();
+
+			// remove all further AbstractText elements
+			Matcher further = FURTHER_ABSTRACT.matcher(xml);
+			while (further.find(position)) {
+				out.write(xml, position, further.start() - position);
+				position = further.end();
+			}
+		}
+		out.write(xml, position, xml.length() - position);
+	}
+
+
+	/**
+	 * Writes the closing root element and closes the file.
+	 * @throws IOException
+	 */
+	public void close () throws IOException {
+		out.write("\n</MedlineCitationSet>");
+		out.close();
+	}
+
+
+	/**
+	 * Returns all entities the run found in the text, sorted by position; if entities overlap, keeps only the first.
+	 * @param text
+	 * @param run
+	 * @return
+	 */
+	public static List<RecognizedEntity> getSortedEntities (Text text, Run run) {
+		List<RecognizedEntity> entities = new ArrayList<RecognizedEntity>(run.context.getRecognizedEntitiesInText(text));
+		Collections.sort(entities, new Sorting.RecognizedEntitySorter());
+		List<RecognizedEntity> result = new ArrayList<RecognizedEntity>(entities.size());
+		int end = -1;
+		for (RecognizedEntity entity: entities) {
+			if (entity.getBegin() <= end || entity.getEnd() >= text.plainText.length()) continue;
+			result.add(entity);
+			end = entity.getEnd();
+		}
+		return result;
+	}
+
+
+	/**
+	 * Returns the position after the title in the plain text: after the first sentence end mark that is followed
+	 * by whitespace and not within an entity; the length of the text if there is no such mark.
+	 * @param plainText
+	 * @param entities - sorted by position
+	 * @return
+	 */
+	public static int getTitleEnd (String plainText, List<RecognizedEntity> entities) {
+		int e = 0;
+		for (int i = 1; i + 1 < plainText.length(); i++) {
+			char c = plainText.charAt(i);
+			if ((c != '.' && c != '!' && c != '?') || !Character.isWhitespace(plainText.charAt(i + 1)))
+				continue;
+			while (e < entities.size() && entities.get(e).getEnd() < i)
+				e++;
+			// the title cannot end within an entity
+			if (e < entities.size() && entities.get(e).getBegin() <= i && entities.get(e).getEnd() > i)
+				continue;
+			return i + 1;
+		}
+		return plainText.length();
+	}
+
+
+	/**
+	 * Writes the plain text from <tt>from</tt> to <tt>to</tt>, with start and end tags around each entity, escaping
+	 * XML meta-characters on the way. Entities are taken from the list starting at index <tt>e</tt>, as long as they
+	 * end before <tt>to</tt>.
+	 * @param out
+	 * @param text
+	 * @param run
+	 * @param from
+	 * @param to
+	 * @param entities - sorted by position, not overlapping
+	 * @param e
+	 * @return index of the next entity
+	 * @throws IOException
+	 */
+	public static int writeAnnotatedText (Writer out, Text text, Run run, int from, int to, List<RecognizedEntity> entities, int e)
+			throws IOException {
+		String plainText = text.plainText;
+		int position = from;
+		while (e < entities.size() && entities.get(e).getBegin() < position)
+			e++;
+		for (; e < entities.size(); e++) {
+			RecognizedEntity entity = entities.get(e);
+			if (entity.getEnd() >= to) break;
+
+			writeEscaped(out, plainText, position, entity.getBegin());
+			String tag = writeStartTag(out, entity, text, run);
+			writeEscaped(out, plainText, entity.getBegin(), entity.getEnd() + 1);
+			out.write("</");
+			out.write(tag);
+			out.write(">");
+			position = entity.getEnd() + 1;
+		}
+		writeEscaped(out, plainText, position, to);
+		return e;
+	}
+
+
+	/**
+	 * Writes the start tag for an entity, with its gene ID, other candidate IDs, official symbol, species and score.
+	 * @return the name of the tag
+	 */
+	static String writeStartTag (Writer out, RecognizedEntity entity, Text text, Run run) throws IOException {
+		TextAnnotation ta = entity.getAnnotation();
+		ta.setType(TextAnnotation.Type.GENE);
+		IdentificationStatus idStatus = run.context.getIdentificationStatus(entity);
+		String geneId = idStatus.getId();
+		Set<String> otherIds_set = new TreeSet<String>();
+		otherIds_set.addAll(idStatus.getIdCandidates());
+		if (otherIds_set.size() > 0 && geneId != null)
+			otherIds_set.remove(geneId);
+		String otherIds = "";
+		if (otherIds_set.size() > 0)
+			otherIds = StringHelper.joinStringSet(otherIds_set, ";");
+
+		out.write("<");
+		if (geneId == null || geneId.length() == 0) {
+			out.write(AnnotateMedline.xml_tag_mention);
+			if (otherIds.length() > 0)
+				writeAttribute(out, AnnotateMedline.xml_attribute_candidate_ids, otherIds);
+			out.write(">");
+			return AnnotateMedline.xml_tag_mention;
+		}
+
+		// in some cases, candidate IDs with the same score are returned: the first is the main ID,
+		// the others go into a separate XML attribute
+		out.write(AnnotateMedline.xml_tag);
+		writeAttribute(out, AnnotateMedline.xml_attribute_id, geneId);
+		if (otherIds.length() > 0)
+			writeAttribute(out, AnnotateMedline.xml_attribute_other_ids, otherIds);
+		// get the Gene object for the (main) gene ID, and from that, the official symbol (if known) and species
+		Gene gene = run.getGene(geneId);
+		if (gene != null) {
+			if (gene.officialSymbol != null && gene.officialSymbol.length() > 0)
+				writeAttribute(out, AnnotateMedline.xml_attribute_symbol, gene.officialSymbol);
+			if (gene.getTaxon() > 0)
+				writeAttribute(out, AnnotateMedline.xml_attribute_species, "" + gene.getTaxon());
+			float score = run.context.getConfidenceScore(gene, text.ID);
+			if (score >= 0.0)
+				writeAttribute(out, AnnotateMedline.xml_attribute_score, "" + score);
+		}
+		out.write(">");
+		return AnnotateMedline.xml_tag;
+	}
+
+
+	private static void writeAttribute (Writer out, String name, String value) throws IOException {
+		out.write(" ");
+		out.write(name);
+		out.write("=\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '&': out.write("&amp;"); break;
+				case '<': out.write("&lt;"); break;
+				case '>': out.write("&gt;"); break;
+				case '"': out.write("&quot;"); break;
+				default: out.write(c);
+			}
+		}
+		out.write("\"");
+	}
+
+
+	/**
+	 * Writes a part of a text, escaping &lt; and &gt;, and ampersands that do not start a character or entity reference
+	 * (the plain text of Medline citations is partly escaped already, see {@link gnat.retrieval.PubmedAccess#getAbstractsFromXML(String)}).
+	 * @param out
+	 * @param s
+	 * @param from
+	 * @param to
+	 * @throws IOException
+	 */
+	public static void writeEscaped (Writer out, String s, int from, int to) throws IOException {
+		int start = from;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			String replacement;
+			if (c == '<') replacement = "&lt;";
+			else if (c == '>') replacement = "&gt;";
+			else if (c == '&' && !isReference(s, i)) replacement = "&amp;";
+			else continue;
+			out.write(s, start, i - start);
+			out.write(replacement);
+			start = i + 1;
+		}
+		out.write(s, start, to - start);
+	}
+
+
+	/**
+	 * Checks whether the ampersand at <tt>index</tt> starts one of the predefined XML entities or a character reference.
+	 */
+	static boolean isReference (String s, int index) {
+		int semicolon = s.indexOf(';', index + 1);
+		if (semicolon < 0 || semicolon - index > 10) return false;
+		String name = s.substring(index + 1, semicolon);
+		return name.equals("amp") || name.equals("lt") || name.equals("gt") || name.equals("quot") || name.equals("apos")
+			|| name.matches("#\\d+") || name.matches("#x[0-9A-Fa-f]+");
+	}
+
+}
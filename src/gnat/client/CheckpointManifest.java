@@ -0,0 +1,142 @@
+package gnat.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers which input files a long-running job has completed, so that a rerun can skip them.
+ * <br><br>
+ * The manifest is a tab-separated file with one line per completed file: file name, size in bytes,
+ * MD5 checksum of the content, and completion time. Lines are appended and flushed as soon as a file
+ * is completed, so the manifest survives a crash of the job. A file counts as completed only if its
+ * size and checksum are still the same; if a file is listed more than once, the last line counts.
+ * <br><br>
+ * All methods are thread-safe.
+ *
+ */
+public class CheckpointManifest {
+
+	/** A completed file: its size and checksum. */
+	static class Entry {
+		final long size;
+		final String checksum;
+		Entry (long size, String checksum) {
+			this.size = size;
+			this.checksum = checksum;
+		}
+	}
+
+	private final String filename;
+
+	/** Completed files by name. */
+	private final Map<String, Entry> completed = new HashMap<String, Entry>();
+
+
+	/**
+	 * Reads the manifest from the given file, if it exists.
+	 * @param filename
+	 * @throws IOException
+	 */
+	public CheckpointManifest (String filename) throws IOException {
+		this.filename = filename;
+		File file = new File(filename);
+		if (!file.exists()) return;
+
+		BufferedReader br = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = br.readLine()) != null) {
+			if (line.startsWith("#") || line.trim().length() == 0) continue;
+			String[] cols = line.split("\t");
+			if (cols.length < 3 || !cols[1].matches("\\d+")) continue;
+			completed.put(cols[0], new Entry(Long.parseLong(cols[1]), cols[2]));
+		}
+		br.close();
+	}
+
+
+	/**
+	 * Checks whether the given file was completed before, with the same content.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean isCompleted (File file) throws IOException {
+		Entry entry;
+		synchronized (completed) {
+			entry = completed.get(file.getName());
+		}
+		// compute the checksum only if the size matches
+		if (entry == null || entry.size != file.length()) return false;
+		return entry.checksum.equals(getChecksum(file));
+	}
+
+
+	/**
+	 * Adds the given file to the manifest, with its current size and checksum.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void markCompleted (File file) throws IOException {
+		Entry entry = new Entry(file.length(), getChecksum(file));
+		String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date());
+		synchronized (completed) {
+			PrintWriter out = new PrintWriter(new FileWriter(filename, true));
+			out.println(file.getName() + "\t" + entry.size + "\t" + entry.checksum + "\t" + time);
+			out.close();
+			completed.put(file.getName(), entry);
+		}
+	}
+
+
+	/**
+	 * Returns the number of files in the manifest.
+	 * @return
+	 */
+	public int size () {
+		synchronized (completed) {
+			return completed.size();
+		}
+	}
+
+
+	/**
+	 * Returns the MD5 checksum of the content of the file, in hexadecimal.
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static String getChecksum (File file) throws IOException {
+		MessageDigest md5;
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("MD5 is not available: " + e.getMessage());
+		}
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				md5.update(buffer, 0, read);
+		} finally {
+			in.close();
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b: md5.digest())
+			hex.append(String.format("%02x", b & 0xff));
+		return hex.toString();
+	}
+
+}
@@ -12,9 +12,12 @@ import gnat.representation.Text;
 import gnat.representation.TextRepository;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a single run of {@link Filter}s on a {@link TextRepository}.
@@ -62,6 +65,9 @@ public class Run {
 	/** Verbosity; 0: no output; 3: full status report after each filter (recognized genes, identified genes, ..)*/
 	public int verbosity = 0;
 	
+	/** Time, allocations, and entity counts for each filter, see {@link #getMetrics()}. */
+	private RunMetrics metrics = new RunMetrics();
+	
 	
 	/**
 	 * Constructs a new Run.
@@ -179,16 +185,37 @@ public class Run {
 	/**
 	 * Runs all filters in the order given by <tt>filterPipeline</tt>,
 	 * working on and changing <tt>context</tt>, <tt>textRepository</tt>, and <tt>geneRepository</tt>.
+	 * Records time, allocations, and entity counts of each filter in the {@link #getMetrics() metrics}.
 	 */
 	public void runFilters () {
 		long starttime = System.currentTimeMillis();
+		long runStart = System.nanoTime();
 		
+		Iterator<String> filterNames = getFilterNames().iterator();
 		for (Filter filter: filterPipeline) {
+			String filterName = filterNames.next();
 			if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.STATUS))
 				System.out.println("Running filter " + filter.getClass());
 			
+			int entitiesIn = context.getRecognizedEntitiesWithIdentificationStatus().size();
+			int identifiedIn = context.getEntitiesIdentifiedAsGene().size();
+			long cpuStart = RunMetrics.getCurrentThreadCpuTime();
+			long allocatedStart = RunMetrics.getCurrentThreadAllocatedBytes();
+			long wallStart = System.nanoTime();
+
 			filter.filter(context, textRepository, geneRepository);
 			
+			long wallTime = System.nanoTime() - wallStart;
+			long cpuTime = RunMetrics.getCurrentThreadCpuTime() - cpuStart;
+			long allocated = RunMetrics.getCurrentThreadAllocatedBytes() - allocatedStart;
+			int entitiesOut = context.getRecognizedEntitiesWithIdentificationStatus().size();
+			int identifiedOut = context.getEntitiesIdentifiedAsGene().size();
+			metrics.recordFilter(filterName, wallTime, cpuTime, allocated, entitiesIn, entitiesOut, identifiedIn, identifiedOut);
+
+			if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.STATUS))
+				System.out.println("Filter " + filterName + " finished in " + (wallTime / 1000000) + "ms; entities "
+						+ entitiesIn + " -> " + entitiesOut + ", identified " + identifiedIn + " -> " + identifiedOut);
+			
 			if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.DEBUG))
 				printCurrentStatus(System.out);
 			
@@ -198,6 +225,8 @@ public class Run {
 			}
 		}
 		
+		metrics.recordRun(System.nanoTime() - runStart);
+		
 		if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.STATUS)) {
 			long endtime = System.currentTimeMillis();
 			float seconds = (float)(endtime - starttime) / 1000.0f;
@@ -206,6 +235,45 @@ public class Run {
 	}
 	
 	
+	/**
+	 * Returns a name for each filter in the pipeline: its class name, with #2, #3, .. appended
+	 * if the same class occurs several times.
+	 * @return
+	 */
+	List<String> getFilterNames () {
+		List<String> names = new ArrayList<String>(filterPipeline.size());
+		Map<String, Integer> occurrences = new HashMap<String, Integer>();
+		for (Filter filter: filterPipeline) {
+			String name = filter.getClass().getSimpleName();
+			if (name.length() == 0)
+				name = filter.getClass().getName();
+			Integer count = occurrences.get(name);
+			count = (count == null) ? 1 : count + 1;
+			occurrences.put(name, count);
+			names.add(count == 1 ? name : name + "#" + count);
+		}
+		return names;
+	}
+	
+	
+	/**
+	 * Returns the time, allocations, and entity counts of each filter, summed over all calls of {@link #runFilters()}.
+	 * @return
+	 */
+	public RunMetrics getMetrics () {
+		return this.metrics;
+	}
+	
+	
+	/**
+	 * Sets the object that collects the metrics of each filter, for instance to share it among several runs.
+	 * @param metrics
+	 */
+	public void setMetrics (RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	
 	public GeneRepository getGeneRepository () {
 		return this.geneRepository;
 	}
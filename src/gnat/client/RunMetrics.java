@@ -0,0 +1,304 @@
+package gnat.client;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects, for each {@link gnat.filter.Filter} of a {@link Run}, how long it took and what it did
+ * to the context: wall time, CPU time and allocated bytes of the calling thread, and the number of
+ * recognized entities and identified genes before and after each invocation.
+ * <br><br>
+ * Values add up over all invocations, until {@link #reset()}. CPU time and allocated bytes are measured
+ * for the thread that runs the filter only, via the {@link ThreadMXBean}; work a filter hands to
+ * other threads does not show up there. Both are 0 if the JVM does not support measuring them.
+ * <br><br>
+ * Several runs can share one RunMetrics object, see {@link Run#setMetrics(RunMetrics)}; all methods are thread-safe.
+ * The metrics can be queried directly or exported with {@link #toJson()} and {@link #toPrometheus()}.
+ *
+ */
+public class RunMetrics {
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	/** Whether the JVM can measure the CPU time of the current thread. */
+	private static final boolean cpuTimeSupported;
+
+	/** Whether the JVM can measure the bytes allocated by the current thread. */
+	private static final boolean allocatedBytesSupported;
+
+	static {
+		boolean supported = false;
+		try {
+			supported = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+		} catch (UnsupportedOperationException e) {
+			// not supported
+		}
+		cpuTimeSupported = supported;
+
+		supported = false;
+		try {
+			if (threadBean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean)threadBean;
+				supported = sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled();
+			}
+		} catch (UnsupportedOperationException e) {
+			// not supported
+		} catch (NoClassDefFoundError e) {
+			// not a Sun/Oracle JVM
+		}
+		allocatedBytesSupported = supported;
+	}
+
+
+	/**
+	 * Metrics for one filter, summed over all its invocations.
+	 */
+	public static class FilterMetrics {
+		private final String name;
+		private long invocations;
+		private long wallNanos;
+		private long cpuNanos;
+		private long allocatedBytes;
+		private long entitiesIn;
+		private long entitiesOut;
+		private long identifiedIn;
+		private long identifiedOut;
+
+		FilterMetrics (String name) {
+			this.name = name;
+		}
+
+		FilterMetrics (FilterMetrics other) {
+			this.name = other.name;
+			this.invocations = other.invocations;
+			this.wallNanos = other.wallNanos;
+			this.cpuNanos = other.cpuNanos;
+			this.allocatedBytes = other.allocatedBytes;
+			this.entitiesIn = other.entitiesIn;
+			this.entitiesOut = other.entitiesOut;
+			this.identifiedIn = other.identifiedIn;
+			this.identifiedOut = other.identifiedOut;
+		}
+
+		/** Name of the filter: its class name, with #2, #3, .. if the same class occurs several times in the pipeline. */
+		public String getName () { return name; }
+		public long getInvocations () { return invocations; }
+		public long getWallNanos () { return wallNanos; }
+		public long getCpuNanos () { return cpuNanos; }
+		public long getAllocatedBytes () { return allocatedBytes; }
+		/** Recognized entities in the context before each invocation. */
+		public long getEntitiesIn () { return entitiesIn; }
+		/** Recognized entities in the context after each invocation. */
+		public long getEntitiesOut () { return entitiesOut; }
+		/** Identified genes in the context before each invocation. */
+		public long getIdentifiedIn () { return identifiedIn; }
+		/** Identified genes in the context after each invocation. */
+		public long getIdentifiedOut () { return identifiedOut; }
+
+		/** Number of entities the filter removed, or, if negative, added. */
+		public long getEntitiesRemoved () {
+			return entitiesIn - entitiesOut;
+		}
+
+		@Override public String toString () {
+			return name + ": " + invocations + "x, " + (wallNanos / 1000000) + "ms wall, " + (cpuNanos / 1000000) + "ms CPU, "
+				+ allocatedBytes + " bytes, entities " + entitiesIn + " -> " + entitiesOut + ", identified " + identifiedIn + " -> " + identifiedOut;
+		}
+	}
+
+
+	/** Metrics for each filter, in the order they were first run. */
+	private final Map<String, FilterMetrics> filters = new LinkedHashMap<String, FilterMetrics>();
+
+	/** Number of runs of the entire pipeline. */
+	private long runs = 0;
+
+	/** Wall time of all runs. */
+	private long runWallNanos = 0;
+
+
+	/**
+	 * Returns the CPU time of the current thread in ns, 0 if not supported.
+	 */
+	static long getCurrentThreadCpuTime () {
+		if (!cpuTimeSupported) return 0;
+		return threadBean.getCurrentThreadCpuTime();
+	}
+
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far, 0 if not supported.
+	 */
+	static long getCurrentThreadAllocatedBytes () {
+		if (!allocatedBytesSupported) return 0;
+		return ((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+
+	/**
+	 * Adds the measurements of one invocation of a filter.
+	 */
+	synchronized void recordFilter (String name, long wallNanos, long cpuNanos, long allocatedBytes,
+			int entitiesIn, int entitiesOut, int identifiedIn, int identifiedOut) {
+		FilterMetrics metrics = filters.get(name);
+		if (metrics == null) {
+			metrics = new FilterMetrics(name);
+			filters.put(name, metrics);
+		}
+		metrics.invocations++;
+		metrics.wallNanos += wallNanos;
+		metrics.cpuNanos += cpuNanos;
+		metrics.allocatedBytes += allocatedBytes;
+		metrics.entitiesIn += entitiesIn;
+		metrics.entitiesOut += entitiesOut;
+		metrics.identifiedIn += identifiedIn;
+		metrics.identifiedOut += identifiedOut;
+	}
+
+
+	/**
+	 * Adds the wall time of one run of the entire pipeline.
+	 */
+	synchronized void recordRun (long wallNanos) {
+		runs++;
+		runWallNanos += wallNanos;
+	}
+
+
+	/**
+	 * Returns a copy of the metrics of all filters, in the order they were first run.
+	 * @return
+	 */
+	public synchronized List<FilterMetrics> getFilterMetrics () {
+		List<FilterMetrics> result = new ArrayList<FilterMetrics>(filters.size());
+		for (FilterMetrics metrics: filters.values())
+			result.add(new FilterMetrics(metrics));
+		return result;
+	}
+
+
+	/**
+	 * Returns a copy of the metrics of the filter with the given name, or null if it was not run.
+	 * @param name
+	 * @return
+	 */
+	public synchronized FilterMetrics getFilterMetrics (String name) {
+		FilterMetrics metrics = filters.get(name);
+		return metrics == null ? null : new FilterMetrics(metrics);
+	}
+
+
+	public synchronized long getRuns () {
+		return runs;
+	}
+
+
+	public synchronized long getRunWallNanos () {
+		return runWallNanos;
+	}
+
+
+	/**
+	 * Removes all metrics.
+	 */
+	public synchronized void reset () {
+		filters.clear();
+		runs = 0;
+		runWallNanos = 0;
+	}
+
+
+	/**
+	 * Returns all metrics as a JSON object:<br>
+	 * <tt>{"runs":2,"runWallNanos":..,"filters":[{"filter":"NameRangeExpander","invocations":2,"wallNanos":..,..},..]}</tt>
+	 * @return
+	 */
+	public synchronized String toJson () {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"runs\":").append(runs);
+		json.append(",\"runWallNanos\":").append(runWallNanos);
+		json.append(",\"filters\":[");
+		boolean first = true;
+		for (FilterMetrics metrics: filters.values()) {
+			if (!first) json.append(",");
+			first = false;
+			json.append("{\"filter\":\"").append(metrics.name.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"");
+			json.append(",\"invocations\":").append(metrics.invocations);
+			json.append(",\"wallNanos\":").append(metrics.wallNanos);
+			json.append(",\"cpuNanos\":").append(metrics.cpuNanos);
+			json.append(",\"allocatedBytes\":").append(metrics.allocatedBytes);
+			json.append(",\"entitiesIn\":").append(metrics.entitiesIn);
+			json.append(",\"entitiesOut\":").append(metrics.entitiesOut);
+			json.append(",\"identifiedIn\":").append(metrics.identifiedIn);
+			json.append(",\"identifiedOut\":").append(metrics.identifiedOut);
+			json.append("}");
+		}
+		json.append("]}");
+		return json.toString();
+	}
+
+
+	/**
+	 * Returns all metrics in the Prometheus text format, one counter per metric with a label for the filter.
+	 * @return
+	 */
+	public synchronized String toPrometheus () {
+		StringBuilder text = new StringBuilder();
+		appendCounter(text, "gnat_runs_total", "Number of runs of the entire pipeline.", null, runs);
+		appendCounter(text, "gnat_run_wall_seconds_total", "Wall time of all runs of the entire pipeline.", null, runWallNanos / 1e9);
+
+		String[][] counters = {
+				{"gnat_filter_invocations_total", "Number of invocations of each filter."},
+				{"gnat_filter_wall_seconds_total", "Wall time spent in each filter."},
+				{"gnat_filter_cpu_seconds_total", "CPU time spent in each filter, by the calling thread."},
+				{"gnat_filter_allocated_bytes_total", "Bytes allocated in each filter, by the calling thread."},
+				{"gnat_filter_entities_in_total", "Recognized entities before each filter."},
+				{"gnat_filter_entities_out_total", "Recognized entities after each filter."},
+				{"gnat_filter_identified_in_total", "Identified genes before each filter."},
+				{"gnat_filter_identified_out_total", "Identified genes after each filter."}};
+		for (int c = 0; c < counters.length; c++) {
+			text.append("# HELP ").append(counters[c][0]).append(" ").append(counters[c][1]).append("\n");
+			text.append("# TYPE ").append(counters[c][0]).append(" counter\n");
+			for (FilterMetrics metrics: filters.values()) {
+				double value;
+				switch (c) {
+					case 0: value = metrics.invocations; break;
+					case 1: value = metrics.wallNanos / 1e9; break;
+					case 2: value = metrics.cpuNanos / 1e9; break;
+					case 3: value = metrics.allocatedBytes; break;
+					case 4: value = metrics.entitiesIn; break;
+					case 5: value = metrics.entitiesOut; break;
+					case 6: value = metrics.identifiedIn; break;
+					default: value = metrics.identifiedOut; break;
+				}
+				appendSample(text, counters[c][0], metrics.name, value);
+			}
+		}
+		return text.toString();
+	}
+
+
+	private static void appendCounter (StringBuilder text, String name, String help, String filter, double value) {
+		text.append("# HELP ").append(name).append(" ").append(help).append("\n");
+		text.append("# TYPE ").append(name).append(" counter\n");
+		appendSample(text, name, filter, value);
+	}
+
+
+	private static void appendSample (StringBuilder text, String name, String filter, double value) {
+		text.append(name);
+		if (filter != null)
+			text.append("{filter=\"").append(filter.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"}");
+		text.append(" ");
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			text.append((long)value);
+		else
+			text.append(value);
+		text.append("\n");
+	}
+
+}
@@ -15,6 +15,7 @@ import gnat.representation.Text;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 
@@ -56,8 +57,45 @@ public class GenePubMedScorer {
 	/** Output format for genes and their scores; 1: plain text, 2: SVM. */
 	public int DEBUG_OUTPUT = 2;
 
-	/** */
-	Map <String, LinkedList<Float>> scoreCache = new HashMap <String, LinkedList<Float>>();
+	/** Default for the maximum number of gene/text pairs whose scores are kept in the <tt>scoreCache</tt>;
+	 * can be changed with the property <tt>scoreCacheSize</tt>. */
+	public static final int DEFAULT_SCORE_CACHE_SIZE = 100000;
+
+	/** Scores of gene/text pairs, key: "geneID;textID". Thread-safe, and bounded to the
+	 * most recently used pairs, see {@link #DEFAULT_SCORE_CACHE_SIZE}. */
+	Map <String, LinkedList<Float>> scoreCache = Collections.synchronizedMap(new ScoreCache(getScoreCacheSize()));
+
+
+	/**
+	 * Map that keeps the most recently used entries only.
+	 */
+	@SuppressWarnings("serial")
+	static class ScoreCache extends LinkedHashMap<String, LinkedList<Float>> {
+		private final int maxSize;
+
+		ScoreCache (int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry (Map.Entry<String, LinkedList<Float>> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+
+	/**
+	 * Returns the maximum size of the score cache, from the property <tt>scoreCacheSize</tt>
+	 * or {@link #DEFAULT_SCORE_CACHE_SIZE}.
+	 * @return
+	 */
+	static int getScoreCacheSize () {
+		String size = ISGNProperties.get("scoreCacheSize");
+		if (size != null && size.trim().matches("\\d+"))
+			return Integer.parseInt(size.trim());
+		return DEFAULT_SCORE_CACHE_SIZE;
+	}
 
 	/**
 	 * Constructs a new GenePubMedScorer with an access to the GO
@@ -207,11 +245,8 @@ public class GenePubMedScorer {
 		//HashMap<String, Float> allScores = new HashMap<String, Float>();
 		//
 
-		LinkedList<Float> scores = scoreCache.get(gene.getID() + ";" + text.getID());
-		if (scores == null) {
-			scores = getScores(gene, text, geneName);
-			scoreCache.put(gene.getID() + ";" + text.getID(), scores);
-		}
+		// copy, as the scores get sorted below and the cached list has to keep its order
+		LinkedList<Float> scores = new LinkedList<Float>(getScores(gene, text, geneName));
 		//LinkedList<Float> scores = getScores(gene, text, geneName);//new LinkedList<Float>();
 
 		// PMID score == 1? Immediate identification
@@ -260,14 +295,18 @@ public class GenePubMedScorer {
 	/**
 	 * Returns a list of scores for scoring each context vector. Each score is between -1.0f and 1.0f.
 	 * Some entries in the list might be null, when the gene did not have a corresponding context vector;
+	 * <br>
+	 * Can be called from multiple threads at once; the returned list is shared with the score cache
+	 * and must not be changed.
 	 * @param gene
 	 * @param text
 	 * @param geneName
 	 * @return
 	 */
 	public LinkedList<Float> getScores (Gene gene, Text text, String geneName) {
-		if (scoreCache.containsKey(gene.getID() + ";" + text.getID()))
-			return scoreCache.get(gene.getID() + ";" + text.getID());
+		LinkedList<Float> cachedScores = scoreCache.get(gene.getID() + ";" + text.getID());
+		if (cachedScores != null)
+			return cachedScores;
 
 		
 		//
@@ -2,6 +2,7 @@ package gnat.comparison;
 
 import gnat.ISGNProperties;
 import gnat.database.go.GOAccess;
+import gnat.database.go.GOGraph;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -28,6 +29,10 @@ import java.util.TreeSet;
  * <br>
  * Similarity/distance is based on the shortest path using two terms' LCA and
  * the depth of this LCA in the overall hierarchy.
+ * <br>
+ * <br>
+ * If the property <tt>goGraph</tt> points to a GO2GO or OBO file, distances are computed
+ * from an in-memory {@link GOGraph} instead, without accessing the database.
  * 
  * 
  * 
@@ -53,6 +58,10 @@ public class GOTermSimilarity implements Serializable {
 
 	private static GOAccess goAccess;
 
+	/** In-memory GO graph, loaded once from the file given by the property <tt>goGraph</tt>; null if not used. */
+	private static volatile GOGraph goGraph;
+	private static boolean goGraphLoaded = false;
+
 	
 	/**
 	 * Accesses the database that contains LCA information on GO terms
@@ -68,6 +77,34 @@ public class GOTermSimilarity implements Serializable {
 	 */
 	public GOTermSimilarity (GOAccess go) {
 		goAccess = go;
+		loadGOGraph(ISGNProperties.get("goGraph"));
+	}
+
+
+	/**
+	 * Loads the in-memory GO graph from a GO2GO or OBO file, unless it was loaded before.
+	 * @param filename - null or empty to use the database
+	 */
+	private static synchronized void loadGOGraph (String filename) {
+		if (goGraphLoaded) return;
+		goGraphLoaded = true;
+		if (filename == null || filename.trim().length() == 0) return;
+		try {
+			goGraph = GOGraph.loadFromFile(filename.trim());
+			System.err.println("# Loaded GO graph from " + filename + ", #terms: " + goGraph.size());
+		} catch (IOException ioe) {
+			System.err.println("#ERROR loading GO graph from " + filename + ": " + ioe.getMessage());
+		}
+	}
+
+
+	/**
+	 * Sets the in-memory GO graph used to compute distances; null to use the database.
+	 * @param graph
+	 */
+	public static synchronized void setGOGraph (GOGraph graph) {
+		goGraph = graph;
+		goGraphLoaded = true;
 	}
 
 
@@ -95,34 +132,48 @@ public class GOTermSimilarity implements Serializable {
 
 		if (goCode1.equals(goCode2)) return 0.0f;
 
+		if (goGraph != null) {
+			int acc1 = GOAccess.makeGOAccessionNumeral(goCode1);
+			int acc2 = GOAccess.makeGOAccessionNumeral(goCode2);
+			if (goGraph.contains(acc1) && goGraph.contains(acc2))
+				return goGraph.getDistance(acc1, acc2);
+		}
+
 		String key = goCode1 + ";" + goCode2;
 
 		//if(verbosity>3){
 		//	System.out.println(this.getClass().getSimpleName()+": getDistance for key='"+key+"'");
 		//}
 
-		if (goTermDistances.containsKey(key)) {
-			return goTermDistances.get(key);
+		// distances can be requested from several threads at once, see MultiSpeciesDisambiguationFilter
+		synchronized (this) {
+			if (goTermDistances.containsKey(key)) {
+				return goTermDistances.get(key);
+			}
+			key = goCode2 + ";" + goCode1;
+			if (goTermDistances.containsKey(key))
+				return goTermDistances.get(key);
 		}
-		key = goCode2 + ";" + goCode1;
-		if (goTermDistances.containsKey(key))
-			return goTermDistances.get(key);
 
 		if (!useDatabase)
 			return Float.NEGATIVE_INFINITY;
 
 		
 		//System.err.println("#GTS: getting distance");
-		float dist = goAccess.getDistance(goCode1, goCode2);
+		float dist;
+		synchronized (goAccess) {
+			dist = goAccess.getDistance(goCode1, goCode2);
+		}
 
 		if(verbosity>3){
 			System.out.println(this.getClass().getSimpleName()+": getDistance: computed new similarity = "+dist);
 		}
 
 		key = goCode1 + ";" + goCode2;
-		goTermDistances.put(key, dist);
-
-		computedNewSimilarity = true;
+		synchronized (this) {
+			goTermDistances.put(key, dist);
+			computedNewSimilarity = true;
+		}
 
 		return dist;
 	}
@@ -243,7 +294,7 @@ public class GOTermSimilarity implements Serializable {
 	 * @param filename
 	 */
 	@SuppressWarnings("unchecked")
-	public void loadGOTermDistances (String filename) {
+	public synchronized void loadGOTermDistances (String filename) {
 		go2gofile = filename;
 
 		FileInputStream fis = null;
@@ -316,7 +367,7 @@ public class GOTermSimilarity implements Serializable {
 	 *
 	 * @return
 	 */
-	public boolean writeGOTermDistances () {
+	public synchronized boolean writeGOTermDistances () {
 		if (computedNewSimilarity || (initiallyLoadedSimilarities < goTermDistances.size())) {
 			//System.err.println("#Calling writeGO (1)");
 			if(verbosity>0)
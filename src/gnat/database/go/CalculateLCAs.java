@@ -1,19 +1,24 @@
 package gnat.database.go;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.TreeSet;
 
 /**
- * Computes the lowest common ancestor for two GO terms
+ * Computes the lowest common ancestor for all pairs of GO terms, for the LCA table used by
+ * {@link GOAccess#getDistance(String, String)}.
+ * <br><br>
+ * Reads the GO2GO file (<tt>parent;child;distance</tt>) into a {@link GOGraph}. The LCA of two terms
+ * is their common ancestor with the smallest combined distance; pairs where one term is an ancestor
+ * of the other, or whose only common ancestor is the root, are not stored.
+ * <br>
+ * Pairs are partitioned by their first term across several threads. Each thread streams its
+ * results to its own file, <tt>outfile.part1</tt> .. <tt>outfile.partN</tt>, one line per pair:<br>
+ * <tt>term1;term2;lca;dist1;dist2;depthLCA</tt> (accession numbers without &quot;GO:&quot;).
  *
  * Call:<br/>
- * java -classpath bin -Xmx1750M de.tud.biotec.databases.go.CalculateLCAs GeneOntology_GO2GO.csv distances.lca.csv
+ * java -classpath bin -Xmx1750M gnat.database.go.CalculateLCAs GeneOntology_GO2GO.csv distances.lca.csv [threads]
  *
  *
  * @author Joerg Hakenberg
@@ -22,82 +27,164 @@ import java.util.TreeSet;
 
 public class CalculateLCAs {
 
-	public static HashMap<String, Integer> distancesChild2Parents = new HashMap<String, Integer>();
-	public static HashMap<String, TreeSet<String>> childs2Parents = new HashMap<String, TreeSet<String>>();
-	public static TreeSet<String> allIDs = new TreeSet<String>();
-	public static TreeSet<String> done = new TreeSet<String>();
+	/** Number of threads, and parts of the output, if not given on the command line. */
+	public static int threads = Runtime.getRuntime().availableProcessors();
+
+	/** Number of first terms processed so far, for reporting progress. */
+	private static int processedTerms = 0;
+
 
 	/**
-	 *
-	 * @param child
-	 * @param parent
-	 * @return
+	 * Computes the LCAs for all pairs (term1, term2) whose first term has an index
+	 * <tt>part</tt> modulo <tt>parts</tt>, and writes them to a file.
 	 */
-	public static int getDistance (String child, String parent) {
-		String key = child + ";" + parent;
-		if (distancesChild2Parents.containsKey(key))
-			return distancesChild2Parents.get(child + ";" + parent);
-		else
-			return Integer.MAX_VALUE;
+	private static class Worker extends Thread {
+		private final GOGraph graph;
+		private final int part;
+		private final int parts;
+		private final File outfile;
+		private IOException exception = null;
+
+		Worker (GOGraph graph, int part, int parts, File outfile) {
+			this.graph = graph;
+			this.part = part;
+			this.parts = parts;
+			this.outfile = outfile;
+		}
+
+		@Override
+		public void run () {
+			try {
+				BufferedWriter bw = new BufferedWriter(new FileWriter(outfile), 1 << 16);
+				try {
+					// for the current first term: distance+1 to each ancestor, 0 for other terms
+					int[] distances1 = new int[graph.size()];
+					for (int t1 = part; t1 < graph.size(); t1 += parts) {
+						writeLCAs(graph, t1, distances1, bw);
+						reportProgress(graph.size());
+					}
+				} finally {
+					bw.close();
+				}
+			} catch (IOException ioe) {
+				exception = ioe;
+			}
+		}
 	}
 
 
 	/**
-	 *
-	 * @param child1
-	 * @param child2
-	 * @param parent
-	 * @return
+	 * Writes the LCAs of the term <tt>t1</tt> and all terms with a higher index.
+	 * @param graph
+	 * @param t1 - index of the first term
+	 * @param distances1 - array of size graph.size(), all 0; used as a lookup table for the ancestors of t1
+	 * @param bw
+	 * @throws IOException
 	 */
-	public static int getCombinedDistance (String child1, String child2, String parent) {
-		//int result = getDistance(child1, "all") + getDistance(child2, "all");
-		int dist1 = getDistance(child1, parent);
-		int dist2 = getDistance(child2, parent);
-		//if ((dist1 + dist2) < result)
-		//	result = (dist1 + dist2);
-		//return result;
-		return (dist1 + dist2);
+	static void writeLCAs (GOGraph graph, int t1, int[] distances1, BufferedWriter bw) throws IOException {
+		int[] ancestors1 = graph.getAncestorIndicesAt(t1);
+		int[] ancestorDistances1 = graph.getAncestorDistancesAt(t1);
+		for (int a = 0; a < ancestors1.length; a++)
+			distances1[ancestors1[a]] = ancestorDistances1[a] + 1;
+		int depth1 = graph.getDepthAt(t1);
+		String acc1 = formatAccession(graph.getAccessionAt(t1));
+
+		for (int t2 = t1 + 1; t2 < graph.size(); t2++) {
+			// do not store direct paths when one is the parent of another
+			if (distances1[t2] > 0)
+				continue;
+
+			int[] ancestors2 = graph.getAncestorIndicesAt(t2);
+			int[] ancestorDistances2 = graph.getAncestorDistancesAt(t2);
+			int lca = -1;
+			int lcaDistance1 = 0, lcaDistance2 = 0;
+			int minDistance = Integer.MAX_VALUE;
+			boolean isAncestor = false;
+			for (int a = 0; a < ancestors2.length; a++) {
+				int ancestor = ancestors2[a];
+				if (ancestor == t1) {
+					isAncestor = true;
+					break;
+				}
+				if (distances1[ancestor] == 0)
+					continue;
+				int distance = distances1[ancestor] - 1 + ancestorDistances2[a];
+				// ancestors are sorted, so the lowest accession number wins among equal distances
+				if (distance < minDistance) {
+					minDistance = distance;
+					lca = ancestor;
+					lcaDistance1 = distances1[ancestor] - 1;
+					lcaDistance2 = ancestorDistances2[a];
+				}
+			}
+			if (isAncestor || lca < 0)
+				continue;
+
+			// do not store "all" as LCA
+			int depth2 = graph.getDepthAt(t2);
+			if (depth1 >= 0 && depth2 >= 0 && depth1 + depth2 < minDistance)
+				continue;
+
+			int depthLCA = graph.getDepthAt(lca);
+			if (depthLCA < 0)
+				depthLCA = 0;
+
+			bw.write(acc1 + ";" + formatAccession(graph.getAccessionAt(t2)) + ";" + formatAccession(graph.getAccessionAt(lca))
+					+ ";" + lcaDistance1 + ";" + lcaDistance2 + ";" + depthLCA + "\n");
+		}
+
+		for (int a = 0; a < ancestors1.length; a++)
+			distances1[ancestors1[a]] = 0;
 	}
 
 
 	/**
-	 *
-	 * @param parents1
-	 * @param parents2
+	 * Returns the seven-digit accession number of a GO term, without "GO:".
+	 * @param accession
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
-	public static TreeSet<String> findCommonAncestors (TreeSet<String> parents1, TreeSet<String> parents2) {
-		if (parents1 == null || parents1.size() == 0
-				|| parents2 == null || parents2.size() == 0)
-			return new TreeSet<String>();
-
-		TreeSet<String> result = (TreeSet<String>)parents1.clone();
-		result.retainAll(parents2);
-		return result;
+	static String formatAccession (int accession) {
+		String acc = String.valueOf(accession);
+		while (acc.length() < 7)
+			acc = "0" + acc;
+		return acc;
 	}
 
 
 	/**
-	 *
-	 * @param child1
-	 * @param child2
-	 * @return
+	 * Counts one more processed term and prints progress in steps of 5%.
+	 * @param total
 	 */
-	public static String findLowestCommonAncestors (String child1, String child2) {
-		TreeSet<String> parents1 = childs2Parents.get(child1);
-		TreeSet<String> parents2 = childs2Parents.get(child2);
-		TreeSet<String> commonAncestors = findCommonAncestors(parents1, parents2);
-		int mindist = Integer.MAX_VALUE;
-		String lca = "all";
-		for (String ca : commonAncestors) {
-			int dist = getCombinedDistance(child1, child2, ca);
-			if (dist < mindist) {
-				mindist = dist;
-				lca = ca;
-			}
+	private static synchronized void reportProgress (int total) {
+		processedTerms++;
+		int before = (int)((long)(processedTerms - 1) * 20 / total);
+		int now = (int)((long)processedTerms * 20 / total);
+		if (now > before)
+			System.err.print(" [" + (now * 5) + "%]");
+	}
+
+
+	/**
+	 * Computes the LCAs of all pairs of terms in the graph, using the given number of threads.
+	 * @param graph
+	 * @param outfile - base name of the output files, each thread writes to <tt>outfile.partN</tt>
+	 * @param numberOfThreads
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void calculateLCAs (GOGraph graph, String outfile, int numberOfThreads) throws IOException, InterruptedException {
+		processedTerms = 0;
+		Worker[] workers = new Worker[numberOfThreads];
+		for (int w = 0; w < numberOfThreads; w++) {
+			workers[w] = new Worker(graph, w, numberOfThreads, new File(outfile + ".part" + (w + 1)));
+			workers[w].start();
 		}
-		return lca;
+		for (Worker worker: workers)
+			worker.join();
+		System.err.println();
+		for (Worker worker: workers)
+			if (worker.exception != null)
+				throw worker.exception;
 	}
 
 
@@ -106,137 +193,26 @@ public class CalculateLCAs {
 	 * @param args
 	 */
 	public static void main (String[] args) {
-		//Calendar nowCal = Calendar.getInstance();
-		//Date nowDate = nowCal.getTime();
-		//System.err.println("# Start reading file:  " + nowDate.toString());
+		if (args.length < 2) {
+			System.err.println("Usage: java CalculateLCAs <GO2GO file> <outfile> [threads]");
+			System.exit(1);
+		}
 
 		String file = args[0];
 		String outfile = args[1];
-		distancesChild2Parents = new HashMap<String, Integer>();
-		childs2Parents = new HashMap<String, TreeSet<String>>();
-		try {
-			String line;
-			BufferedReader br = new BufferedReader(new FileReader(new File(file)));
-			while ((line = br.readLine()) != null) {
-				// line= parent;child;dist
-				String[] cols = line.split(";");
-				String parent = cols[0];
-				String child = cols[1];
-				int dist = Integer.parseInt(cols[2]);
-
-				allIDs.add(parent);
-				allIDs.add(child);
-
-				// keep the smallest distance between any child and parent
-				// key= child;parent
-				String key = child + ";" + parent;
-				if (distancesChild2Parents.containsKey(key)) {
-					int olddist = distancesChild2Parents.get(key).intValue();
-					if (dist < olddist)
-						distancesChild2Parents.put(key, new Integer(dist));
-				} else {
-					distancesChild2Parents.put(key, new Integer(dist));
-				}
-
-				// keep all parents for all childs for easier lookup
-				if (childs2Parents.containsKey(child)) {
-					TreeSet<String> parents = childs2Parents.get(child);
-					parents.add(parent);
-					childs2Parents.put(child, parents);
-				} else {
-					TreeSet<String> parents = new TreeSet<String>();
-					parents.add(parent);
-					childs2Parents.put(child, parents);
-				}
-
-			}
-			br.close();
-		} catch (IOException ioe) { }
-
-		System.err.println("# Found " + distancesChild2Parents.size() + " distances");
-		System.err.println("# Found " + childs2Parents.size() + " childs with parents");
+		if (args.length > 2)
+			threads = Integer.parseInt(args[2]);
 
-		int pairs = allIDs.size() * allIDs.size();
-		int paircounter = 0;
-		int oldpercenti = -100;
-		int part = 1;
-
-		File OUTFILE = new File(outfile + ".part" + part);
 		try {
-			BufferedWriter bw = new BufferedWriter(new FileWriter(OUTFILE));
-
-			for (String child1 : allIDs) {
-				// do not store distances for ROOT
-				if (child1.startsWith("obsolete_"))
-					continue;
-				if (child1.startsWith("all"))
-					continue;
-
-				for (String child2 : allIDs) {
-					paircounter++;
-					float percent = (float) paircounter / (float) pairs * 100;
-					int percenti = Math.round(percent);
-					if ((percenti % 5) == 0) {
-						if (percenti != oldpercenti) {
-							System.err.print(" [" + percenti + "%]");
-							oldpercenti = percenti;
-							bw.close();
-							part++;
-							OUTFILE = new File(outfile + ".part" + part);
-							bw = new BufferedWriter(new FileWriter(OUTFILE));
-						}
-					}
+			GOGraph graph = GOGraph.loadFromGO2GOFile(file);
+			System.err.println("# Found " + graph.size() + " terms");
 
-					if (child1.equals(child2))
-						continue;
-
-					if (child2.startsWith("obsolete_"))
-						continue;
-					if (child2.startsWith("all"))
-						continue;
-
-					if (done.contains(child2))
-						continue;
-
-					// do not store direct paths when one is the parent of
-					// another
-					String key = child1 + ";" + child2;
-					if (distancesChild2Parents.containsKey(key))
-						continue;
-					// if (done.contains(key)) continue;
-					key = child2 + ";" + child1;
-					if (distancesChild2Parents.containsKey(key))
-						continue;
-					// if (done.contains(key)) continue;
-
-					// do not store "all" as LCA
-					String tlca = findLowestCommonAncestors(child1, child2);
-					if (tlca.equals("all"))
-						continue;
-					int dist1 = getDistance(child1, tlca);
-					int dist2 = getDistance(child2, tlca);
-					int dlca = getDistance(tlca, "all");
-					if (dlca == Integer.MAX_VALUE)
-						dlca = 0;
-					int dist = getCombinedDistance(child1, child2, tlca);
-					if (dist < Integer.MAX_VALUE) {
-						bw.write(child1.substring(3) + ";" + child2.substring(3) + ";" + tlca.substring(3) + ";" + dist1 + ";" + dist2 + ";" + dlca + "\n");
-						//System.out.println(child1 + ";" + child2 + ";" + tlca + ";" + dist1 + ";" + dist2 + ";" + dlca);
-					}
-
-					// store only one direction
-					//done.add(key);
-
-				} // for child2
-
-				done.add(child1);
-			} // for child1
-
-			bw.close();
+			calculateLCAs(graph, outfile, threads);
 
 		} catch (IOException ioe) {
 			ioe.printStackTrace();
+		} catch (InterruptedException ie) {
+			ie.printStackTrace();
 		}
-
 	}
 }
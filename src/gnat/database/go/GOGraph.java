@@ -0,0 +1,488 @@
+package gnat.database.go;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory representation of the Gene Ontology, for computing distances between GO terms
+ * without database access.
+ * <br><br>
+ * Terms are indexed by int; for each term, all ancestors are stored as a sorted array of term
+ * indices together with the shortest distance to each ancestor, and the depth of each term
+ * (shortest distance to the root, &quot;all&quot;) is kept in an array. Lowest common ancestors
+ * are found by merging the ancestor arrays of two terms.
+ * <br><br>
+ * The graph can be loaded from the GO2GO file (<tt>parent;child;distance</tt>, the transitive
+ * closure also imported by {@link ImportGO2GO} and read by {@link CalculateLCAs}), or from
+ * an OBO file, using is_a and part_of relationships.
+ * <br><br>
+ * Distances are the same as those computed by {@link GOAccess#getDistance(String, String)}
+ * from the GO2GO and LCA tables.
+ * <br><br>
+ * Instances are immutable and can be shared by multiple threads.
+ */
+public class GOGraph {
+
+	/** GO accession numbers (numerals) of all terms, sorted; the position of an accession is its index. */
+	private final int[] accessions;
+
+	/** For each term, the sorted indices of all its ancestors (not including the root). */
+	private final int[][] ancestors;
+
+	/** For each term, the shortest distance to each of its ancestors, parallel to <tt>ancestors</tt>. */
+	private final int[][] ancestorDistances;
+
+	/** For each term, the shortest distance to the root, or -1 if unknown. */
+	private final int[] depths;
+
+
+	/**
+	 * Builds the graph from the shortest distances of each term to its ancestors.
+	 * @param child2ancestors - maps each term to all its ancestors and their distance; the root is -1
+	 */
+	private GOGraph (Map<Integer, Map<Integer, Integer>> child2ancestors) {
+		Map<Integer, Boolean> allTerms = new HashMap<Integer, Boolean>();
+		for (Map.Entry<Integer, Map<Integer, Integer>> entry: child2ancestors.entrySet()) {
+			allTerms.put(entry.getKey(), true);
+			for (int ancestor: entry.getValue().keySet())
+				if (ancestor != ROOT)
+					allTerms.put(ancestor, true);
+		}
+
+		accessions = new int[allTerms.size()];
+		int t = 0;
+		for (int acc: allTerms.keySet())
+			accessions[t++] = acc;
+		Arrays.sort(accessions);
+
+		ancestors = new int[accessions.length][];
+		ancestorDistances = new int[accessions.length][];
+		depths = new int[accessions.length];
+		for (t = 0; t < accessions.length; t++) {
+			Map<Integer, Integer> ancestorMap = child2ancestors.get(accessions[t]);
+			if (ancestorMap == null) {
+				ancestors[t] = new int[0];
+				ancestorDistances[t] = new int[0];
+				depths[t] = -1;
+				continue;
+			}
+
+			Integer depth = ancestorMap.get(ROOT);
+			depths[t] = depth != null ? depth : -1;
+
+			int[] indices = new int[ancestorMap.size() - (depth != null ? 1 : 0)];
+			int a = 0;
+			for (int ancestor: ancestorMap.keySet())
+				if (ancestor != ROOT)
+					indices[a++] = getIndex(ancestor);
+			Arrays.sort(indices);
+			int[] distances = new int[indices.length];
+			for (a = 0; a < indices.length; a++)
+				distances[a] = ancestorMap.get(accessions[indices[a]]);
+
+			ancestors[t] = indices;
+			ancestorDistances[t] = distances;
+		}
+	}
+
+
+	/** Accession used for the root, &quot;all&quot;, while loading. */
+	private static final int ROOT = -1;
+
+
+	/**
+	 * Returns the index of a term, or a negative number if the term is not in the graph.
+	 * @param accession - GO accession numeral
+	 * @return
+	 */
+	private int getIndex (int accession) {
+		return Arrays.binarySearch(accessions, accession);
+	}
+
+
+	/**
+	 * Checks whether the graph contains the given term.
+	 * @param accession - GO accession numeral, see {@link GOAccess#makeGOAccessionNumeral(String)}
+	 * @return
+	 */
+	public boolean contains (int accession) {
+		return getIndex(accession) >= 0;
+	}
+
+
+	/**
+	 * Returns the number of terms in the graph.
+	 * @return
+	 */
+	public int size () {
+		return accessions.length;
+	}
+
+
+	/**
+	 * Returns the accession numeral of the term with the given index, 0 &lt;= index &lt; {@link #size()}.
+	 * Terms are indexed in the order of their accession numbers.
+	 * @param index
+	 * @return
+	 */
+	int getAccessionAt (int index) {
+		return accessions[index];
+	}
+
+
+	/**
+	 * Returns the sorted indices of all ancestors of the term with the given index.
+	 * The array is shared and must not be changed.
+	 * @param index
+	 * @return
+	 */
+	int[] getAncestorIndicesAt (int index) {
+		return ancestors[index];
+	}
+
+
+	/**
+	 * Returns the shortest distances to all ancestors of the term with the given index,
+	 * parallel to {@link #getAncestorIndicesAt(int)}. The array is shared and must not be changed.
+	 * @param index
+	 * @return
+	 */
+	int[] getAncestorDistancesAt (int index) {
+		return ancestorDistances[index];
+	}
+
+
+	/**
+	 * Returns the depth of the term with the given index, or -1 if unknown.
+	 * @param index
+	 * @return
+	 */
+	int getDepthAt (int index) {
+		return depths[index];
+	}
+
+
+	/**
+	 * Returns the shortest distance of a term to the root, or -1 if unknown.
+	 * @param accession
+	 * @return
+	 */
+	public int getDepth (int accession) {
+		int t = getIndex(accession);
+		return t >= 0 ? depths[t] : -1;
+	}
+
+
+	/**
+	 * Returns the shortest distance from a term to one of its ancestors, or -1 if
+	 * <tt>ancestor</tt> is not an ancestor of <tt>term</tt>.
+	 * @param term
+	 * @param ancestor
+	 * @return
+	 */
+	public int getAncestorDistance (int term, int ancestor) {
+		int t = getIndex(term);
+		int a = getIndex(ancestor);
+		if (t < 0 || a < 0) return -1;
+		return getAncestorDistanceByIndex(t, a);
+	}
+
+
+	/**
+	 * Same as {@link #getAncestorDistance(int, int)}, using term indices.
+	 */
+	private int getAncestorDistanceByIndex (int t, int a) {
+		int pos = Arrays.binarySearch(ancestors[t], a);
+		return pos >= 0 ? ancestorDistances[t][pos] : -1;
+	}
+
+
+	/**
+	 * Returns the lowest common ancestor of two terms: the common ancestor with the shortest
+	 * combined distance to both terms; among equally distant ancestors, the one with the lowest
+	 * accession number. Returns -1 if the terms have no common ancestor other than the root.
+	 * <br>
+	 * These are the LCAs stored by {@link CalculateLCAs}.
+	 * @param accession1
+	 * @param accession2
+	 * @return accession numeral of the LCA, or -1
+	 */
+	public int getLowestCommonAncestor (int accession1, int accession2) {
+		int t1 = getIndex(accession1);
+		int t2 = getIndex(accession2);
+		if (t1 < 0 || t2 < 0) return -1;
+		int lca = getLowestCommonAncestorIndex(t1, t2);
+		return lca >= 0 ? accessions[lca] : -1;
+	}
+
+
+	/**
+	 * Returns the index of the LCA of two terms given by their indices, or -1, see
+	 * {@link #getLowestCommonAncestor(int, int)}.
+	 */
+	private int getLowestCommonAncestorIndex (int t1, int t2) {
+		int[] ancestors1 = ancestors[t1];
+		int[] ancestors2 = ancestors[t2];
+		int lca = -1;
+		int minDistance = Integer.MAX_VALUE;
+		int a1 = 0, a2 = 0;
+		while (a1 < ancestors1.length && a2 < ancestors2.length) {
+			if (ancestors1[a1] < ancestors2[a2]) {
+				a1++;
+			} else if (ancestors1[a1] > ancestors2[a2]) {
+				a2++;
+			} else {
+				int distance = ancestorDistances[t1][a1] + ancestorDistances[t2][a2];
+				if (distance < minDistance) {
+					minDistance = distance;
+					lca = ancestors1[a1];
+				}
+				a1++;
+				a2++;
+			}
+		}
+
+		// the root is a better LCA if it is closer to both terms
+		if (lca >= 0 && depths[t1] >= 0 && depths[t2] >= 0 && depths[t1] + depths[t2] < minDistance)
+			return -1;
+
+		return lca;
+	}
+
+
+	/**
+	 * Calculates the distance of two GO terms, see {@link GOAccess#getDistance(String, String)}:
+	 * <pre>
+	 *                         min.pathlen (g1, g2)
+	 * dist(g1,g2) = ------------------------------------------
+	 *                depth(lca) + depth(g1) + depth(g2)
+	 * </pre>
+	 * where depths of g1 and g2 are measured via their LCA.
+	 *
+	 * @param accession1
+	 * @param accession2
+	 * @return the distance, or Float.POSITIVE_INFINITY if the terms are unrelated or unknown
+	 */
+	public float getDistance (int accession1, int accession2) {
+		if (accession1 == accession2) return 0.0f;
+
+		int t1 = getIndex(accession1);
+		int t2 = getIndex(accession2);
+		if (t1 < 0 || t2 < 0)
+			return Float.POSITIVE_INFINITY;
+
+		// term 1 ancestor of term 2?
+		int directDistance = getAncestorDistanceByIndex(t2, t1);
+		if (directDistance >= 0)
+			return (float)directDistance / (float)(3 * getKnownDepthAt(t1) + directDistance);
+
+		// term 2 ancestor of term 1?
+		directDistance = getAncestorDistanceByIndex(t1, t2);
+		if (directDistance >= 0)
+			return (float)directDistance / (float)(3 * getKnownDepthAt(t2) + directDistance);
+
+		int lca = getLowestCommonAncestorIndex(t1, t2);
+		if (lca < 0)
+			return Float.POSITIVE_INFINITY;
+
+		int distance1 = getAncestorDistanceByIndex(t1, lca);
+		int distance2 = getAncestorDistanceByIndex(t2, lca);
+		int depthLCA = depths[lca] >= 0 ? depths[lca] : 0;
+		return (float)(distance1 + distance2)
+			/ ( (float)depthLCA + (float)(depthLCA + distance1) + (float)(depthLCA + distance2) );
+	}
+
+
+	/**
+	 * Returns the depth of the term with the given index; if it is unknown, the depth via the closest
+	 * ancestor with a known depth, or else the distance to its most distant ancestor (0 if it has none).
+	 */
+	private int getKnownDepthAt (int t) {
+		if (depths[t] >= 0) return depths[t];
+		int depth = -1;
+		int top = 0;
+		for (int a = 0; a < ancestors[t].length; a++) {
+			int distance = ancestorDistances[t][a];
+			int ancestorDepth = depths[ancestors[t][a]];
+			if (ancestorDepth >= 0 && (depth < 0 || distance + ancestorDepth < depth))
+				depth = distance + ancestorDepth;
+			if (distance > top)
+				top = distance;
+		}
+		return depth >= 0 ? depth : top;
+	}
+
+
+	/**
+	 * Calculates the distance of two GO terms given as accession numbers (&quot;GO:0005575&quot;)
+	 * or numerals (&quot;5575&quot;).
+	 * @param acc1
+	 * @param acc2
+	 * @return
+	 */
+	public float getDistance (String acc1, String acc2) {
+		return getDistance(GOAccess.makeGOAccessionNumeral(acc1), GOAccess.makeGOAccessionNumeral(acc2));
+	}
+
+
+	/**
+	 * Loads the graph from a file, either in OBO format (file name ending in <tt>.obo</tt>)
+	 * or in GO2GO format.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static GOGraph loadFromFile (String filename) throws IOException {
+		if (filename.toLowerCase().endsWith(".obo"))
+			return loadFromOBOFile(filename);
+		return loadFromGO2GOFile(filename);
+	}
+
+
+	/**
+	 * Loads the graph from a GO2GO file: one line per pair of terms, <tt>parent;child;distance</tt>,
+	 * covering all ancestors of each term, including the root &quot;all&quot;. Obsolete terms are
+	 * skipped. If a pair occurs more than once, the shortest distance is kept.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static GOGraph loadFromGO2GOFile (String filename) throws IOException {
+		Map<Integer, Map<Integer, Integer>> child2ancestors = new HashMap<Integer, Map<Integer, Integer>>();
+
+		BufferedReader reader = new BufferedReader(new FileReader(new File(filename)));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] cols = line.split(";");
+				if (cols.length < 3) continue;
+				if (cols[0].startsWith("obsolete") || cols[1].startsWith("obsolete"))
+					continue;
+
+				int parent = cols[0].equals("all") ? ROOT : GOAccess.makeGOAccessionNumeral(cols[0]);
+				int child = GOAccess.makeGOAccessionNumeral(cols[1]);
+				// the DB import stores the root as 0
+				if (parent == 0) parent = ROOT;
+				if (child <= 0 || parent == child) continue;
+				int distance = Integer.parseInt(cols[2].trim());
+
+				Map<Integer, Integer> ancestorMap = child2ancestors.get(child);
+				if (ancestorMap == null) {
+					ancestorMap = new HashMap<Integer, Integer>();
+					child2ancestors.put(child, ancestorMap);
+				}
+				Integer oldDistance = ancestorMap.get(parent);
+				if (oldDistance == null || distance < oldDistance)
+					ancestorMap.put(parent, distance);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return new GOGraph(child2ancestors);
+	}
+
+
+	/**
+	 * Loads the graph from an OBO file, using is_a and part_of relationships between
+	 * non-obsolete terms. Terms without parents (the roots of each ontology) are children
+	 * of the root &quot;all&quot;.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static GOGraph loadFromOBOFile (String filename) throws IOException {
+		Map<Integer, List<Integer>> child2parents = new HashMap<Integer, List<Integer>>();
+
+		BufferedReader reader = new BufferedReader(new FileReader(new File(filename)));
+		try {
+			String line;
+			boolean inTerm = false;
+			boolean obsolete = false;
+			int id = -1;
+			List<Integer> parents = new LinkedList<Integer>();
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.startsWith("[")) {
+					if (inTerm && id > 0 && !obsolete)
+						child2parents.put(id, parents);
+					inTerm = line.equals("[Term]");
+					obsolete = false;
+					id = -1;
+					parents = new LinkedList<Integer>();
+				} else if (!inTerm) {
+					continue;
+				} else if (line.startsWith("id:")) {
+					id = GOAccess.makeGOAccessionNumeral(line.substring(3).trim());
+				} else if (line.startsWith("is_obsolete:")) {
+					obsolete = line.endsWith("true");
+				} else if (line.startsWith("is_a:")) {
+					parents.add(GOAccess.makeGOAccessionNumeral(getOBOTermId(line.substring(5))));
+				} else if (line.startsWith("relationship:")) {
+					String[] cols = line.substring(13).trim().split("\\s+");
+					if (cols.length > 1 && cols[0].equals("part_of"))
+						parents.add(GOAccess.makeGOAccessionNumeral(getOBOTermId(cols[1])));
+				}
+			}
+			if (inTerm && id > 0 && !obsolete)
+				child2parents.put(id, parents);
+		} finally {
+			reader.close();
+		}
+
+		// transitive closure: breadth-first search from each term to all its ancestors
+		Map<Integer, Map<Integer, Integer>> child2ancestors = new HashMap<Integer, Map<Integer, Integer>>();
+		for (int term: child2parents.keySet()) {
+			Map<Integer, Integer> ancestorMap = new HashMap<Integer, Integer>();
+			LinkedList<Integer> queue = new LinkedList<Integer>();
+			queue.add(term);
+			Map<Integer, Integer> distances = new HashMap<Integer, Integer>();
+			distances.put(term, 0);
+			while (!queue.isEmpty()) {
+				int current = queue.removeFirst();
+				int distance = distances.get(current);
+				boolean hasParent = false;
+				List<Integer> parents = child2parents.get(current);
+				if (parents != null) {
+					for (int parent: parents) {
+						if (!child2parents.containsKey(parent)) continue;
+						hasParent = true;
+						if (!distances.containsKey(parent)) {
+							distances.put(parent, distance + 1);
+							ancestorMap.put(parent, distance + 1);
+							queue.add(parent);
+						}
+					}
+				}
+				if (!hasParent && !ancestorMap.containsKey(ROOT))
+					ancestorMap.put(ROOT, distance + 1);
+			}
+			child2ancestors.put(term, ancestorMap);
+		}
+
+		return new GOGraph(child2ancestors);
+	}
+
+
+	/**
+	 * Returns the term ID from the value of an OBO tag, cutting off comments and modifiers.
+	 * @param value
+	 * @return
+	 */
+	private static String getOBOTermId (String value) {
+		value = value.trim();
+		int end = 0;
+		while (end < value.length() && !Character.isWhitespace(value.charAt(end)) && value.charAt(end) != '!'
+				&& value.charAt(end) != '{')
+			end++;
+		return value.substring(0, end);
+	}
+
+}
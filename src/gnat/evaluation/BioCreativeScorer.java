@@ -0,0 +1,446 @@
+package gnat.evaluation;
+
+import gnat.representation.Context;
+import gnat.representation.IdentifiedGene;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Scores a normalized gene list the same way as the BioCreative 2 GN task script,
+ * <tt>bc2scoring.py</tt>, but in-process and directly on a {@link Context}.
+ * <br><br>
+ * The gold standard is loaded once per scorer. Gold and predicted genes are keyed by the pair of
+ * int PubMed and gene IDs; if a pair occurs several times, the last line wins, as in the script.
+ * A prediction that matches a gold pair is a thresholded true positive if its excerpt has a similarity
+ * above {@link #SIMILARITY_THRESHOLD} to one of the gold excerpts; similarities are computed on the
+ * UTF-8 bytes of the excerpts, like the script does on the raw lines.
+ * <br><br>
+ * {@link #score(Context)} computes the similarity of each prediction once; the resulting {@link ScoredRun}
+ * then evaluates any number of minimum confidence scores, as if only predictions with at least
+ * that confidence had been written to the test file. This gives precision/recall curves,
+ * for instance over the <tt>disambiguationThreshold</tt>, without re-running the pipeline or the script.
+ * <br><br>
+ * Call:<br>
+ * java gnat.evaluation.BioCreativeScorer goldstandard testfile
+ * <br>
+ * prints the same report as <tt>python bc2scoring.py goldstandard testfile</tt>.
+ *
+ */
+public class BioCreativeScorer {
+
+	/** An excerpt has to be more similar than this to a gold excerpt to count as a thresholded true positive. */
+	public static final double SIMILARITY_THRESHOLD = 0.55;
+
+	/** Line without PubMed and gene ID. */
+	private static final int SKIPPED = 0;
+	/** Line with an invalid PubMed or gene ID. */
+	private static final int ERROR = 1;
+	/** Line with valid IDs. */
+	private static final int VALID = 2;
+
+	/** Excerpts for each pair of PubMed and gene ID, see {@link #getKey(int, int)}. */
+	private final Map<Long, String[]> gold = new HashMap<Long, String[]>();
+
+	private int goldFileErrors = 0;
+
+
+	/**
+	 * A line of the test file, with its confidence score and whether it matches the gold standard.
+	 */
+	private static class Prediction {
+		float confidence;
+		int status;
+		long key;
+		boolean missingExcerpt;
+		/** Excerpt is similar enough to a gold excerpt for the same PubMed and gene ID. */
+		boolean similar;
+	}
+
+
+	/**
+	 * Counts for one evaluation, with the same numbers as the report of the script.
+	 */
+	public static class Evaluation {
+		public int truePositives, falsePositives, falseNegatives;
+		public int thresholdedTruePositives, thresholdedFalsePositives, thresholdedFalseNegatives;
+		public int goldFileErrors, testFileErrors, missingExcerpts;
+
+		public double getPrecision () {
+			return precision(truePositives, falsePositives);
+		}
+
+		public double getRecall () {
+			return recall(truePositives, falseNegatives);
+		}
+
+		public double getFMeasure () {
+			double precision = getPrecision();
+			double recall = getRecall();
+			return 2 * precision * recall / (precision + recall);
+		}
+
+		public double getThresholdedPrecision () {
+			return precision(thresholdedTruePositives, thresholdedFalsePositives);
+		}
+
+		public double getThresholdedRecall () {
+			return recall(thresholdedTruePositives, thresholdedFalseNegatives);
+		}
+
+		/**
+		 * Returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2.
+		 * @return
+		 */
+		public double[] toArray () {
+			return new double[]{getFMeasure(), getPrecision(), getRecall()};
+		}
+
+		private static double precision (int tp, int fp) {
+			if (tp + fp == 0) return 1;
+			return (double)tp / (tp + fp);
+		}
+
+		private static double recall (int tp, int fn) {
+			if (tp + fn == 0) return 1;
+			return (double)tp / (tp + fn);
+		}
+
+		/**
+		 * Returns the report in the same format as the script.
+		 */
+		@Override public String toString () {
+			return "\n\n"
+				+ "F-Measure:   " + format(getFMeasure(), 6) + "\n"
+				+ "True Positive:   " + String.format("%5d", truePositives) + "\n"
+				+ "False Positive:  " + String.format("%5d", falsePositives) + "\n"
+				+ "False Negative:  " + String.format("%5d", falseNegatives) + "\n"
+				+ "Precision:       " + format(getPrecision(), 3) + "\n"
+				+ "Recall:          " + format(getRecall(), 3) + "\n"
+				+ "Thresholded TP:  " + String.format("%5d", thresholdedTruePositives) + "\n"
+				+ "Thresholded FP:  " + String.format("%5d", thresholdedFalsePositives) + "\n"
+				+ "Thresholded FN:  " + String.format("%5d", thresholdedFalseNegatives) + "\n"
+				+ "Thresholded P:   " + format(getThresholdedPrecision(), 3) + "\n"
+				+ "Thresholded R:   " + format(getThresholdedRecall(), 3) + "\n"
+				+ "Gold File Errors:" + String.format("%5d", goldFileErrors) + "\n"
+				+ "Test File Errors:" + String.format("%5d", testFileErrors) + "\n"
+				+ "Missing Excerpts:" + String.format("%5d", missingExcerpts);
+		}
+
+		/**
+		 * Formats like <tt>%5.Nf</tt> in Python: rounds the exact value of the double, ties to even.
+		 */
+		private static String format (double value, int decimals) {
+			String result;
+			if (Double.isNaN(value) || Double.isInfinite(value))
+				result = String.valueOf(value);
+			else
+				result = new BigDecimal(value).setScale(decimals, RoundingMode.HALF_EVEN).toPlainString();
+			while (result.length() < 5)
+				result = " " + result;
+			return result;
+		}
+	}
+
+
+	/**
+	 * Predictions of one run, with similarities computed, that can be evaluated for different minimum confidence scores.
+	 */
+	public class ScoredRun {
+		private final List<Prediction> predictions;
+
+		private ScoredRun (List<Prediction> predictions) {
+			this.predictions = predictions;
+		}
+
+		/**
+		 * Evaluates all predictions.
+		 * @return
+		 */
+		public Evaluation evaluate () {
+			return evaluate(Float.NEGATIVE_INFINITY);
+		}
+
+		/**
+		 * Evaluates the predictions that have at least the given confidence score.
+		 * @param minConfidence
+		 * @return
+		 */
+		public Evaluation evaluate (float minConfidence) {
+			Evaluation evaluation = new Evaluation();
+			evaluation.goldFileErrors = goldFileErrors;
+
+			// latest prediction for each pair of IDs: similar or not
+			Map<Long, Boolean> predicted = new HashMap<Long, Boolean>();
+			for (Prediction prediction: predictions) {
+				if (!(prediction.confidence >= minConfidence)) continue;
+				if (prediction.missingExcerpt)
+					evaluation.missingExcerpts++;
+				if (prediction.status == ERROR)
+					evaluation.testFileErrors++;
+				if (prediction.status != VALID) continue;
+				predicted.put(prediction.key, prediction.similar);
+			}
+
+			for (Map.Entry<Long, Boolean> entry: predicted.entrySet()) {
+				if (gold.containsKey(entry.getKey())) {
+					evaluation.truePositives++;
+					if (entry.getValue().booleanValue()) {
+						evaluation.thresholdedTruePositives++;
+					} else {
+						evaluation.thresholdedFalsePositives++;
+						evaluation.thresholdedFalseNegatives++;
+					}
+				} else {
+					evaluation.falsePositives++;
+					evaluation.thresholdedFalsePositives++;
+				}
+			}
+			evaluation.falseNegatives = gold.size() - evaluation.truePositives;
+			evaluation.thresholdedFalseNegatives += evaluation.falseNegatives;
+
+			return evaluation;
+		}
+
+		/**
+		 * Evaluates the predictions once for each minimum confidence score, for instance for a precision/recall curve.
+		 * @param minConfidences
+		 * @return an evaluation for each minimum confidence score, in the same order
+		 */
+		public Evaluation[] evaluate (float[] minConfidences) {
+			Evaluation[] evaluations = new Evaluation[minConfidences.length];
+			for (int t = 0; t < minConfidences.length; t++)
+				evaluations[t] = evaluate(minConfidences[t]);
+			return evaluations;
+		}
+	}
+
+
+	/**
+	 * Loads the gold standard: tab-separated PubMed ID, gene ID, and one or more excerpts per line.
+	 * @param goldFile
+	 * @throws IOException
+	 */
+	public BioCreativeScorer (String goldFile) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(goldFile), "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] cols = line.trim().split("\t", -1);
+			if (cols.length < 3) {
+				goldFileErrors++;
+				continue;
+			}
+			try {
+				long key = getKey(Integer.parseInt(cols[0].trim()), Integer.parseInt(cols[1].trim()));
+				String[] excerpts = new String[cols.length - 2];
+				System.arraycopy(cols, 2, excerpts, 0, excerpts.length);
+				gold.put(key, excerpts);
+			} catch (NumberFormatException nfe) {
+				goldFileErrors++;
+			}
+		}
+		reader.close();
+	}
+
+
+	/**
+	 * Computes the similarities for all genes identified in the context. Each identified gene counts
+	 * as a line of the test file: text ID, gene ID, name, and confidence score.
+	 * @param predictedContext
+	 * @return
+	 */
+	public ScoredRun score (Context predictedContext) {
+		List<Prediction> predictions = new ArrayList<Prediction>();
+		for (IdentifiedGene gene: predictedContext.getEntitiesIdentifiedAsGene()) {
+			String line = gene.getRecognizedEntity().getText().getID()
+				+ "\t" + gene.getGene().getID()
+				+ "\t" + gene.getName();
+			Float confidence = gene.getConfidenceScore();
+			predictions.add(parsePrediction(line, confidence != null ? confidence.floatValue() : 1.0f));
+		}
+		return new ScoredRun(predictions);
+	}
+
+
+	/**
+	 * Computes the similarities for all lines of a test file: PubMed ID, gene ID, excerpt, and an
+	 * optional confidence score (1.0 if missing).
+	 * @param testFile
+	 * @return
+	 * @throws IOException
+	 */
+	public ScoredRun score (String testFile) throws IOException {
+		List<Prediction> predictions = new ArrayList<Prediction>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(testFile), "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			float confidence = 1.0f;
+			String[] cols = line.trim().split("\t", -1);
+			if (cols.length > 3) {
+				try {
+					confidence = Float.parseFloat(cols[3].trim());
+				} catch (NumberFormatException nfe) {
+					// no confidence score
+				}
+			}
+			predictions.add(parsePrediction(line, confidence));
+		}
+		reader.close();
+		return new ScoredRun(predictions);
+	}
+
+
+	/**
+	 * Evaluates all genes identified in the context.
+	 * @param predictedContext
+	 * @return
+	 */
+	public Evaluation evaluate (Context predictedContext) {
+		return score(predictedContext).evaluate();
+	}
+
+
+	/**
+	 * Evaluates all lines of a test file.
+	 * @param testFile
+	 * @return
+	 * @throws IOException
+	 */
+	public Evaluation evaluate (String testFile) throws IOException {
+		return score(testFile).evaluate();
+	}
+
+
+	/**
+	 * Parses a line of the test file and computes its similarity to the gold excerpts.
+	 * @param line
+	 * @param confidence
+	 * @return
+	 */
+	private Prediction parsePrediction (String line, float confidence) {
+		Prediction prediction = new Prediction();
+		prediction.confidence = confidence;
+		prediction.status = SKIPPED;
+
+		String[] cols = line.trim().split("\t", -1);
+		String excerpt = "";
+		if (cols.length < 3) {
+			prediction.missingExcerpt = true;
+			if (cols.length < 2)
+				return prediction;
+		} else
+			excerpt = cols[2];
+
+		try {
+			prediction.key = getKey(Integer.parseInt(cols[0].trim()), Integer.parseInt(cols[1].trim()));
+			prediction.status = VALID;
+		} catch (NumberFormatException nfe) {
+			prediction.status = ERROR;
+			return prediction;
+		}
+
+		String[] excerpts = gold.get(prediction.key);
+		if (excerpts != null)
+			prediction.similar = similarity(excerpts, excerpt) > SIMILARITY_THRESHOLD;
+		return prediction;
+	}
+
+
+	/**
+	 * Returns one key for a pair of IDs.
+	 */
+	private static long getKey (int pubmedId, int geneId) {
+		return ((long)pubmedId << 32) | (geneId & 0xffffffffL);
+	}
+
+
+	/**
+	 * Returns the highest similarity of the excerpt to any of the gold excerpts, 1 - 2 * edit distance / sum of lengths,
+	 * but at least 0.
+	 * @param goldExcerpts
+	 * @param excerpt
+	 * @return
+	 */
+	public static double similarity (String[] goldExcerpts, String excerpt) {
+		if (goldExcerpts.length == 0 || excerpt.length() == 0) return 0;
+		byte[] test = getBytes(excerpt);
+		double max = Double.NEGATIVE_INFINITY;
+		for (String goldExcerpt: goldExcerpts) {
+			byte[] g = getBytes(goldExcerpt);
+			double similarity = 1.0 - distance(g, test) * 2.0 / (g.length + test.length);
+			if (similarity > max)
+				max = similarity;
+		}
+		return Math.max(max, 0);
+	}
+
+
+	private static byte[] getBytes (String string) {
+		try {
+			return string.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * Levenshtein distance between a and b, in O(min(|a|,|b|)) space.
+	 */
+	static int distance (byte[] a, byte[] b) {
+		if (a.length > b.length) {
+			byte[] swap = a;
+			a = b;
+			b = swap;
+		}
+		int n = a.length;
+		int[] previous = new int[n + 1];
+		int[] current = new int[n + 1];
+		for (int j = 0; j <= n; j++)
+			current[j] = j;
+		for (int i = 1; i <= b.length; i++) {
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+			current[0] = i;
+			for (int j = 1; j <= n; j++) {
+				int change = previous[j - 1];
+				if (a[j - 1] != b[i - 1])
+					change++;
+				current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), change);
+			}
+		}
+		return current[n];
+	}
+
+
+	/**
+	 *
+	 * @param args
+	 */
+	public static void main (String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: java gnat.evaluation.BioCreativeScorer <goldstandard> <testfile>");
+			System.exit(-1);
+		}
+
+		try {
+			BioCreativeScorer scorer = new BioCreativeScorer(args[0]);
+			System.out.println(scorer.evaluate(args[1]));
+		} catch (IOException ioe) {
+			System.err.println("Error with input files, check permissions and existence: " + ioe.getMessage());
+			System.exit(-1);
+		}
+	}
+
+}
@@ -16,7 +16,8 @@ import java.util.Set;
 
 
 /**
- * Offers to run the BioCreative2 GN task python script to evaluate a context of identified genes.
+ * Evaluates a context of identified genes: in-process like the BioCreative2 GN task python script
+ * (see {@link BioCreativeScorer}), or with an external perl script.
  *
  */
 public class NeiEvaluation
@@ -24,8 +25,10 @@ public class NeiEvaluation
 
 
 	/**
+	 * Writes the prediction file and scores it like the BioCreative 2 GN task python script, see {@link BioCreativeScorer}.
 	 * Returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2.
 	 *
+	 * @param scoringScript - not used anymore, the scoring runs in-process
 	 * @throws IOException */
 	public static float[] evaluate (String scoringScript, Context predictedContext, String goldList, String predictionFile) throws IOException{
 		predictedContext.toIdentifiedGeneListInBioCreativeFormat(predictionFile);
@@ -43,44 +46,34 @@ public class NeiEvaluation
 
 
 	/**
-	 * Runs the BioCreative 2 GN task python evaluation script and returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2.
+	 * Scores a prediction file like the BioCreative 2 GN task python evaluation script, see {@link BioCreativeScorer},
+	 * prints the script's report, and returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2.
 	 *
+	 * @param scoringScript - not used anymore, the scoring runs in-process
 	 * @throws IOException */
 	public static float[] evaluate(String scoringScript, String testFile, String goldFile) throws IOException{
-		float[] results = new float[3];
-
-		Process process = Runtime.getRuntime().exec("python " + scoringScript + " "+goldFile + " " + testFile+"");
-
-		InputStreamThread errorStreamThread = new InputStreamThread(process.getErrorStream());
-		errorStreamThread.start();
-
-		InputStreamThread inputStreamThread = new InputStreamThread(process.getInputStream());
-		inputStreamThread.start();
-	    while(!inputStreamThread.ready);
-
-	    BufferedReader reader = new BufferedReader(new StringReader(inputStreamThread.getInput()));
-	    String line = reader.readLine();
-	    while(!line.startsWith("F-Measure"))
-	    	line = reader.readLine();
-
-		String[] parts = line.split(" ");
-		results[0] = Float.parseFloat(parts[parts.length-1]);
-
-		while(!line.startsWith("Precision"))
-	    	line = reader.readLine();
-		parts = line.split(" ");
-		results[1] = Float.parseFloat(parts[parts.length-1]);
+		BioCreativeScorer.Evaluation evaluation = new BioCreativeScorer(goldFile).evaluate(testFile);
+		System.out.println(evaluation);
+		return new float[]{(float)evaluation.getFMeasure(), (float)evaluation.getPrecision(), (float)evaluation.getRecall()};
+	}
 
-		while(!line.startsWith("Recall"))
-	    	line = reader.readLine();
-		parts = line.split(" ");
-		results[2] = Float.parseFloat(parts[parts.length-1]);
 
+	/**
+	 * Scores the context like the BioCreative 2 GN task python evaluation script, once for each minimum confidence score,
+	 * for instance to get a precision/recall curve. Similarities to the gold standard are computed once for all thresholds.
+	 * Returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2 for each threshold.
+	 *
+	 * @throws IOException */
+	public static double[][] evaluate (Context predictedContext, String goldList, float[] minConfidences) throws IOException{
+		BioCreativeScorer.Evaluation[] evaluations = new BioCreativeScorer(goldList).score(predictedContext).evaluate(minConfidences);
+		double[][] results = new double[evaluations.length][];
+		for (int t = 0; t < evaluations.length; t++)
+			results[t] = evaluations[t].toArray();
 		return results;
 	}
 
 	/**
-	 * Runs the BioCreative 2 GN task python evaluation script and returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2.
+	 * Runs a perl evaluation script and returns an array of length 3 with f-measure at index 0, precision at index 1, and recall at index 2.
 	 *
 	 * @throws IOException */
 	public static float[] evaluate_perlscript(String scoringScript, String testFile, String goldFile) throws IOException{
@@ -1,6 +1,7 @@
 package gnat.filter.nei;
 
 import gnat.alignment.Alignment;
+import gnat.alignment.CharAlignment;
 import gnat.filter.Filter;
 import gnat.representation.Context;
 import gnat.representation.Gene;
@@ -24,11 +25,16 @@ import java.util.Set;
  * <br><br>
  * <b>Requirements:</b><br>
  * Needs information on each gene (such as synonysm), this requires a loaded GeneRepository.
+ * <br><br>
+ * With a {@link CharAlignment}, or a plain global {@link Alignment} (which is converted into one), the filter can
+ * be run by several threads at the same time.
  */
 public class AlignmentFilter implements Filter {
 
 	//private GeneRepository geneRepository;
 	private Alignment alignment;
+	/** Thread-safe alignment used instead of <tt>alignment</tt>, if available. */
+	private CharAlignment charAlignment;
 	private float threshold = 0;
 
 	/**
@@ -36,6 +42,15 @@ public class AlignmentFilter implements Filter {
 	 * */
 	public AlignmentFilter (Alignment alignment, float threshold) {
 		this.alignment = alignment;
+		this.charAlignment = CharAlignment.forAlignment(alignment);
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Creates a new filter for a given thread-safe alignment method and a minimum score threshold.
+	 * */
+	public AlignmentFilter (CharAlignment charAlignment, float threshold) {
+		this.charAlignment = charAlignment;
 		this.threshold = threshold;
 	}
 
@@ -48,6 +63,7 @@ public class AlignmentFilter implements Filter {
 	public void filter (Context context, TextRepository textRepository, GeneRepository geneRepository)
 	{
 		Map<String, List<Gene>> closestGeneMap = new HashMap<String, List<Gene>>();
+		Alignment.Workspace workspace = new Alignment.Workspace();
 
 		Iterator<RecognizedEntity> unidentifiedGeneNames = context.getUnidentifiedEntities().iterator();
 		while (unidentifiedGeneNames.hasNext())
@@ -65,7 +81,10 @@ public class AlignmentFilter implements Filter {
 						candidateGenes.add(gene);
 					}
 	            }
-				candidateGenesWithSimilarSynonyms = AlignmentHelper.getAlignedGenes(alignment, recognizedGeneName, candidateGenes, threshold);
+				if (charAlignment != null)
+					candidateGenesWithSimilarSynonyms = AlignmentHelper.getAlignedGenes(charAlignment, recognizedGeneName, candidateGenes, threshold, workspace);
+				else
+					candidateGenesWithSimilarSynonyms = AlignmentHelper.getAlignedGenes(alignment, recognizedGeneName, candidateGenes, threshold);
 				closestGeneMap.put(recognizedGeneName.getName(), candidateGenesWithSimilarSynonyms);
 			}
 
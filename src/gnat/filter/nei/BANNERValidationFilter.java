@@ -1,110 +1,363 @@
-package gnat.filter.nei;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import banner.BannerProperties;
-import banner.Sentence;
-import banner.processing.PostProcessor;
-import banner.tagging.CRFTagger;
-import banner.tagging.Mention;
-import banner.tokenization.Tokenizer;
-
-import gnat.ISGNProperties;
-import gnat.filter.Filter;
-import gnat.representation.Context;
-import gnat.representation.GeneRepository;
-import gnat.representation.RecognizedEntity;
-import gnat.representation.Text;
-import gnat.representation.TextRepository;
-
-/**
- * This filter uses BANNER [1] to validate a recognized gene candidate. If the candidate mention
- * overlaps with a gene mention found by Banner, it will be kept, and thrown out otherwise.
- * 
- * <br><br>
- * <b>Note:</b> The API changed drastically for the latest version of BANNER.
- * This filter uses the latest version from the Sourceforge SVN, which differs
- * from the Jar found on Banner's project page.
- * 
- * <br>
- * [1] http://banner.sourceforge.net
- *
- */
-
-public class BANNERValidationFilter implements Filter {
-	private Tokenizer tokenizer;
-	private PostProcessor postProcessor;
-	private CRFTagger tagger;
-
-	public BANNERValidationFilter() {
-		String propsFile = ISGNProperties.getProperty("bannerProps");
-		File modelFile = new File(ISGNProperties.getProperty("bannerModel"));
-
-		BannerProperties properties = BannerProperties.load(propsFile);
-		this.tokenizer = properties.getTokenizer();
-		try {
-			this.tagger = CRFTagger.load(modelFile, properties.getLemmatiser(), properties.getPosTagger());
-		} catch (IOException e) {
-			System.err.println(e);
-			e.printStackTrace();
-			System.exit(-1);
-		}
-		this.postProcessor = properties.getPostProcessor();
-	}
-
-	@Override
-	public void filter(Context context, TextRepository textRepository, GeneRepository geneRepository) {
-		for (Text text : context.getTexts()){
-			Set<RecognizedEntity> ents = context.getRecognizedEntitiesInText(text);
-
-			Map<String,List<Mention>> sentenceMentions = new HashMap<String,List<Mention>>();
-
-			for (RecognizedEntity e : ents){
-				String sent = e.getText().getSentenceAround(e.getBegin());
-
-				int sentStart = e.getText().getPlainText().indexOf(sent);
-				if (sentStart != -1){
-					if (!sentenceMentions.containsKey(sent)){
-						Sentence sentence = new Sentence(sent);
-						tokenizer.tokenize(sentence);
-						tagger.tag(sentence);
-						if (postProcessor != null)
-							postProcessor.postProcess(sentence);
-
-						List<banner.tagging.Mention> mentions = sentence.getMentions();
-						sentenceMentions.put(sent, mentions);
-					}
-
-					List<Mention> mentions = sentenceMentions.get(sent);
-
-					boolean matchesBannerMention = false;
-					
-					int s1 = e.getBegin();
-					int e1 = e.getEnd()+1;
-					
-					for (Mention m : mentions){
-						int s2 = m.getStartChar() + sentStart;
-						int e2 = m.getEndChar() + sentStart;
-						
-//						System.out.println("\t" + s2 + "\t" + e2 + "\t" + m.getStart() + "\t" + m.getEnd() + "\t" + m.getText());
-
-						// if the candidate overlaps with a mention found by Banner, keep it
-						if ((s1 >= s2 && s1 < e2) || (s2 >= s1 && s2 < e1)){
-							matchesBannerMention = true;
-							break;
-						}						
-					}
-					
-					if (!matchesBannerMention){
-						context.removeRecognizedEntity(e);
-					}
-				}
-			}
-		}
-	}
-}
\ No newline at end of file
+package gnat.filter.nei;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import banner.BannerProperties;
+import banner.Sentence;
+import banner.processing.PostProcessor;
+import banner.tagging.CRFTagger;
+import banner.tagging.Mention;
+import banner.tokenization.Tokenizer;
+
+import gnat.ISGNProperties;
+import gnat.filter.Filter;
+import gnat.representation.Context;
+import gnat.representation.GeneRepository;
+import gnat.representation.RecognizedEntity;
+import gnat.representation.Text;
+import gnat.representation.TextRepository;
+
+/**
+ * This filter uses BANNER [1] to validate a recognized gene candidate. If the candidate mention
+ * overlaps with a gene mention found by Banner, it will be kept, and thrown out otherwise.
+ *
+ * <br><br>
+ * All texts in a context are validated as one batch: the sentences around all candidates are
+ * collected first, and each distinct sentence is tagged once, in parallel by several BANNER
+ * instances (property <tt>bannerThreads</tt>, default: number of cores). All instances share
+ * one copy of the model; each has its own tokenizer, lemmatiser, and part-of-speech tagger.
+ * Mentions found in a sentence are kept in a cache shared across contexts, keyed by the
+ * sentence text, so that sentences that repeat across documents are tagged once (property
+ * <tt>bannerSentenceCacheSize</tt>).
+ *
+ * <br><br>
+ * <b>Note:</b> The API changed drastically for the latest version of BANNER.
+ * This filter uses the latest version from the Sourceforge SVN, which differs
+ * from the Jar found on Banner's project page.
+ *
+ * <br>
+ * [1] http://banner.sourceforge.net
+ *
+ */
+
+public class BANNERValidationFilter implements Filter {
+
+	/**
+	 * Default maximum number of sentences in the cache, can be changed with the property
+	 * <tt>bannerSentenceCacheSize</tt>.
+	 */
+	public static final int DEFAULT_SENTENCE_CACHE_SIZE = 50000;
+
+	/** Number of BANNER instances that tag sentences in parallel. */
+	private final int threads;
+
+	/** BANNER instances that are not tagging at the moment; each instance is used by one thread at a time. */
+	private final BlockingQueue<BannerInstance> idleInstances = new LinkedBlockingQueue<BannerInstance>();
+
+	/** The first BANNER instance, which loaded the model shared by all instances. */
+	private BannerInstance model;
+
+	/** Number of BANNER instances loaded so far, at most {@link #threads}. */
+	private int numberOfInstances = 0;
+
+	private ExecutorService taggingPool;
+
+	/** For each sentence, start and end of all mentions found by BANNER, relative to the sentence:
+	 *  {start1, end1, start2, end2, ..}. Bounded to the most recently used sentences. */
+	private final Map<String, int[]> sentenceCache;
+
+
+	/**
+	 * Tokenizer, tagger, and post-processor of one BANNER instance. Not thread-safe.
+	 */
+	static class BannerInstance {
+		private Tokenizer tokenizer;
+		private PostProcessor postProcessor;
+		private CRFTagger tagger;
+
+		/**
+		 * Loads the model.
+		 * @throws IOException
+		 */
+		BannerInstance () throws IOException {
+			String propsFile = ISGNProperties.getProperty("bannerProps");
+			File modelFile = new File(ISGNProperties.getProperty("bannerModel"));
+
+			BannerProperties properties = BannerProperties.load(propsFile);
+			this.tokenizer = properties.getTokenizer();
+			this.tagger = CRFTagger.load(modelFile, properties.getLemmatiser(), properties.getPosTagger());
+			this.postProcessor = properties.getPostProcessor();
+		}
+
+		/**
+		 * Shares the model of the given instance, but loads its own lemmatiser and part-of-speech tagger.
+		 * @param model
+		 */
+		BannerInstance (BannerInstance model) {
+			BannerProperties properties = BannerProperties.load(ISGNProperties.getProperty("bannerProps"));
+			this.tokenizer = properties.getTokenizer();
+			this.tagger = model.tagger.copy(properties.getLemmatiser(), properties.getPosTagger());
+			this.postProcessor = properties.getPostProcessor();
+		}
+
+		/**
+		 * Tags a sentence and returns start and end of all mentions, {start1, end1, start2, end2, ..}.
+		 * @param sent
+		 * @return
+		 */
+		int[] tag (String sent) {
+			Sentence sentence = new Sentence(sent);
+			tokenizer.tokenize(sentence);
+			tagger.tag(sentence);
+			if (postProcessor != null)
+				postProcessor.postProcess(sentence);
+
+			List<Mention> mentions = sentence.getMentions();
+			int[] offsets = new int[mentions.size() * 2];
+			int m = 0;
+			for (Mention mention : mentions){
+				offsets[m++] = mention.getStartChar();
+				offsets[m++] = mention.getEndChar();
+			}
+			return offsets;
+		}
+	}
+
+
+	/**
+	 * Map that keeps the most recently used entries only.
+	 */
+	@SuppressWarnings("serial")
+	static class SentenceCache extends LinkedHashMap<String, int[]> {
+		private final int maxSize;
+
+		SentenceCache (int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry (Map.Entry<String, int[]> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+
+	public BANNERValidationFilter() {
+		try {
+			model = new BannerInstance();
+			idleInstances.add(model);
+			numberOfInstances = 1;
+		} catch (IOException e) {
+			System.err.println(e);
+			e.printStackTrace();
+			System.exit(-1);
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		String value = ISGNProperties.get("bannerThreads");
+		if (value != null && value.trim().matches("\\d+") && Integer.parseInt(value.trim()) > 0)
+			threads = Integer.parseInt(value.trim());
+		this.threads = threads;
+
+		int cacheSize = DEFAULT_SENTENCE_CACHE_SIZE;
+		value = ISGNProperties.get("bannerSentenceCacheSize");
+		if (value != null && value.trim().matches("\\d+"))
+			cacheSize = Integer.parseInt(value.trim());
+		this.sentenceCache = Collections.synchronizedMap(new SentenceCache(cacheSize));
+	}
+
+
+	@Override
+	public void filter(Context context, TextRepository textRepository, GeneRepository geneRepository) {
+		// locate the sentence around each candidate
+		Map<RecognizedEntity, int[]> entityBounds = new LinkedHashMap<RecognizedEntity, int[]>();
+		Map<RecognizedEntity, String> entitySentences = new HashMap<RecognizedEntity, String>();
+		Map<String, int[]> sentenceMentions = new HashMap<String, int[]>();
+		Set<String> untagged = new LinkedHashSet<String>();
+		for (Text text : context.getTexts()){
+			String plainText = text.getPlainText();
+			String paddedText = plainText + " ";
+			for (RecognizedEntity e : context.getRecognizedEntitiesInText(text)){
+				int[] bounds = text.getSentenceBoundsAround(e.getBegin());
+				if (bounds == null) continue;
+				String sent = paddedText.substring(bounds[0], bounds[1]);
+				// the last sentence of a text that does not end with ". " includes the padding space;
+				// such candidates were never looked up in the plain text and are kept unvalidated
+				if (bounds[1] > plainText.length() && plainText.indexOf(sent) < 0) continue;
+				entityBounds.put(e, bounds);
+				entitySentences.put(e, sent);
+				if (sentenceMentions.containsKey(sent)) continue;
+				int[] cached = sentenceCache.get(sent);
+				if (cached != null)
+					sentenceMentions.put(sent, cached);
+				else
+					untagged.add(sent);
+			}
+		}
+
+		// tag all new sentences of this batch; sentences still missing could not be tagged
+		sentenceMentions.putAll(tagSentences(untagged));
+
+		for (Map.Entry<RecognizedEntity, int[]> entry : entityBounds.entrySet()){
+			RecognizedEntity e = entry.getKey();
+			String sent = entitySentences.get(e);
+			int[] mentions = sentenceMentions.get(sent);
+			if (mentions == null) continue;
+
+			int sentStart = entry.getValue()[0];
+			boolean matchesBannerMention = false;
+
+			int s1 = e.getBegin();
+			int e1 = e.getEnd()+1;
+
+			for (int m = 0; m < mentions.length; m += 2){
+				int s2 = mentions[m] + sentStart;
+				int e2 = mentions[m + 1] + sentStart;
+
+				// if the candidate overlaps with a mention found by Banner, keep it
+				if ((s1 >= s2 && s1 < e2) || (s2 >= s1 && s2 < e1)){
+					matchesBannerMention = true;
+					break;
+				}
+			}
+
+			if (!matchesBannerMention){
+				context.removeRecognizedEntity(e);
+			}
+		}
+	}
+
+
+	/**
+	 * Tags the given sentences, in parallel if there is more than one, and adds them to the cache.
+	 * @param sentences
+	 * @return mentions for each sentence that was tagged
+	 */
+	Map<String, int[]> tagSentences (Set<String> sentences) {
+		Map<String, int[]> result = new HashMap<String, int[]>();
+		if (sentences.size() == 0) return result;
+
+		if (threads < 2 || sentences.size() < 2) {
+			for (String sent : sentences){
+				int[] mentions = tagSentence(sent);
+				if (mentions != null) result.put(sent, mentions);
+			}
+			return result;
+		}
+
+		List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(sentences.size());
+		for (final String sent : sentences){
+			tasks.add(new Callable<int[]>() {
+				public int[] call () {
+					return tagSentence(sent);
+				}
+			});
+		}
+		List<String> order = new ArrayList<String>(sentences);
+		try {
+			List<Future<int[]>> futures = getTaggingPool().invokeAll(tasks);
+			for (int f = 0; f < futures.size(); f++){
+				int[] mentions = futures.get(f).get();
+				if (mentions != null) result.put(order.get(f), mentions);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			System.err.println("#BANNERValidationFilter: error while tagging sentences: " + e.getCause());
+			e.getCause().printStackTrace();
+		}
+		return result;
+	}
+
+
+	/**
+	 * Tags a single sentence with the next idle BANNER instance and adds it to the cache.
+	 * @param sent
+	 * @return start and end of all mentions, relative to the sentence, or null if interrupted
+	 */
+	int[] tagSentence (String sent) {
+		BannerInstance instance;
+		try {
+			instance = acquireInstance();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		try {
+			int[] mentions = instance.tag(sent);
+			sentenceCache.put(sent, mentions);
+			return mentions;
+		} finally {
+			idleInstances.add(instance);
+		}
+	}
+
+
+	/**
+	 * Returns an idle BANNER instance; creates a new one sharing the model as long as there are less than
+	 * {@link #threads}, otherwise waits for one to become idle.
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private BannerInstance acquireInstance () throws InterruptedException {
+		BannerInstance instance = idleInstances.poll();
+		if (instance != null) return instance;
+
+		boolean load = false;
+		synchronized (this) {
+			if (numberOfInstances < threads) {
+				numberOfInstances++;
+				load = true;
+			}
+		}
+		if (load) {
+			try {
+				return new BannerInstance(model);
+			} catch (RuntimeException e) {
+				System.err.println("#BANNERValidationFilter: could not load another BANNER instance: " + e);
+				synchronized (this) {
+					numberOfInstances--;
+				}
+			}
+		}
+		return idleInstances.take();
+	}
+
+
+	/**
+	 * Returns the pool of threads for tagging, starts it if needed. Threads do not
+	 * prevent the JVM from exiting.
+	 * @return
+	 */
+	private synchronized ExecutorService getTaggingPool () {
+		if (taggingPool == null) {
+			taggingPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private int count = 0;
+				public synchronized Thread newThread (Runnable runnable) {
+					Thread thread = new Thread(runnable, "BANNER-tagging-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return taggingPool;
+	}
+}
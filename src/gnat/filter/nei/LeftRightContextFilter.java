@@ -1,17 +1,16 @@
 package gnat.filter.nei;
 
 import gnat.filter.Filter;
+import gnat.representation.CompactTextPositionModel;
 import gnat.representation.Context;
 import gnat.representation.GeneRepository;
 import gnat.representation.RecognizedEntity;
-import gnat.representation.TextPositionModel;
 import gnat.representation.TextRepository;
 import gnat.utils.LeftRightContextHelper;
 import gnat.utils.MathHelper;
 
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Filters out names by looking at tokens to the left and right of it and comparing their occurrence 
@@ -21,8 +20,8 @@ import java.util.Set;
  */
 public class LeftRightContextFilter implements Filter {
 
-	private TextPositionModel strictFPsModel;
-	private TextPositionModel nonStrictFPsModel;
+	private CompactTextPositionModel strictFPsModel;
+	private CompactTextPositionModel nonStrictFPsModel;
 
 	private double logLikelihoodRatioThreshold;
 
@@ -31,15 +30,6 @@ public class LeftRightContextFilter implements Filter {
 
 	List<Double> observedScores = new LinkedList<Double>();
 
-	int totalFPLeftFrequency;
-	int totalFPRightFrequency;
-	int totalFPMiddleFrequency;
-
-
-	int totalTPLeftFrequency;
-	int totalTPRightFrequency;
-	int totalTPMiddleFrequency;
-
 
 	/**
 	 * 
@@ -54,45 +44,13 @@ public class LeftRightContextFilter implements Filter {
 			double logLikelihoodRatioThreshold,
 			int leftContextLength, int rightContextLength) {
 		
-		strictFPsModel = TextPositionModel.loadFromFile(strictFpsModelFile);
-		nonStrictFPsModel = TextPositionModel.loadFromFile(nonStrictFPsModelFile);
+		// compact models precompute total frequencies and log probabilities per position
+		strictFPsModel = CompactTextPositionModel.loadFromFile(strictFpsModelFile);
+		nonStrictFPsModel = CompactTextPositionModel.loadFromFile(nonStrictFPsModelFile);
 		this.logLikelihoodRatioThreshold = logLikelihoodRatioThreshold;
 
 		this.leftContextLength = leftContextLength;
 		this.rightContextLength = rightContextLength;
-
-		totalFPLeftFrequency = 0;
-		Set<String> leftTokens = strictFPsModel.getTokensAtPosition(0);
-		for (String string : leftTokens) {
-			totalFPLeftFrequency += strictFPsModel.getFrequency(string, 0);
-        }
-		totalFPRightFrequency = 0;
-		Set<String> rightTokens = strictFPsModel.getTokensAtPosition(2);
-		for (String string : rightTokens) {
-			totalFPRightFrequency += strictFPsModel.getFrequency(string, 2);
-        }
-		totalFPMiddleFrequency = 0;
-		Set<String> nameTokens = strictFPsModel.getTokensAtPosition(1);
-		for (String string : nameTokens) {
-			totalFPMiddleFrequency += strictFPsModel.getFrequency(string, 1);
-        }
-
-		totalTPLeftFrequency = 0;
-		leftTokens = nonStrictFPsModel.getTokensAtPosition(0);
-		for (String string : leftTokens) {
-			totalTPLeftFrequency += nonStrictFPsModel.getFrequency(string, 0);
-        }
-		totalTPRightFrequency = 0;
-		rightTokens = nonStrictFPsModel.getTokensAtPosition(2);
-		for (String string : rightTokens) {
-			totalTPRightFrequency += nonStrictFPsModel.getFrequency(string, 2);
-        }
-		totalTPMiddleFrequency = 0;
-		nameTokens = nonStrictFPsModel.getTokensAtPosition(1);
-		for (String string : nameTokens) {
-			totalTPMiddleFrequency += nonStrictFPsModel.getFrequency(string, 1);
-        }
-
 	}
 
 	/**
@@ -121,13 +79,13 @@ public class LeftRightContextFilter implements Filter {
 	        String[] rightTokens = LeftRightContextHelper.getRightContext(recognizedEntity.getText().getPlainText(), sentenceEnd, recognizedEntity.getEnd(), rightContextLength);
 	        String[] nameTokens = LeftRightContextHelper.getTokens(recognizedEntity.getName());
 
-	        double fpScore = strictFPsModel.getJointProbability(leftTokens, 0, totalFPLeftFrequency);
-	        fpScore *= strictFPsModel.getJointProbability(rightTokens, 2, totalFPRightFrequency);
-	        fpScore *= strictFPsModel.getJointProbability(nameTokens, 1, totalFPMiddleFrequency);
+	        double fpScore = strictFPsModel.getJointProbability(leftTokens, 0);
+	        fpScore *= strictFPsModel.getJointProbability(rightTokens, 2);
+	        fpScore *= strictFPsModel.getJointProbability(nameTokens, 1);
 
-	        double tpScore = nonStrictFPsModel.getJointProbability(leftTokens, 0, totalTPLeftFrequency);
-	        tpScore *= nonStrictFPsModel.getJointProbability(rightTokens, 2, totalTPRightFrequency);
-	        tpScore *= nonStrictFPsModel.getJointProbability(nameTokens, 1, totalTPMiddleFrequency);
+	        double tpScore = nonStrictFPsModel.getJointProbability(leftTokens, 0);
+	        tpScore *= nonStrictFPsModel.getJointProbability(rightTokens, 2);
+	        tpScore *= nonStrictFPsModel.getJointProbability(nameTokens, 1);
 
 	        //double logLikelihoodRatio = Math.log(strictScore/nonStrictScore);
 //	        if(logLikelihoodRatio > logLikelihoodRatioThreshold){
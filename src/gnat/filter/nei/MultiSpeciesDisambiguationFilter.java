@@ -1,6 +1,7 @@
 package gnat.filter.nei;
 
 import gnat.ConstantsNei;
+import gnat.ISGNProperties;
 import gnat.client.nei.GenePubMedScorer;
 import gnat.database.go.GOAccess;
 import gnat.filter.Filter;
@@ -15,6 +16,7 @@ import gnat.representation.TextRepository;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -23,11 +25,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * 
  * Performs gene name disambiguation when genes of multiple species are sought.
- * 
+ * <br><br>
+ * Candidate genes for a name are scored in parallel, see {@link #SCORING_THREADS}. Optionally,
+ * scoring of further candidates stops once one candidate is ahead of all others by a margin,
+ * see {@link #setEarlyStopMargin(double)}.
  * 
  * @author J&ouml;rg Hakenberg &lt;jhakenberg@users.sourceforge.net&gt;
  */
@@ -37,6 +48,19 @@ public class MultiSpeciesDisambiguationFilter implements Filter {
 	private double threshold;
 	@SuppressWarnings("unused") private int topNumber = 1;
 
+	/** Number of threads used to score candidate genes; sequential scoring if 1. */
+	public static final int SCORING_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/** Names with fewer candidates than this are scored sequentially. */
+	static final int MIN_CANDIDATES_FOR_PARALLEL_SCORING = 4;
+
+	/** Thread pool for scoring candidate genes, shared by all instances of this filter. */
+	private static ExecutorService scoringPool;
+
+	/** Stop scoring further candidates once the top candidate is ahead of the second by this margin;
+	 * 0 to always score all candidates. Property: <tt>disambiguationEarlyStopMargin</tt>. */
+	private double earlyStopMargin = 0.0d;
+
 	/** Maps Gene IDs to PubMed IDs to Scores */
 	private Map<String, Map<String, Float>> scoredGenes = new HashMap<String, Map<String, Float>>();
 
@@ -54,10 +78,24 @@ public class MultiSpeciesDisambiguationFilter implements Filter {
 	 * @param topNumber - keep this number of IDs per name
 	 */
 	public MultiSpeciesDisambiguationFilter (double threshold, int topNumber) {
+		this(threshold, topNumber, new GOAccess());
+	}
+
+
+	/**
+	 * Constructs a new DisambiguationFilter that computes new GO term distances with the given database access.
+	 * @param threshold - removes all genes with a score below this threshold
+	 * @param topNumber - keep this number of IDs per name
+	 * @param goAccess - GO term database, used for distances that are neither in the GO graph (property <tt>goGraph</tt>) nor in data/go2go.object
+	 */
+	public MultiSpeciesDisambiguationFilter (double threshold, int topNumber, GOAccess goAccess) {
 		this.threshold = threshold;
 		this.topNumber = topNumber;
-		genePubMedScorer = new GenePubMedScorer(new GOAccess(), "data/go2go.object");
+		genePubMedScorer = new GenePubMedScorer(goAccess, "data/go2go.object");
 		genePubMedScorer.setVerbosity(this.verbosity);
+		String margin = ISGNProperties.get("disambiguationEarlyStopMargin");
+		if (margin != null && margin.trim().length() > 0)
+			earlyStopMargin = Double.parseDouble(margin.trim());
 	}
 	
 
@@ -249,43 +287,83 @@ public class MultiSpeciesDisambiguationFilter implements Filter {
 
 
 	/**
-	 *
+	 * Ranks the candidate genes by their normalized scores for the text, best first.
+	 * <br>
+	 * Candidates are scored in batches; if an early stop margin is set, the remaining candidates
+	 * are skipped once the top gene reaches the threshold and is ahead of the second by that margin.
+	 * In that case, scores are normalized with respect to the candidates scored so far.
 	 * @param geneIdCandidates
 	 * @param text
 	 * @return
 	 */
 	public List<ScoredGene> rankGenesForText (Set<String> geneIdCandidates, Text text, String geneName) {
+		List<Gene> candidateGenes = new ArrayList<Gene>(geneIdCandidates.size());
+		for (String id : geneIdCandidates) {
+			Gene candidateGene = geneRepository.getGene(id);
+			if (candidateGene != null)
+				candidateGenes.add(candidateGene);
+		}
+
 		//
-		//LinkedList<Gene> ranked = new LinkedList<Gene>();
 		HashMap<Gene, LinkedList<Float>> allScores = new HashMap<Gene, LinkedList<Float>>();
-		LinkedList<Float> maxima = new LinkedList<Float>();
-		for (int i = 0; i < genePubMedScorer.NUMBER_OF_SCORES; i++)
-			maxima.add(0.0f);
+		float[] maxima = new float[genePubMedScorer.NUMBER_OF_SCORES];
+		List<ScoredGene> topGenes = new LinkedList<ScoredGene>();
 
-		//
-		for (String id : geneIdCandidates) {
-			Gene candidateGene = geneRepository.getGene(id);
-			if(candidateGene!=null){
-				LinkedList<Float> scores = genePubMedScorer.getScores(candidateGene, text, geneName);
-				for (int i = 0; i < scores.size(); i++)
-					if (scores.get(i) > maxima.get(i))
-						maxima.set(i, scores.get(i));
+		// without early stopping, score all candidates at once
+		int batchSize = candidateGenes.size();
+		if (earlyStopMargin > 0.0d)
+			batchSize = Math.max(SCORING_THREADS, MIN_CANDIDATES_FOR_PARALLEL_SCORING);
+
+		int scored = 0;
+		while (scored < candidateGenes.size()) {
+			List<Gene> batch = candidateGenes.subList(scored, Math.min(scored + batchSize, candidateGenes.size()));
+			List<LinkedList<Float>> batchScores = scoreCandidates(batch, text, geneName);
+			for (int g = 0; g < batch.size(); g++) {
+				LinkedList<Float> scores = batchScores.get(g);
+				int i = 0;
+				for (Float score: scores) {
+					if (score > maxima[i])
+						maxima[i] = score;
+					i++;
+				}
+				allScores.put(batch.get(g), scores);
+			}
+			scored += batch.size();
+
+			topGenes = normalizeScores(allScores, maxima);
 
-				allScores.put(candidateGene, scores);
+			if (scored < candidateGenes.size() && hasClearTopGene(topGenes)) {
+				if (ConstantsNei.OUTPUT_LEVEL.compareTo(ConstantsNei.OUTPUT_LEVELS.DEBUG) >= 0)
+					System.out.println("#Stopped disambiguation of " + geneName + " after " + scored
+							+ " of " + candidateGenes.size() + " candidates, top gene " + topGenes.get(0).getGene().ID);
+				break;
 			}
 		}
 
+		return topGenes;
+	}
+
+
+	/**
+	 * Normalizes all scores with the highest score per vector and sums them up per gene.
+	 * @param allScores
+	 * @param maxima
+	 * @return genes sorted by their summed scores, best first
+	 */
+	List<ScoredGene> normalizeScores (Map<Gene, LinkedList<Float>> allScores, float[] maxima) {
 		List<ScoredGene> topGenes = new LinkedList<ScoredGene>();
 
 		// normalize all scores with the highest score per vector
 		for (Gene candidateGene: allScores.keySet()) {
 			LinkedList<Float> scores = allScores.get(candidateGene);
 			float sum = 0.0f;
-			for (int i = 0; i < scores.size(); i++) {
-				float score = scores.get(i);
-				if (maxima.get(i) > 0.0f)
-					score = score / maxima.get(i);
+			int i = 0;
+			for (Float s: scores) {
+				float score = s;
+				if (maxima[i] > 0.0f)
+					score = score / maxima[i];
 				if (score > 0.0f) sum += score;
+				i++;
 			}
 			topGenes.add(new ScoredGene(sum, candidateGene));
 		}
@@ -299,6 +377,86 @@ public class MultiSpeciesDisambiguationFilter implements Filter {
 	}
 
 
+	/**
+	 * Checks whether the top gene in the ranking reaches the threshold and is ahead of the
+	 * second-best gene by at least the early stop margin.
+	 * @param rankedGenes
+	 * @return
+	 */
+	boolean hasClearTopGene (List<ScoredGene> rankedGenes) {
+		if (earlyStopMargin <= 0.0d || rankedGenes.size() < 2)
+			return false;
+		float topScore = rankedGenes.get(0).getScore();
+		return topScore >= threshold && topScore - rankedGenes.get(1).getScore() >= earlyStopMargin;
+	}
+
+
+	/**
+	 * Scores all given genes for the text, in parallel if there are enough of them.
+	 * Sequential when printing SVM output, which has to stay in order.
+	 * @param genes
+	 * @param text
+	 * @param geneName
+	 * @return the scores for each gene, in the same order as the genes
+	 */
+	List<LinkedList<Float>> scoreCandidates (List<Gene> genes, final Text text, final String geneName) {
+		List<LinkedList<Float>> result = new ArrayList<LinkedList<Float>>(genes.size());
+
+		if (SCORING_THREADS < 2 || genes.size() < MIN_CANDIDATES_FOR_PARALLEL_SCORING
+				|| ConstantsNei.OUTPUT_LEVEL == ConstantsNei.OUTPUT_LEVELS.SVM) {
+			for (Gene gene: genes)
+				result.add(genePubMedScorer.getScores(gene, text, geneName));
+			return result;
+		}
+
+		List<Callable<LinkedList<Float>>> tasks = new ArrayList<Callable<LinkedList<Float>>>(genes.size());
+		for (final Gene gene: genes) {
+			tasks.add(new Callable<LinkedList<Float>>() {
+				public LinkedList<Float> call () {
+					return genePubMedScorer.getScores(gene, text, geneName);
+				}
+			});
+		}
+
+		try {
+			for (Future<LinkedList<Float>> future: getScoringPool().invokeAll(tasks))
+				result.add(future.get());
+		} catch (InterruptedException e) {
+			// finish in this thread; scores computed so far come from the cache
+			Thread.currentThread().interrupt();
+			result.clear();
+			for (Gene gene: genes)
+				result.add(genePubMedScorer.getScores(gene, text, geneName));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+
+		return result;
+	}
+
+
+	/**
+	 * Returns the thread pool for scoring candidates, creating it on first use.
+	 * Threads are daemons, so that the pool does not keep the JVM alive.
+	 * @return
+	 */
+	private static synchronized ExecutorService getScoringPool () {
+		if (scoringPool == null) {
+			scoringPool = Executors.newFixedThreadPool(SCORING_THREADS, new ThreadFactory() {
+				private int count = 0;
+				public synchronized Thread newThread (Runnable runnable) {
+					Thread thread = new Thread(runnable, "MSDF-scoring-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return scoringPool;
+	}
+
+
 	/**
 	 *
 	 * @param geneIdCandidates
@@ -365,6 +523,15 @@ public class MultiSpeciesDisambiguationFilter implements Filter {
 	}
 
 
+	/**
+	 * Sets the margin by which the top candidate has to be ahead of the second to stop scoring
+	 * further candidates; 0 to always score all candidates.
+	 * */
+	public void setEarlyStopMargin (double earlyStopMargin) {
+		this.earlyStopMargin = earlyStopMargin;
+	}
+
+
 	/**
 	 * Sets the minimum score a gene must reach to get identified.
 	 * */
@@ -6,10 +6,15 @@ import gnat.representation.Context;
 import gnat.representation.Gene;
 import gnat.representation.GeneRepository;
 import gnat.representation.RecognizedEntity;
+import gnat.representation.Text;
 import gnat.representation.TextRepository;
+import gnat.utils.MultiNameMatcher;
 import gnat.utils.StringHelper;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -43,24 +48,18 @@ public class NameValidationFilter implements Filter {
 	 * 
 	 */
 	public void filter (Context context, TextRepository textRepository, GeneRepository geneRepository) {
+		// per text, all names of candidate genes found in that text; computed once when first needed
+		Map<Text, Set<String>> occurringNamesPerText = new HashMap<Text, Set<String>>();
+
 		Iterator<RecognizedEntity> unidentifiedGeneNames = context.getUnidentifiedEntities().iterator();
 		while (unidentifiedGeneNames.hasNext()) {
 			
 			RecognizedEntity recognizedGeneName = unidentifiedGeneNames.next();
-			Set<String> idCandidates = context.getIdCandidates(recognizedGeneName);
-
-			TreeSet<String> names = new TreeSet<String>();
-			for (String id: idCandidates) {
-				Gene gene = geneRepository.getGene(id);
-				if (gene != null) {
-					for (String name: gene.getNames())
-						names.add(name.toLowerCase().trim());
-				}
-			}
+			TreeSet<String> names = getCandidateNames(recognizedGeneName, context, geneRepository);
 
-			String myName = recognizedGeneName.getName().toLowerCase();
+			String myOriginalName = recognizedGeneName.getName().toLowerCase();
 			// escape certain characters so that myName can later be used in reg.exes
-			myName = StringHelper.espaceString(myName);
+			String myName = StringHelper.espaceString(myOriginalName);
 			
 			//if (myName.matches(".*[\\s\\-0-9].*"))
 			if (myName.matches(".*[0-9A-Z].*") && myName.length() > 4)
@@ -71,9 +70,12 @@ public class NameValidationFilter implements Filter {
 			
 			// does this gene only occur as name-1 in the dictionary?
 			boolean foundOnlyWithOne = false;
+			boolean literal = MultiNameMatcher.isLiteralWhenEscaped(myOriginalName);
 			for (String name: names) {
-				if (name.matches(myName + "[\\s\\-\\_]?([1IiAa]|alpha)")) {
+				if (literal ? isNameWithFamilyMemberSuffix(name, myOriginalName)
+						    : name.matches(myName + "[\\s\\-\\_]?([1IiAa]|alpha)")) {
 					foundOnlyWithOne = true;
+					break;
 				}
 			}
 			if (ConstantsNei.OUTPUT_LEVEL.compareTo(ConstantsNei.OUTPUT_LEVELS.DEBUG) >= 0)
@@ -81,15 +83,27 @@ public class NameValidationFilter implements Filter {
 
 			// if yes, then check if this gene is also mentioned using any other name
 			if (foundOnlyWithOne) {
-				String text = recognizedGeneName.getText().plainText.toLowerCase();
+				Text aText = recognizedGeneName.getText();
+				String text = aText.plainText.toLowerCase();
+				
+				Set<String> occurringNames = occurringNamesPerText.get(aText);
+				if (occurringNames == null) {
+					occurringNames = findOccurringNames(aText, text, context, geneRepository);
+					occurringNamesPerText.put(aText, occurringNames);
+				}
+				boolean singleLine = MultiNameMatcher.isSingleLine(text);
 				
 				boolean foundAnotherName = false;
 				for (String name: names) {
-					name = StringHelper.espaceString(name);
-					if (text.matches(".*(^|[\\s\\(\\[])" + name + "([\\s\\,\\.\\)\\]\\;\\:]|$).*")) {
+					boolean found;
+					if (singleLine && name.length() > 0 && MultiNameMatcher.isLiteralWhenEscaped(name))
+						found = occurringNames.contains(name);
+					else
+						found = text.matches(".*(^|[\\s\\(\\[])" + StringHelper.espaceString(name) + "([\\s\\,\\.\\)\\]\\;\\:]|$).*");
+					if (found) {
 						foundAnotherName = true;
 						if (ConstantsNei.OUTPUT_LEVEL.compareTo(ConstantsNei.OUTPUT_LEVELS.DEBUG) >= 0)
-							System.out.println("#NVF: found another name: " + name);
+							System.out.println("#NVF: found another name: " + StringHelper.espaceString(name));
 						break;
 					}
 				}
@@ -105,6 +119,73 @@ public class NameValidationFilter implements Filter {
 			}
 		}
 	}
+
+
+	/**
+	 * Collects the lower-cased names of all candidate genes for the given entity.
+	 * @param recognizedGeneName
+	 * @param context
+	 * @param geneRepository
+	 * @return
+	 */
+	private TreeSet<String> getCandidateNames (RecognizedEntity recognizedGeneName, Context context, GeneRepository geneRepository) {
+		TreeSet<String> names = new TreeSet<String>();
+		for (String id: context.getIdCandidates(recognizedGeneName)) {
+			Gene gene = geneRepository.getGene(id);
+			if (gene != null) {
+				for (String name: gene.getNames())
+					names.add(name.toLowerCase().trim());
+			}
+		}
+		return names;
+	}
+
+
+	/**
+	 * Scans the (lower-cased) text once for the names of all candidate genes of
+	 * all unidentified entities in that text. Returns the names that occur as
+	 * separate words.
+	 * @param aText
+	 * @param text - lower-cased plain text of <tt>aText</tt>
+	 * @param context
+	 * @param geneRepository
+	 * @return
+	 */
+	private Set<String> findOccurringNames (Text aText, String text, Context context, GeneRepository geneRepository) {
+		Set<String> allNames = new HashSet<String>();
+		for (RecognizedEntity entity: context.getUnidentifiedEntities()) {
+			if (!entity.getText().equals(aText)) continue;
+			for (String name: getCandidateNames(entity, context, geneRepository))
+				if (MultiNameMatcher.isLiteralWhenEscaped(name))
+					allNames.add(name);
+		}
+		MultiNameMatcher matcher = new MultiNameMatcher(allNames, MultiNameMatcher.WHITESPACE + "([",
+				MultiNameMatcher.WHITESPACE + ",.)];:");
+		return matcher.findOccurringNames(text);
+	}
+
+
+	/**
+	 * Checks whether <tt>name</tt> is <tt>prefix</tt> followed by an optional separator
+	 * (white space, hyphen, underscore) and 1, I, A, or alpha. Same as
+	 * <tt>name.matches(prefix + "[\\s\\-\\_]?([1IiAa]|alpha)")</tt> for a literal prefix.
+	 * @param name
+	 * @param prefix
+	 * @return
+	 */
+	static boolean isNameWithFamilyMemberSuffix (String name, String prefix) {
+		if (!name.startsWith(prefix)) return false;
+		int pos = prefix.length();
+		if (pos < name.length()) {
+			char separator = name.charAt(pos);
+			if (MultiNameMatcher.WHITESPACE.indexOf(separator) >= 0 || separator == '-' || separator == '_')
+				pos++;
+		}
+		String suffix = name.substring(pos);
+		if (suffix.length() == 1)
+			return "1IiAa".indexOf(suffix.charAt(0)) >= 0;
+		return suffix.equals("alpha");
+	}
 	
 	
 	/**
@@ -9,11 +9,15 @@ import gnat.representation.RecognizedEntity;
 import gnat.representation.Text;
 import gnat.representation.TextAnnotation;
 import gnat.representation.TextRepository;
+import gnat.utils.MultiNameMatcher;
 import gnat.utils.StringHelper;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 
 /**
@@ -38,6 +42,8 @@ public class UnspecificNameFilter implements Filter {
 	public void filter (Context context, TextRepository textRepository, GeneRepository geneRepository) {
 		int removed = 0;
 		int total =  context.getUnidentifiedEntities().size();
+		// per text, the plural forms of all names found in that text; computed once when first needed
+		Map<Text, Set<String>> pluralFormsPerText = new HashMap<Text, Set<String>>();
 
 		Iterator<RecognizedEntity> unidentifiedGeneNames = context.getUnidentifiedEntities().iterator();
 		while (unidentifiedGeneNames.hasNext()) {
@@ -80,7 +86,7 @@ public class UnspecificNameFilter implements Filter {
 				reason = "species";
 			else if (isAminoAcid(maskedGeneName))
 				reason = "amino acid";
-			else if (textHasPlural(maskedGeneName, text.plainText))
+			else if (textHasPlural(maskedGeneName, text, context, pluralFormsPerText))
 				reason = "text has plural form";
 			else if (isChromosome(recognizedGeneName.getName(), sentence))
 				reason = "chromosome";
@@ -125,6 +131,126 @@ public class UnspecificNameFilter implements Filter {
 	}
 
 	
+	/** Numbers, possibly with dots and spaces. */
+	private static final Pattern numberPattern = Pattern.compile("[\\d\\.\\s]+");
+	/** Specifiers that often occur in name field entries of databases (mostly in brackets) or are just too unspecific. */
+	private static final Pattern unspecificSpecifierPattern = Pattern.compile("([Aa]utosomal recessive|splicing|protease|checkpoint|C\\-terminal fragments" +
+		"|expressed in .*|murine|gene product|polypeptide|deafness|congenital" +
+		"|nonsyndromic|up\\-regulated|macular|embryonic|juvenile||myopia|catalytic subunits?|regulatory subunits?" +
+		"|T cell differentiation|processing of separase|chromosome|translocated to|mutated|bind|bind DNA|repeats" +
+		"|autosomal recessive deafness|congenital deafness|tandem|lipid raft|glucose|cadherin superfamily" +
+		"|cadherin family" +
+		"|.* domain|processing of separase|molecular weight|[Cc]\\-terminal|immunodeficiency|inhibitor securin" +
+		"|[Ii]nhibitor binding|type I lissencephaly|antisense|secreted|high affinity|Collagen XVIII|transmembrane protease" +
+		"|transmembrane serine protease|regulatory subunit NEMO|interacting|autosomal dominant|actin cytoskeleton" +
+		"|intestinal epithelialRho family|.* chemokine|X\\-linked retinoschisis|secreted photoreceptor" +
+		"|putative secreted photoreceptor|soluble L1|Soluble CD2|loss of heterozygosity|Kv4.2 potassium channel|alpha1 AMPK" +
+		"|K\\(\\+\\)|mm K\\(\\+\\)|Src homology|antiproliferative|focal|gamma IP-10|receptor trafficking|serine protease" +
+		"|homology" +
+		"|unknown function|EST|CNS" +
+		// added to SF-Gnat acc. "100-test"
+		"|body weight|bone mineral content|long bones|renal cystic disease severity|GAGA transcription factor" +
+		"|[Dd]ominant megacolon|sex-peptide|gamma\\(c\\)|Ames dwarf" +
+		// medline 2015:
+		"|cellular stress response" +
+		")");
+	/** Units and some typical mistakes (and 1, or in). */
+	private static final Pattern unitPattern = Pattern.compile("^(aa|bp\\s[0-9]{1,2}|kd|mg|Ki|nM|CD|Sci|Proc|Acad|\\d+ h" +
+		//"|[\\d\\.]+[\\s\\-]?[Kk][Dd][Aa]" +
+		"|(?:a )?[\\d+\\.][\\-\\s][Kk][Dd][Aa](?: protein)?" +
+
+		"|or\\sin|and\\s[1Ii]|for\\s4|is\\s4|[Aa]\\sgene|[Aa]t\\s5|[Aa]\\sC|is\\s1|at\\s\\d" +
+		"|as a|a PS|or if|a [ACGTU]|[dD] or|a part|[A-Za-z][A-Za-z] as" + // "HR as"
+		"|and 1|or 2|an \\d+" +
+
+		"|factor[\\s\\-]\\d|factor[\\s\\-](alpha|beta|gamma|delta)" +
+		"|receptor\\s\\d|[Ii]soforms?[\\s\\-]?\\d+|[Ii]sozymes?[\\s\\-]\\d+?" +
+		"|[A-Z]\\receptor|S phase" +
+		"|open reading frame" +
+		"|pulmonary function" +
+		"|MHC\\s[Cc]lass\\s[Ii][Ii]?" +
+
+		"|Part I|[Uu]rinary protein|urine protein" +
+		"|death[\\-\\s]inducing|early[\\-\\s]response|[Nn]on\\-histone[\\-\\s]chromosomal" +
+		"|membrane[\\s\\-]?bound|proton[\\s\\-]?pump" +
+		"|similar\\sto" +
+		"|rough\\sdeal|alternative\\ssplicing" + 
+
+		"|[a-z]+[\\s\\-]?binding|a catalytic" +
+		"|P\\(k\\)|[Mm]ediator complex|trans-Golgi network" +
+
+		"|protein\\s[A-Za-z]|protein[\\s\\-][0-9]+" +
+		"|beta[\\s\\-]\\d+|\\d+[\\s\\-]beta([\\s\\-]\\d+)?" +
+		"|alpha[\\s\\-]\\d+|\\d+[\\s\\-]alpha([\\s\\-]\\d+)?" +
+
+		"|(alpha|beta|gamma|delta|epsilon|eta|kappa|lambda)\\s[A-Za-z0-9]" +
+		"|[A-Za-z0-9][\\s\\-](alpha|beta|gamma|delta|epsilon|eta|kappa|lambda)" +
+		"|(alpha|beta|gamma|delta|epsilon|eta|kappa|lambda)\\schain" +
+		"|[A-Za-z][\\s\\-]protein" +
+		"|[Aa]\\s[0-9]{1,2})$");
+	/** Name parts that, in any combination, result in an unspecific mention. */
+	private static final Pattern unspecificNamePartPattern = Pattern.compile("^([\\s\\,\\.\\-\\;\\:\\(\\)\\/]" +
+		"|isoform|subunit|ligand|complement|chain|site|form|domain|autoantigen|antigen|sequence|homolog|type" +
+		"|subtype|motif|group|candidate|molecule|superfamily|family|subfamily|transcript|[Ff]ragment" +
+		"|[fF]actor|regulator|inhibitor|suppressor|translocator|activator|[rR]eceptor|[lL]igand|adaptor|adapter" +
+		"|nucleoprotein|oncoprotein|phosphoprotein|glycoprotein|[Pp]rotein|polypeptide" +
+		"|RNA|DNA|dna|cDNA|rna|mRNA|mrna|mRna|tRNA|tRna|trna" +
+		"|histone|collagen|neuron" +
+		"|caspase|kinase|phosphatase|polymerase|coactivator|activator|transporter" +
+		"|hormone" +
+		//"" +
+		"|[eE]xpression|activation|transduction|transcription|adhesion|interaction" +
+		"|release" +
+		"|[aA]ssociated|induced|coupled|related|linked|associated|conserved|mediated|expressed|advanced|localized" +
+		"|activating|regulating|signaling|binding|bound|containing|docking|transforming" +
+		"|export|trafficking" +
+		//"" +
+		"|breast|colon|stem|cell|muscle|cellular|extracellular|intestinal|nuclear|surface|membrane|brain" +
+		"|epidermal|ectodermal|vesicle|mitochondrial|pancreatic|ubiquitous|fetal" +
+		"|chicken|mammalian|human" +
+		//"" +
+		"|cancer|carcinoma|tumor|obesity|lung cancer" +
+		//"" +
+		"|apoptosis|death|growth|maturation|necrosis|signal|repair|survival|stress|division|adhesion" +
+		"|control|excision|fusion|cycle" +
+		//"" +
+		"|heat|shock|proteoglycan|core|homeobox" +
+		//"" +
+		"|chemokine|cytokine|potassium|calcium|sodium|retinol|pyruvate|vitamin|glutamate|[Zz]inc" +
+		"|estrogen|thrombin|arrestin|actin|ubiquitin|mucin|urotensin|disintegrin|activin|chromatin|calmodulin" +
+		"|tubulin|cyclin|immunoglobulin|heparin|GTP" +
+		"|tyrosine|serine|threonine|alanine|arginine|asparagine|cysteine|glutamine|leucine|isoleucine" +
+		"|glycine|methionine|histidine|proline|lysine|phenylalanie|thryptophan|valine" +
+		//"" +
+		"|low|high|highly|non|heterogeneous|homogeneous|light|heavy|negative|novel|putative" +
+		"|dependent|accessory|peripheral|regulatory|deficient|terminal|transcriptional|inducible|soluble" +
+		"|dual|specificity|specific|nucleic|acid|putative|peroxisomal|basic" +
+		"|nucleolar|secretory" +
+		"" +
+		// new and to sort:
+		"|susceptibility|paired|like|specific|muscle|testis" +
+		"|mobility|programmed|matrix|channel|end|ciliary|neurotrophic|retinoid|germinal|center|neural|finger" +
+		"|fibroblast|lymphokine" +
+		//"" +
+		//"|A|N" +
+		"|[a-z]+ine[\\s\\-]rich" +
+		"|[a-z]+ant" +
+		//"" +
+		"|two" +
+		//"" +
+		"|to|by|that|like|a|[tT]he|for|of|and|or|with|in" +
+		//"" +
+		"|[Aa]ntigen|lymphocyte|cytoplasmic|helicase|retinoic|acid|plasminogen|cytoskeletal|anchor" +
+		"|[Aa]nti|integral|membrane|[Nn]eutrophil|ubiquitin" +
+		"|basic|leucine|zipper|putative|transmembrane|proteasome|responsive" +
+
+		// removed:
+		// |clathrin|I|i|II|ii|iii|III|gamma|delta|alpha|beta
+		// |[a-z]phin|[a-z]+[^u]lin|[a-z]+asia|[a-z]+itis
+		// |mannose
+
+		")+('?s)?$");
+
 	/**
 	 * Decides whether a proposed gene name is too unspecific: mainly checks for compound names that do not
 	 * have any reference concering the exact identity of a protein. Also removes units and
@@ -154,69 +280,16 @@ public class UnspecificNameFilter implements Filter {
 //		}
 
 		// reject numbers
-		if (term.matches("[\\d\\.\\s]+")) return true;
+		if (numberPattern.matcher(term).matches()) return true;
 
 
 		// specifiers that often occurr in name field entries of databases (mostly in brackets) or are just too unspecific
-		if(term.matches("([Aa]utosomal recessive|splicing|protease|checkpoint|C\\-terminal fragments" +
-				"|expressed in .*|murine|gene product|polypeptide|deafness|congenital" +
-				"|nonsyndromic|up\\-regulated|macular|embryonic|juvenile||myopia|catalytic subunits?|regulatory subunits?" +
-				"|T cell differentiation|processing of separase|chromosome|translocated to|mutated|bind|bind DNA|repeats" +
-				"|autosomal recessive deafness|congenital deafness|tandem|lipid raft|glucose|cadherin superfamily" +
-				"|cadherin family" +
-				"|.* domain|processing of separase|molecular weight|[Cc]\\-terminal|immunodeficiency|inhibitor securin" +
-				"|[Ii]nhibitor binding|type I lissencephaly|antisense|secreted|high affinity|Collagen XVIII|transmembrane protease" +
-				"|transmembrane serine protease|regulatory subunit NEMO|interacting|autosomal dominant|actin cytoskeleton" +
-				"|intestinal epithelialRho family|.* chemokine|X\\-linked retinoschisis|secreted photoreceptor" +
-				"|putative secreted photoreceptor|soluble L1|Soluble CD2|loss of heterozygosity|Kv4.2 potassium channel|alpha1 AMPK" +
-				"|K\\(\\+\\)|mm K\\(\\+\\)|Src homology|antiproliferative|focal|gamma IP-10|receptor trafficking|serine protease" +
-				"|homology" +
-				"|unknown function|EST|CNS" +
-				// added to SF-Gnat acc. "100-test"
-				"|body weight|bone mineral content|long bones|renal cystic disease severity|GAGA transcription factor" +
-				"|[Dd]ominant megacolon|sex-peptide|gamma\\(c\\)|Ames dwarf" +
-				// medline 2015:
-				"|cellular stress response" +
-			    ")"
-
-		)){
+		if(unspecificSpecifierPattern.matcher(term).matches()){
 			return true;
 		}
 
 		// units and some typical mistakes (and 1, or in) --> bp has to keep Bp50!
-		if (term.matches("^(aa|bp\\s[0-9]{1,2}|kd|mg|Ki|nM|CD|Sci|Proc|Acad|\\d+ h" +
-				//"|[\\d\\.]+[\\s\\-]?[Kk][Dd][Aa]" +
-				"|(?:a )?[\\d+\\.][\\-\\s][Kk][Dd][Aa](?: protein)?" +
-				
-				"|or\\sin|and\\s[1Ii]|for\\s4|is\\s4|[Aa]\\sgene|[Aa]t\\s5|[Aa]\\sC|is\\s1|at\\s\\d" +
-				"|as a|a PS|or if|a [ACGTU]|[dD] or|a part|[A-Za-z][A-Za-z] as" + // "HR as"
-				"|and 1|or 2|an \\d+" +
-
-				"|factor[\\s\\-]\\d|factor[\\s\\-](alpha|beta|gamma|delta)" +
-				"|receptor\\s\\d|[Ii]soforms?[\\s\\-]?\\d+|[Ii]sozymes?[\\s\\-]\\d+?" +
-				"|[A-Z]\\receptor|S phase" +
-				"|open reading frame" +
-				"|pulmonary function" +
-				"|MHC\\s[Cc]lass\\s[Ii][Ii]?" +
-				
-				"|Part I|[Uu]rinary protein|urine protein" +
-				"|death[\\-\\s]inducing|early[\\-\\s]response|[Nn]on\\-histone[\\-\\s]chromosomal" +
-				"|membrane[\\s\\-]?bound|proton[\\s\\-]?pump" +
-				"|similar\\sto" +
-				"|rough\\sdeal|alternative\\ssplicing" + 
-
-				"|[a-z]+[\\s\\-]?binding|a catalytic" +
-				"|P\\(k\\)|[Mm]ediator complex|trans-Golgi network" +
-
-				"|protein\\s[A-Za-z]|protein[\\s\\-][0-9]+" +
-				"|beta[\\s\\-]\\d+|\\d+[\\s\\-]beta([\\s\\-]\\d+)?" +
-				"|alpha[\\s\\-]\\d+|\\d+[\\s\\-]alpha([\\s\\-]\\d+)?" +
-
-				"|(alpha|beta|gamma|delta|epsilon|eta|kappa|lambda)\\s[A-Za-z0-9]" +
-				"|[A-Za-z0-9][\\s\\-](alpha|beta|gamma|delta|epsilon|eta|kappa|lambda)" +
-				"|(alpha|beta|gamma|delta|epsilon|eta|kappa|lambda)\\schain" +
-				"|[A-Za-z][\\s\\-]protein" +
-				"|[Aa]\\s[0-9]{1,2})$"))
+		if (unitPattern.matcher(term).matches())
 			return true;
 
 		// processes
@@ -230,72 +303,45 @@ public class UnspecificNameFilter implements Filter {
 		// a list of name parts that, in any combination, result in an unspecific mention
 		// protein types and functions, cellular/tissue locations, processes
 		// latest add ons: polypetide release (factor), (growth) hormone, "lung cancer"   --in brackets: token was already included
-		if (term.matches("^([\\s\\,\\.\\-\\;\\:\\(\\)\\/]" +
-				"|isoform|subunit|ligand|complement|chain|site|form|domain|autoantigen|antigen|sequence|homolog|type" +
-				"|subtype|motif|group|candidate|molecule|superfamily|family|subfamily|transcript|[Ff]ragment" +
-				"|[fF]actor|regulator|inhibitor|suppressor|translocator|activator|[rR]eceptor|[lL]igand|adaptor|adapter" +
-				"|nucleoprotein|oncoprotein|phosphoprotein|glycoprotein|[Pp]rotein|polypeptide" +
-				"|RNA|DNA|dna|cDNA|rna|mRNA|mrna|mRna|tRNA|tRna|trna" +
-				"|histone|collagen|neuron" +
-				"|caspase|kinase|phosphatase|polymerase|coactivator|activator|transporter" +
-				"|hormone" +
-				//"" +
-				"|[eE]xpression|activation|transduction|transcription|adhesion|interaction" +
-				"|release" +
-				"|[aA]ssociated|induced|coupled|related|linked|associated|conserved|mediated|expressed|advanced|localized" +
-				"|activating|regulating|signaling|binding|bound|containing|docking|transforming" +
-				"|export|trafficking" +
-				//"" +
-				"|breast|colon|stem|cell|muscle|cellular|extracellular|intestinal|nuclear|surface|membrane|brain" +
-				"|epidermal|ectodermal|vesicle|mitochondrial|pancreatic|ubiquitous|fetal" +
-				"|chicken|mammalian|human" +
-				//"" +
-				"|cancer|carcinoma|tumor|obesity|lung cancer" +
-				//"" +
-				"|apoptosis|death|growth|maturation|necrosis|signal|repair|survival|stress|division|adhesion" +
-				"|control|excision|fusion|cycle" +
-				//"" +
-				"|heat|shock|proteoglycan|core|homeobox" +
-				//"" +
-				"|chemokine|cytokine|potassium|calcium|sodium|retinol|pyruvate|vitamin|glutamate|[Zz]inc" +
-				"|estrogen|thrombin|arrestin|actin|ubiquitin|mucin|urotensin|disintegrin|activin|chromatin|calmodulin" +
-				"|tubulin|cyclin|immunoglobulin|heparin|GTP" +
-				"|tyrosine|serine|threonine|alanine|arginine|asparagine|cysteine|glutamine|leucine|isoleucine" +
-				"|glycine|methionine|histidine|proline|lysine|phenylalanie|thryptophan|valine" +
-				//"" +
-				"|low|high|highly|non|heterogeneous|homogeneous|light|heavy|negative|novel|putative" +
-				"|dependent|accessory|peripheral|regulatory|deficient|terminal|transcriptional|inducible|soluble" +
-				"|dual|specificity|specific|nucleic|acid|putative|peroxisomal|basic" +
-				"|nucleolar|secretory" +
-				"" +
-				// new and to sort:
-				"|susceptibility|paired|like|specific|muscle|testis" +
-				"|mobility|programmed|matrix|channel|end|ciliary|neurotrophic|retinoid|germinal|center|neural|finger" +
-				"|fibroblast|lymphokine" +
-				//"" +
-				//"|A|N" +
-				"|[a-z]+ine[\\s\\-]rich" +
-				"|[a-z]+ant" +
-				//"" +
-				"|two" +
-				//"" +
-				"|to|by|that|like|a|[tT]he|for|of|and|or|with|in" +
-				//"" +
-				"|[Aa]ntigen|lymphocyte|cytoplasmic|helicase|retinoic|acid|plasminogen|cytoskeletal|anchor" +
-				"|[Aa]nti|integral|membrane|[Nn]eutrophil|ubiquitin" +
-				"|basic|leucine|zipper|putative|transmembrane|proteasome|responsive" +
-				
-				// removed:
-				// |clathrin|I|i|II|ii|iii|III|gamma|delta|alpha|beta
-				// |[a-z]phin|[a-z]+[^u]lin|[a-z]+asia|[a-z]+itis
-				// |mannose
-
-				")+('?s)?$"))
+		if (unspecificNamePartPattern.matcher(term).matches())
 			return true;
 		return false;
 	}
 
 	
+	/** Single words that are pretty much always false positives, case-sensitive. */
+	private static final Pattern unspecificSingleWordPattern = Pattern.compile("(aim|fat|tube|part|mass|[Tt]runcated|envelope" +
+		"|gels|[Tt]ag|ORF|secretory|mediator|inactive|pump|cis|killer" +
+		"|islet|homeobox|insulin|clamp|arch|obese" +
+		"|transactivator|scaffold|fused|blot|ray" +
+		"|II|VII|[Aa]lpha|[Bb]eta|[Gg]amma|[Dd]elta|[Ee]psilon|tau|zeta" +
+		"|great|tissue|simple|face|nude|type|raft|partial|bind|cord|Chr|rank|anti" +
+		"|can|not|was|has|on|via|use|up|acidic|longest|best|raised|multiple" +
+		"|Ca2|CA|C\\-C|CHO|Cys|pro|how|early|similar|no|period|rod" +
+		"|interleukins|releases?|origins?|chemokines?|sons?|nets?" +
+		//"|LPS" +
+		"|[a-z]+s" + // caspases, kinases
+		// added for Lupus/IBD project:
+		"|mild|platelet|drip|sera|neo|radix|spliceosomal|hip" +
+		"|Chi|dot|rash|BMI|toll|min|lethal|pan|Med|celiac" +
+		"|Abs|Ags|UTR|expand|killer" +
+		"|alpha1|alpha4|beta1|gamma1" +
+		"|[Pp]roteasome|flu|Dan" +
+		"|CD4|CD8|Mai|dL" +
+		// some occurrences in BC2 GN test
+		"|kbp|helical" +
+		"|min\\-1" +
+		"|sub|repressor" +
+		"|pituitary" +
+		// application to Medline XML found these:
+		"|ANOVA|flap|jaw|hook|wash|grid|scan|rage|coil|Poly|poly|ate|semi|ankle|fat-free|HDL|LDL|CHD|Mir|cited|hangover" +
+		"|per \\d+|or \\d+|OR \\d+|six \\d+|F \\d+|at \\d+|is \\d+|\\-19|n-3|at \\d+ d|s to|acid 2|HS is" +
+		"|pin|cramp|Vmax|chip|mix|max|spatial|c nu|scar|or VE|Platelet|Mn|ash|jade|cod|lip|tan|Amid|sec|lime" +
+		"|coreceptor|inter|stab|oligo|rim|peri|chi|mer|mol|sink|as L|kit|Pigs|goat|jet|taxi|lab|mask|patched" +
+		// medline 2015:
+		"|miR|click|spin|pen|flip|Tumor|lobe|longevity|gem|expanded|ATP|ADP|PR 1|Carlo" +
+		")");
+
 	/**
 	 * Checks a gene name against a list of single word, case sensitive words
 	 * that are pretty much always false positives: "aim", "fat", "up". 
@@ -303,50 +349,23 @@ public class UnspecificNameFilter implements Filter {
 	 * @return
 	 */
 	public static boolean isUnspecificSingleWord (String name) {
-		return name.trim().matches("(aim|fat|tube|part|mass|[Tt]runcated|envelope" +
-				"|gels|[Tt]ag|ORF|secretory|mediator|inactive|pump|cis|killer" +
-				"|islet|homeobox|insulin|clamp|arch|obese" +
-				"|transactivator|scaffold|fused|blot|ray" +
-				"|II|VII|[Aa]lpha|[Bb]eta|[Gg]amma|[Dd]elta|[Ee]psilon|tau|zeta" +
-				"|great|tissue|simple|face|nude|type|raft|partial|bind|cord|Chr|rank|anti" +
-				"|can|not|was|has|on|via|use|up|acidic|longest|best|raised|multiple" +
-				"|Ca2|CA|C\\-C|CHO|Cys|pro|how|early|similar|no|period|rod" +
-				"|interleukins|releases?|origins?|chemokines?|sons?|nets?" +
-				//"|LPS" +
-				"|[a-z]+s" + // caspases, kinases
-				// added for Lupus/IBD project:
-				"|mild|platelet|drip|sera|neo|radix|spliceosomal|hip" +
-				"|Chi|dot|rash|BMI|toll|min|lethal|pan|Med|celiac" +
-				"|Abs|Ags|UTR|expand|killer" +
-				"|alpha1|alpha4|beta1|gamma1" +
-				"|[Pp]roteasome|flu|Dan" +
-				"|CD4|CD8|Mai|dL" +
-				// some occurrences in BC2 GN test
-				"|kbp|helical" +
-				"|min\\-1" +
-				"|sub|repressor" +
-				"|pituitary" +
-				// application to Medline XML found these:
-				"|ANOVA|flap|jaw|hook|wash|grid|scan|rage|coil|Poly|poly|ate|semi|ankle|fat-free|HDL|LDL|CHD|Mir|cited|hangover" +
-				"|per \\d+|or \\d+|OR \\d+|six \\d+|F \\d+|at \\d+|is \\d+|\\-19|n-3|at \\d+ d|s to|acid 2|HS is" +
-				"|pin|cramp|Vmax|chip|mix|max|spatial|c nu|scar|or VE|Platelet|Mn|ash|jade|cod|lip|tan|Amid|sec|lime" +
-				"|coreceptor|inter|stab|oligo|rim|peri|chi|mer|mol|sink|as L|kit|Pigs|goat|jet|taxi|lab|mask|patched" +
-				// medline 2015:
-				"|miR|click|spin|pen|flip|Tumor|lobe|longevity|gem|expanded|ATP|ADP|PR 1|Carlo" +
-				")");
+		return unspecificSingleWordPattern.matcher(name.trim()).matches();
 	}
 
 
+	/** Single words that are pretty much always false positives, lower-cased. */
+	private static final Pattern unspecificSingleWordCaseInsensitivePattern = Pattern.compile("(for|in|of|at|an" +
+		"|milk|cycling|enabled|blast|lipase|golgi|fusion|proteins?|nuclear|sex" + 
+		"|membrane|mitochondrial" +
+		"|partial|macrophage|condensed|wt)");
+
 	/**
 	 *
 	 * @param name
 	 * @return
 	 */
 	public static boolean isUnspecificSingleWordCaseInsensitive (String name) {
-		return name.toLowerCase().trim().matches("(for|in|of|at|an" +
-				"|milk|cycling|enabled|blast|lipase|golgi|fusion|proteins?|nuclear|sex" + 
-				"|membrane|mitochondrial" +
-				"|partial|macrophage|condensed|wt)");
+		return unspecificSingleWordCaseInsensitivePattern.matcher(name.toLowerCase().trim()).matches();
 	}
 
 
@@ -379,6 +398,29 @@ public class UnspecificNameFilter implements Filter {
 	}
 
 
+	/** Amino acids, using three-letter codes and full names. */
+	private static final Pattern aminoAcidPattern = Pattern.compile("(" +
+		"Ala|[Aa]lanine" +
+		"|Arg|[Aa]rginine" +
+		"|Asn|[Aa]sparagine" +
+		"|Asp|[Aa]spartic acid" +
+		"|Cys|[Cc]ysteine" +
+		"|Gln|[Gg]lutamine" +
+		"|Gly|[Gg]lycine" +
+		"|Glu|[Gg]lutamic acid" +
+		"|His|[Hh]istidine" +
+		"|Ile|[Ii]soleucine" +
+		"|Leu|[Ll]eucine" +
+		"|Lys|[Ll]ysine?" +
+		"|Met|[Mm]ethionine" +
+		"|Phe|[Pp]enylalanine" +
+		"|Pro|[Pp]roline" +
+		"|Ser|[Ss]erine" +
+		"|Thr|[Tt]hreonine" +
+		"|Trp|[Tt]ryptophane?" +
+		"|Tyr|[Tt]yrosine" +
+		"|Val|[Vv]aline)s?");
+
 	/**
 	 * Checks if the given term matches an amino acid, using three-letter code (Ala) and full names (Alanine, alanines).
 	 * Does not check against one-letter codes (A). 
@@ -386,30 +428,34 @@ public class UnspecificNameFilter implements Filter {
 	 * @return
 	 */
 	public static boolean isAminoAcid (String name) {
-		return name.matches("(" +
-				"Ala|[Aa]lanine" +
-				"|Arg|[Aa]rginine" +
-				"|Asn|[Aa]sparagine" +
-				"|Asp|[Aa]spartic acid" +
-				"|Cys|[Cc]ysteine" +
-				"|Gln|[Gg]lutamine" +
-				"|Gly|[Gg]lycine" +
-				"|Glu|[Gg]lutamic acid" +
-				"|His|[Hh]istidine" +
-				"|Ile|[Ii]soleucine" +
-				"|Leu|[Ll]eucine" +
-				"|Lys|[Ll]ysine?" +
-				"|Met|[Mm]ethionine" +
-				"|Phe|[Pp]enylalanine" +
-				"|Pro|[Pp]roline" +
-				"|Ser|[Ss]erine" +
-				"|Thr|[Tt]hreonine" +
-				"|Trp|[Tt]ryptophane?" +
-				"|Tyr|[Tt]yrosine" +
-				"|Val|[Vv]aline)s?");
+		return aminoAcidPattern.matcher(name).matches();
 	}
 
 
+	/** Words that end like disease names. */
+	private static final Pattern diseaseSuffixPattern = Pattern.compile(
+		".*([a-z]+(phase|osis|topy|trophy|itis|noma|phoma|axia|emia|stoma)|syndrome|failure|disease|severity)");
+	/** Known disease names and abbreviations. */
+	private static final Pattern diseaseNamePattern = Pattern.compile(
+		"(NF|[Nn]eurofibromatosis([\\s\\-][12])?" +
+		"|DM" + //|myotonic\\sdystrophy" +
+		"|Lu|Lutheran\\sblood\\sgroup" +
+		"|Se" +
+		"|H" +
+		"|Le|Lewis\\sblood\\sgroup" +
+		"|Rb" + //|retinoblastoma" +
+		"|LW|LW\\sblood\\sgroup|Landsteiner[\\s\\-]Wiener\\sblood\\sgroup" +
+		"|autoimmune susceptibility" +
+		"|severe combined immunodeficiency" +
+		"|FHC" +//|familial\\shypercholesterolemia" +
+		// Lupus/IBD:
+		"|adipose|SLE|multiple sclerosis|anti\\-?phospholipid syndrome|[a-z]+ syndrome" +
+		"|thrombocytopenia|renal amyloidosis|IBD" +
+		// BC2 gn text
+		"|hepatocellular\\scarcinoma|hereditary\\shemochromatosis|promyelocytic\\sleukemia" +
+		"|retinitis pigmentosa|multiple endocrine neoplasia" +
+		")");
+
 	/**
 	 *	Returns true if the name represents a disease name.
 	 *
@@ -419,28 +465,9 @@ public class UnspecificNameFilter implements Filter {
 	public static boolean isDiseaseName (String name) {
 		boolean ret = false;
 		// cannot remove "... disease" directly, b/c "a gene associated with ... disease"!
-		if (name.trim().matches(
-				".*([a-z]+(phase|osis|topy|trophy|itis|noma|phoma|axia|emia|stoma)|syndrome|failure|disease|severity)"))
+		if (diseaseSuffixPattern.matcher(name.trim()).matches())
 			ret = true;
-		if (name.trim().matches(
-				"(NF|[Nn]eurofibromatosis([\\s\\-][12])?" +
-				"|DM" + //|myotonic\\sdystrophy" +
-				"|Lu|Lutheran\\sblood\\sgroup" +
-				"|Se" +
-				"|H" +
-				"|Le|Lewis\\sblood\\sgroup" +
-				"|Rb" + //|retinoblastoma" +
-				"|LW|LW\\sblood\\sgroup|Landsteiner[\\s\\-]Wiener\\sblood\\sgroup" +
-				"|autoimmune susceptibility" +
-				"|severe combined immunodeficiency" +
-				"|FHC" +//|familial\\shypercholesterolemia" +
-				// Lupus/IBD:
-				"|adipose|SLE|multiple sclerosis|anti\\-?phospholipid syndrome|[a-z]+ syndrome" +
-				"|thrombocytopenia|renal amyloidosis|IBD" +
-				// BC2 gn text
-				"|hepatocellular\\scarcinoma|hereditary\\shemochromatosis|promyelocytic\\sleukemia" +
-				"|retinitis pigmentosa|multiple endocrine neoplasia" +
-				")"))
+		if (diseaseNamePattern.matcher(name.trim()).matches())
 			ret = true;
 
 		return ret;
@@ -468,30 +495,36 @@ public class UnspecificNameFilter implements Filter {
 	}
 
 
+	/** Tissues, cell types and cell compartments. */
+	private static final Pattern tissueCellCompartmentPattern = Pattern.compile(
+		"([a-z]+(plasmic|plastic)" +
+		"|[a-z]+(skeletal|\\sretina)|amyloid|neuronal" +
+		"|[a-z]+(phil)" +
+		"|[a-z]+(cytes?)|[a-z]+ic cell" +
+		"|[Ss]tem cells?" +
+		"|[Ee]ndothelial cell|T cell" + 
+		"|[a-z]ial|[a-z]ic" +
+		"|post\\-?synaptic" +
+		"|endothelial|epithelial" +
+		"|[Ii]ntestinal" +
+		"|skin-derived|lymphoid" +
+		"|skeletal muscle|liver|kidney|cytoskeleton|hematopoietic|retinal|dendritic|retina|testis" +
+		")"
+		);
+
 	/**
 	 *
 	 * @param name
 	 * @return
 	 */
 	public static boolean isTissueCellCompartment (String name) {
-		return name.trim().matches(
-				"([a-z]+(plasmic|plastic)" +
-				"|[a-z]+(skeletal|\\sretina)|amyloid|neuronal" +
-				"|[a-z]+(phil)" +
-				"|[a-z]+(cytes?)|[a-z]+ic cell" +
-				"|[Ss]tem cells?" +
-				"|[Ee]ndothelial cell|T cell" + 
-				"|[a-z]ial|[a-z]ic" +
-				"|post\\-?synaptic" +
-				"|endothelial|epithelial" +
-				"|[Ii]ntestinal" +
-				"|skin-derived|lymphoid" +
-				"|skeletal muscle|liver|kidney|cytoskeleton|hematopoietic|retinal|dendritic|retina|testis" +
-				")"
-		);
+		return tissueCellCompartmentPattern.matcher(name.trim()).matches();
 	}
 
 
+	/** CD markers. */
+	private static final Pattern cdNamePattern = Pattern.compile("CD\\d+");
+
 	/**
 	 *	Returns true if the name is followed by a keyword indicating that this name is a cell line.
 	 *
@@ -511,7 +544,7 @@ public class UnspecificNameFilter implements Filter {
 //			return true;
 //		}
 		
-		if (name.matches("CD\\d+")
+		if (cdNamePattern.matcher(name).matches()
 				&& sentence.matches(".*" + leftWordBoundary  + maskedName + rightWordBoundary + "([A-Za-z\\-]+ )?(cell)s?.*"))
 			return true;
 
@@ -526,18 +559,24 @@ public class UnspecificNameFilter implements Filter {
 
 
 
+	/** Common species names. */
+	private static final Pattern speciesPattern = Pattern.compile(
+		"(human|man|patient|mouse|mice|murine|pig|hiv|rabbit|coli|avian|chimp|chicken|rat|e\\. coli)"
+		);
+
 	/**
 	 * Naive implementation: checks if the name refers to a species.
 	 * @param name
 	 * @return true if the name refers to a species
 	 */
 	public static boolean isSpecies (String name) {
-		return name.trim().toLowerCase().matches(
-				"(human|man|patient|mouse|mice|murine|pig|hiv|rabbit|coli|avian|chimp|chicken|rat|e\\. coli)"
-		);
+		return speciesPattern.matcher(name.trim().toLowerCase()).matches();
 	}
 
 
+	/** Human chromosome names, with arm and optional bands. */
+	private static final Pattern chromosomeNamePattern = Pattern.compile("(X|Y|[\\d]+[pq](\\.[\\d\\.]+)?)");
+
 	/**
 	 * Checks if the given name found in a sentence refers to a (human!) chromosome:<br>
 	 * it should have at least a chromosome number and arm (13p), maybe also bands (13p.23), and
@@ -548,13 +587,20 @@ public class UnspecificNameFilter implements Filter {
 	 * @return true if the given name refers to a chromosome
 	 */
 	public static boolean isChromosome (String name, String sentence) {
-		if (!name.matches("(X|Y|[\\d]+[pq](\\.[\\d\\.]+)?)")) return false;
+		if (!chromosomeNamePattern.matcher(name).matches()) return false;
 		name = StringHelper.espaceString(name);
 		String maskedName = StringHelper.espaceString(name);
 		return sentence.matches(".*(chromosome " + maskedName + "|" + maskedName + " chromosome).*");
 	}
 	
 	
+	/** Sentences that refer to lipopolysaccharide rather than the gene LPS. */
+	private static final Pattern lpsContextPattern = Pattern.compile(".*(induce|administ|stimulat).*");
+	/** Sentences that refer to the experimental technique GST. */
+	private static final Pattern gstContextPattern = Pattern.compile(".*(pull\\-?down|assay|fusion|purification|\\Wtag\\W|blotting|anti\\-?body).*");
+	/** Sentences that refer to the polymerase chain reaction. */
+	private static final Pattern pcrContextPattern = Pattern.compile(".*(chain[\\-\\s]?reaction|PCR|Pcr).*");
+
 	/**
 	 * Some gene names refer to the actual gene only in very few cases. Examples are<br>
 	 * - GST (glutathione-S-transferase, an experimental technique for pulldowns),<br>
@@ -568,9 +614,9 @@ public class UnspecificNameFilter implements Filter {
 	 */
 	public static boolean isNegativePair (String name, String sentence) {
 		String maskedName = StringHelper.espaceString(name);
-		if (name.equals("LPS") && sentence.matches(".*(induce|administ|stimulat).*")) return true;
-		if (name.equals("GST") && sentence.matches(".*(pull\\-?down|assay|fusion|purification|\\Wtag\\W|blotting|anti\\-?body).*")) return true;
-		if (name.equalsIgnoreCase("polymerase") && sentence.matches(".*(chain[\\-\\s]?reaction|PCR|Pcr).*")) return true;
+		if (name.equals("LPS") && lpsContextPattern.matcher(sentence).matches()) return true;
+		if (name.equals("GST") && gstContextPattern.matcher(sentence).matches()) return true;
+		if (name.equalsIgnoreCase("polymerase") && pcrContextPattern.matcher(sentence).matches()) return true;
 		if (sentence.matches(".*" + maskedName + " (patient|disease|symptom|syndrome?)s?.*")) return true;
 		if (sentence.matches(".*(disease|symptom|syndrome?|cancer|[a-z]+oma|[a-z]+itis) \\(" + maskedName + "\\)")) return true;
 		return false;
@@ -600,4 +646,39 @@ public class UnspecificNameFilter implements Filter {
 	}
 
 
+	/**
+	 * Same as {@link #textHasPlural(String, String)}, but for names without reg.ex. meta-characters,
+	 * looks up the plural form in the set of plural forms of all names in the text, which
+	 * is computed with a single scan over the text and then cached in <tt>pluralFormsPerText</tt>.
+	 * 
+	 * @param name
+	 * @param text
+	 * @param context
+	 * @param pluralFormsPerText
+	 * @return
+	 */
+	private static boolean textHasPlural (String name, Text text, Context context, Map<Text, Set<String>> pluralFormsPerText) {
+		if (name.length() == 0 || !MultiNameMatcher.isLiteral(name) || !MultiNameMatcher.isSingleLine(text.plainText))
+			return textHasPlural(name, text.plainText);
+
+		Set<String> pluralForms = pluralFormsPerText.get(text);
+		if (pluralForms == null) {
+			Set<String> allPluralForms = new HashSet<String>();
+			for (RecognizedEntity entity: context.getUnidentifiedEntities()) {
+				if (entity.getText().equals(text) && MultiNameMatcher.isLiteral(entity.getName()))
+					allPluralForms.add(entity.getName() + "s");
+			}
+			MultiNameMatcher matcher = new MultiNameMatcher(allPluralForms, MultiNameMatcher.WHITESPACE + "([\"",
+					MultiNameMatcher.WHITESPACE + ",.])\"", false);
+			pluralForms = matcher.findOccurringNames(text.plainText);
+			pluralFormsPerText.put(text, pluralForms);
+		}
+
+		if (!pluralForms.contains(name + "s"))
+			return false;
+		// plural form occurs, check if it refers to a group of similar genes
+		return textHasPlural(name, text.plainText);
+	}
+
+
 }
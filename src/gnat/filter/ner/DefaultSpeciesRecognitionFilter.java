@@ -8,17 +8,31 @@ import gnat.representation.GeneRepository;
 import gnat.representation.Text;
 import gnat.representation.TextRepository;
 
+import gnat.utils.MultiNameMatcher;
+
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import brics.automaton.ActionAutomaton;
+import brics.automaton.Actor;
+import brics.automaton.Automaton;
+import brics.automaton.BasicOperations;
+import brics.automaton.RegExp;
+import brics.automaton.StartAndEndOfTokenDeterminer;
+import brics.automaton.State;
 
 /**
  * A filter that scans texts for species and assigns NCBI Taxonomy IDs; default implementation,
  * scans for human, mouse, rat, yeast (S.cer), and fruit fly only.
  * <br><br>
+ * The names of all species are compiled into a single automaton, which finds all
+ * species names in a line with one scan (longest names first).
+ * <br><br>
  * Taxon IDs will be stored in each text's {@link Text#taxonIDs} field 
  * and thus not be annotated with positions.<br>In addition, the names found in a text representing
  * a species will be accessible via {@link Text#taxonIdsToNames}.
@@ -31,63 +45,53 @@ public class DefaultSpeciesRecognitionFilter implements Filter {
 	/** Use default species instead of actually running the NER for species. For debug purposes mostly. */
 	public boolean useAllDefaultSpecies = false;
 	
-	/** Defines the left side of a valid species name in a sentence: typically, a non-alphanumeric
-	 *  character such as bracket or white space immmediately to the left, and any number of 
-	 *  characters to the left till the sentence start. Has to start with "^" to match the sentence
-	 *  start. */
-	static final String PATTERN_LEFT  = "^.*(?:^|[\\W])";
-	/** Defines the right side of a valid species name in a sentence: typically, a non-alphanumeric
-	 *  character such as bracket or white space immmediately to the right, and any number of 
-	 *  characters to the right till the end of the sentence. Has to end with "$" to match the sentence
-	 *  end. */
-	static final String PATTERN_RIGHT = "(?:[\\W]|$).*$";
-	
-	/** Patterns that match certain species names in a sentence. As a convention,
-	 *  matching group 1 for the sentence has to return the matched species name.
-	 *  All other parenthesis should be marked such that they to not denote matching
-	 *  groups, using the markup "?:" as in "(?:...)".<br>
-	 *  The patterns also have to match from the sentence start to the end and 
-	 *  therefore always have to start with "^" and end with "$". Make use of 
-	 *  {@link #PATTERN_LEFT} and {@link #PATTERN_RIGHT} to surround the species names
-	 *  with valid left/right sides that also match to the sentence start/end. */
-	static final String PATTERN_YEAST = PATTERN_LEFT +
-			"(" +
+	/** White space characters, as matched by <tt>\s</tt> in a Java regular expression. */
+	static final String WS = " \t\n\u000B\f\r";
+
+	/** Names of certain species, in the syntax of {@link RegExp}. A name is recognized if it is
+	 *  surrounded by non-word characters (<tt>[^a-zA-Z_0-9]</tt>) or the start/end of a line,
+	 *  see {@link SpeciesTokenDeterminer}. */
+	static final String NAMES_YEAST =
 			"[Yy]east|baker's yeast" +
 			"|Saccharomyces cerevisiae S288c|Saccharomyces cerevisiae" +
-			"|[Ss]\\.\\s?[Cc]er(?:\\.|evisiae)?" +
-			"|ferments?" +
-			")" +
-			PATTERN_RIGHT;
-	static final String PATTERN_HUMAN = PATTERN_LEFT +
-			"(" +
-			"[Hh]umans?|man|patients?|cohorts?|[Hh](\\.|omo)\\ssap(\\.|iens)" +
+			"|[Ss]\\.[" + WS + "]?[Cc]er(\\.|evisiae)?" +
+			"|ferments?";
+	static final String NAMES_HUMAN =
+			"[Hh]umans?|man|patients?|cohorts?|[Hh](\\.|omo)[" + WS + "]sap(\\.|iens)" +
 			// human cell lines
-			"|(?:HTB-134|HT-29" + 
-			"|293 cells?|HEK[\\-\\s]?293|293T|T47D|T-47D|Ramsey" +
+			"|HTB\\-134|HT\\-29" +
+			"|293 cells?|HEK[\\-" + WS + "]?293|293T|T47D|T\\-47D|Ramsey" +
 			// typically human diseases
-			"|breast cancer)" +
+			"|breast cancer" +
 			// generalization: mammals = humans in Medline
-			"|(?:mammalian cells?|mammalian|mammals|vertebrate homolog[a-z]*)" +
-			")" +
-			PATTERN_RIGHT;
-	static final String PATTERN_MOUSE = PATTERN_LEFT +
-			"(" +
-			"[Mm]ouse|[Mm]ice|[Mm]urine|[Mm](?:\\.|us)\\s[Mm]us(?:\\.|culus)?" +
+			"|mammalian cells?|mammalian|mammals|vertebrate homolog[a-z]*";
+	static final String NAMES_MOUSE =
+			"[Mm]ouse|[Mm]ice|[Mm]urine|[Mm](\\.|us)[" + WS + "][Mm]us(\\.|culus)?" +
 			// strains
-			"|C57BL|C3H" + 
+			"|C57BL|C3H" +
 			// murine cell lines
-			"|3T3|NIH\\-3T3|STO|Yac\\-1|CTLL\\-2|EGG" + 
-			")" + 
-			PATTERN_RIGHT;
-	static final String PATTERN_RAT = PATTERN_LEFT +
-			"([Rr]at|[Rr]ats|[Rr](\\.|attus)\\s[Nn]or(\\.||v\\.|vegicus)?)" +
-			PATTERN_RIGHT;
-	static final String PATTERN_FRUITFLY = PATTERN_LEFT +
-			"(" +
-			"[Ff]ruit[\\s\\-]?[Ff]ly|[Ff]lies|[Ff]ly" +
-			"|[Dd](?:\\.|rosophilae?)|[Dd](?:\\.|rosophila)\\s[Mm]el(\\.|anogaster)" +
-			")" +
-			PATTERN_RIGHT;
+			"|3T3|NIH\\-3T3|STO|Yac\\-1|CTLL\\-2|EGG";
+	static final String NAMES_RAT =
+			"[Rr]at|[Rr]ats|[Rr](\\.|attus)[" + WS + "][Nn]or(\\.|v\\.|vegicus)?";
+	static final String NAMES_RODENT =
+			"[Rr]odents?";
+	static final String NAMES_FRUITFLY =
+			"[Ff]ruit[\\-" + WS + "]?[Ff]ly|[Ff]lies|[Ff]ly" +
+			"|[Dd](\\.|rosophilae?)|[Dd](\\.|rosophila)[" + WS + "][Mm]el(\\.|anogaster)";
+
+	/** Lines that mention yeast two-hybrid screens or yeast homologs do not refer to yeast as a species. */
+	static final Pattern YEAST_EXCLUSION_PATTERN = Pattern.compile("((two|2|to|1|one|3|three)[\\s\\-]?hybrid|Y2H|YS2H)|yeast homolog");
+
+	static final int TAXON_HUMAN = 9606;
+	static final int TAXON_MOUSE = 10090;
+	static final int TAXON_RAT = 10116;
+	static final int TAXON_FRUITFLY = 7227;
+	static final int TAXON_YEAST = 559292;
+
+	/** Finds the names of all species in a single scan over a line; one actor per species. */
+	private static final ActionAutomaton speciesAutomaton = buildSpeciesAutomaton();
+
+	private static final SpeciesTokenDeterminer tokenDeterminer = new SpeciesTokenDeterminer();
 
 	// species-specific gene prefixes
 	// h, H - Homo sapiens
@@ -112,6 +116,112 @@ public class DefaultSpeciesRecognitionFilter implements Filter {
 	}
 	
 
+	/**
+	 * Builds one automaton for the names of all species, with an actor per species.
+	 * @return
+	 */
+	static ActionAutomaton buildSpeciesAutomaton () {
+		List<Automaton> automata = new LinkedList<Automaton>();
+		automata.add(makeSpeciesAutomaton(NAMES_HUMAN, TAXON_HUMAN));
+		automata.add(makeSpeciesAutomaton(NAMES_MOUSE, TAXON_MOUSE));
+		automata.add(makeSpeciesAutomaton(NAMES_RAT, TAXON_RAT));
+		automata.add(makeSpeciesAutomaton(NAMES_RODENT, TAXON_MOUSE, TAXON_RAT));
+		automata.add(makeSpeciesAutomaton(NAMES_FRUITFLY, TAXON_FRUITFLY));
+		automata.add(makeSpeciesAutomaton(NAMES_YEAST, TAXON_YEAST));
+		return new ActionAutomaton(BasicOperations.union(automata), true);
+	}
+
+
+	/**
+	 * Returns an automaton for the given names, whose accept states report the given taxa.
+	 * @param names
+	 * @param taxa
+	 * @return
+	 */
+	static Automaton makeSpeciesAutomaton (String names, int... taxa) {
+		Automaton automaton = new RegExp(names, RegExp.NONE).toAutomaton();
+		for (State state: automaton.getAcceptStates())
+			state.setActor(new SpeciesActor(taxa));
+		return automaton;
+	}
+
+
+	/**
+	 * Reports a species name found by the {@link #speciesAutomaton}, as one line
+	 * <tt>start, end, taxa..</tt> (tab-separated) per name.
+	 */
+	static class SpeciesActor implements Actor {
+		private static final long serialVersionUID = -1620433011735394474L;
+
+		private Set<Integer> taxa = new TreeSet<Integer>();
+
+		SpeciesActor (int... taxa) {
+			for (int taxon: taxa)
+				this.taxa.add(taxon);
+		}
+
+		public void act (char[] chars, int matchStartIndex, int matchEndIndex, StringBuffer outputBuffer) {
+			if (outputBuffer.length() > 0)
+				outputBuffer.append("\n");
+			outputBuffer.append(matchStartIndex);
+			outputBuffer.append("\t");
+			outputBuffer.append(matchEndIndex);
+			for (int taxon: taxa) {
+				outputBuffer.append("\t");
+				outputBuffer.append(taxon);
+			}
+		}
+
+		/** Names that refer to multiple species report all of them. */
+		public void merge (Actor actor) {
+			taxa.addAll(((SpeciesActor)actor).taxa);
+		}
+	}
+
+
+	/**
+	 * Species names have to be surrounded by non-word characters, as <tt>[\W]</tt> in a Java
+	 * regular expression, or the start/end of the line.
+	 */
+	static class SpeciesTokenDeterminer implements StartAndEndOfTokenDeterminer {
+		public boolean startOfToken (char[] chars, int index) {
+			return index == 0 || !isWordCharacter(chars[index - 1]);
+		}
+
+		public boolean endOfToken (char[] chars, int index) {
+			return index == chars.length - 1 || !isWordCharacter(chars[index + 1]);
+		}
+
+		static boolean isWordCharacter (char c) {
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+		}
+	}
+
+
+	/**
+	 * Checks whether a line mentions yeast two-hybrid screens or yeast homologs, see
+	 * {@link #YEAST_EXCLUSION_PATTERN}. Names of other species found in the line are masked
+	 * before, so they do not count as part of such a mention.
+	 * @param line
+	 * @param matches - output of the {@link #speciesAutomaton} for this line
+	 * @return
+	 */
+	static boolean isYeastExcluded (String line, String[] matches) {
+		char[] masked = line.toCharArray();
+		for (String match: matches) {
+			String[] cols = match.split("\t");
+			boolean isYeast = false;
+			for (int t = 2; t < cols.length; t++)
+				if (Integer.parseInt(cols[t]) == TAXON_YEAST)
+					isYeast = true;
+			if (!isYeast)
+				for (int c = Integer.parseInt(cols[0]); c <= Integer.parseInt(cols[1]); c++)
+					masked[c] = 'x';
+		}
+		return YEAST_EXCLUSION_PATTERN.matcher(new String(masked)).find();
+	}
+
+
 	/**
 	 * Processes all texts in the text repository by calling the remote server and adds the outcome,
 	 * i.e., recognized entities and candidate ids, to the context.
@@ -137,127 +247,39 @@ public class DefaultSpeciesRecognitionFilter implements Filter {
 			Map<Integer, List<String>> id2names = new HashMap<Integer, List<String>>();
 			String[] lines = text.getPlainText().split("[\r\n]+");
 			for (String line: lines) {
-				while (line.matches(PATTERN_HUMAN)) {
-					String name = line.replaceFirst(PATTERN_HUMAN, "$1");
-					String replace = "x";
-					for (int r = 1; r < name.length(); r++)	replace += "x";
-					line = line.replaceFirst(name, replace);
-					
-					List<String> names;
-					if (id2names.containsKey(9606))
-						names = id2names.get(9606);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(9606, names);
-					
-					if (debug) System.err.println("### Found human: '" + name + "' in text " + text.getID());
-					foundAspecies = true;
-				}
-				
-				while (line.matches(PATTERN_MOUSE)) {
-					String name = line.replaceFirst(PATTERN_MOUSE, "$1");
-					String replace = "x";
-					for (int r = 1; r < name.length(); r++)	replace += "x";
-					line = line.replaceFirst(name, replace);
-					
-					List<String> names;
-					if (id2names.containsKey(10090))
-						names = id2names.get(10090);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(10090, names);
-					
-					if (debug) System.err.println("###Found mouse: '" + name + "' in text " + text.getID());
-					foundAspecies = true;
-				}
-				
-				while (line.matches(PATTERN_RAT)) {
-					String name = line.replaceFirst(PATTERN_RAT, "$1");
-					String replace = "x";
-					for (int r = 1; r < name.length(); r++)	replace += "x";
-					line = line.replaceFirst(name, replace);
-					
-					List<String> names;
-					if (id2names.containsKey(10116))
-						names = id2names.get(10116);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(10116, names);
-					
-					if (debug) System.err.println("###Found rat: '" + name + "' in text " + text.getID());
-					foundAspecies = true;
-				}
-				
-				while (line.matches(".*(?:^|[\\W])" +
-						"([Rr]odents?)" +
-						"(?:[\\W]|$).*")) {
-					String name = line.replaceFirst("^.*(?:^|[\\W])" +
-							"([Rr]odents?)" +
-							"(?:[\\W]|$).*$", "$1");
-					String replace = "x";
-					for (int r = 1; r < name.length(); r++)	replace += "x";
-					line = line.replaceFirst(name, replace);
-					
-					List<String> names;
-					if (id2names.containsKey(10090))
-						names = id2names.get(10090);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(10090, names);
-					
-					if (id2names.containsKey(10116))
-						names = id2names.get(10116);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(10116, names);
-					
-					if (debug) System.err.println("###Found rodent: '" + name + "' in text " + text.getID());
-					foundAspecies = true;
-				}
-				
-				while (line.matches(PATTERN_FRUITFLY)) {
-					String name = line.replaceFirst(PATTERN_FRUITFLY, "$1");
-					String replace = "x";
-					for (int r = 1; r < name.length(); r++)	replace += "x";
-					line = line.replaceFirst(name, replace);
-					
-					List<String> names;
-					if (id2names.containsKey(7227))
-						names = id2names.get(7227);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(7227, names);
-					
-					if (debug) System.err.println("###Found fly: '" + name + "' in text " + text.getID());
-					foundAspecies = true;
-				}
-				
+				// names cannot span over other line terminators
+				if (!MultiNameMatcher.isSingleLine(line))
+					continue;
+
+				StringBuffer output = new StringBuffer();
+				if (!speciesAutomaton.run(line, output, tokenDeterminer))
+					continue;
+
+				String[] matches = output.toString().split("\n");
+				Boolean yeastExcluded = null;
+				for (String match: matches) {
+					String[] cols = match.split("\t");
+					String name = line.substring(Integer.parseInt(cols[0]), Integer.parseInt(cols[1]) + 1);
+					for (int t = 2; t < cols.length; t++) {
+						int taxon = Integer.parseInt(cols[t]);
+						if (taxon == TAXON_YEAST) {
+							if (yeastExcluded == null)
+								yeastExcluded = isYeastExcluded(line, matches);
+							if (yeastExcluded)
+								continue;
+						}
+
+						List<String> names;
+						if (id2names.containsKey(taxon))
+							names = id2names.get(taxon);
+						else
+							names = new LinkedList<String>();
+						names.add(name);
+						id2names.put(taxon, names);
 
-				// Saccharomyces cerevisiae S288c
-				while (line.matches(PATTERN_YEAST)
-						&& !line.matches(".*((two|2|to|1|one|3|three)[\\s\\-]?hybrid|Y2H|YS2H).*")
-						&& !line.matches(".*yeast homolog.*")) {
-					String name = line.replaceFirst(PATTERN_YEAST, "$1");
-					String replace = "x";
-					for (int r = 1; r < name.length(); r++)	replace += "x";
-					line = line.replaceFirst(name, replace);
-					
-					List<String> names;
-					if (id2names.containsKey(559292))
-						names = id2names.get(559292);
-					else
-						names = new LinkedList<String>();
-					names.add(name);
-					id2names.put(559292, names);
-					
-					if (debug) System.err.println("###Found yeast: '" + name + "' in text " + text.getID());
-					foundAspecies = true;
+						if (debug) System.err.println("### Found taxon " + taxon + ": '" + name + "' in text " + text.getID());
+						foundAspecies = true;
+					}
 				}
 				
 			} // for each line
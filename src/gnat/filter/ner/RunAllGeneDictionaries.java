@@ -10,20 +10,18 @@ import gnat.representation.Text;
 import gnat.representation.TextAnnotation;
 import gnat.representation.TextRange;
 import gnat.representation.TextRepository;
+import gnat.server.dictionary.DictionaryClient;
 import gnat.server.dictionary.DictionaryServer;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +64,13 @@ public class RunAllGeneDictionaries implements Filter {
 	 */
 	Set<Integer> limitToTaxons;
 	
+	/**
+	 * If true, {@link #filter(Context, TextRepository, GeneRepository)} throws an IllegalStateException when a
+	 * dictionary server could not annotate the texts, instead of reporting the error and continuing without the
+	 * entities from that server. Servers that were not available at instantiation time are skipped either way.
+	 */
+	private boolean failOnServerError = false;
+	
 	
 	/**
 	 * 
@@ -104,8 +109,15 @@ public class RunAllGeneDictionaries implements Filter {
 	 */
 	public void filter (Context context, TextRepository textRepository, GeneRepository geneRepository) {
 		Set<Integer> reported_missing_dictionaries = new HashSet<Integer>();
-		StringBuffer buffer = new StringBuffer();
-		for (Text text : textRepository.getTexts()) {
+		Pattern p = Pattern.compile("[\\r\\n]", Pattern.UNIX_LINES | Pattern.MULTILINE);
+
+		// collect the texts to send to each dictionary, so that each dictionary is called once for all texts
+		List<Text> texts = new ArrayList<Text>(textRepository.getTexts());
+		List<List<Integer>> taxaPerText = new ArrayList<List<Integer>>(texts.size());
+		Map<Integer, List<Integer>> textsPerTaxon = new LinkedHashMap<Integer, List<Integer>>();
+		List<String> plainTexts = new ArrayList<String>(texts.size());
+		for (int t = 0; t < texts.size(); t++) {
+			Text text = texts.get(t);
 			Set<Integer> taxaForThisText = text.taxonIDs;
 			if (taxaForThisText == null || taxaForThisText.size() == 0) {
 				System.err.println("#RunDictionaries: No species assigned to text " + text.getID() + ", using default species " + ConstantsNei.DEFAULT_SPECIES);
@@ -115,17 +127,15 @@ public class RunAllGeneDictionaries implements Filter {
 			
 			String plain = text.getPlainText();
 			
-			Pattern p = Pattern.compile("[\\r\\n]", Pattern.UNIX_LINES | Pattern.MULTILINE);
 			Matcher m = p.matcher(plain);
 			plain = m.replaceAll(" ");
+			plainTexts.add(plain);
 			
-			buffer.append("<text>");
-			buffer.append(plain);
-			buffer.append("</text>");
 			if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.DEBUG))
-				System.out.println("#INFO sending text to dictionary:\n" + buffer.toString() + "\n----------");
+				System.out.println("#INFO sending text to dictionary:\n<text>" + plain + "</text>\n----------");
 			
 			// go through all species recognized in this text
+			List<Integer> taxa = new LinkedList<Integer>();
 			for (int taxon: taxaForThisText) {
 				// if this taxon is set to be excluded, skip
 				if (isExcluded(taxon)) continue;
@@ -145,50 +155,61 @@ public class RunAllGeneDictionaries implements Filter {
 					continue;
 				}
 				
-				String serverName = getServerForTaxon(taxon);
-				int serverPort    = getPortForTaxon(taxon);
-					
-				// open a socket, send the text, receive annotations
-				Socket socket;
-				BufferedReader dictionaryReader;
-				BufferedWriter dictionaryWriter;
-				try {
-					socket = new Socket(serverName, serverPort);
-					dictionaryReader = new BufferedReader(new InputStreamReader(
-							new BufferedInputStream(socket.getInputStream() ), "UTF-8") );
-					dictionaryWriter = new BufferedWriter(new OutputStreamWriter(
-							new BufferedOutputStream(socket.getOutputStream()), "UTF-8") );
+				taxa.add(taxon);
+				List<Integer> textsForTaxon = textsPerTaxon.get(taxon);
+				if (textsForTaxon == null) {
+					textsForTaxon = new ArrayList<Integer>();
+					textsPerTaxon.put(taxon, textsForTaxon);
+				}
+				textsForTaxon.add(t);
+			}
+			taxaPerText.add(taxa);
+		}
 
-					dictionaryWriter.write(buffer.toString());
-					dictionaryWriter.newLine();
-					dictionaryWriter.flush();
-					String annotatedTexts = dictionaryReader.readLine();
-					
-					if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.DEBUG))
-						System.out.println("#INFO dictionary returned entities\n" + annotatedTexts + "\n----------");
-					
-					List<String> entities = this.extractEntityTags(annotatedTexts);
-					if (entities != null && entities.size() > 0) {
-						String entityString = entities.remove(0);
-						addRecognizedEntities(context, text, entityString);
-					}
-					
-					dictionaryReader.close();
-					dictionaryWriter.close();
-					socket.close();
-				} catch (UnknownHostException e) {
-					System.err.println("#RunDictionaries: " + e.getMessage());
-				} catch (java.net.SocketException e) {
-					System.err.println("#RunDictionaries: Remote dictionary server unreachable!" +
-						" [" + serverName + ":" + serverPort + "]");
-				} catch (IOException e) {
-					System.err.println("#RunDictionaries: " + e.getMessage());
-				} 
+		// send all texts for a species to its dictionary server, over a pooled connection
+		Map<Integer, Map<Integer, List<DictionaryClient.Entity>>> entitiesPerTaxon = new HashMap<Integer, Map<Integer, List<DictionaryClient.Entity>>>();
+		for (int taxon: textsPerTaxon.keySet()) {
+			String serverName = getServerForTaxon(taxon);
+			int serverPort    = getPortForTaxon(taxon);
+			List<Integer> textIndices = textsPerTaxon.get(taxon);
+			List<String> request = new ArrayList<String>(textIndices.size());
+			for (int t: textIndices)
+				request.add(plainTexts.get(t));
+			
+			IOException failure = null;
+			try {
+				List<List<DictionaryClient.Entity>> entities = DictionaryClient.getClient(serverName, serverPort).annotate(request);
 				
+				if (ConstantsNei.verbosityAtLeast(ConstantsNei.OUTPUT_LEVELS.DEBUG))
+					System.out.println("#INFO dictionary for species " + taxon + " returned entities for " + entities.size() + " texts\n----------");
+				
+				Map<Integer, List<DictionaryClient.Entity>> entitiesPerText = new HashMap<Integer, List<DictionaryClient.Entity>>();
+				for (int i = 0; i < textIndices.size(); i++)
+					entitiesPerText.put(textIndices.get(i), entities.get(i));
+				entitiesPerTaxon.put(taxon, entitiesPerText);
+			} catch (UnknownHostException e) {
+				System.err.println("#RunDictionaries: " + e.getMessage());
+				failure = e;
+			} catch (java.net.SocketException e) {
+				System.err.println("#RunDictionaries: Remote dictionary server unreachable!" +
+					" [" + serverName + ":" + serverPort + "]");
+				failure = e;
+			} catch (IOException e) {
+				System.err.println("#RunDictionaries: " + e.getMessage());
+				failure = e;
+			} 
+			if (failure != null && failOnServerError)
+				throw new IllegalStateException("Dictionary server " + serverName + ":" + serverPort + " for species " + taxon
+						+ " could not annotate the texts: " + failure.getMessage(), failure);
+		}
+
+		// add the entities in the order of texts and species
+		for (int t = 0; t < texts.size(); t++) {
+			for (int taxon: taxaPerText.get(t)) {
+				Map<Integer, List<DictionaryClient.Entity>> entitiesPerText = entitiesPerTaxon.get(taxon);
+				if (entitiesPerText != null)
+					addRecognizedEntities(context, texts.get(t), entitiesPerText.get(t));
 			}
-		
-			// clear buffer for next text
-			buffer.setLength(0);
 		}
 		
 	}
@@ -354,6 +375,17 @@ public class RunAllGeneDictionaries implements Filter {
 	}
 	
 	
+	/**
+	 * Sets whether {@link #filter(Context, TextRepository, GeneRepository)} throws an IllegalStateException
+	 * when a dictionary server fails, so that the caller does not take texts without dictionary annotations
+	 * for complete ones. Default: false, errors are reported on System.err only.
+	 * @param fail
+	 */
+	public void setFailOnServerError (boolean fail) {
+		failOnServerError = fail;
+	}
+	
+	
 	/**
 	 * Set the filter to not invoke dictionary servers for the given taxa.<br>
 	 * <b>Note</b>: overwrites the previous setting. Use {@link #addExcludeTaxon(int)} to add a taxon.
@@ -464,71 +496,24 @@ public class RunAllGeneDictionaries implements Filter {
 	
 	
 	/**
-	 * Returns a list of entity mark-ups found in annotated texts.
-	 * 
+	 * Adds entities found by a dictionary server in the given text to the context.
 	 * */
-	private List<String> extractEntityTags(String annotatedTexts) {
-		List<String> entities = new LinkedList<String>();
-		if (annotatedTexts == null)
-			return entities;
-
-		int textTagBeginIndex = annotatedTexts.indexOf("<text");
-		while (textTagBeginIndex != -1) {
-			int textTagEndIndex = annotatedTexts.indexOf("</text>", textTagBeginIndex);
-			String singleAnnotatedText = annotatedTexts.substring(textTagBeginIndex, textTagEndIndex);
-			String annotations = singleAnnotatedText.substring(singleAnnotatedText.indexOf(">") + 1);
-			if (annotations == null || annotations.length() == 0) {
-				entities.add(" ");
-			}
-			else {
-				entities.add(annotations);
-			}
-			textTagBeginIndex = annotatedTexts.indexOf("<text", textTagEndIndex);
-		}
-
-		return entities;
-	}
-	
-	
-	/**
-	 * Adds entities found as markup in the given annotated text to the context.
-	 * */
-	private void addRecognizedEntities (Context context, Text originalText, String annotatedText) {
+	public static void addRecognizedEntities (Context context, Text originalText, List<DictionaryClient.Entity> entities) {
 		//Set<RecognizedGeneName> geneNamesInText = new HashSet<RecognizedGeneName>();
 
-		int geneTagBeginIndex = annotatedText.indexOf("<entity");
-		while (geneTagBeginIndex != -1) {
-			// get the annotation of the next single entity
-			int geneTagEndIndex = annotatedText.indexOf("</entity>", geneTagBeginIndex);
-			String annotatedGeneName = annotatedText.substring(geneTagBeginIndex, geneTagEndIndex);
-			
-			String geneName = annotatedGeneName.substring(annotatedGeneName.indexOf(">") + 1);
-			int idOpenQuot = annotatedGeneName.indexOf("\"");
-			int idCloseQuot = annotatedGeneName.indexOf("\"", idOpenQuot + 1);
-			int startIndexOpenQuot = annotatedGeneName.indexOf("\"", idCloseQuot + 1);
-			int startIndexCloseQuot = annotatedGeneName.indexOf("\"", startIndexOpenQuot + 1);
-			int endIndexOpenQuot = annotatedGeneName.indexOf("\"", startIndexCloseQuot + 1);
-			int endIndexCloseQuot = annotatedGeneName.indexOf("\"", endIndexOpenQuot + 1);
-
-			int startIndex = Integer.parseInt(annotatedGeneName.substring(startIndexOpenQuot+1, startIndexCloseQuot));
-			int endIndex = Integer.parseInt(annotatedGeneName.substring(endIndexOpenQuot+1, endIndexCloseQuot));
-
+		for (DictionaryClient.Entity entity: entities) {
 			//int typeBeginIndex = annotatedGeneName.indexOf(" type=\"", geneTagBeginIndex);
-			String type = annotatedGeneName.replaceFirst("^.*(^|\\s)type=\"([^\"]*)\".*$", "$1");
+			String type = entity.markup.replaceFirst("^.*(^|\\s)type=\"([^\"]*)\".*$", "$1");
 			TextAnnotation.Type ttype = TextAnnotation.Type.getValue(type);
 			if (ttype == null || ttype.toString() == null
 					|| ttype.toString().length() == 0 || ttype == TextAnnotation.Type.UNKNOWN) {
 				ttype = TextAnnotation.Type.GENE;
 			}
 			
-			String idString = annotatedGeneName.substring(idOpenQuot + 1, idCloseQuot);
-
-			TextAnnotation textAnnotation =new TextAnnotation(new TextRange(startIndex, endIndex), geneName, ttype);
+			TextAnnotation textAnnotation =new TextAnnotation(new TextRange(entity.startIndex, entity.endIndex), entity.name, ttype);
 			textAnnotation.setSource("automatic");
 			RecognizedEntity recognizedGeneName = new RecognizedEntity(originalText, textAnnotation);
-			context.addRecognizedEntity(recognizedGeneName, idString.split(";"));
-
-			geneTagBeginIndex = annotatedText.indexOf("<entity", geneTagEndIndex);
+			context.addRecognizedEntity(recognizedGeneName, entity.ids.split(";"));
 		}
 	}
 }
@@ -7,19 +7,12 @@ import gnat.representation.GeneRepository;
 import gnat.representation.Text;
 import gnat.representation.TextContextModel;
 import gnat.representation.TextRepository;
+import gnat.server.dictionary.DictionaryClient;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -58,37 +51,18 @@ public class RunGoDictionary implements Filter {
 
 	/**
 	 * Processes all texts in the text repository by calling the remote server and adds the outcome, i.e. recognized entities and candidate ids, to the context.
+	 * All texts are sent in as few requests as possible, using the shared {@link DictionaryClient} for the server.
 	 * */
 	private void filter (Collection<Text> texts) {
-		try {
-
-			Socket socket = new Socket(serverName, serverPort);
-			BufferedReader dictionaryReader = new BufferedReader( new InputStreamReader( new BufferedInputStream(socket.getInputStream() ), "UTF-8") );
-			BufferedWriter dictionaryWriter = new BufferedWriter( new OutputStreamWriter( new BufferedOutputStream( socket.getOutputStream()), "UTF-8") );
-
-			StringBuffer buffer = new StringBuffer();
-			for (Text text : texts) {
-				buffer.append("<text>");
-				buffer.append(text.getPlainText());
-				buffer.append("</text>");
-			}
-
-			dictionaryWriter.write(buffer.toString());
-			dictionaryWriter.newLine();
-			dictionaryWriter.flush();
-			String annotatedTexts = dictionaryReader.readLine();
+		List<Text> textList = new ArrayList<Text>(texts);
+		List<String> plainTexts = new ArrayList<String>(textList.size());
+		for (Text text : textList)
+			plainTexts.add(text.getPlainText());
 
-			//System.out.println("#RGO: annot. text is '" + annotatedTexts + "'");
-			
-			List<String> entities = this.extractEntityTags(annotatedTexts);
-			for (Text text : texts) {
-				String entityString = entities.remove(0);
-				addGOTermAccessions(text, entityString);
-			}
-
-			dictionaryReader.close();
-			dictionaryWriter.close();
-			socket.close();
+		try {
+			List<List<DictionaryClient.Entity>> entities = DictionaryClient.getClient(serverName, serverPort).annotate(plainTexts);
+			for (int t = 0; t < textList.size(); t++)
+				addGOTermAccessions(textList.get(t), entities.get(t));
 		}
 		catch (UnknownHostException e) {
 			e.printStackTrace();
@@ -103,61 +77,20 @@ public class RunGoDictionary implements Filter {
 
 
 	/**
-	 * Returns a list of entity mark-ups found in annotated texts.
-	 * */
-	private List<String> extractEntityTags(String annotatedTexts)
-	{
-		List<String> entities = new LinkedList<String>();
-
-		int textTagBeginIndex = annotatedTexts.indexOf("<text");
-		while (textTagBeginIndex != -1) {
-			int textTagEndIndex = annotatedTexts.indexOf("</text>", textTagBeginIndex);
-			String singleAnnotatedText = annotatedTexts.substring(textTagBeginIndex, textTagEndIndex);
-			String annotations = singleAnnotatedText.substring(singleAnnotatedText.indexOf(">") + 1);
-			if (annotations == null || annotations.length() == 0) {
-				entities.add(" ");
-			}
-			else {
-				entities.add(annotations);
-			}
-			textTagBeginIndex = annotatedTexts.indexOf("<text", textTagEndIndex);
-		}
-
-		return entities;
-	}
-
-
-	/**
-	 * Adds entities found as markup in the given annotated text to the context.
+	 * Adds the GO codes of the given entities to the context model of the text.
 	 * */
-	private void addGOTermAccessions(Text text, String annotatedText)
+	private void addGOTermAccessions(Text text, List<DictionaryClient.Entity> entities)
 	{
 		List<String> goCodes = new ArrayList<String>();
 
-		int geneTagBeginIndex = annotatedText.indexOf("<entity");
-		while (geneTagBeginIndex != -1) {
-			int geneTagEndIndex = annotatedText.indexOf("</entity>", geneTagBeginIndex);
-			String annotatedTerm = annotatedText.substring(geneTagBeginIndex, geneTagEndIndex);
-			String term = annotatedTerm.substring(annotatedTerm.indexOf(">") + 1);
-			int idOpenQuot = annotatedTerm.indexOf("\"");
-			int idCloseQuot = annotatedTerm.indexOf("\"", idOpenQuot + 1);
-			int startIndexOpenQuot = annotatedTerm.indexOf("\"", idCloseQuot + 1);
-			int startIndexCloseQuot = annotatedTerm.indexOf("\"", startIndexOpenQuot + 1);
-			int endIndexOpenQuot = annotatedTerm.indexOf("\"", startIndexCloseQuot + 1);
-			int endIndexCloseQuot = annotatedTerm.indexOf("\"", endIndexOpenQuot + 1);
-			int startIndex = Integer.parseInt(annotatedTerm.substring(startIndexOpenQuot+1, startIndexCloseQuot));
-			int endIndex = Integer.parseInt(annotatedTerm.substring(endIndexOpenQuot+1, endIndexCloseQuot));
-
-			String idString = annotatedTerm.substring(idOpenQuot + 1, idCloseQuot);
-			String[] ids = idString.split(";");
+		for (DictionaryClient.Entity entity : entities) {
+			String[] ids = entity.ids.split(";");
 			for (String id : ids) {
 				if (id.startsWith("G")) {
 					Integer intId = Integer.parseInt( id.substring(1) );
 					goCodes.add(""+intId);
 				}
-            }
-
-			geneTagBeginIndex = annotatedText.indexOf("<entity", geneTagEndIndex);
+			}
 		}
 
 		TextContextModel textContextModel = text.getContextModel();
@@ -0,0 +1,320 @@
+package gnat.representation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import gnat.utils.FileHelper;
+
+/**
+ * Immutable, read-optimized form of a {@link TextPositionModel}.
+ * <br><br>
+ * Tokens are interned to int IDs, which are found using an open-addressing hash table;
+ * frequencies are stored in one int array per position. Total frequencies and the log of
+ * the relative frequency of each token are computed once, so that scoring a sequence of
+ * tokens does not allocate any objects.
+ * <br>
+ * Frequencies, totals and probabilities are the same as those of the TextPositionModel
+ * this model was built from, including the Laplace correction for unseen tokens.
+ * <br><br>
+ * Models are stored in a compact binary format, see {@link #writeToFile(String)};
+ * {@link #loadFromFile(String)} also reads serialized TextPositionModels.
+ */
+public class CompactTextPositionModel {
+
+	/** Marks the binary format of this model; the first four bytes of a model file. */
+	private static final int MAGIC = 0x47545046; // "GTPF"
+	private static final int VERSION = 1;
+
+	private final int positions;
+
+	/** All tokens seen at any position; the index of a token is its ID. */
+	private final String[] tokens;
+
+	/** Open-addressing hash table, stores token ID + 1 (0 marks an empty slot). */
+	private final int[] slots;
+	private final int slotMask;
+
+	/** For each position and token ID, the frequency (0 if never seen at that position). */
+	private final int[][] frequencies;
+
+	/** For each position, the sum of frequencies of all tokens seen at that position. */
+	private final int[] totalFrequencies;
+
+	/** For each position and token ID, log of the relative frequency. */
+	private final double[][] logRelativeFrequencies;
+
+	/** For each position, log of the relative frequency of an unseen token. */
+	private final double[] logUnseenRelativeFrequency;
+
+
+	/**
+	 * Builds a compact model from the given TextPositionModel.
+	 * @param model
+	 */
+	public CompactTextPositionModel (TextPositionModel model) {
+		this.positions = model.getNumberOfPositions();
+
+		Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+		for (int p = 0; p < positions; p++) {
+			for (String token: model.getTokensAtPosition(p)) {
+				if (!tokenIds.containsKey(token))
+					tokenIds.put(token, tokenIds.size());
+			}
+		}
+		this.tokens = new String[tokenIds.size()];
+		for (Map.Entry<String, Integer> entry: tokenIds.entrySet())
+			tokens[entry.getValue()] = entry.getKey();
+
+		this.frequencies = new int[positions][tokens.length];
+		for (int p = 0; p < positions; p++) {
+			Set<String> tokensAtPosition = model.getTokensAtPosition(p);
+			for (String token: tokensAtPosition)
+				frequencies[p][tokenIds.get(token)] = model.getFrequency(token, p);
+		}
+
+		this.slotMask = tableSize(tokens.length) - 1;
+		this.slots = new int[slotMask + 1];
+		this.totalFrequencies = new int[positions];
+		this.logRelativeFrequencies = new double[positions][tokens.length];
+		this.logUnseenRelativeFrequency = new double[positions];
+		index();
+	}
+
+
+	/**
+	 * Used when reading a model from its binary format.
+	 * @param tokens
+	 * @param frequencies
+	 */
+	private CompactTextPositionModel (String[] tokens, int[][] frequencies) {
+		this.positions = frequencies.length;
+		this.tokens = tokens;
+		this.frequencies = frequencies;
+		this.slotMask = tableSize(tokens.length) - 1;
+		this.slots = new int[slotMask + 1];
+		this.totalFrequencies = new int[positions];
+		this.logRelativeFrequencies = new double[positions][tokens.length];
+		this.logUnseenRelativeFrequency = new double[positions];
+		index();
+	}
+
+
+	/**
+	 * Fills the hash table and precomputes totals and log probabilities.
+	 */
+	private void index () {
+		for (int id = 0; id < tokens.length; id++) {
+			int slot = tokens[id].hashCode() & slotMask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & slotMask;
+			slots[slot] = id + 1;
+		}
+
+		for (int p = 0; p < positions; p++) {
+			int total = 0;
+			for (int id = 0; id < tokens.length; id++)
+				total += frequencies[p][id];
+			totalFrequencies[p] = total;
+
+			for (int id = 0; id < tokens.length; id++) {
+				int frequency = frequencies[p][id] == 0 ? 1 : frequencies[p][id];
+				logRelativeFrequencies[p][id] = Math.log(frequency / (double) total);
+			}
+			logUnseenRelativeFrequency[p] = Math.log(1 / (double) total);
+		}
+	}
+
+
+	/**
+	 * Size of the hash table: a power of two, at most half full.
+	 * @param numberOfTokens
+	 * @return
+	 */
+	private static int tableSize (int numberOfTokens) {
+		int size = 2;
+		while (size < numberOfTokens * 2)
+			size <<= 1;
+		return size;
+	}
+
+
+	/**
+	 * Returns the ID of the given token, or -1 if the token was not seen at any position.
+	 * @param token
+	 * @return
+	 */
+	public int getTokenId (String token) {
+		int slot = token.hashCode() & slotMask;
+		int entry;
+		while ((entry = slots[slot]) != 0) {
+			if (tokens[entry - 1].equals(token))
+				return entry - 1;
+			slot = (slot + 1) & slotMask;
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the number of positions in this model.
+	 * @return
+	 */
+	public int getNumberOfPositions () {
+		return positions;
+	}
+
+
+	/**
+	 * Returns true if this token was observed before at the specified position.
+	 * */
+	public boolean seenBefore (String token, int position) {
+		int id = getTokenId(token);
+		return id >= 0 && frequencies[position][id] != 0;
+	}
+
+
+	/**
+	 * Returns how often this string occurs at the given position.
+	 * The minimum frequency is 1, so that unseen events have probability > 0 (Laplace correction)
+	 * */
+	public int getFrequency (String token, int position) {
+		int id = getTokenId(token);
+		if (id < 0 || frequencies[position][id] == 0)
+			return 1;
+		return frequencies[position][id];
+	}
+
+
+	/**
+	 * Returns the sum of frequencies of all tokens seen at the given position.
+	 * */
+	public int getTotalFrequency (int position) {
+		return totalFrequencies[position];
+	}
+
+
+	/**
+	 * Returns the frequency for a string at a position normalized by the frequency for all tokens at this position.
+	 * */
+	public double getRelativeFrequency (String token, int position) {
+		return getFrequency(token, position) / (double) totalFrequencies[position];
+	}
+
+
+	/**
+	 * Returns the log of the relative frequency for a string at a position.
+	 * */
+	public double getLogRelativeFrequency (String token, int position) {
+		int id = getTokenId(token);
+		if (id < 0)
+			return logUnseenRelativeFrequency[position];
+		return logRelativeFrequencies[position][id];
+	}
+
+
+	/**
+	 * Returns the joint probability that these strings occur at position i.
+	 * Same as {@link TextPositionModel#getJointProbability(String[], int, int)}, using the
+	 * total frequency at that position.
+	 * */
+	public double getJointProbability (String[] strings, int position) {
+		double logScore = 0;
+		for (int s = 0; s < strings.length; s++)
+			logScore += getLogRelativeFrequency(strings[s], position);
+		return Math.pow(Math.E, logScore);
+	}
+
+
+	/**
+	 * Writes this model to a file in the binary format:<br>
+	 * magic number, version, number of positions, number of tokens, all tokens (UTF),
+	 * and for each position the frequencies of all tokens (int).
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void writeToFile (String filename) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(positions);
+			out.writeInt(tokens.length);
+			for (String token: tokens)
+				out.writeUTF(token);
+			for (int p = 0; p < positions; p++)
+				for (int id = 0; id < tokens.length; id++)
+					out.writeInt(frequencies[p][id]);
+		} finally {
+			out.close();
+		}
+	}
+
+
+	/**
+	 * Loads a model from the given file. The file can either be in the binary format
+	 * written by {@link #writeToFile(String)}, or contain a serialized {@link TextPositionModel},
+	 * which is then converted.
+	 * @param filename
+	 * @return the model, or null if the file could not be read
+	 */
+	public static CompactTextPositionModel loadFromFile (String filename) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16));
+			try {
+				if (in.readInt() == MAGIC) {
+					int version = in.readInt();
+					if (version != VERSION)
+						throw new IOException("Unsupported version " + version + " of text position model in " + filename);
+					int positions = in.readInt();
+					String[] tokens = new String[in.readInt()];
+					for (int id = 0; id < tokens.length; id++)
+						tokens[id] = in.readUTF();
+					int[][] frequencies = new int[positions][tokens.length];
+					for (int p = 0; p < positions; p++)
+						for (int id = 0; id < tokens.length; id++)
+							frequencies[p][id] = in.readInt();
+					return new CompactTextPositionModel(tokens, frequencies);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		TextPositionModel model = (TextPositionModel) FileHelper.readObjectFromFile(new File(filename));
+		if (model == null) return null;
+		return new CompactTextPositionModel(model);
+	}
+
+
+	/**
+	 * Converts a serialized TextPositionModel into the binary format.
+	 * @param args - input file, output file
+	 * @throws IOException
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Converts a serialized TextPositionModel into a CompactTextPositionModel.");
+			System.out.println("Usage: java CompactTextPositionModel <infile> <outfile>");
+			System.exit(1);
+		}
+		CompactTextPositionModel model = loadFromFile(args[0]);
+		if (model == null) {
+			System.err.println("Could not read model from " + args[0]);
+			System.exit(2);
+		}
+		model.writeToFile(args[1]);
+	}
+
+}
@@ -0,0 +1,351 @@
+package gnat.representation;
+
+import gnat.retrieval.PubmedAccess;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the citations in a Medline or PubMed XML file (MedlineCitationSet or PubmedArticleSet, also gzipped)
+ * one at a time, in a single pass with a StAX parser.
+ * <br><br>
+ * Extracts only what the pipeline needs: PubMed ID, title, the plain text of title and abstract (the same as
+ * {@link PubmedAccess#getAbstractsFromXML(String)}), and the context model with GO codes, if these were loaded
+ * with {@link TextFactory#readPubmed2Go()}. Each Text keeps the XML of its citation exactly as in the source, in
+ * {@link Text#originalXml}, and its position in the uncompressed source, in {@link Text#sourceOffset} and
+ * {@link Text#sourceLength}; no DOM is built ({@link Text#jdocument} remains null). The reader itself keeps
+ * only the XML read since the previous citation, so memory does not grow with the size of the file.
+ * <br><br>
+ * Usage:<br>
+ * <tt>MedlineXmlReader reader = new MedlineXmlReader("medline12n0001.xml.gz");</tt><br>
+ * <tt>while (reader.hasNext()) { Text text = reader.next(); ... }</tt><br>
+ * <tt>reader.close();</tt>
+ * <br><br>
+ * Malformed XML results in an IllegalStateException from {@link #hasNext()} or {@link #next()}.
+ *
+ */
+public class MedlineXmlReader implements Iterator<Text>, Closeable {
+
+	private static final Pattern TITLE = Pattern.compile("<ArticleTitle>(.*)</ArticleTitle>");
+
+	private final String filename;
+
+	private final Text.SourceTypes sourceType;
+
+	private final RecordingReader source;
+
+	private final XMLStreamReader parser;
+
+	/** Name of the element of a single citation: MedlineCitation or PubmedArticle; null before the root element. */
+	private String citationTag;
+
+	/** Next text, null if not read yet. */
+	private Text next;
+
+	private boolean finished = false;
+
+	/** Number of bytes of the source that were read and removed from {@link RecordingReader#recorded}. */
+	private long discardedBytes = 0;
+
+
+	/**
+	 * Keeps all characters that the parser reads, until they are removed.
+	 */
+	static class RecordingReader extends FilterReader {
+		final StringBuilder recorded = new StringBuilder();
+
+		RecordingReader (Reader in) {
+			super(in);
+		}
+
+		public int read () throws IOException {
+			int c = super.read();
+			if (c >= 0) recorded.append((char)c);
+			return c;
+		}
+
+		public int read (char[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read > 0) recorded.append(buffer, offset, read);
+			return read;
+		}
+
+		public long skip (long n) throws IOException {
+			char[] buffer = new char[(int)Math.min(n, 8192)];
+			return Math.max(0, read(buffer, 0, buffer.length));
+		}
+
+		public boolean markSupported () {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Opens the given file, which is read as UTF-8, and decompressed if it ends with .gz.
+	 * @param filename
+	 * @throws IOException
+	 */
+	public MedlineXmlReader (String filename) throws IOException {
+		this(openFile(filename), filename, getSourceType(filename));
+	}
+
+
+	/**
+	 * Reads the citations from the given reader, for instance, the response of an eUtils request.
+	 * @param reader
+	 * @param filename - name of the source, for {@link Text#filename} and error messages
+	 * @param sourceType - for {@link Text#sourceType}
+	 * @throws IOException
+	 */
+	public MedlineXmlReader (Reader reader, String filename, Text.SourceTypes sourceType) throws IOException {
+		this.filename = filename;
+		this.sourceType = sourceType;
+		source = new RecordingReader(reader);
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// do not load the DTD
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		try {
+			parser = factory.createXMLStreamReader(source);
+		} catch (XMLStreamException e) {
+			source.close();
+			throw new IOException("Cannot parse " + filename + ": " + e.getMessage());
+		}
+	}
+
+
+	private static Reader openFile (String filename) throws IOException {
+		InputStream stream = new FileInputStream(filename);
+		if (filename.endsWith(".gz"))
+			stream = new GZIPInputStream(stream, 65536);
+		return new InputStreamReader(stream, "UTF-8");
+	}
+
+
+	/**
+	 * Determines the file type (XML DTD) from the file name.
+	 */
+	private static Text.SourceTypes getSourceType (String filename) {
+		if (filename.matches(".*medline\\d+n\\d+\\.xml(\\.gz)?")
+			|| filename.matches(".*outfile\\.\\d+\\.xml(\\.gz)?"))
+			return Text.SourceTypes.MEDLINES_XML;
+		return Text.SourceTypes.PUBMEDS_XML;
+	}
+
+
+	public boolean hasNext () {
+		if (next == null && !finished) {
+			try {
+				next = readNext();
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException("Malformed XML in " + filename + ": " + e.getMessage(), e);
+			}
+			if (next == null)
+				finished = true;
+		}
+		return next != null;
+	}
+
+
+	public Text next () {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		Text text = next;
+		next = null;
+		return text;
+	}
+
+
+	public void remove () {
+		throw new UnsupportedOperationException();
+	}
+
+
+	public void close () throws IOException {
+		try {
+			parser.close();
+		} catch (XMLStreamException e) {
+			// the source is closed anyway
+		}
+		source.close();
+	}
+
+
+	/**
+	 * Reads up to the next citation and returns it, null at the end of the file.
+	 */
+	private Text readNext () throws XMLStreamException {
+		while (parser.hasNext()) {
+			if (parser.next() != XMLStreamConstants.START_ELEMENT)
+				continue;
+			String name = parser.getLocalName();
+			if (citationTag == null) {
+				if (name.equals("MedlineCitationSet"))
+					citationTag = "MedlineCitation";
+				else if (name.equals("PubmedArticleSet"))
+					citationTag = "PubmedArticle";
+				else if (name.equals("MedlineCitation") || name.equals("PubmedArticle")) {
+					// a single citation
+					citationTag = name;
+					return readCitation();
+				} else
+					citationTag = "";
+			} else if (name.equals(citationTag))
+				return readCitation();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Reads the citation that starts at the current element of the parser.
+	 */
+	private Text readCitation () throws XMLStreamException {
+		// paths of the elements relative to the citation
+		String prefix = citationTag.equals("PubmedArticle") ? "/MedlineCitation" : "";
+		String pmidPath = prefix + "/PMID";
+		String titlePath = prefix + "/Article/ArticleTitle";
+		String abstractPath = prefix + "/Article/Abstract";
+		String abstractTextPath = abstractPath + "/AbstractText";
+
+		String pmid = null;
+		String title = null;
+		List<String> abstractTexts = new LinkedList<String>();
+		int abstracts = 0;
+
+		// only text directly within an element counts, as in JDOM's Element.getText()
+		StringBuilder path = new StringBuilder();
+		LinkedList<Integer> pathLengths = new LinkedList<Integer>();
+		StringBuilder content = new StringBuilder();
+		while (true) {
+			int event = parser.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				pathLengths.addLast(path.length());
+				path.append('/').append(parser.getLocalName());
+				if (isTarget(path, pmidPath, titlePath, abstractTextPath))
+					content.setLength(0);
+				if (abstractPath.contentEquals(path))
+					abstracts++;
+
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				if (pathLengths.isEmpty())
+					break;
+				if (pmid == null && pmidPath.contentEquals(path))
+					pmid = content.toString().trim();
+				else if (title == null && titlePath.contentEquals(path))
+					title = content.toString().trim();
+				else if (abstracts == 1 && abstractTextPath.contentEquals(path))
+					abstractTexts.add(content.toString().trim());
+				path.setLength(pathLengths.removeLast());
+
+			} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+					|| event == XMLStreamConstants.SPACE) {
+				if (isTarget(path, pmidPath, titlePath, abstractTextPath))
+					content.append(parser.getTextCharacters(), parser.getTextStart(), parser.getTextLength());
+			}
+		}
+
+		Text aText = new Text("unknown"); // dangerous; make sure to set ID immediately after!
+		if (pmid != null && pmid.matches("\\d+")) {
+			aText.setID(pmid);
+			aText.setPMID(Integer.parseInt(pmid));
+		} else
+			aText.idType = Text.IdTypes.UNKNOWN;
+
+		// the parser has read at least up to the end of the citation
+		StringBuilder recorded = source.recorded;
+		int start = indexOfTag(recorded, "<" + citationTag, 0);
+		int end = (start >= 0) ? indexOfTag(recorded, "</" + citationTag, start) : -1;
+		if (end >= 0)
+			end = recorded.indexOf(">", end);
+		if (end < 0)
+			throw new IllegalStateException("Cannot find the XML of PMID " + pmid + " in " + filename);
+		end++;
+		aText.originalXml = recorded.substring(start, end) + "\n";
+		aText.sourceOffset = discardedBytes + utf8Length(recorded, 0, start);
+		aText.sourceLength = utf8Length(recorded, start, end);
+		discardedBytes = aText.sourceOffset + aText.sourceLength;
+		recorded.delete(0, end);
+
+		StringBuilder plainText = new StringBuilder((title != null) ? title : "");
+		for (String abstractText: abstractTexts)
+			plainText.append(" ").append(abstractText);
+		aText.plainText = PubmedAccess.escapePlainText(plainText.toString());
+
+		Matcher titleMatcher = TITLE.matcher(aText.originalXml);
+		if (titleMatcher.find())
+			aText.title = titleMatcher.group(1);
+
+		aText.sourceType = sourceType;
+		aText.filename = filename;
+
+		// every Text needs a context model
+		aText.setContextModel(TextFactory.createContextModel(aText));
+
+		return aText;
+	}
+
+
+	private static boolean isTarget (StringBuilder path, String... targets) {
+		for (String target: targets)
+			if (target.contentEquals(path))
+				return true;
+		return false;
+	}
+
+
+	/**
+	 * Returns the position of the tag in the text, followed by white space, '&gt;', or '/'; -1 if not found.
+	 */
+	static int indexOfTag (StringBuilder text, String tag, int from) {
+		int index = text.indexOf(tag, from);
+		while (index >= 0) {
+			int after = index + tag.length();
+			if (after < text.length()) {
+				char c = text.charAt(after);
+				if (c == '>' || c == '/' || Character.isWhitespace(c))
+					return index;
+			}
+			index = text.indexOf(tag, after);
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the number of bytes of the given characters in UTF-8.
+	 */
+	static long utf8Length (CharSequence text, int from, int to) {
+		long bytes = 0;
+		for (int i = from; i < to; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80)
+				bytes += 1;
+			else if (c < 0x800 || (c >= '\uD800' && c <= '\uDFFF')) // surrogate pair: 2 + 2
+				bytes += 2;
+			else
+				bytes += 3;
+		}
+		return bytes;
+	}
+
+}
@@ -89,6 +89,13 @@ public class Text {
 	/** */
 	public String filename = "";
 
+	/** Position of the XML of this text in the uncompressed {@link #filename}, in bytes (UTF-8); -1 if unknown.
+	 *  Set by {@link MedlineXmlReader}. */
+	public long sourceOffset = -1;
+
+	/** Length of the XML of this text in the uncompressed {@link #filename}, in bytes (UTF-8); -1 if unknown. */
+	public long sourceLength = -1;
+
 	/** */
 	public int PMID = -1;
 
@@ -415,14 +422,28 @@ public class Text {
 	 * @return
 	 */
 	public String getSentenceAround (int position) {
+		int[] bounds = getSentenceBoundsAround(position);
+		if (bounds == null) return null;
+		return (getPlainText() + " ").substring(bounds[0], bounds[1]);
+	}
+
+
+	/**
+	 * Returns start and end (exclusive) of the sentence that contains the given position,
+	 * as returned by {@link #getSentenceAround(int)}.<br>
+	 * The start is the offset of the sentence in the plain text; the end can be one
+	 * character past the end of the plain text.
+	 * @param position
+	 * @return array {start, end}, or null if the position is not in the text
+	 */
+	public int[] getSentenceBoundsAround (int position) {
 		//System.err.println("text is '" + this.plainText + "'");
 		
 		if (position < 0) return null;
 		String temp = getPlainText() + " ";
 		if (position > temp.length()-2) return null; // -2 b/c + " "
-		String copy = temp;
 
-		if (position < temp.indexOf(". ") + 1) return temp.substring(0, temp.indexOf(". ")+1);
+		if (position < temp.indexOf(". ") + 1) return new int[]{0, temp.indexOf(". ")+1};
 
 		int endpos = temp.indexOf(". ", position) + 1;
 		//if (endpos == -1) endpos = temp.length();
@@ -445,9 +466,7 @@ public class Text {
 
 		if(startpos>position) startpos = position;
 
-		return copy.
-			substring(startpos,
-				endpos);
+		return new int[]{startpos, endpos};
 	}
 
 
@@ -534,6 +534,40 @@ public class TextFactory {
 	}
 	
 
+	/**
+	 * Opens a Medline or PubMed XML file (a MedlineCitationSet or PubmedArticleSet, also gzipped) to read
+	 * one text at a time, instead of loading all texts like {@link #loadTextsFromMedlineSetXmlfile(String)}.
+	 * See {@link MedlineXmlReader}.<br>
+	 * Uses the GO codes loaded by {@link #readPubmed2Go()}, if any.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static MedlineXmlReader openMedlineSetXmlfile (String filename) throws IOException {
+		return new MedlineXmlReader(filename);
+	}
+
+
+	/**
+	 * Creates the context model for a text loaded from XML: its plain text and GO codes.
+	 * @param aText
+	 * @return
+	 */
+	static TextContextModel createContextModel (Text aText) {
+		TextContextModel tcm = new TextContextModel(aText.ID);
+		tcm.addPlainText(aText.getPlainText());
+		if (pubmed2gocodes.containsKey(aText.getPMID())) {
+			Set<Integer> gocodes = pubmed2gocodes.get(aText.getPMID());
+			String[] scodes = new String[gocodes.size()];
+			int s = 0;
+			for (int gocode: gocodes)
+				scodes[s++] = ""+gocode;
+			tcm.addCodes(scodes, GeneContextModel.CONTEXTTYPE_GOCODES);
+		}
+		return tcm;
+	}
+
+
 	/**
 	 * Reads a mapping from PubMed IDs to GO terms from a file.<br>
 	 * The filename is stored in the configuration {@link ISGNProperties}, key=pubmedId2GO.
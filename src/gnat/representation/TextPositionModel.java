@@ -47,6 +47,14 @@ public class TextPositionModel implements Serializable
 	}
 
 
+	/**
+	 * Returns the number of positions in this model.
+	 * */
+	public int getNumberOfPositions(){
+		return positions;
+	}
+
+
 	/**
 	 * Adds one to the frequency for this string at the given position.
 	 * */
@@ -0,0 +1,452 @@
+package gnat.retrieval;
+
+import gnat.ISGNProperties;
+import gnat.representation.MedlineXmlReader;
+import gnat.representation.Text;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads PubMed citations from NCBI's eUtils and full texts from PubMedCentral's OAI interface,
+ * several requests at a time, and keeps a copy of each citation and article in a local cache.
+ * <br><br>
+ * PubMed IDs are requested in batches of {@link #batchSize}; the requests (also for PMC) start at most
+ * {@link #requestsPerSecond} times per second, as NCBI asks for: 3 per second, or 10 with an API key.
+ * Responses are parsed while they arrive ({@link MedlineXmlReader}), and each citation is written to the cache at once.
+ * <br><br>
+ * The cache keeps one file per citation (the PubmedArticle element) or PMC article (the OAI response),
+ * in <tt>cacheDir/pubmed/</tt> and <tt>cacheDir/pmc/</tt>, named after the ID; a citation fetched again replaces
+ * the cached one, whose version is the Version of its PMID. Requests for IDs found in the cache do not contact
+ * NCBI at all; the cached citation is used until its file is deleted.
+ * <br><br>
+ * All methods are thread-safe. Errors are reported on System.err, and IDs that could not be fetched are
+ * missing from the results.
+ *
+ */
+public class EutilsFetcher {
+
+	/** Matches the PMID of a citation, with its version, which precedes all other PMIDs in the XML. */
+	private static final Pattern PMID_VERSION = Pattern.compile("<PMID(?:\\s+Version=\"(\\d+)\")?\\s*>\\s*(\\d+)\\s*</PMID>");
+
+	/** Fetcher configured in {@link ISGNProperties}, see {@link #getDefault()}. */
+	private static EutilsFetcher defaultFetcher;
+
+	private final String eutilsBaseUrl;
+	private final String pmcBaseUrl;
+
+	/** Directory of the local cache, null for no cache. */
+	private final File cacheDir;
+
+	/** Maximum number of PubMed IDs in one request. */
+	private final int batchSize;
+
+	/** Maximum number of requests started per second. */
+	private final double requestsPerSecond;
+
+	/** NCBI API key, null if none. */
+	private final String apiKey;
+
+	private final ExecutorService pool;
+
+	/** Earliest time for the next request to start, in ns; see {@link #awaitRequestSlot()}. */
+	private long nextRequest = 0;
+
+	/** Timeouts for connecting and reading, in ms. */
+	int connectTimeout = 10000;
+	int readTimeout = 60000;
+
+	/** Number of attempts for each request, and time to wait after the first failed attempt, in ms. */
+	int attempts = 3;
+	long backOffMillis = 1000;
+
+
+	/**
+	 *
+	 * @param eutilsBaseUrl - for example, http://eutils.ncbi.nlm.nih.gov
+	 * @param pmcBaseUrl - for example, http://www.pubmedcentral.nih.gov
+	 * @param cacheDir - directory for the local cache, null or empty for no cache
+	 * @param threads - number of requests at the same time
+	 * @param batchSize - maximum number of PubMed IDs per request
+	 * @param requestsPerSecond - maximum number of requests started per second; 0 for no limit
+	 * @param apiKey - NCBI API key, null or empty if none
+	 */
+	public EutilsFetcher (String eutilsBaseUrl, String pmcBaseUrl, String cacheDir, int threads, int batchSize,
+			double requestsPerSecond, String apiKey) {
+		this.eutilsBaseUrl = eutilsBaseUrl;
+		this.pmcBaseUrl = pmcBaseUrl;
+		this.cacheDir = (cacheDir != null && cacheDir.length() > 0) ? new File(cacheDir) : null;
+		this.batchSize = Math.max(1, batchSize);
+		this.requestsPerSecond = requestsPerSecond;
+		this.apiKey = (apiKey != null && apiKey.length() > 0) ? apiKey : null;
+		this.pool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			public Thread newThread (Runnable runnable) {
+				Thread thread = new Thread(runnable, "EutilsFetcher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+
+	/**
+	 * Returns the fetcher configured in {@link ISGNProperties}: eUtilsBaseUrl, pmcBaseUrl, fetchCacheDir,
+	 * fetchThreads (default: 3), eUtilsBatchSize (default: 200), and eUtilsApiKey.
+	 * @return
+	 */
+	public static synchronized EutilsFetcher getDefault () {
+		if (defaultFetcher == null) {
+			String apiKey = ISGNProperties.get("eUtilsApiKey");
+			boolean hasKey = apiKey != null && apiKey.length() > 0;
+			defaultFetcher = new EutilsFetcher(PubmedAccess.URI_EUTILS_BASE, PmcAccess.URI_PMC_BASE,
+					ISGNProperties.get("fetchCacheDir"),
+					getIntProperty("fetchThreads", 3), getIntProperty("eUtilsBatchSize", 200),
+					hasKey ? 10 : 3, apiKey);
+		}
+		return defaultFetcher;
+	}
+
+
+	private static int getIntProperty (String key, int defaultValue) {
+		String value = ISGNProperties.get(key);
+		if (value != null && value.trim().matches("\\d+"))
+			return Integer.parseInt(value.trim());
+		return defaultValue;
+	}
+
+
+	/**
+	 * Returns the XML of the citations (PubmedArticle elements) for the given PubMed IDs, by PubMed ID in
+	 * the order of the request. IDs that were not found or could not be fetched are missing.
+	 * @param pubmedIds
+	 * @return
+	 */
+	public Map<String, String> getCitations (Collection<String> pubmedIds) {
+		Map<String, String> citations = new HashMap<String, String>();
+		List<String> missing = new ArrayList<String>();
+		for (String pmid: new LinkedHashSet<String>(pubmedIds)) {
+			String xml = readCache("pubmed", pmid);
+			if (xml != null)
+				citations.put(pmid, xml);
+			else
+				missing.add(pmid);
+		}
+
+		// fetch all others in batches, several at a time
+		List<Future<Map<String, String>>> batches = new ArrayList<Future<Map<String, String>>>();
+		for (int from = 0; from < missing.size(); from += batchSize) {
+			final List<String> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+			batches.add(pool.submit(new Callable<Map<String, String>>() {
+				public Map<String, String> call () throws Exception {
+					return fetchCitations(batch);
+				}
+			}));
+		}
+		for (Future<Map<String, String>> batch: batches) {
+			Map<String, String> fetched = getResult(batch);
+			if (fetched != null)
+				citations.putAll(fetched);
+		}
+
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		for (String pmid: pubmedIds)
+			if (citations.containsKey(pmid))
+				result.put(pmid, citations.get(pmid));
+		return result;
+	}
+
+
+	/**
+	 * Returns the XML of the PMC articles (OAI GetRecord responses) for the given PMC IDs (with or without "PMC"),
+	 * by PMC ID in the order of the request. Includes error responses, for instance, for articles that are not
+	 * open access; these are not cached.
+	 * @param pmcIds
+	 * @return
+	 */
+	public Map<String, String> getPmcArticles (Collection<String> pmcIds) {
+		Map<String, Future<String>> articles = new LinkedHashMap<String, Future<String>>();
+		for (final String pmcId: pmcIds) {
+			if (articles.containsKey(pmcId)) continue;
+			articles.put(pmcId, pool.submit(new Callable<String>() {
+				public String call () throws Exception {
+					return getPmcArticle(pmcId);
+				}
+			}));
+		}
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		for (String pmcId: pmcIds) {
+			String xml = getResult(articles.get(pmcId));
+			if (xml != null)
+				result.put(pmcId, xml);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Returns the XML of a PMC article (the OAI GetRecord response), from the cache if possible.
+	 * @param pmcId - with or without "PMC"
+	 * @return the XML, null if it could not be fetched
+	 */
+	public String getPmcArticle (String pmcId) {
+		String number = pmcId.toUpperCase().replaceFirst("^PMC", "");
+		String xml = readCache("pmc", number);
+		if (xml != null)
+			return xml;
+
+		String url = pmcBaseUrl + "/oai/oai.cgi?metadataPrefix=pmc&verb=GetRecord&identifier=oai:pubmedcentral.nih.gov:" + number;
+		for (int attempt = 1; attempt <= attempts; attempt++) {
+			try {
+				awaitRequestSlot();
+				HttpURLConnection con = open(url);
+				StringWriter content = new StringWriter();
+				Reader in = new BufferedReader(new InputStreamReader(con.getInputStream(), "UTF-8"));
+				try {
+					char[] buffer = new char[8192];
+					int read;
+					while ((read = in.read(buffer)) > 0)
+						content.write(buffer, 0, read);
+				} finally {
+					in.close();
+					con.disconnect();
+				}
+				xml = content.toString();
+				if (!isOaiError(xml))
+					writeCache("pmc", number, xml);
+				return xml;
+			} catch (IOException ioe) {
+				System.err.println("#EutilsFetcher: error fetching " + url + " (attempt " + attempt + " of " + attempts + "): " + ioe.getMessage());
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			if (!backOff(attempt))
+				return null;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Fetches the citations for one batch of PubMed IDs and writes them to the cache.
+	 */
+	Map<String, String> fetchCitations (List<String> pubmedIds) throws InterruptedException {
+		StringBuilder ids = new StringBuilder();
+		for (String pmid: pubmedIds) {
+			if (ids.length() > 0) ids.append(",");
+			ids.append(pmid);
+		}
+		String url = eutilsBaseUrl + "/entrez/eutils/efetch.fcgi?db=pubmed&retmode=xml&rettype=abstract&id=" + ids;
+		if (apiKey != null)
+			url += "&api_key=" + apiKey;
+
+		Map<String, String> citations = new HashMap<String, String>();
+		for (int attempt = 1; attempt <= attempts; attempt++) {
+			try {
+				awaitRequestSlot();
+				HttpURLConnection con = open(url);
+				MedlineXmlReader reader = new MedlineXmlReader(new InputStreamReader(con.getInputStream(), "UTF-8"),
+						url, Text.SourceTypes.PUBMEDS_XML);
+				try {
+					while (reader.hasNext()) {
+						String xml = reader.next().originalXml;
+						Matcher m = PMID_VERSION.matcher(xml);
+						if (!m.find()) continue;
+						citations.put(m.group(2), xml);
+						writeCache("pubmed", m.group(2), xml);
+					}
+				} finally {
+					reader.close();
+					con.disconnect();
+				}
+				return citations;
+			} catch (IOException ioe) {
+				System.err.println("#EutilsFetcher: error fetching " + url + " (attempt " + attempt + " of " + attempts + "): " + ioe.getMessage());
+			} catch (IllegalStateException ise) {
+				System.err.println("#EutilsFetcher: error parsing " + url + " (attempt " + attempt + " of " + attempts + "): " + ise.getMessage());
+			}
+			if (!backOff(attempt))
+				break;
+		}
+		return citations;
+	}
+
+
+	private HttpURLConnection open (String url) throws IOException {
+		HttpURLConnection con = (HttpURLConnection)new URL(url).openConnection();
+		con.setConnectTimeout(connectTimeout);
+		con.setReadTimeout(readTimeout);
+		int status = con.getResponseCode();
+		if (status != HttpURLConnection.HTTP_OK) {
+			con.disconnect();
+			throw new IOException("HTTP status " + status);
+		}
+		return con;
+	}
+
+
+	private static boolean isOaiError (String xml) {
+		int start = xml.indexOf("<error");
+		return start >= 0 && start < 2000;
+	}
+
+
+	/**
+	 * Waits until the next request may start, so that no more than {@link #requestsPerSecond} start per second.
+	 * @throws InterruptedException
+	 */
+	void awaitRequestSlot () throws InterruptedException {
+		if (requestsPerSecond <= 0) return;
+		long slot;
+		synchronized (this) {
+			long now = System.nanoTime();
+			slot = Math.max(now, nextRequest);
+			nextRequest = slot + (long)(1e9 / requestsPerSecond);
+		}
+		long wait = slot - System.nanoTime();
+		if (wait > 0)
+			Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+	}
+
+
+	/**
+	 * Waits before the next attempt of a failed request, longer after each attempt; false if interrupted.
+	 */
+	private boolean backOff (int attempt) {
+		if (attempt >= attempts) return true;
+		try {
+			Thread.sleep(backOffMillis * attempt);
+			return true;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+
+	private static <T> T getResult (Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ee) {
+			System.err.println("#EutilsFetcher: " + ee.getCause());
+		}
+		return null;
+	}
+
+
+	//////////
+	// Cache
+
+	/**
+	 * Returns the cache file for the given type and ID; files are spread over
+	 * subdirectories by the last three digits of the ID.
+	 */
+	File getCacheFile (String type, String id) {
+		String shard = (id.length() > 3) ? id.substring(id.length() - 3) : id;
+		return new File(cacheDir, type + "/" + shard + "/" + id + ".xml");
+	}
+
+
+	/**
+	 * Returns the cached citation or article, null if there is none.
+	 */
+	String readCache (String type, String id) {
+		if (cacheDir == null) return null;
+		File file = getCacheFile(type, id);
+		if (!file.exists()) return null;
+
+		try {
+			StringWriter content = new StringWriter();
+			Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				char[] buffer = new char[8192];
+				int read;
+				while ((read = in.read(buffer)) > 0)
+					content.write(buffer, 0, read);
+			} finally {
+				in.close();
+			}
+			return content.toString();
+		} catch (IOException ioe) {
+			System.err.println("#EutilsFetcher: error reading from the cache: " + file + ": " + ioe.getMessage());
+			return null;
+		}
+	}
+
+
+	/**
+	 * Writes to a temporary file first, so that other threads and processes never read a partial file.
+	 * Replaces an earlier version of the citation.
+	 */
+	void writeCache (String type, String id, String xml) {
+		if (cacheDir == null) return;
+		File file = getCacheFile(type, id);
+		File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			file.getParentFile().mkdirs();
+			OutputStream stream = new FileOutputStream(temp);
+			Writer out = new OutputStreamWriter(stream, "UTF-8");
+			try {
+				out.write(xml);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file))
+					throw new IOException("cannot rename " + temp);
+			}
+		} catch (IOException ioe) {
+			temp.delete();
+			System.err.println("#EutilsFetcher: error writing to the cache: " + file + ": " + ioe.getMessage());
+		}
+	}
+
+
+	/**
+	 * Returns the number of citations and articles in the cache.
+	 * @return
+	 */
+	public int getCacheSize () {
+		if (cacheDir == null) return 0;
+		int size = 0;
+		for (String type: new String[]{"pubmed", "pmc"}) {
+			File[] shards = new File(cacheDir, type).listFiles();
+			if (shards == null) continue;
+			for (File shard: shards) {
+				String[] files = shard.list();
+				if (files != null) size += files.length;
+			}
+		}
+		return size;
+	}
+
+}
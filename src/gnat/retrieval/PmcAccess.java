@@ -37,16 +37,14 @@ public class PmcAccess {
 	/**
 	 * Get the XML version of the article with the given PMC-ID.
 	 * Returns an article only if it has open access and is available in XML form.
+	 * Uses the local cache of {@link EutilsFetcher#getDefault()}.
 	 * @param pmcId
 	 * @return
 	 */
 	public static String getArticle (int pmcId) {
-		ResourceHelper rh = new ResourceHelper();
-		
-		String url = PMC_OAI_BASEURL + pmcId;
-		
-		String content = rh.getURLContent(url);
-				
+		String content = EutilsFetcher.getDefault().getPmcArticle(String.valueOf(pmcId));
+		if (content == null)
+			return "";
 		return content;
 	}
 	
@@ -9,9 +9,12 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.jdom.Attribute;
 import org.jdom.Document;
@@ -96,6 +99,25 @@ public class PubmedAccess {
 	}
 	
 	
+	/**
+	 * Returns title and abstract text for each of the given PubMed IDs, by PubMed ID in the order of the IDs;
+	 * unknown IDs are missing. Downloads the citations with {@link EutilsFetcher#getDefault()}, which
+	 * uses its local cache, and splits many IDs into several requests.
+	 * @param pubmedIDs
+	 * @return
+	 */
+	public static Map<String, String[]> getTitlesAndAbstracts (Collection<String> pubmedIDs) {
+		Map<String, String[]> titlesAndAbstracts = new LinkedHashMap<String, String[]>();
+		Map<String, String> citations = EutilsFetcher.getDefault().getCitations(pubmedIDs);
+		for (Map.Entry<String, String> citation: citations.entrySet()) {
+			String[][] abs = getAbstractsAsTitleAndTextFromXML("<PubmedArticleSet>\n" + citation.getValue() + "</PubmedArticleSet>");
+			if (abs.length > 0)
+				titlesAndAbstracts.put(citation.getKey(), abs[0]);
+		}
+		return titlesAndAbstracts;
+	}
+
+
 	/**
 	 * Fetches the citations for the given PubMed IDs and returns the plain result.
 	 * @param pubmedIDs
@@ -403,10 +425,7 @@ public class PubmedAccess {
 				}
 
 				// escape XML characters again, since getTextTrim() de-escapes them :(
-				abs[i] = abs[i].replaceAll("&([A-Za-z]+[\\,\\.\\:\\!\\?\\(\\)\\s\\[\\]\\/])", "&amp;$1");
-				//abs[i] = abs[i].replaceAll("&perce?nt", "%");
-				abs[i] = abs[i].replaceAll("<", "&lt;");
-				abs[i] = abs[i].replaceAll(">", "&gt;");
+				abs[i] = escapePlainText(abs[i]);
 				
 				//System.err.println("#ABS"+i+"="+abs[i]+"\n-----");
 			}
@@ -421,6 +440,21 @@ public class PubmedAccess {
 	}
 
 
+	/**
+	 * Escapes the XML characters in a title or abstract that was read from XML, the same way as
+	 * {@link #getAbstractsFromXML(String)}: &lt; and &gt; always, &amp; only if followed by a word and punctuation.
+	 * @param text
+	 * @return
+	 */
+	public static String escapePlainText (String text) {
+		text = text.replaceAll("&([A-Za-z]+[\\,\\.\\:\\!\\?\\(\\)\\s\\[\\]\\/])", "&amp;$1");
+		//text = text.replaceAll("&perce?nt", "%");
+		text = text.replaceAll("<", "&lt;");
+		text = text.replaceAll(">", "&gt;");
+		return text;
+	}
+
+
 	/**
 	 * Returns an array of PubMed IDs that are related to the given PubMed ID (or comma separated list
 	 * of PubMed IDs), as calculated by PubMed Related Articles.
@@ -0,0 +1,345 @@
+package gnat.server;
+
+import gnat.ServiceProperties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keeps the annotations of texts that were annotated before, so that repeated requests for the same text,
+ * species, and tasks are answered without calling the species NER, the dictionary servers, or the gene
+ * normalization again.
+ * <br><br>
+ * The key of a text is a SHA-1 hash of the text, the species and tasks (both sorted), and
+ * {@link GnatService#SERVICE_VERSION}; ID, source, and title of the text are not part of the key, so that the same
+ * abstract requested via PubMed ID or submitted as text is the same entry. The text is hashed as it is: annotations
+ * refer to character positions, which any change to white space etc. would shift.
+ * <br><br>
+ * Entries are kept in memory up to a number of bytes (estimated from the length of the annotations) and the least
+ * recently used are evicted first. If a directory is given, evicted entries are written to a file there, and read
+ * back on a later request.
+ * <br><br>
+ * All entries are dropped, in memory and on disk, when any of the files that the results depend on (the dictionaries,
+ * the mapping of taxa to dictionary servers) was modified; this is checked at most every {@link #checkInterval} ms.
+ * Files on disk that were written before such a change are ignored also after a restart of the service.
+ * <br><br>
+ * All methods are thread-safe.
+ *
+ */
+public class AnnotationCache {
+
+	/** Estimated memory for an entry without its annotations, and for each annotation without its characters, in bytes. */
+	private static final int ENTRY_OVERHEAD = 200;
+	private static final int ANNOTATION_OVERHEAD = 64;
+
+	/** Maximum size of all entries in memory, in bytes. */
+	private final long maxBytes;
+
+	/** Directory for evicted entries, null for none. */
+	private final File dir;
+
+	/** Files and directories whose modification invalidates all entries. */
+	private final List<File> dependencies;
+
+	/** Entries in the order of their last access, the least recently used first. */
+	private final LinkedHashMap<String, List<String>> entries = new LinkedHashMap<String, List<String>>(1024, 0.75f, true);
+
+	/** Estimated size of all entries in memory, in bytes. */
+	private long bytes = 0;
+
+	/** Latest modification time of all dependencies; stored with each entry on disk. */
+	private long dependenciesModified;
+
+	/** Time of the last check of the dependencies, in ms. */
+	private long lastCheck;
+
+	/** Minimum time between two checks of the dependencies, in ms. */
+	long checkInterval = 10000;
+
+
+	/**
+	 *
+	 * @param maxBytes - maximum size of the entries in memory
+	 * @param dir - directory for entries evicted from memory; null or empty for none
+	 * @param dependencies - files or directories (all files in them) whose modification invalidates all entries
+	 */
+	public AnnotationCache (long maxBytes, String dir, Collection<String> dependencies) {
+		this.maxBytes = maxBytes;
+		this.dir = (dir != null && dir.length() > 0) ? new File(dir) : null;
+		this.dependencies = new ArrayList<File>(dependencies.size());
+		for (String dependency: dependencies)
+			this.dependencies.add(new File(dependency));
+		this.dependenciesModified = getLastModified();
+		this.lastCheck = System.currentTimeMillis();
+	}
+
+
+	/**
+	 * Returns the cache configured in {@link ServiceProperties}: annotationCacheSize (bytes in memory),
+	 * annotationCacheDir, and annotationCacheDependsOn (comma-separated files and directories).
+	 * @return null if annotationCacheSize is not set or 0
+	 */
+	public static AnnotationCache fromProperties () {
+		String size = ServiceProperties.get("annotationCacheSize");
+		if (size == null || !size.trim().matches("\\d+") || Long.parseLong(size.trim()) == 0)
+			return null;
+
+		List<String> dependencies = new LinkedList<String>();
+		String dependsOn = ServiceProperties.get("annotationCacheDependsOn");
+		if (dependsOn != null)
+			for (String dependency: dependsOn.split("\\s*\\,\\s*"))
+				if (dependency.trim().length() > 0)
+					dependencies.add(dependency.trim());
+
+		return new AnnotationCache(Long.parseLong(size.trim()), ServiceProperties.get("annotationCacheDir"), dependencies);
+	}
+
+
+	/**
+	 * Returns the key for the annotations of a text.
+	 * @param text
+	 * @param species - taxon IDs; null or empty for none
+	 * @param tasks
+	 * @return
+	 */
+	public static String getKey (String text, Collection<Integer> species, Collection<GnatService.Tasks> tasks) {
+		StringBuilder parameters = new StringBuilder(GnatService.SERVICE_VERSION);
+		parameters.append("\t");
+		for (GnatService.Tasks task: new TreeSet<GnatService.Tasks>(tasks))
+			parameters.append(task.name()).append(",");
+		parameters.append("\t");
+		if (species != null)
+			for (int taxon: new TreeSet<Integer>(species))
+				parameters.append(taxon).append(",");
+		parameters.append("\t");
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(parameters.toString().getBytes("UTF-8"));
+			digest.update(text.getBytes("UTF-8"));
+			StringBuilder key = new StringBuilder(40);
+			for (byte b: digest.digest())
+				key.append(String.format("%02x", b & 0xff));
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * Returns a copy of the annotations stored for the key, from memory or from disk.
+	 * @param key - see {@link #getKey(String, Collection, Collection)}
+	 * @return null if there is no entry for the key
+	 */
+	public synchronized List<String> get (String key) {
+		checkDependencies();
+		List<String> annotations = entries.get(key);
+		if (annotations == null && dir != null) {
+			annotations = read(key);
+			if (annotations != null)
+				add(key, annotations);
+		}
+		return (annotations != null) ? new ArrayList<String>(annotations) : null;
+	}
+
+
+	/**
+	 * Stores a copy of the annotations for the key, and evicts the least recently used entries if needed.
+	 * @param key - see {@link #getKey(String, Collection, Collection)}
+	 * @param annotations
+	 */
+	public synchronized void put (String key, List<String> annotations) {
+		checkDependencies();
+		List<String> old = entries.remove(key);
+		if (old != null)
+			bytes -= getSize(key, old);
+		add(key, new ArrayList<String>(annotations));
+	}
+
+
+	/**
+	 * Drops all entries, in memory and on disk.
+	 */
+	public synchronized void invalidate () {
+		entries.clear();
+		bytes = 0;
+		if (dir != null)
+			deleteFiles(dir);
+	}
+
+
+	/**
+	 * Returns the number of entries in memory.
+	 * @return
+	 */
+	public synchronized int size () {
+		return entries.size();
+	}
+
+
+	/**
+	 * Returns the estimated size of all entries in memory, in bytes.
+	 * @return
+	 */
+	public synchronized long getBytes () {
+		return bytes;
+	}
+
+
+	/**
+	 * Adds an entry to memory and evicts the least recently used ones, writing them to disk if there is a directory.
+	 */
+	private void add (String key, List<String> annotations) {
+		entries.put(key, annotations);
+		bytes += getSize(key, annotations);
+		Iterator<Map.Entry<String, List<String>>> it = entries.entrySet().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, List<String>> eldest = it.next();
+			it.remove();
+			bytes -= getSize(eldest.getKey(), eldest.getValue());
+			if (dir != null)
+				write(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+
+	private static long getSize (String key, List<String> annotations) {
+		long size = ENTRY_OVERHEAD + 2 * key.length();
+		for (String annotation: annotations)
+			size += ANNOTATION_OVERHEAD + 2 * annotation.length();
+		return size;
+	}
+
+
+	/**
+	 * Invalidates all entries if a dependency was modified since the last check.
+	 */
+	private void checkDependencies () {
+		long now = System.currentTimeMillis();
+		if (now - lastCheck < checkInterval)
+			return;
+		lastCheck = now;
+		long modified = getLastModified();
+		if (modified != dependenciesModified) {
+			System.out.println("#Dictionaries were modified, dropping " + entries.size() + " cached annotations");
+			invalidate();
+			dependenciesModified = modified;
+		}
+	}
+
+
+	/**
+	 * Returns the latest modification time of all dependencies, and of all files in directories that are dependencies.
+	 */
+	private long getLastModified () {
+		long modified = 0;
+		LinkedList<File> files = new LinkedList<File>(dependencies);
+		while (!files.isEmpty()) {
+			File file = files.removeFirst();
+			modified = Math.max(modified, file.lastModified());
+			File[] children = file.listFiles();
+			if (children != null)
+				for (File child: children)
+					files.add(child);
+		}
+		return modified;
+	}
+
+
+	private File getFile (String key) {
+		return new File(new File(dir, key.substring(0, 2)), key + ".ann");
+	}
+
+
+	/**
+	 * Reads an entry from disk and deletes the file, as the entry goes back into memory.
+	 * @return null if there is no file for the key, or it was written before the dependencies were modified
+	 */
+	private List<String> read (String key) {
+		File file = getFile(key);
+		if (!file.exists())
+			return null;
+		List<String> annotations = null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readLong() == dependenciesModified) {
+					int count = in.readInt();
+					annotations = new ArrayList<String>(count);
+					for (int a = 0; a < count; a++)
+						annotations.add(in.readUTF());
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.err.println("#Cannot read cached annotations from " + file + ": " + e.getMessage());
+			annotations = null;
+		}
+		file.delete();
+		return annotations;
+	}
+
+
+	/**
+	 * Writes an entry to disk, to a temporary file that is then renamed, so that no partial entries are read.
+	 */
+	private void write (String key, List<String> annotations) {
+		File file = getFile(key);
+		file.getParentFile().mkdirs();
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeLong(dependenciesModified);
+				out.writeInt(annotations.size());
+				for (String annotation: annotations)
+					out.writeUTF(annotation);
+			} finally {
+				out.close();
+			}
+			file.delete();
+			if (!temp.renameTo(file))
+				temp.delete();
+		} catch (IOException e) {
+			System.err.println("#Cannot write cached annotations to " + file + ": " + e.getMessage());
+			temp.delete();
+		}
+	}
+
+
+	/**
+	 * Deletes all cached entries in the directory and its sub-directories.
+	 */
+	private static void deleteFiles (File directory) {
+		File[] files = directory.listFiles();
+		if (files == null) return;
+		for (File file: files) {
+			if (file.isDirectory())
+				deleteFiles(file);
+			else if (file.getName().endsWith(".ann") || file.getName().endsWith(".ann.tmp"))
+				file.delete();
+		}
+	}
+
+}
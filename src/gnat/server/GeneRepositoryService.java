@@ -27,6 +27,8 @@ import com.sun.net.httpserver.HttpServer;
 /**
  * Provides remote access to a local database on genes.<br>
  * Accepts HTTP GET and POST request by GNAT clients and via standard HTTP (wget etc.).
+ * <br>
+ * Request and database latencies are available in the Prometheus text format at <tt>/metrics</tt>.
  * 
  * 
  * @author J&ouml;rg Hakenberg &lt;jhakenberg@users.sourceforge.net&gt;
@@ -81,6 +83,7 @@ public class GeneRepositoryService extends HttpService {
 		server = HttpServer.create(addr, 0);
 		
 		server.createContext("/", new GeneServiceHandler());
+		server.createContext("/metrics", new MetricsHandler(metrics, null));
 		server.setExecutor(Executors.newCachedThreadPool());
 	    server.start();
 	    
@@ -103,6 +106,10 @@ public class GeneRepositoryService extends HttpService {
 		 */
 		GeneServiceHandler () {
 			openConnection();
+
+			metrics.describeGauge("generep_requests_in_flight", "Requests that are being handled.");
+			metrics.describeHistogram("generep_request_seconds", "Latency of entire requests.");
+			metrics.describeHistogram("generep_database_seconds", "Latency of loading the requested genes from the database.");
 		}
 
 		
@@ -111,6 +118,22 @@ public class GeneRepositoryService extends HttpService {
 		 * @param exchange
 		 */
 		public void handle (HttpExchange exchange) throws IOException {
+			long started = System.nanoTime();
+			metrics.increment("generep_requests_in_flight", "");
+			try {
+				handleRequest(exchange);
+			} finally {
+				metrics.decrement("generep_requests_in_flight", "");
+				metrics.observe("generep_request_seconds", "", System.nanoTime() - started);
+			}
+		}
+
+
+		/**
+		 * Handles a single HTTP request, see {@link #handle(HttpExchange)}.
+		 * @param exchange
+		 */
+		private void handleRequest (HttpExchange exchange) throws IOException {
 			String requestMethod = exchange.getRequestMethod();
 			
 			// Not a GET/POST request? We're not handling these here.
@@ -176,7 +199,9 @@ public class GeneRepositoryService extends HttpService {
 				}
 			}
 
+			long started = System.nanoTime();
 			Collection<GeneInfo> geneCollection = getGeneListFAST(requestedGenes);
+			metrics.observe("generep_database_seconds", "", System.nanoTime() - started);
 			
 			if (userQuery.hasParameter("returntype") && userQuery.getValue("returntype").equalsIgnoreCase("xml")) {
 				responseBody.write("<genes>\n".getBytes());
@@ -1,6 +1,7 @@
 package gnat.server;
 
 import gnat.ServiceProperties;
+import gnat.client.RunMetrics;
 import gnat.filter.ner.LinnaeusSpeciesServiceNer;
 import gnat.representation.GeneContextModel;
 import gnat.representation.RecognizedEntity;
@@ -8,24 +9,25 @@ import gnat.representation.Text;
 import gnat.representation.TextAnnotation;
 import gnat.representation.TextContextModel;
 import gnat.representation.TextRange;
+import gnat.retrieval.EutilsFetcher;
 import gnat.retrieval.PmcAccess;
 import gnat.retrieval.PubmedAccess;
+import gnat.server.dictionary.DictionaryClient;
 import gnat.server.dictionary.DictionaryServer;
 import gnat.utils.StringHelper;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -33,7 +35,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import martin.common.ArgParser;
 
@@ -57,8 +63,15 @@ import com.sun.net.httpserver.HttpServer;
  * <li>species    - list of taxon IDs, depicting the species for which genes should be annotated; default: 9606=human
  * <li>task       - task(s) to perform on the text: speciesNER, geneNER, geneNormalization, goTermRecognition; default: gner
  * <li>taxa       - get a list of all supported gene dictionaries (for each taxon) and their status (online/offline)
+ * <li>metrics    - time, allocations, and entity counts for each filter of the gene normalization pipeline, in Prometheus text format, or JSON with metrics=json
  * <li>help       - returns a short description and list of valid parameters; disregards all other parameters
  * </ul>
+ * <br>
+ * Latencies of requests, of each task, of calls to the dictionary servers, and of downloads from PubMed/PMC
+ * are available in the Prometheus text format at <tt>/metrics</tt>, together with the filter metrics of the pipeline.
+ * <br><br>
+ * Annotations of texts that were requested before, for the same species and tasks, are taken from an
+ * {@link AnnotationCache}, if one is configured (annotationCacheSize in {@link ServiceProperties}).
  * <br><br>
  * A GnatService can be called, for instance, by a {@link gnat.filter.ner.GnatServiceNer} {@link gnat.filter.Filter}.
  * 
@@ -90,6 +103,10 @@ public class GnatService extends HttpService {
 	}
 	}
 
+	/** Version of the annotations returned by this service; part of the key of cached annotations, see {@link AnnotationCache}.
+	 *  Change it whenever the same request would get different annotations. */
+	public static final String SERVICE_VERSION = "1";
+
 	/** Define the base URL at which the public GNAT webservice is available. Default: http://textmining.ls.manchester.ac.uk */
 	public static String PUBLIC_SERVICE_BASEURL = "http://textmining.ls.manchester.ac.uk";
 	/** Port at which the public GNAT webservice is available. Default: 8081. */
@@ -181,7 +198,10 @@ public class GnatService extends HttpService {
 		InetSocketAddress addr = new InetSocketAddress(port);
 		server = HttpServer.create(addr, 0);
 
-		server.createContext("/", new GnatServiceHandler(this.taxonToServerPortMap, this.logLevel, this.providesTasks, this.defaultTasks));
+		GnatServiceHandler handler = new GnatServiceHandler(this.taxonToServerPortMap, this.logLevel, this.providesTasks, this.defaultTasks, this.metrics);
+		handler.cache = AnnotationCache.fromProperties();
+		server.createContext("/", handler);
+		server.createContext("/metrics", new MetricsHandler(this.metrics, handler.getPipelineMetrics()));
 		server.setExecutor(Executors.newCachedThreadPool());
 		server.start();
 
@@ -220,10 +240,19 @@ public class GnatService extends HttpService {
 
 
 class GnatServiceHandler extends ServiceHandler {
+	/** Threads for requests to dictionary servers that run in parallel to other tasks. */
+	private static final ExecutorService dictionaryRequests = Executors.newCachedThreadPool();
+
 	private Map<Integer, String> taxonToServerPortMap;
 	private Set<GnatService.Tasks> providesTasks;
 	private Set<GnatService.Tasks> defaultTasks;
 	private GnatServicePipe pipe;
+	/** Latencies of requests, tasks, and calls to other servers; shared with the service's /metrics context. */
+	private ServiceMetrics metrics;
+	/** Annotations of texts from earlier requests, null if nothing is cached. */
+	AnnotationCache cache;
+	/** Set if a dictionary server could not be called during the current request; its annotations are then not cached. */
+	private volatile boolean dictionaryErrors;
 
 	/**
 	 * 
@@ -231,24 +260,60 @@ class GnatServiceHandler extends ServiceHandler {
 	 * @param logLevel
 	 * @param providesTasks
 	 * @param defaultTasks
+	 * @param metrics
 	 */
 	GnatServiceHandler (Map<Integer, String> taxonToServerPortMap, int logLevel,
-			Set<GnatService.Tasks> providesTasks, Set<GnatService.Tasks> defaultTasks) {
+			Set<GnatService.Tasks> providesTasks, Set<GnatService.Tasks> defaultTasks, ServiceMetrics metrics) {
 		this.taxonToServerPortMap = taxonToServerPortMap;
 		this.logLevel = logLevel;
 		this.providesTasks = providesTasks;
 		this.defaultTasks = defaultTasks;
+		this.metrics = metrics;
 		
 		if (providesTasks.contains(gnat.server.GnatService.Tasks.GENE_NORM))
 			this.pipe = new GnatServicePipe();
+
+		metrics.describeGauge("gnat_requests_in_flight", "Requests that are waiting or being handled.");
+		metrics.describeHistogram("gnat_request_seconds", "Latency of entire requests.");
+		metrics.describeHistogram("gnat_task_seconds", "Latency of each task of a request.");
+		metrics.describeHistogram("gnat_dictionary_request_seconds", "Latency of calls to dictionary servers, per server and taxon.");
+		metrics.describeCounter("gnat_dictionary_errors_total", "Failed calls to dictionary servers, per server and taxon.");
+		metrics.describeHistogram("gnat_fetch_seconds", "Latency of downloading texts from PubMed and PubMedCentral.");
+		metrics.describeCounter("gnat_annotation_cache_total", "Texts whose annotations were found in the cache (hit) or not (miss), per tasks.");
+	}
+
+
+	/**
+	 * Returns the metrics of the gene normalization pipeline, null if this handler does not normalize genes.
+	 * @return
+	 */
+	RunMetrics getPipelineMetrics () {
+		return (pipe != null) ? pipe.run.getMetrics() : null;
+	}
+
+
+	/**
+	 * Handles HTTP requests (only GET and POST are implemented).<br>
+	 * Requests are handled one at a time; the in-flight gauge and latency histogram also count the time a request waits for its turn.
+	 * @param exchange
+	 */
+	public void handle (HttpExchange exchange) throws IOException {
+		long started = System.nanoTime();
+		metrics.increment("gnat_requests_in_flight", "");
+		try {
+			handleRequest(exchange);
+		} finally {
+			metrics.decrement("gnat_requests_in_flight", "");
+			metrics.observe("gnat_request_seconds", "", System.nanoTime() - started);
+		}
 	}
 
 
 	/**
-	 * Handles HTTP requests (only GET and POST are implemented).
+	 * Handles a single HTTP request, see {@link #handle(HttpExchange)}.
 	 * @param exchange
 	 */
-	public synchronized void handle (HttpExchange exchange) throws IOException {
+	private synchronized void handleRequest (HttpExchange exchange) throws IOException {
 		String requestMethod = exchange.getRequestMethod();
 
 		// Not a GET/POST request? We're not handling these here.
@@ -291,29 +356,69 @@ class GnatServiceHandler extends ServiceHandler {
 			return;
 		}
 
+		// print the metrics of the gene normalization pipeline if requested
+		if (userQuery.hasParameter("metrics")) {
+			doMetrics(userQuery.getValue("metrics"), responseBody);
+			return;
+		}
+
 		setReturnType(userQuery);
 		Set<GnatService.Tasks> annotationTasks = getTasks(userQuery, responseBody);
 		List<AnnotatedText> annotatedTexts = getTexts(userQuery, responseBody);
+		dictionaryErrors = false;
 
 		// perform each requested task, in the order species NER, gene NER, GO term, gene normalization
-		// perform species NER?
-		if (annotationTasks.contains(GnatService.Tasks.SPECIES_NER))
-			speciesNer(annotatedTexts);
+		// perform species NER? species found in any text are added to the requested species, so they are cached on their own
+		if (annotationTasks.contains(GnatService.Tasks.SPECIES_NER)) {
+			Set<GnatService.Tasks> speciesTask = EnumSet.of(GnatService.Tasks.SPECIES_NER);
+			List<AnnotatedText> textsForSpecies = getCachedAnnotations(annotatedTexts, null, speciesTask);
+			long started = System.nanoTime();
+			speciesNer(textsForSpecies);
+			metrics.observe("gnat_task_seconds", ServiceMetrics.labels("task", "sner"), System.nanoTime() - started);
+			putCachedAnnotations(textsForSpecies, null, speciesTask);
+		}
 
 		Set<Integer> requestedSpecies = getSpecies(userQuery, responseBody, annotatedTexts);
-		
+
+		// texts annotated for the same species and tasks before get their annotations from the cache, only the others are annotated
+		List<AnnotatedText> textsToAnnotate = getCachedAnnotations(annotatedTexts, requestedSpecies, annotationTasks);
+
+		// perform GO term recognition? runs at the same time as gene NER, results are added afterwards
+		Future<List<List<String>>> goTerms = null;
+		if (annotationTasks.contains(GnatService.Tasks.GO_TERMS)) {
+			final List<String> texts = new ArrayList<String>(textsToAnnotate.size());
+			for (AnnotatedText aText: textsToAnnotate)
+				texts.add(aText.text);
+			goTerms = dictionaryRequests.submit(new Callable<List<List<String>>>() {
+				public List<List<String>> call () {
+					long started = System.nanoTime();
+					try {
+						return goTermRecognition(texts);
+					} finally {
+						metrics.observe("gnat_task_seconds", ServiceMetrics.labels("task", "goterms"), System.nanoTime() - started);
+					}
+				}
+			});
+		}
+
 		// perform gene NER?
-		if (annotationTasks.contains(GnatService.Tasks.GENE_NER))
-			annotatedTexts = geneNer(annotatedTexts, requestedSpecies);
+		if (annotationTasks.contains(GnatService.Tasks.GENE_NER)) {
+			long started = System.nanoTime();
+			textsToAnnotate = geneNer(textsToAnnotate, requestedSpecies);
+			metrics.observe("gnat_task_seconds", ServiceMetrics.labels("task", "gner"), System.nanoTime() - started);
+		}
 
-		// perform GO term recognition?
-		if (annotationTasks.contains(GnatService.Tasks.GO_TERMS))
-			annotatedTexts = goTermRecognition(annotatedTexts);
+		if (goTerms != null)
+			textsToAnnotate = addGoTerms(textsToAnnotate, goTerms);
 
 		// perform gene normalization?
-		if (annotationTasks.contains(GnatService.Tasks.GENE_NORM)) 
-			//responseBody.write(("<message>Gene mention normaliation is not yet implemented.</message>\n").getBytes());
-			annotatedTexts = geneNormalization(annotatedTexts);
+		if (annotationTasks.contains(GnatService.Tasks.GENE_NORM)) {
+			long started = System.nanoTime();
+			textsToAnnotate = geneNormalization(textsToAnnotate);
+			metrics.observe("gnat_task_seconds", ServiceMetrics.labels("task", "gnorm"), System.nanoTime() - started);
+		}
+
+		putCachedAnnotations(textsToAnnotate, requestedSpecies, annotationTasks);
 
 		// return the results for each queried text as a response
 		for (AnnotatedText aText: annotatedTexts) {
@@ -334,6 +439,48 @@ class GnatServiceHandler extends ServiceHandler {
 		responseBody.close();
 	}
 
+	/**
+	 * Replaces the annotations of each text with those in the cache for the same text, species, and tasks.
+	 * @param annotatedTexts
+	 * @param species
+	 * @param tasks
+	 * @return the texts that were not found in the cache, all texts if there is no cache
+	 */
+	private List<AnnotatedText> getCachedAnnotations (List<AnnotatedText> annotatedTexts, Collection<Integer> species, Set<GnatService.Tasks> tasks) {
+		if (cache == null)
+			return annotatedTexts;
+
+		List<AnnotatedText> notCached = new ArrayList<AnnotatedText>(annotatedTexts.size());
+		for (AnnotatedText aText: annotatedTexts) {
+			List<String> annotations = cache.get(AnnotationCache.getKey(aText.text, species, tasks));
+			if (annotations != null) {
+				aText.clearAnnotations();
+				for (String annotation: annotations)
+					aText.addAnnotation(annotation);
+				metrics.increment("gnat_annotation_cache_total", ServiceMetrics.labels("tasks", tasks.toString(), "result", "hit"));
+			} else {
+				notCached.add(aText);
+				metrics.increment("gnat_annotation_cache_total", ServiceMetrics.labels("tasks", tasks.toString(), "result", "miss"));
+			}
+		}
+		return notCached;
+	}
+
+
+	/**
+	 * Adds the annotations of each text to the cache, unless a dictionary server could not be called.
+	 * @param annotatedTexts
+	 * @param species
+	 * @param tasks
+	 */
+	private void putCachedAnnotations (List<AnnotatedText> annotatedTexts, Collection<Integer> species, Set<GnatService.Tasks> tasks) {
+		if (cache == null || dictionaryErrors)
+			return;
+		for (AnnotatedText aText: annotatedTexts)
+			cache.put(AnnotationCache.getKey(aText.text, species, tasks), aText.getAnnotations());
+	}
+
+
 	private void speciesNer(List<AnnotatedText> annotatedTexts) {
 		LinnaeusSpeciesServiceNer linn = new LinnaeusSpeciesServiceNer(ServiceProperties.get("linnaeusUrl"));
 		for (AnnotatedText a : annotatedTexts)
@@ -377,11 +524,12 @@ class GnatServiceHandler extends ServiceHandler {
 		if (pmids != null) {
 			if (pmids.matches("\\d+(\\s*[\\,\\;]\\s*\\d+)*")) {
 				String[] pmidArray = pmids.split("\\s*[\\,\\;]\\s*");
-				// get all abstracts at once
-				String[][] titlesAndAbstracts = PubmedAccess.getAbstractsAsTitleAndText(pmidArray);
-				for (int p = 0; p < titlesAndAbstracts.length; p++) {
-					String[] text = titlesAndAbstracts[p];
-					RequestedText newText = new RequestedText(pmidArray[p], "PubMed", text[0], text[1]);
+				// get all abstracts, from the local cache or in parallel batches
+				long started = System.nanoTime();
+				Map<String, String[]> titlesAndAbstracts = PubmedAccess.getTitlesAndAbstracts(Arrays.asList(pmidArray));
+				metrics.observe("gnat_fetch_seconds", ServiceMetrics.labels("source", "pubmed"), System.nanoTime() - started);
+				for (Map.Entry<String, String[]> text: titlesAndAbstracts.entrySet()) {
+					RequestedText newText = new RequestedText(text.getKey(), "PubMed", text.getValue()[0], text.getValue()[1]);
 					textsToAnnotate.add(newText);
 					//responseBody.write((newText.id + " (" + newText.xref + ")\n"
 					//		+ (newText.text + "\n")).getBytes());
@@ -396,15 +544,20 @@ class GnatServiceHandler extends ServiceHandler {
 		if (pmcids != null) {
 			if (pmcids.toLowerCase().matches("(pmc)?\\d+(\\s*[\\,\\;]\\s*(pmc)?\\d+)*")) {
 				String[] pmcArray = pmcids.split("\\s*[\\,\\;]\\s*");
-				// get each full article, one by one
-				for (String pmcId: pmcArray) {
-					pmcId = pmcId.toUpperCase();
-					String pmcIdNumber = pmcId.replaceFirst("^(PMC)?(\\d+)$", "$2");
-					pmcId = "PMC" + pmcIdNumber;
+				List<String> pmcIdNumbers = new LinkedList<String>();
+				for (String pmcId: pmcArray)
+					pmcIdNumbers.add(pmcId.toUpperCase().replaceFirst("^(PMC)?(\\d+)$", "$2"));
 
-					if (logLevel > 3)
-						System.out.println("Getting PMC" + pmcIdNumber + " via OAI");
-					String xml = PmcAccess.getArticle(Integer.parseInt(pmcIdNumber));
+				// get all full articles, from the local cache or several at a time
+				if (logLevel > 3)
+					System.out.println("Getting PMC" + pmcIdNumbers + " via OAI");
+				long started = System.nanoTime();
+				Map<String, String> articles = EutilsFetcher.getDefault().getPmcArticles(pmcIdNumbers);
+				metrics.observe("gnat_fetch_seconds", ServiceMetrics.labels("source", "pmc"), System.nanoTime() - started);
+
+				for (String pmcIdNumber: pmcIdNumbers) {
+					String pmcId = "PMC" + pmcIdNumber;
+					String xml = articles.containsKey(pmcIdNumber) ? articles.get(pmcIdNumber) : "";
 
 					//if (logLevel > 4)
 					//	System.out.println("  size of XML: " + xml.length());
@@ -565,6 +718,23 @@ class GnatServiceHandler extends ServiceHandler {
 	}
 
 
+	/**
+	 * Print the time, allocations, and entity counts of each filter in the gene normalization pipeline,
+	 * in Prometheus text format or, if <tt>format</tt> is "json", as JSON.
+	 * @param format
+	 * @param responseBody
+	 * @throws IOException
+	 */
+	private void doMetrics (String format, OutputStream responseBody) throws IOException {
+		RunMetrics metrics = (pipe != null) ? pipe.run.getMetrics() : new RunMetrics();
+		if (format != null && format.equalsIgnoreCase("json"))
+			responseBody.write((metrics.toJson() + "\n").getBytes());
+		else
+			responseBody.write(metrics.toPrometheus().getBytes());
+		responseBody.close();
+	}
+
+
 	/**
 	 * Print a HELP screen showing all available services and parameters being offered.
 	 * @param responseBody
@@ -579,6 +749,8 @@ class GnatServiceHandler extends ServiceHandler {
 						"\n" + 
 						"  help        - print a list of supported parameters (will ignore other parameters)\n" + 
 						"  taxa        - get a list of all supported taxa (will ignore other parameters)\n" + 
+						"  metrics     - get time and entity counts for each filter of the gene normalization (will ignore other parameters);\n" + 
+						"                Prometheus text format, or JSON with metrics=json\n" + 
 						"  pmid        - ID(s) of PubMed record to get and annotate\n" + 
 						"  pmc         - ID(s) of PubMedCentral record to get and annotate\n" + 
 						"  text        - a text string to annotate\n" + 
@@ -638,79 +810,54 @@ class GnatServiceHandler extends ServiceHandler {
 
 
 	/**
-	 * 
+	 * Sends all texts to the dictionary server of each species, one batch per species over a pooled
+	 * connection, and adds the entities found to each text.
 	 * @param annotatedTexts
 	 * @return
 	 */
 	private List<AnnotatedText> geneNer (List<AnnotatedText> annotatedTexts, Collection<Integer> requestedSpecies) {
-		// TODO could be merged into one request to the DictionaryServer that has all texts at once
+		// the dictionary taggers expect each individual text encapsulated in <text> tags, without line breaks
+		List<String> preparedTexts = new ArrayList<String>(annotatedTexts.size());
+		for (AnnotatedText aText: annotatedTexts)
+			preparedTexts.add(aText.text.replaceAll("[\\n\\r]+", " "));
+
+		// entities for each species (null if the dictionary could not be called) and text
+		Map<Integer, List<List<DictionaryClient.Entity>>> entitiesPerSpecies = new HashMap<Integer, List<List<DictionaryClient.Entity>>>();
+		for (int currentSpecies: requestedSpecies) {
+			String serverAddress = taxonToServerPortMap.get(currentSpecies);
+			String serverName = serverAddress.split("\\:")[0];
+			String serverPort = serverAddress.split("\\:")[1];
+
+			String labels = ServiceMetrics.labels("server", serverAddress, "taxon", String.valueOf(currentSpecies));
+			long started = System.nanoTime();
+			try {
+				DictionaryClient client = DictionaryClient.getClient(serverName, Integer.parseInt(serverPort));
+				entitiesPerSpecies.put(currentSpecies, client.annotate(preparedTexts));
+			} catch (UnknownHostException e) {
+				metrics.increment("gnat_dictionary_errors_total", labels);
+				dictionaryErrors = true;
+				e.printStackTrace();
+			} catch (IOException e) {
+				metrics.increment("gnat_dictionary_errors_total", labels);
+				dictionaryErrors = true;
+				e.printStackTrace();
+			} finally {
+				metrics.observe("gnat_dictionary_request_seconds", labels, System.nanoTime() - started);
+			}
+		}
 
 		for (int a = 0; a < annotatedTexts.size(); a++) {
 			AnnotatedText aText = annotatedTexts.get(a);
-			// the dictionary taggers expect each individual text encapsulated in <text> tags
-			// send the user query a single text for now TODO switch to multiple texts later?
-			StringBuffer buffer = new StringBuffer();
-			buffer.append("<text>");
-			buffer.append(aText.text.replaceAll("[\\n\\r]+", " "));
-			buffer.append("</text>");
-			String preparedText = buffer.toString();
 
 			for (int currentSpecies: requestedSpecies) {
-
-				String serverAddress = taxonToServerPortMap.get(currentSpecies);
-				String serverName = serverAddress.split("\\:")[0];
-				String serverPort = serverAddress.split("\\:")[1];
-
-				try {
-					Socket socket = new Socket(serverName, Integer.parseInt(serverPort));
-					BufferedReader dictionaryReader = new BufferedReader(new InputStreamReader(
-							new BufferedInputStream(socket.getInputStream() ), "UTF-8") );
-					BufferedWriter dictionaryWriter = new BufferedWriter(new OutputStreamWriter(
-							new BufferedOutputStream(socket.getOutputStream()), "UTF-8") );
-
-					dictionaryWriter.write(preparedText);
-					dictionaryWriter.newLine();
-					dictionaryWriter.flush();
-					String annotations = dictionaryReader.readLine();
-
-					// entities are returned by the dictionary server as a list of entities, one entry per <text>
-					// each entry in this list contains a string where entities are enclosed in <entity> tags
-					List<String> entities = this.extractEntityTags(annotations);
-					if (entities != null && entities.size() > 0) {
-						//responseBody.write("<entities>\n".getBytes());
-
-						// get only the first entry for the first text (here: only one text is sent anyway) TODO switch to multiple texts later
-						String entityString = entities.remove(0);
-						//addRecognizedEntities(context, text, entityString);
-
-						while (entityString.matches("([\\s\\t]*)(<entity.+?</entity>)(.*)")) {
-							String currentEntity = entityString.replaceFirst("([\\s\\t]*)(<entity.+?</entity>)(.*)", "$2");
-							entityString = entityString.replaceFirst("([\\s\\t]*)(<entity.+?</entity>)(.*)", "$3");
-							//responseBody.write(currentEntity.getBytes());
-							//responseBody.write("\n".getBytes());
-
-							// add information about the dictionary: entity type and sub-type (=species for the gene, GO-branch for GO terms, ...)
-							currentEntity = currentEntity.replaceFirst("<entity ", "<entity type=\"gene\" subtype=\"" + currentSpecies + "\" ");
-							aText.addAnnotation(currentEntity);
-						}
-
-						//responseBody.write("</entities>\n".getBytes());
-
-					} else { // no entities were found	
-						//responseBody.write("<entities>\n".getBytes());
-						//responseBody.write(("<comment msg=\"No entities were found for species " + currentSpecies + "\"/>\n").getBytes());
-						//responseBody.write("</entities>\n".getBytes());
-						aText.addAnnotation("<comment msg=\"No entities were found for species " + currentSpecies + "\"/>");
-					}
-
-					dictionaryReader.close();
-					dictionaryWriter.close();
-					socket.close();
-
-				} catch (UnknownHostException e) {
-					e.printStackTrace();
-				} catch (IOException e) {
-					e.printStackTrace();
+				List<List<DictionaryClient.Entity>> entitiesPerText = entitiesPerSpecies.get(currentSpecies);
+				if (entitiesPerText == null) continue;
+
+				// a text without entities gets no annotation for this species
+				for (DictionaryClient.Entity entity: entitiesPerText.get(a)) {
+					// add information about the dictionary: entity type and sub-type (=species for the gene, GO-branch for GO terms, ...)
+					String currentEntity = entity.markup.replaceFirst("<entity ", "<entity type=\"gene\" subtype=\"" + currentSpecies + "\" ");
+					aText.addAnnotation(currentEntity);
 				}
 
 			} // for each species
@@ -725,102 +872,100 @@ class GnatServiceHandler extends ServiceHandler {
 
 
 	/**
-	 * 
-	 * @param annotatedTexts
-	 * @return
+	 * Sends all texts to the GO term dictionary server, over a pooled connection, and returns the
+	 * annotations for GO terms found in each text.
+	 * @param texts
+	 * @return a list of annotations for each text; empty lists if the server could not be called
 	 */
-	private List<AnnotatedText> goTermRecognition (List<AnnotatedText> annotatedTexts) {
-		// TODO could be merged into one request to the DictionaryServer that has all texts at once
-
-		for (int a = 0; a < annotatedTexts.size(); a++) {
-			AnnotatedText aText = annotatedTexts.get(a);
-			// the dictionary taggers expect each individual text encapsulated in <text> tags
-			// send the user query a single text for now TODO switch to multiple texts later?
-			StringBuffer buffer = new StringBuffer();
-			buffer.append("<text>");
-			buffer.append(aText.text.replaceAll("[\\n\\r]+", " "));
-			buffer.append("</text>");
-			String preparedText = buffer.toString();
-
-			String serverAddress = ServiceProperties.get("dictionaryServerGO");
-			int serverPort = 80;
-			if (serverAddress.matches(".+\\:\\d+"))
-				serverPort = Integer.parseInt(serverAddress.replaceFirst("(.+)\\:(\\d+)", "$2"));
-			String serverName = serverAddress.replaceFirst("(.+)\\:(\\d+)", "$1");
+	private List<List<String>> goTermRecognition (List<String> texts) {
+		// the dictionary taggers expect each individual text encapsulated in <text> tags, without line breaks
+		List<String> preparedTexts = new ArrayList<String>(texts.size());
+		for (String text: texts)
+			preparedTexts.add(text.replaceAll("[\\n\\r]+", " "));
+
+		List<List<String>> annotations = new ArrayList<List<String>>(texts.size());
+		for (int a = 0; a < texts.size(); a++)
+			annotations.add(new LinkedList<String>());
+
+		String serverAddress = ServiceProperties.get("dictionaryServerGO");
+		int serverPort = 80;
+		if (serverAddress.matches(".+\\:\\d+"))
+			serverPort = Integer.parseInt(serverAddress.replaceFirst("(.+)\\:(\\d+)", "$2"));
+		String serverName = serverAddress.replaceFirst("(.+)\\:(\\d+)", "$1");
+
+		String labels = ServiceMetrics.labels("server", serverAddress, "taxon", "-");
+		long started = System.nanoTime();
+		List<List<DictionaryClient.Entity>> entitiesPerText;
+		try {
+			entitiesPerText = DictionaryClient.getClient(serverName, serverPort).annotate(preparedTexts);
+		} catch (UnknownHostException e) {
+			metrics.increment("gnat_dictionary_errors_total", labels);
+			dictionaryErrors = true;
+			e.printStackTrace();
+			return annotations;
+		} catch (IOException e) {
+			metrics.increment("gnat_dictionary_errors_total", labels);
+			dictionaryErrors = true;
+			e.printStackTrace();
+			return annotations;
+		} finally {
+			metrics.observe("gnat_dictionary_request_seconds", labels, System.nanoTime() - started);
+		}
 
-			try {
-				Socket socket = new Socket(serverName, serverPort);
-				BufferedReader dictionaryReader = new BufferedReader(new InputStreamReader(
-						new BufferedInputStream(socket.getInputStream() ), "UTF-8") );
-				BufferedWriter dictionaryWriter = new BufferedWriter(new OutputStreamWriter(
-						new BufferedOutputStream(socket.getOutputStream()), "UTF-8") );
-
-				dictionaryWriter.write(preparedText);
-				dictionaryWriter.newLine();
-				dictionaryWriter.flush();
-				String annotations = dictionaryReader.readLine();
-
-				// entities are returned by the dictionary server as a list of entities, one entry per <text>
-				// each entry in this list contains a string where entities are enclosed in <entity> tags
-				List<String> entities = this.extractEntityTags(annotations);
-				if (entities != null && entities.size() > 0) {
-					//responseBody.write("<entities>\n".getBytes());
-
-					// get only the first entry for the first text (here: only one text is sent anyway) TODO switch to multiple texts later
-					String entityString = entities.remove(0);
-					//addRecognizedEntities(context, text, entityString);
-
-					while (entityString.matches("([\\s\\t]*)(<entity.+?</entity>)(.*)")) {
-						String currentEntity = entityString.replaceFirst("([\\s\\t]*)(<entity.+?</entity>)(.*)", "$2");
-						entityString = entityString.replaceFirst("([\\s\\t]*)(<entity.+?</entity>)(.*)", "$3");
-						//responseBody.write(currentEntity.getBytes());
-						//responseBody.write("\n".getBytes());
-
-						//System.out.println(currentEntity);
-
-						String idString = currentEntity.replaceFirst("^.*\\sids?=\"([^\"]*)\".*$", "$1");
-						// no IDs? => skip
-						if (idString.length() == 0 || idString.equals(currentEntity)) continue;
-						// just a MeSH term; skipping
-						if (!idString.matches(".*(^|\\;)G\\d+(\\;|$).*")) continue;
-
-						// grab all GO codes
-						List<String> goIds = new LinkedList<String>();
-						while (idString.matches("^(.*)(^|\\;)(G\\d+)(\\;|$)(.*)$")) {
-							String id = idString.replaceFirst("^(.*)(^|\\;)(G\\d+)(\\;|$)(.*)$", "$3");
-							id = id.replaceFirst("^G0+", "");
-							//System.out.println("  found GO-ID: " + id);
-							goIds.add(id);
-							idString  = idString.replaceFirst("^(.*)(^|\\;)(G\\d+)(\\;|$)(.*)$", "$1$2$4$5");
-							//System.out.println("  remaining IDs: ''" + idString + "''");
-						}
-
-						idString = StringHelper.joinStringList(goIds, ";");
-						currentEntity = currentEntity.replaceFirst(" ids=\"[^\"]+\"", " ids=\"" + idString + "\"");
-
-						// add information about the dictionary: entity type and sub-type (=species for the gene, GO-branch for GO terms, ...)
-						currentEntity = currentEntity.replaceFirst("<entity ", "<entity type=\"gocode\" subtype=\"-\" ");
-						aText.addAnnotation(currentEntity);
-					}
+		for (int a = 0; a < texts.size(); a++) {
+			for (DictionaryClient.Entity entity: entitiesPerText.get(a)) {
+				String currentEntity = entity.markup;
+				String idString = entity.ids;
+				// no IDs? => skip
+				if (idString.length() == 0) continue;
+				// just a MeSH term; skipping
+				if (!idString.matches(".*(^|\\;)G\\d+(\\;|$).*")) continue;
+
+				// grab all GO codes
+				List<String> goIds = new LinkedList<String>();
+				while (idString.matches("^(.*)(^|\\;)(G\\d+)(\\;|$)(.*)$")) {
+					String id = idString.replaceFirst("^(.*)(^|\\;)(G\\d+)(\\;|$)(.*)$", "$3");
+					id = id.replaceFirst("^G0+", "");
+					goIds.add(id);
+					idString  = idString.replaceFirst("^(.*)(^|\\;)(G\\d+)(\\;|$)(.*)$", "$1$2$4$5");
+				}
 
-					//responseBody.write("</entities>\n".getBytes());
+				idString = StringHelper.joinStringList(goIds, ";");
+				currentEntity = currentEntity.replaceFirst(" ids=\"[^\"]+\"", " ids=\"" + idString + "\"");
 
-				} // else: no GO terms found in this text
+				// add information about the dictionary: entity type and sub-type (=species for the gene, GO-branch for GO terms, ...)
+				currentEntity = currentEntity.replaceFirst("<entity ", "<entity type=\"gocode\" subtype=\"-\" ");
+				annotations.get(a).add(currentEntity);
+			}
+		} // for each text
 
-				dictionaryReader.close();
-				dictionaryWriter.close();
-				socket.close();
+		return annotations;
+	}
 
-			} catch (UnknownHostException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
 
-			// overwrite old, unannotated text
-			annotatedTexts.set(a, aText);
+	/**
+	 * Waits for the GO term recognition to finish and adds the annotations to each text.
+	 * @param annotatedTexts
+	 * @param goTerms - annotations for each text, see {@link #goTermRecognition(List)}
+	 * @return
+	 */
+	private List<AnnotatedText> addGoTerms (List<AnnotatedText> annotatedTexts, Future<List<List<String>>> goTerms) {
+		List<List<String>> annotations;
+		try {
+			annotations = goTerms.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			dictionaryErrors = true;
+			return annotatedTexts;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			dictionaryErrors = true;
+			return annotatedTexts;
+		}
 
-		} // for each text
+		for (int a = 0; a < annotatedTexts.size(); a++)
+			for (String annotation: annotations.get(a))
+				annotatedTexts.get(a).addAnnotation(annotation);
 
 		return annotatedTexts;
 	}
@@ -955,32 +1100,6 @@ class GnatServiceHandler extends ServiceHandler {
 		return true;
 	}
 
-
-	/**
-	 * Returns a list of entity mark-ups found in annotated texts.
-	 * */
-	private List<String> extractEntityTags(String annotatedTexts) {
-		List<String> entities = new LinkedList<String>();
-		if (annotatedTexts == null)
-			return entities;
-
-		int textTagBeginIndex = annotatedTexts.indexOf("<text");
-		while (textTagBeginIndex != -1) {
-			int textTagEndIndex = annotatedTexts.indexOf("</text>", textTagBeginIndex);
-			String singleAnnotatedText = annotatedTexts.substring(textTagBeginIndex, textTagEndIndex);
-			String annotations = singleAnnotatedText.substring(singleAnnotatedText.indexOf(">") + 1);
-			if (annotations == null || annotations.length() == 0) {
-				entities.add(" ");
-			}
-			else {
-				entities.add(annotations);
-			}
-			textTagBeginIndex = annotatedTexts.indexOf("<text", textTagEndIndex);
-		}
-
-		return entities;
-	}
-
 }
 
 
@@ -9,6 +9,8 @@ public abstract class HttpService {
 
 	HttpServer server;
 	int logLevel = 0;
+	/** Request latencies and other metrics, served on the <tt>/metrics</tt> context of the server. */
+	ServiceMetrics metrics = new ServiceMetrics();
 	
 	enum Modes {STATUS, START, STOP};
 
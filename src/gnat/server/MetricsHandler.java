@@ -0,0 +1,45 @@
+package gnat.server;
+
+import gnat.client.RunMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Serves the metrics of a service in the Prometheus text format, for the <tt>/metrics</tt> context
+ * of its HttpServer. Does not wait for requests that the service is handling at the moment.
+ *
+ */
+class MetricsHandler implements HttpHandler {
+
+	private final ServiceMetrics metrics;
+
+	/** Metrics of the filters of a pipeline that the service runs, null if none. */
+	private final RunMetrics pipelineMetrics;
+
+
+	MetricsHandler (ServiceMetrics metrics, RunMetrics pipelineMetrics) {
+		this.metrics = metrics;
+		this.pipelineMetrics = pipelineMetrics;
+	}
+
+
+	public void handle (HttpExchange exchange) throws IOException {
+		String text = metrics.toPrometheus();
+		if (pipelineMetrics != null)
+			text += pipelineMetrics.toPrometheus();
+		byte[] bytes = text.getBytes("UTF-8");
+
+		Headers responseHeaders = exchange.getResponseHeaders();
+		responseHeaders.set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream responseBody = exchange.getResponseBody();
+		responseBody.write(bytes);
+		responseBody.close();
+	}
+
+}
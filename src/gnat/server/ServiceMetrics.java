@@ -0,0 +1,211 @@
+package gnat.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Request-level metrics of a service: latency histograms, in-flight gauges, and counters, each
+ * with a set of labels (e.g. the task, or the taxon and address of a dictionary server).
+ * <br><br>
+ * Recording does not lock: values are kept in atomic counters, and a histogram or gauge for a new
+ * combination of labels is added to a concurrent map. {@link #toPrometheus()} returns all metrics
+ * in the Prometheus text format, see {@link MetricsHandler}.
+ * <br><br>
+ * Usage:<br>
+ * <tt>long start = System.nanoTime();</tt><br>
+ * <tt>...</tt><br>
+ * <tt>metrics.observe("gnat_task_seconds", ServiceMetrics.labels("task", "gner"), System.nanoTime() - start);</tt>
+ *
+ */
+public class ServiceMetrics {
+
+	/** Upper bounds of the latency buckets, in seconds. */
+	public static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+	/** Upper bounds of the latency buckets, in ns. */
+	private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+	static {
+		for (int b = 0; b < BUCKETS.length; b++)
+			BUCKET_NANOS[b] = (long)(BUCKETS[b] * 1e9);
+	}
+
+	public enum Type {HISTOGRAM, GAUGE, COUNTER}
+
+
+	/**
+	 * Counts of observations per latency bucket, not cumulative; the last bucket is +Inf.
+	 */
+	static class Histogram {
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+		final AtomicLong sumNanos = new AtomicLong();
+
+		void observe (long nanos) {
+			int b = 0;
+			while (b < BUCKET_NANOS.length && nanos > BUCKET_NANOS[b])
+				b++;
+			buckets.incrementAndGet(b);
+			sumNanos.addAndGet(nanos);
+		}
+	}
+
+
+	/**
+	 * A metric with its description, and one value per combination of labels.
+	 */
+	static class Metric {
+		final Type type;
+		final String help;
+		final ConcurrentMap<String, Object> values = new ConcurrentHashMap<String, Object>();
+
+		Metric (Type type, String help) {
+			this.type = type;
+			this.help = help;
+		}
+	}
+
+
+	/** All metrics by name. */
+	private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+
+	/**
+	 * Declares a metric with a description; metrics that are used without this get an empty description.
+	 * @param name
+	 * @param type
+	 * @param help
+	 */
+	public void describe (String name, Type type, String help) {
+		metrics.putIfAbsent(name, new Metric(type, help));
+	}
+
+
+	public void describeHistogram (String name, String help) {
+		describe(name, Type.HISTOGRAM, help);
+	}
+
+
+	public void describeGauge (String name, String help) {
+		describe(name, Type.GAUGE, help);
+	}
+
+
+	public void describeCounter (String name, String help) {
+		describe(name, Type.COUNTER, help);
+	}
+
+
+	/**
+	 * Returns the value object for a metric and labels, adds it if needed.
+	 */
+	private Object getValue (String name, Type type, String labels) {
+		Metric metric = metrics.get(name);
+		if (metric == null) {
+			metrics.putIfAbsent(name, new Metric(type, ""));
+			metric = metrics.get(name);
+		}
+		Object value = metric.values.get(labels);
+		if (value == null) {
+			Object newValue = (metric.type == Type.HISTOGRAM) ? new Histogram() : new AtomicLong();
+			value = metric.values.putIfAbsent(labels, newValue);
+			if (value == null)
+				value = newValue;
+		}
+		return value;
+	}
+
+
+	/**
+	 * Adds an observed latency to a histogram.
+	 * @param name
+	 * @param labels - see {@link #labels(String...)}
+	 * @param nanos
+	 */
+	public void observe (String name, String labels, long nanos) {
+		((Histogram)getValue(name, Type.HISTOGRAM, labels)).observe(nanos);
+	}
+
+
+	/**
+	 * Adds a value to a gauge or counter.
+	 * @param name
+	 * @param labels - see {@link #labels(String...)}
+	 * @param delta
+	 */
+	public void add (String name, String labels, long delta) {
+		((AtomicLong)getValue(name, Type.COUNTER, labels)).addAndGet(delta);
+	}
+
+
+	public void increment (String name, String labels) {
+		add(name, labels, 1);
+	}
+
+
+	public void decrement (String name, String labels) {
+		add(name, labels, -1);
+	}
+
+
+	/**
+	 * Returns the labels for the given pairs of names and values, in the Prometheus format:
+	 * <tt>labels("task", "gner")</tt> returns <tt>task="gner"</tt>.
+	 * @param namesAndValues
+	 * @return
+	 */
+	public static String labels (String... namesAndValues) {
+		StringBuilder labels = new StringBuilder();
+		for (int l = 0; l + 1 < namesAndValues.length; l += 2) {
+			if (labels.length() > 0) labels.append(",");
+			labels.append(namesAndValues[l]).append("=\"");
+			String value = String.valueOf(namesAndValues[l + 1]);
+			labels.append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+			labels.append("\"");
+		}
+		return labels.toString();
+	}
+
+
+	/**
+	 * Returns all metrics in the Prometheus text format, sorted by name and labels.
+	 * @return
+	 */
+	public String toPrometheus () {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Metric> entry: new TreeMap<String, Metric>(metrics).entrySet()) {
+			String name = entry.getKey();
+			Metric metric = entry.getValue();
+			if (metric.help.length() > 0)
+				text.append("# HELP ").append(name).append(" ").append(metric.help).append("\n");
+			text.append("# TYPE ").append(name).append(" ").append(metric.type.toString().toLowerCase()).append("\n");
+
+			for (Map.Entry<String, Object> value: new TreeMap<String, Object>(metric.values).entrySet()) {
+				String labels = value.getKey();
+				if (metric.type == Type.HISTOGRAM) {
+					Histogram histogram = (Histogram)value.getValue();
+					String prefix = (labels.length() > 0) ? labels + "," : "";
+					long cumulative = 0;
+					for (int b = 0; b <= BUCKETS.length; b++) {
+						cumulative += histogram.buckets.get(b);
+						String le = (b < BUCKETS.length) ? String.valueOf(BUCKETS[b]) : "+Inf";
+						text.append(name).append("_bucket{").append(prefix).append("le=\"").append(le).append("\"} ").append(cumulative).append("\n");
+					}
+					text.append(name).append("_sum").append(braces(labels)).append(" ").append(histogram.sumNanos.get() / 1e9).append("\n");
+					text.append(name).append("_count").append(braces(labels)).append(" ").append(cumulative).append("\n");
+				} else {
+					text.append(name).append(braces(labels)).append(" ").append(((AtomicLong)value.getValue()).get()).append("\n");
+				}
+			}
+		}
+		return text.toString();
+	}
+
+
+	private static String braces (String labels) {
+		return (labels.length() > 0) ? "{" + labels + "}" : "";
+	}
+
+}
@@ -0,0 +1,300 @@
+package gnat.server.dictionary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client for a {@link DictionaryServer}. Sends many texts per request and keeps connections open
+ * for further requests, so that filters calling the same server repeatedly do not open a new socket
+ * each time.
+ * <br><br>
+ * There is one client per server address, see {@link #getClient(String, int)}; it can be used by
+ * several threads at once, each request takes an idle connection or opens a new one. A server that
+ * closes the connection after each request (older versions of the DictionaryServer) still works:
+ * a request on a closed connection is repeated once on a new connection.
+ * <br><br>
+ * Annotated texts are parsed in a single pass into lists of {@link Entity Entities}, one list per text.
+ */
+public class DictionaryClient {
+
+	/** Maximum number of texts sent to the server in a single request. */
+	public static int MAX_TEXTS_PER_REQUEST = 200;
+
+	/** Maximum number of idle connections kept open per server. */
+	public static int MAX_IDLE_CONNECTIONS = 8;
+
+	/** Clients for each server address, "server:port". */
+	private static final Map<String, DictionaryClient> clients = new HashMap<String, DictionaryClient>();
+
+	private final String serverName;
+	private final int serverPort;
+
+	/** Open connections that are not used by any request at the moment. */
+	private final LinkedList<Connection> idleConnections = new LinkedList<Connection>();
+
+
+	/**
+	 * An entity found by the dictionary server.
+	 */
+	public static class Entity {
+		/** IDs of the entity, separated by semicolons. */
+		public final String ids;
+		/** Position of the first and last character in the text. */
+		public final int startIndex, endIndex;
+		/** The name as it appeared in the text. */
+		public final String name;
+		/** The complete mark-up as returned by the server, <tt>&lt;entity ...&gt;name&lt;/entity&gt;</tt>. */
+		public final String markup;
+
+		Entity (String ids, int startIndex, int endIndex, String name, String markup) {
+			this.ids = ids;
+			this.startIndex = startIndex;
+			this.endIndex = endIndex;
+			this.name = name;
+			this.markup = markup;
+		}
+	}
+
+
+	/**
+	 * A socket to the server, with a reader and writer.
+	 */
+	private class Connection {
+		Socket socket;
+		BufferedReader reader;
+		BufferedWriter writer;
+
+		Connection () throws IOException {
+			socket = new Socket(serverName, serverPort);
+			reader = new BufferedReader(new InputStreamReader(new BufferedInputStream(socket.getInputStream()), "UTF-8"));
+			writer = new BufferedWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), "UTF-8"));
+		}
+
+		/** Sends a request and returns the response line, or null if the server closed the connection. */
+		String request (String request) throws IOException {
+			writer.write(request);
+			writer.newLine();
+			writer.flush();
+			return reader.readLine();
+		}
+
+		void close () {
+			try {
+				socket.close();
+			} catch (IOException ioe) {
+				// ignore
+			}
+		}
+	}
+
+
+	private DictionaryClient (String serverName, int serverPort) {
+		this.serverName = serverName;
+		this.serverPort = serverPort;
+	}
+
+
+	/**
+	 * Returns the client for the dictionary server at the given address.
+	 * @param serverName
+	 * @param serverPort
+	 * @return
+	 */
+	public static DictionaryClient getClient (String serverName, int serverPort) {
+		String address = serverName + ":" + serverPort;
+		synchronized (clients) {
+			DictionaryClient client = clients.get(address);
+			if (client == null) {
+				client = new DictionaryClient(serverName, serverPort);
+				clients.put(address, client);
+			}
+			return client;
+		}
+	}
+
+
+	/**
+	 * Sends the texts to the server, in as few requests as possible, and returns the entities found in each text.
+	 * Line breaks in the texts are replaced with blanks, keeping all positions intact.
+	 * @param texts
+	 * @return a list of entities for each text, in the same order as the texts
+	 * @throws IOException if the server could not be reached or returned an incomplete response
+	 */
+	public List<List<Entity>> annotate (List<String> texts) throws IOException {
+		List<List<Entity>> result = new ArrayList<List<Entity>>(texts.size());
+		StringBuilder request = new StringBuilder();
+		for (int from = 0; from < texts.size(); from += MAX_TEXTS_PER_REQUEST) {
+			int to = Math.min(texts.size(), from + MAX_TEXTS_PER_REQUEST);
+			request.setLength(0);
+			for (String text: texts.subList(from, to)) {
+				request.append("<text>");
+				request.append(text.replace('\n', ' ').replace('\r', ' '));
+				request.append("</text>");
+			}
+			List<List<Entity>> entities = parseResponse(request(request.toString()));
+			if (entities.size() != to - from)
+				throw new IOException("Dictionary server " + serverName + ":" + serverPort + " returned " + entities.size()
+						+ " instead of " + (to - from) + " texts");
+			result.addAll(entities);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Sends the text to the server and returns the entities found in it.
+	 * @param text
+	 * @return
+	 * @throws IOException
+	 */
+	public List<Entity> annotate (String text) throws IOException {
+		List<String> texts = new ArrayList<String>(1);
+		texts.add(text);
+		return annotate(texts).get(0);
+	}
+
+
+	/**
+	 * Sends a single request line on an idle or new connection and returns the response line.
+	 * @param request
+	 * @return
+	 * @throws IOException
+	 */
+	private String request (String request) throws IOException {
+		Connection connection = null;
+		synchronized (idleConnections) {
+			connection = idleConnections.poll();
+		}
+
+		String response = null;
+		if (connection != null) {
+			// the server might have closed an idle connection in the meantime
+			try {
+				response = connection.request(request);
+			} catch (IOException ioe) {
+				response = null;
+			}
+			if (response == null) {
+				connection.close();
+				connection = null;
+			}
+		}
+
+		if (connection == null) {
+			connection = new Connection();
+			try {
+				response = connection.request(request);
+			} catch (IOException ioe) {
+				connection.close();
+				throw ioe;
+			}
+			if (response == null) {
+				connection.close();
+				throw new IOException("Dictionary server " + serverName + ":" + serverPort + " closed the connection");
+			}
+		}
+
+		synchronized (idleConnections) {
+			if (idleConnections.size() < MAX_IDLE_CONNECTIONS) {
+				idleConnections.add(connection);
+				connection = null;
+			}
+		}
+		if (connection != null)
+			connection.close();
+
+		return response;
+	}
+
+
+	/**
+	 * Closes all idle connections to the server.
+	 */
+	public void close () {
+		synchronized (idleConnections) {
+			for (Connection connection: idleConnections)
+				connection.close();
+			idleConnections.clear();
+		}
+	}
+
+
+	/**
+	 * Parses a response of the server, <tt>&lt;text&gt;&lt;entity ..&gt;..&lt;/entity&gt;..&lt;/text&gt;&lt;text&gt;..</tt>,
+	 * into a list of entities for each text.
+	 * @param response
+	 * @return
+	 * @throws IOException if the response is malformed
+	 */
+	public static List<List<Entity>> parseResponse (String response) throws IOException {
+		List<List<Entity>> texts = new ArrayList<List<Entity>>();
+		int length = response.length();
+		int pos = response.indexOf("<text");
+		while (pos >= 0) {
+			pos = response.indexOf('>', pos);
+			if (pos < 0) throw new IOException("Malformed response from dictionary server: " + response);
+			pos++;
+			List<Entity> entities = new LinkedList<Entity>();
+			while (true) {
+				while (pos < length && Character.isWhitespace(response.charAt(pos)))
+					pos++;
+				if (response.startsWith("</text>", pos)) {
+					pos += 7;
+					break;
+				}
+				if (!response.startsWith("<entity", pos))
+					throw new IOException("Malformed response from dictionary server at position " + pos + ": " + response);
+				int start = pos;
+				pos += 7;
+
+				// attributes, name="value"
+				String ids = "";
+				int startIndex = -1, endIndex = -1;
+				while (true) {
+					while (pos < length && Character.isWhitespace(response.charAt(pos)))
+						pos++;
+					if (pos >= length)
+						throw new IOException("Malformed response from dictionary server: " + response);
+					if (response.charAt(pos) == '>')
+						break;
+					int equals = response.indexOf("=\"", pos);
+					int close = equals < 0 ? -1 : response.indexOf('"', equals + 2);
+					if (close < 0)
+						throw new IOException("Malformed response from dictionary server at position " + pos + ": " + response);
+					String attribute = response.substring(pos, equals);
+					String value = response.substring(equals + 2, close);
+					if (attribute.equals("ids") || attribute.equals("id"))
+						ids = value;
+					else if (attribute.equals("startIndex"))
+						startIndex = Integer.parseInt(value);
+					else if (attribute.equals("endIndex"))
+						endIndex = Integer.parseInt(value);
+					pos = close + 1;
+				}
+				pos++;
+
+				int end = response.indexOf("</entity>", pos);
+				if (end < 0)
+					throw new IOException("Malformed response from dictionary server: " + response);
+				String name = response.substring(pos, end);
+				pos = end + 9;
+				entities.add(new Entity(ids, startIndex, endIndex, name, response.substring(start, pos)));
+			}
+			texts.add(entities);
+			pos = response.indexOf("<text", pos);
+		}
+		return texts;
+	}
+
+}
@@ -22,6 +22,8 @@ import org.jdom.JDOMException;
  * <br><br>
  * A requested text must be enclosed by "<text> ... </text>". Multiple texts in one request are allowed.
  * The request must not contain more than one line, that is, no line breaks are allowed.
+ * A client can send further requests on the same connection, see {@link DictionaryClient};
+ * connections that are idle for {@link #IDLE_TIMEOUT} ms are closed.
  * <br><br>
  * For each text, a list of entities (one list per line) will be returned. Each entity is represented
  * by an 'entity' element, with attributes 'ids', 'startIndex', and 'endIndex'; the actual match is
@@ -35,6 +37,9 @@ import org.jdom.JDOMException;
  * */
 public class DictionaryServer extends Server {
 
+	/** Time in ms after which the connection to an idle client is closed. */
+	public static int IDLE_TIMEOUT = 5 * 60 * 1000;
+
 	private Dictionary dictionary;
 	private int logLevel = 0;
 	protected static String stopPassphrase = "ShutDownNow.";
@@ -80,6 +85,7 @@ public class DictionaryServer extends Server {
 		public ServiceThread(Socket socket) throws IOException
 		{
 			this.socket = socket;
+			this.socket.setSoTimeout(IDLE_TIMEOUT);
 			this.bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
 			this.bufferedWriter = new BufferedWriter( new OutputStreamWriter( new BufferedOutputStream( socket.getOutputStream()), "UTF-8") );
 		}
@@ -87,9 +93,9 @@ public class DictionaryServer extends Server {
 		public void run()
 		{
 			try {
-				// read input text
-				String input = bufferedReader.readLine();
-				if (input != null) {
+				// read input texts, one request per line, until the client closes the connection
+				String input;
+				while ((input = bufferedReader.readLine()) != null) {
 
 					if (input.equals("<stop passphrase=\"" + stopPassphrase + "\" />")) {
 						System.out.println("Server was asked to stop. Passphrase correct. Exiting.");
@@ -125,6 +131,9 @@ public class DictionaryServer extends Server {
 					bufferedWriter.flush();
 				}
 
+			} catch (java.net.SocketTimeoutException e) {
+				if (logLevel > 0)
+					System.out.println("DictionaryServer.ServiceThread: client idle for " + IDLE_TIMEOUT + "ms.");
 			} catch (IOException e) {
 				e.printStackTrace();
 				System.out.println("Stopping service thread");
@@ -11,13 +11,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 
@@ -29,6 +37,10 @@ import java.util.zip.GZIPInputStream;
  * or<br>
  *  &nbsp; GeneID [tab] TaxID [tab] name1 [tab] name2 ..      (without the whitespaces)
  * <br>
+ * or, with the option <tt>--mwt</tt>, an MWT file as written by {@link GeneNamesToMWT}.
+ * <br><br>
+ * Lines are read in batches, and the names of each batch extracted in parallel; the output is in the order of gene_info.
+ * <br>
  * 
  * @author Joerg
  *
@@ -38,6 +50,9 @@ public class GeneInfo2Dictionary {
 	
 	static HashMap<String, Integer> nameCounts = new HashMap<String, Integer>();
 	static String FILE_PRINT_COUNTS = "counts.txt";
+
+	/** Number of lines of gene_info from which one thread extracts names at a time. */
+	static final int BATCH_SIZE = 1000;
 	
 	
 	/**
@@ -96,6 +111,179 @@ public class GeneInfo2Dictionary {
 	}
 	
 	
+	/**
+	 * Names of a gene, extracted from a line of gene_info.
+	 */
+	static class Entry {
+		int geneId;
+		int taxon;
+		Collection<String> names;
+	}
+
+
+	/**
+	 * Gets the entries read from gene_info, in the order of the file.
+	 */
+	interface EntryHandler {
+		void handle (Entry entry) throws IOException;
+	}
+
+
+	/**
+	 * Extracts the names of a gene from a line of gene_info.
+	 * @param line
+	 * @param forTaxon - taxon ID, or -1 for all taxa
+	 * @return null for lines without names, and for other taxa
+	 */
+	static Entry getEntry (String line, int forTaxon) {
+		String[] cols = line.split("\t");
+		String[] temp;
+		int gid;
+		int tid;
+		Collection<String> syns = new TreeSet<String>();
+		
+		// get taxon ID
+		if (cols[0].matches("\\d+"))
+			tid = Integer.parseInt(cols[0]);
+		else return null;
+		if (forTaxon >= 0 && tid != forTaxon) return null;
+		
+		// get gene ID
+		if (cols[1].matches("\\d+"))
+			gid = Integer.parseInt(cols[1]);
+		else return null;
+		
+		// get gene symbol
+		if (!cols[2].equals("-"))
+			syns.add(cols[2]);
+		
+		if (cols[1].equals("NEWENTRY") && cols[2].startsWith("Record to support"))
+			return null;
+		
+		// get synonyms
+		if (!cols[4].equals("-")) {
+			// "Mort/FADD"
+			if (cols[4].indexOf("/") > 0 && cols[4].matches("[A-Za-z0-9\\-]+\\/[A-Za-z0-9\\-]+")) {
+				syns.add(cols[4].split("\\/")[0]);
+				syns.add(cols[4].split("\\/")[1]);
+			} else if (cols[4].indexOf("|") > 0) {
+				temp = cols[4].split("\\|");
+				for (String t: temp)
+					syns.add(t);
+			} else
+				syns.add(cols[4]);
+		}
+		
+		// get the description---sometimes is a gene/protein/enzyme name
+		// - remove:
+		//   tRNA
+		//   hypothetical protein
+		//   similar to predicted protein
+		// - use, but sometimes pre-processing required:
+		//   hypothetical protein LOC100206002
+		//   NIF3 family protein
+		//   cobS protein, putative
+		//   similar to FADD
+		//   CG12297 gene product from transcript CG12297-RA
+		//   CASP8 and FADD-like apoptosis regulator
+		//   chromosomal replication initiator protein DnaA
+		// - use, but split:
+		//   ?:   ISDvu2, transposase OrfB
+		//   !:   FAD7 (FATTY ACID DESATURASE 7); omega-3 fatty acid desaturase
+		if (!cols[8].equals("-")) {
+			if (cols[8].matches(".*\\;\\s.*")) {
+				// split at ";"
+				String[] names = cols[8].split("\\;\\s");
+				for (String n: names)
+					syns.add(n);
+			} else
+				syns.add(cols[8]);
+		}
+		
+		// get official symbol
+		if (!cols[10].equals("-"))
+			syns.add(cols[10]);
+		
+		// get official full name
+		if (!cols[11].equals("-"))
+			syns.add(cols[11]);
+		
+		// get other designators
+		if (!cols[13].equals("-")) {
+			temp = cols[13].split("\\|");
+			for (String t: temp)
+				syns.add(t);
+		}
+		
+		// remove some spurious names, check again for entries that are lists
+		syns = validate(syns);
+		if (syns.size() == 0)
+			return null;
+
+		Entry entry = new Entry();
+		entry.geneId = gid;
+		entry.taxon = tid;
+		entry.names = syns;
+		return entry;
+	}
+
+
+	/**
+	 * Reads gene_info in batches of lines and extracts the names of the genes in parallel; passes the
+	 * entries to the handler in the order of the file. Keeps at most a few batches per thread in memory.
+	 * @param br
+	 * @param forTaxon - taxon ID, or -1 for all taxa
+	 * @param threads
+	 * @param handler
+	 * @throws IOException
+	 */
+	static void readEntries (BufferedReader br, final int forTaxon, int threads, EntryHandler handler) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		LinkedList<Future<List<Entry>>> pending = new LinkedList<Future<List<Entry>>>();
+		try {
+			List<String> batch = new ArrayList<String>(BATCH_SIZE);
+			String line;
+			do {
+				line = br.readLine();
+				if (line != null)
+					batch.add(line);
+				if (batch.size() == BATCH_SIZE || (line == null && batch.size() > 0)) {
+					final List<String> lines = batch;
+					pending.add(pool.submit(new Callable<List<Entry>>() {
+						public List<Entry> call () {
+							List<Entry> entries = new ArrayList<Entry>(lines.size());
+							for (String l: lines) {
+								Entry entry = getEntry(l, forTaxon);
+								if (entry != null)
+									entries.add(entry);
+							}
+							return entries;
+						}
+					}));
+					batch = new ArrayList<String>(BATCH_SIZE);
+				}
+
+				// hand on the entries of the oldest batches, waiting for them if needed
+				while (!pending.isEmpty() && (pending.size() > 2 * threads || line == null)) {
+					List<Entry> entries;
+					try {
+						entries = pending.removeFirst().get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while reading gene_info", e);
+					} catch (ExecutionException e) {
+						throw new IOException("Error while reading gene_info: " + e.getCause(), e.getCause());
+					}
+					for (Entry entry: entries)
+						handler.handle(entry);
+				}
+			} while (line != null);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+
 	/**
 	 * 
 	 * @param args
@@ -107,18 +295,38 @@ public class GeneInfo2Dictionary {
 			System.out.println("  --species <id>, -s <id>  -  restrict to entries for a single species (NCBI taxon ID)");
 			System.out.println("  --withTaxon, -t          -  print taxon ID as 2nd column in the output");
 			System.out.println("  --count, -c              -  print counts of synonyms to counts.txt");
+			System.out.println("  --threads <n>            -  number of threads that extract names and generate regular expressions;");
+			System.out.println("                              default: number of cores");
+			System.out.println("  --mwt <file>             -  write an MWT file with a regular expression for each name (as GeneNamesToMWT)");
+			System.out.println("                              instead of the list of names");
 			System.exit(1);
 		}
 		
 		int forTaxon = -1;
 		boolean withTaxon = false;
 		boolean printCounts = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String mwtFile = null;
 		
 		for (int a = 1; a < args.length; a++) {
 			if (args[a].toLowerCase().matches("\\-\\-?(withtaxon|wt|t|taxon)"))
 				withTaxon = true;
 			else if (args[a].toLowerCase().matches("\\-\\-?(counts?|c)"))
 				printCounts = true;
+			else if (args[a].toLowerCase().matches("\\-\\-?threads"))
+				if (args.length <= a+1 || !args[a+1].matches("\\d+")) {
+					System.err.println("Parameter " + args[a] + " expects a number of threads to follow");
+					System.exit(1);
+				}
+				else
+					threads = Integer.parseInt(args[++a]);
+			else if (args[a].toLowerCase().matches("\\-\\-?mwt"))
+				if (args.length <= a+1) {
+					System.err.println("Parameter " + args[a] + " expects a file name to follow");
+					System.exit(1);
+				}
+				else
+					mwtFile = args[++a];
 			else if (args[a].toLowerCase().matches("\\-\\-?s(pecies)?"))
 				if (args.length < a+1 || !args[a+1].matches("\\d+")) {
 					System.err.println("Parameter " + args[a] + " expects a taxon ID to follow");
@@ -137,113 +345,43 @@ public class GeneInfo2Dictionary {
 				br = new BufferedReader(decoder);
 			} else {
 				br = new BufferedReader(new FileReader(args[0]));
-			}			
-			String line = "";
-			while ((line = br.readLine()) != null) {
-				String[] cols = line.split("\t");
-				String[] temp;
-				int gid;
-				int tid;
-				Collection<String> syns = new TreeSet<String>();
-				
-				// get taxon ID
-				if (cols[0].matches("\\d+"))
-					tid = Integer.parseInt(cols[0]);
-				else continue;
-				if (forTaxon >= 0 && tid != forTaxon) continue;
-				
-				// get gene ID
-				if (cols[1].matches("\\d+"))
-					gid = Integer.parseInt(cols[1]);
-				else continue;
-				
-				// get gene symbol
-				if (!cols[2].equals("-"))
-					syns.add(cols[2]);
-				
-				if (cols[1].equals("NEWENTRY") && cols[2].startsWith("Record to support"))
-					continue;
-				
-				// get synonyms
-				if (!cols[4].equals("-")) {
-					// "Mort/FADD"
-					if (cols[4].indexOf("/") > 0 && cols[4].matches("[A-Za-z0-9\\-]+\\/[A-Za-z0-9\\-]+")) {
-						syns.add(cols[4].split("\\/")[0]);
-						syns.add(cols[4].split("\\/")[1]);
-					} else if (cols[4].indexOf("|") > 0) {
-						temp = cols[4].split("\\|");
-						for (String t: temp)
-							syns.add(t);
-					} else
-						syns.add(cols[4]);
-				}
-				
-				// get the description---sometimes is a gene/protein/enzyme name
-				// - remove:
-				//   tRNA
-				//   hypothetical protein
-				//   similar to predicted protein
-				// - use, but sometimes pre-processing required:
-				//   hypothetical protein LOC100206002
-				//   NIF3 family protein
-				//   cobS protein, putative
-				//   similar to FADD
-				//   CG12297 gene product from transcript CG12297-RA
-				//   CASP8 and FADD-like apoptosis regulator
-				//   chromosomal replication initiator protein DnaA
-				// - use, but split:
-				//   ?:   ISDvu2, transposase OrfB
-				//   !:   FAD7 (FATTY ACID DESATURASE 7); omega-3 fatty acid desaturase
-				if (!cols[8].equals("-")) {
-					if (cols[8].matches(".*\\;\\s.*")) {
-						// split at ";"
-						String[] names = cols[8].split("\\;\\s");
-						for (String n: names)
-							syns.add(n);
-					} else
-						syns.add(cols[8]);
-				}
-				
-				// get official symbol
-				if (!cols[10].equals("-"))
-					syns.add(cols[10]);
-				
-				// get official full name
-				if (!cols[11].equals("-"))
-					syns.add(cols[11]);
-				
-				// get other designators
-				if (!cols[13].equals("-")) {
-					temp = cols[13].split("\\|");
-					for (String t: temp)
-						syns.add(t);
-				}
-				
-				// remove some spurious names, check again for entries that are lists
-				syns = validate(syns);
-				
+			}
+
+			final boolean printTaxon = withTaxon;
+			final boolean countNames = printCounts;
+			if (mwtFile != null) {
+				// collect all names and their IDs, then generate the regular expressions
+				final Map<String, Set<String>> names2ids = new HashMap<String, Set<String>>();
+				readEntries(br, forTaxon, threads, new EntryHandler() {
+					public void handle (Entry entry) {
+						for (String syn: entry.names) {
+							GeneNamesToMWT.addName(names2ids, String.valueOf(entry.geneId), syn);
+							if (countNames) count(syn);
+						}
+					}
+				});
+				br.close();
+				GeneNamesToMWT.writeMwt(names2ids, mwtFile, threads);
+
+			} else {
 				// print the tab-separated list
-				if (syns.size() > 0) {
-					System.out.print(gid);
-					if (withTaxon)
-						System.out.print("\t" + tid);
-					for (String syn: syns) {
-						System.out.print("\t" + syn);
-						
-						// count how often we found this synonym in the entire gene-info list
-						if (printCounts) {
-							int cnt = 1;
-							if (nameCounts.containsKey(syn))
-								cnt = nameCounts.get(syn) + 1;
-							nameCounts.put(syn, cnt);
+				readEntries(br, forTaxon, threads, new EntryHandler() {
+					public void handle (Entry entry) {
+						StringBuilder out = new StringBuilder();
+						out.append(entry.geneId);
+						if (printTaxon)
+							out.append("\t").append(entry.taxon);
+						for (String syn: entry.names) {
+							out.append("\t").append(syn);
+
+							// count how often we found this synonym in the entire gene-info list
+							if (countNames) count(syn);
 						}
+						System.out.println(out);
 					}
-					System.out.println();
-				}
-				
+				});
+				br.close();
 			}
-			
-			br.close();
 		} catch (IOException ioe) {
 			ioe.printStackTrace();
 		}
@@ -266,5 +404,16 @@ public class GeneInfo2Dictionary {
 		}
 		
 	}
+
+
+	/**
+	 * Counts how often a synonym was found in the entire gene-info list.
+	 */
+	static void count (String syn) {
+		int cnt = 1;
+		if (nameCounts.containsKey(syn))
+			cnt = nameCounts.get(syn) + 1;
+		nameCounts.put(syn, cnt);
+	}
 	
 }
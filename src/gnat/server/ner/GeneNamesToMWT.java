@@ -1,13 +1,16 @@
 package gnat.server.ner;
 
-import gnat.utils.FileHelper;
-
+import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
@@ -15,6 +18,9 @@ import java.util.Vector;
 /**
  * Generates an MWT file from a list of protein or gene names.
  * <br>
+ * The names are read one line at a time; regular expressions for the names are generated in parallel (option
+ * <tt>--threads</tt>), see {@link Term2Regex#getMapFromRegexToIDs(Map, Set, int)}.
+ * <br>
  * Input: file with names and synonyms, one per line, fields tab-separated:<pre>
  * Q15942  Zyxin-2
  * Q15942  ZYX
@@ -39,77 +45,51 @@ public class GeneNamesToMWT {
 	 * @throws IOException
 	 */
 	public static void main (String[] args) throws IOException {
-		if (args.length == 0 || args.length > 3) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> arguments = new ArrayList<String>();
+		for (int a = 0; a < args.length; a++) {
+			if (args[a].matches("\\-\\-?t(hreads)?") && a + 1 < args.length && args[a + 1].matches("\\d+"))
+				threads = Integer.parseInt(args[++a]);
+			else
+				arguments.add(args[a]);
+		}
+
+		if (arguments.size() != 3) {
 			System.out.println("GeneNamesToMWT -- Creates an MWT file from a list of protein names");
 			System.out.println();
-			System.out.println("GeneNamesToMWT <species> <namefile> <outfile>");//[<stopwords>]");
+			System.out.println("GeneNamesToMWT <species> <namefile> <outfile> [--threads <n>]");//[<stopwords>]");
 			System.out.println();
 			System.out.println("  <species> -- h|m|d|y|a for human, mouse, fly, yeast, or any respectively");
 			System.out.println("  <namefile> -- name of the file containing IDs and names, one pair per line");
 			System.out.println("  <outfile> -- name of a file to write to");
+			System.out.println("  <n> -- number of threads that generate regular expressions; default: number of cores");
 			System.exit(0);
 		}
 
-		String species = args[0];
+		String species = arguments.get(0);
 		if(!species.matches("h|m|d|y|a")){
 			System.out.println("Species parameter must be h|m|f|y|a for human, mouse, fly, yeast, or any respectively");
 		}
-		String nameFile = args[1];
+		String nameFile = arguments.get(1);
 		System.out.println("Name file: "+nameFile);
-		String outfile = args[2];
+		String outfile = arguments.get(2);
 		System.out.println("Outfile: "+outfile);
 
-		String[] namelist = FileHelper.readFromFile(nameFile);
-
 		HashMap<String, Set<String>> names2idset = new HashMap<String, Set<String>>();
 		// go through the entire list and get all potential IDs for each candidate name
-		for (String line: namelist) {
-			if(line.split("\t").length!=2){
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(nameFile), "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] cols = line.split("\t");
+			if(cols.length!=2){
 				System.err.println("GeneNamesToMWT.main(): invalid line '"+line+"'");
 				continue;
 			}
-			String ID = line.split("\t")[0];
-			String name = line.split("\t")[1];
-
-			// if the name is encapsulated in quotation marks, remove them
-			// !happens in the BC2 masterlist
-			if (name.matches("^\"(.+)\"$"))
-				name = name.replaceFirst("^\"(.+)\"$", "$1");
-			// remove " as first character
-			if (name.startsWith("\""))
-				name = name.substring(1);
-			// remove " as last character
-			if (name.endsWith("\""))
-				name = name.substring(0, name.length()-1);
-
-			// remove single numbers
-			if (name.matches("\\d+"))
-				continue;
-
-			// remove anything that contains potentially misleading XML markup
-			if(name.contains("<") || name.contains(">") || name.contains("&")){
-				continue;
-			}
-
-			// cut trailing strange characters
-			// !happens in the BC2 masterlist
-			if(name.endsWith("@") || name.endsWith("#")){
-				name = name.substring(0, name.length()-1);
-			}
-			name = name.replaceAll("\\s*[@#]", " ");
-
-			Set<String> newIDs;
-			if (names2idset.containsKey(name)) {
-				newIDs = names2idset.get(name);
-			} else {
-				newIDs = new HashSet<String>();
-			}
-			newIDs.add(ID);
-			names2idset.put(name, newIDs);
+			addName(names2idset, cols[0], cols[1]);
 		}
+		reader.close();
 
 		// for each name/ID pair, get the regex for the name
-		Map<String, String> regex2ids = null;
 //		if(species.equals("h")){
 //			regex2ids = de.hu.wbi.textmining.ner.human.HumanTerm2Regex.getMapFromRegexToIDs(names2idset, new HashSet<String>());
 //		}else if(species.equals("m")){
@@ -119,10 +99,67 @@ public class GeneNamesToMWT {
 //		}else if(species.equals("y")){
 //			regex2ids = de.hu.wbi.textmining.ner.yeast.YeastTerm2Regex.getMapFromRegexToIDs(names2idset, new HashSet<String>());
 //		}else if(species.equals("a")){
-			regex2ids = gnat.server.ner.Term2Regex.getMapFromRegexToIDs(names2idset, new HashSet<String>());
+			writeMwt(names2idset, outfile, threads);
 //		}
+	}
 
 
+	/**
+	 * Cleans a name and adds it with its ID; skips names that are numbers or contain XML markup.
+	 * @param names2idset - all names with their IDs
+	 * @param ID
+	 * @param name
+	 */
+	public static void addName (Map<String, Set<String>> names2idset, String ID, String name) {
+		// if the name is encapsulated in quotation marks, remove them
+		// !happens in the BC2 masterlist
+		if (name.matches("^\"(.+)\"$"))
+			name = name.replaceFirst("^\"(.+)\"$", "$1");
+		// remove " as first character
+		if (name.startsWith("\""))
+			name = name.substring(1);
+		// remove " as last character
+		if (name.endsWith("\""))
+			name = name.substring(0, name.length()-1);
+
+		// remove single numbers
+		if (name.matches("\\d+"))
+			return;
+
+		// remove anything that contains potentially misleading XML markup
+		if(name.contains("<") || name.contains(">") || name.contains("&")){
+			return;
+		}
+
+		// cut trailing strange characters
+		// !happens in the BC2 masterlist
+		if(name.endsWith("@") || name.endsWith("#")){
+			name = name.substring(0, name.length()-1);
+		}
+		name = name.replaceAll("\\s*[@#]", " ");
+
+		Set<String> newIDs;
+		if (names2idset.containsKey(name)) {
+			newIDs = names2idset.get(name);
+		} else {
+			newIDs = new HashSet<String>();
+		}
+		newIDs.add(ID);
+		names2idset.put(name, newIDs);
+	}
+
+
+	/**
+	 * Generates the regular expression for each name, using the given number of threads, and writes the MWT file,
+	 * sorted by regular expression.
+	 * @param names2idset - all names with their IDs, see {@link #addName(Map, String, String)}
+	 * @param outfile
+	 * @param threads
+	 * @throws IOException
+	 */
+	public static void writeMwt (Map<String, Set<String>> names2idset, String outfile, int threads) throws IOException {
+		Map<String, String> regex2ids = gnat.server.ner.Term2Regex.getMapFromRegexToIDs(names2idset, new HashSet<String>(), threads);
+
 		// start the MWT file
 		FileWriter writer = new FileWriter(outfile);
 
@@ -2,15 +2,29 @@ package gnat.server.ner;
 
 import gnat.utils.ArrayHelper;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Generates regular expressions for gene and protein names.
+ * <br><br>
+ * All patterns are compiled once, as static fields. Most replacements are {@link Rule}s that are not applied at all
+ * to names that lack the characters every match needs, as few names have brackets, precursors, species, etc.
+ */
 public class Term2Regex{
 
 	public static final String tokenDelimiterWithWhitespace = "[ \\-]?";
@@ -27,6 +41,84 @@ public class Term2Regex{
 
 	public static int verbosity = 0;
 
+	/** Number of names for which one thread generates regular expressions at a time, see {@link #getMapFromRegexToIDs(Map, Set, int)}. */
+	static final int REGEX_BATCH_SIZE = 1000;
+
+	/** White space characters as in \s, for rules that match white space. */
+	private static final String[] WHITESPACE = {" ", "\t", "\n", "\u000B", "\f", "\r"};
+
+
+	/**
+	 * A String.replaceAll or replaceFirst with a precompiled pattern. The pattern is tried only on texts that contain
+	 * at least one of the required strings, as each match contains one of them; without required strings, always.
+	 */
+	static class Rule {
+		final Pattern pattern;
+		final String replacement;
+		final boolean all;
+		final String[] required;
+
+		Rule (String regex, String replacement, boolean all, String[] required) {
+			this.pattern = Pattern.compile(regex);
+			this.replacement = replacement;
+			this.all = all;
+			this.required = required;
+		}
+
+		String apply (String text) {
+			if (required.length > 0 && !containsAny(text, required))
+				return text;
+			Matcher matcher = pattern.matcher(text);
+			return all ? matcher.replaceAll(replacement) : matcher.replaceFirst(replacement);
+		}
+	}
+
+
+	private static Rule replaceAll (String regex, String replacement, String... required) {
+		return new Rule(regex, replacement, true, required);
+	}
+
+
+	private static Rule replaceFirst (String regex, String replacement, String... required) {
+		return new Rule(regex, replacement, false, required);
+	}
+
+
+	/**
+	 * Applies the rules in the given order.
+	 * @param rules
+	 * @param text
+	 * @return
+	 */
+	static String apply (Rule[] rules, String text) {
+		for (Rule rule: rules)
+			text = rule.apply(text);
+		return text;
+	}
+
+
+	private static boolean containsAny (String text, String[] strings) {
+		for (String string: strings)
+			if (text.indexOf(string) >= 0)
+				return true;
+		return false;
+	}
+
+
+	/**
+	 * Checks if the text contains a character in the given range, for instance, '0' to '9'.
+	 */
+	private static boolean containsRange (String text, char from, char to) {
+		for (int c = 0; c < text.length(); c++)
+			if (text.charAt(c) >= from && text.charAt(c) <= to)
+				return true;
+		return false;
+	}
+
+
+	/** White space or hyphen between the tokens of a name. */
+	private static final Pattern tokenDelimiterPattern = Pattern.compile("[\\s\\-]");
+
 
 	/**
 	 * Generates variations of a whole protein name (tumor necrosis factor alpha, TNF alpha, CD95 ligand)
@@ -39,7 +131,7 @@ public class Term2Regex{
 
 		//System.out.println("# Term:" + term);
 
-		String[] tokens = term.split("[\\s\\-]");
+		String[] tokens = tokenDelimiterPattern.split(term);
 		for (int t = 0; t < tokens.length; t++) {
 			tokens[t] = getTokenVariations(tokens[t], t);
 		}
@@ -56,6 +148,12 @@ public class Term2Regex{
 	}
 
 
+	/** Arabic and Roman numerals, single Greek letters and letter words. */
+	private static final Pattern numeralPattern = Pattern.compile("\\d+|[XVI]+|[xvi]+|[XVI][xvi]+"
+		+ "|([Aa](lpha)?|[Bb](eta)?|[Gg](amma)?|[Cc]|[Dd](elta)?|[Ee](psilon)?|[Ee]ta)|[Hh]|[Ii]ota"
+		+ "|[Kk](appa)?|[Ll](ambda)?|[Tt](heta)?|[Qq]|[Zz](eta)?");
+
+
 	/**
 	 * Checks if the given name part is a Arabic or Roman numeral, also considers single Greek letters/letter words
 	 * as numerals.
@@ -63,11 +161,42 @@ public class Term2Regex{
 	 * @return
 	 */
 	public static boolean isNumeral (String part) {
-		if (part.matches("\\d+")) return true;
-		if (part.matches("([XVI]+|[xvi]+|[XVI][xvi]+)")) return true;
-		if (part.matches("([Aa](lpha)?|[Bb](eta)?|[Gg](amma)?|[Cc]|[Dd](elta)?|[Ee](psilon)?|[Ee]ta)|[Hh]|[Ii]ota" +
-			"|[Kk](appa)?|[Ll](ambda)?|[Tt](heta)?|[Qq]|[Zz](eta)?")) return true;
-		return false;
+		return numeralPattern.matcher(part).matches();
+	}
+
+
+	/** Reg.ex. markup for each Greek letter/letter word and Roman numeral, see {@link #getMarkupForNumerals(String)}. */
+	private static final Map<String, String> numeralMarkup = new HashMap<String, String>();
+	static {
+		addNumeralMarkup("[Aa](lpha)?", "A", "a", "Alpha", "alpha");
+		addNumeralMarkup("[Bb](eta)?", "B", "b", "Beta", "beta");
+		addNumeralMarkup("([Gg](amma)?|[Cc])", "G", "g", "Gamma", "gamma");
+		addNumeralMarkup("[Dd](elta)?", "D", "d", "Delta", "delta");
+		addNumeralMarkup("[Ee](psilon)?", "E", "e", "Epsilon", "epsilon");
+		addNumeralMarkup("([Ee]ta|[Hh])", "Eta", "eta");
+		addNumeralMarkup("[Ii]ota", "Iota", "iota");
+		addNumeralMarkup("[Kk](appa)?", "K", "k", "Kappa", "kappa");
+		addNumeralMarkup("[Ll](ambda)?", "Lambda", "lambda");
+		addNumeralMarkup("([Tt](heta)?|[Qq])", "T", "t", "Theta", "theta");
+		addNumeralMarkup("[Zz](eta)?", "Z", "z", "Zeta", "zeta");
+
+		addNumeralMarkup("[Ii1]", "I", "i", "1");
+		addNumeralMarkup("[Vv5]", "V", "v", "5");
+		// [..] not in UniProt/SwissProt 10.2?: 22-24, 28, 29
+		String[] romans = {"II", "III", "IV", "VI", "VII", "VIII", "IX", "X", "XI", "XII", "XIII", "XIV", "XV", "XVI",
+				"XVII", "XVIII", "XIX", "XX", "XXI", "XXV", "XXVI", "XXVII", "XXX", "XXXI"};
+		int[] arabics = {2, 3, 4, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 25, 26, 27, 30, 31};
+		for (int r = 0; r < romans.length; r++) {
+			String roman = romans[r];
+			String arabic = String.valueOf(arabics[r]);
+			addNumeralMarkup("(" + roman + "|" + roman.toLowerCase() + "|" + arabic + ")", roman, roman.toLowerCase(), arabic);
+		}
+	}
+
+
+	private static void addNumeralMarkup (String markup, String... parts) {
+		for (String part: parts)
+			numeralMarkup.put(part, markup);
 	}
 
 
@@ -79,52 +208,21 @@ public class Term2Regex{
 	 * @return
 	 */
 	public static String getMarkupForNumerals (String part) {
-		if (part.matches("[Aa](lpha)?")) return "[Aa](lpha)?";
-		if (part.matches("[Bb](eta)?")) return "[Bb](eta)?";
-		if (part.matches("[Gg](amma)?")) return "([Gg](amma)?|[Cc])";
-		if (part.matches("[Dd](elta)?")) return "[Dd](elta)?";
-		if (part.matches("[Ee](psilon)?")) return "[Ee](psilon)?";
-		if (part.matches("[Ee]ta")) return "([Ee]ta|[Hh])";
-		if (part.matches("[Ii]ota")) return "[Ii]ota";
-		if (part.matches("[Kk](appa)?")) return "[Kk](appa)?";
-		if (part.matches("[Ll]ambda")) return "[Ll](ambda)?";
-		if (part.matches("[Tt](heta)?")) return "([Tt](heta)?|[Qq])";
-		if (part.matches("[Zz](eta)?")) return "[Zz](eta)?";
-
-		if (part.matches("[Ii1]")) return "[Ii1]";
-		if (part.matches("(II|ii|2)")) return "(II|ii|2)";
-		if (part.matches("(III|iii|3)")) return "(III|iii|3)";
-		if (part.matches("(IV|iv|4)")) return "(IV|iv|4)";
-		if (part.matches("[Vv5]")) return "[Vv5]";
-		if (part.matches("(VI|vi|6)")) return "(VI|vi|6)";
-		if (part.matches("(VII|vii|7)")) return "(VII|vii|7)";
-		if (part.matches("(VIII|viii|8)")) return "(VIII|viii|8)";
-		if (part.matches("(IX|ix|9)")) return "(IX|ix|9)";
-		if (part.matches("(X|x|10)")) return "(X|x|10)";
-		if (part.matches("(XI|xi|11)")) return "(XI|xi|11)";
-		if (part.matches("(XII|xii|12)")) return "(XII|xii|12)";
-		if (part.matches("(XIII|xiii|13)")) return "(XIII|xiii|13)";
-		if (part.matches("(XIV|xiv|14)")) return "(XIV|xiv|14)";
-		if (part.matches("(XV|xv|15)")) return "(XV|xv|15)";
-		if (part.matches("(XVI|xvi|16)")) return "(XVI|xvi|16)";
-		if (part.matches("(XVII|xvii|17)")) return "(XVII|xvii|17)";
-		if (part.matches("(XVIII|xviii|18)")) return "(XVIII|xviii|18)";
-		if (part.matches("(XIX|xix|19)")) return "(XIX|xix|19)";
-		if (part.matches("(XX|xx|20)")) return "(XX|xx|20)";
-		if (part.matches("(XXI|xxi|21)")) return "(XXI|xxi|21)";
-		// [..] not in UniProt/SwissProt 10.2?
-		if (part.matches("(XXV|xxv|25)")) return "(XXV|xxv|25)";
-		if (part.matches("(XXVI|xxvi|26)")) return "(XXVI|xxvi|26)";
-		if (part.matches("(XXVII|xxvii|27)")) return "(XXVII|xxvii|27)";
-		// [..] not in UniProt/SwissProt 10.2?
-		if (part.matches("(XXX|xxx|30)")) return "(XXX|xxx|30)";
-		if (part.matches("(XXXI|xxxi|31)")) return "(XXXI|xxxi|31)";
-		// [..] not in UniProt/SwissProt 10.2?
-
-		return "";
+		String markup = numeralMarkup.get(part);
+		return (markup != null) ? markup : "";
 	}
 
 
+	/** Periods and hyphens in EC numbers. */
+	private static final Rule[] ecNumberRules = {
+		replaceAll("\\.-", "\\\\.\\\\-", ".-"),
+		replaceAll("\\.(\\d)", "\\\\.$1", "."),
+		replaceAll("\\s", " ?", WHITESPACE)
+	};
+	private static final Pattern kiaaPattern = Pattern.compile("kiaa\\d+");
+	private static final Pattern uniProtIdPattern = Pattern.compile("[A-Z0-9]{1,6}_(HUMAN|RAT|MOUSE|YEAST|BOVIN)");
+
+
 	/**
 	 *
 	 * @param id
@@ -132,13 +230,11 @@ public class Term2Regex{
 	 */
 	public static String getRegexForProteinID (String id) {
 		if (id.startsWith("EC")) {
-			id = id.replaceAll("\\.-", "\\\\.\\\\-");
-			id = id.replaceAll("\\.(\\d)", "\\\\.$1");
-			id = id.replaceAll("\\s", " ?");
-		} else if (id.toLowerCase().matches("kiaa\\d+")) {
+			id = apply(ecNumberRules, id);
+		} else if (id.regionMatches(true, 0, "kiaa", 0, 4) && kiaaPattern.matcher(id.toLowerCase()).matches()) {
 			id = "(KIAA|Kiaa)" + id.substring(4);
 
-		} else if (id.matches("[A-Z0-9]{1,6}_(HUMAN|RAT|MOUSE|YEAST|BOVIN)")) {
+		} else if (id.indexOf('_') >= 0 && uniProtIdPattern.matcher(id).matches()) {
 			id = id.substring(0, id.indexOf("_")) + "(_" + id.substring(id.indexOf("_") + 1) + ")?";
 		}// else if (id.startsWith("HGNC:") || id.startsWith("PID:")) {
 		//
@@ -147,6 +243,60 @@ public class Term2Regex{
 	}
 
 
+	/** Molecular weights: "50 KDa" => "50kDa". */
+	private static final Rule kDaRule = replaceAll("([\\d\\.]+)\\s*([Kk][Dd][Aa])", "$1kDa", "Da", "da", "DA", "dA");
+	private static final Rule hypotheticalRule = replaceFirst("^[Hh]ypothetical protein (.+)", "$1", "ypothetical protein ");
+
+	/** Species in brackets, "(mouse homolog)", "(homolog of S. cerevisiae CLB2)". */
+	private static final Rule[] speciesRules = {
+		replaceAll("\\s\\((S(accharomyces|\\.)\\s?cerevisiae|[Dd]rosophila|X(enopus|\\.)\\s?laevis"
+				+ "|mouse|rat|yeast|human|bacterial|M(us|\\.)\\s?musculus|E(scherichia|\\.)\\s?coli"
+				+ "|C(aenorhabditis|\\.)\\s?elegans|S\\.\\s?pombe|H(\\.|omo)\\s?sapiens"
+				+ "|Arabidopsis|A(\\.|rabidopsis)\\s?thaliana)([\\s\\-]homolog)\\)", "", "homolog)"),
+		replaceAll("\\s\\(homolog of (S(accharomyces|\\.)\\s?cerevisiae|[Dd]rosophila|X(enopus|\\.)\\s?laevis"
+				+ "|mouse|rat|yeast|human|bacterial|M(us|\\.)\\s?musculus|E(scherichia|\\.)\\s?coli"
+				+ "|C(aenorhabditis|\\.)\\s?elegans|S\\.\\s?pombe|H(\\.|omo)\\s?sapiens"
+				+ "|Arabidopsis|A(\\.|rabidopsis)\\s?thaliana)(\\s[A-Za-z0-9\\.\\-]+)?\\)", "", "(homolog of ")
+	};
+
+	/** Specificity, precursors, and some suffixes that do not appear in texts. */
+	private static final Rule[] suffixRules = {
+		// remove all "mitochondrial precursor", "short-chain specific" somewhere
+		// but beware of: "testis specific, 10"
+		replaceAll("(\\,\\s[a-z\\-\\/\\s]+[\\s\\-]specific)(\\,\\s|\\s\\(|$)", "$2", "specific"),
+		replaceAll("((\\,\\s)?([a-z\\-]+[\\s\\-])?specific)(\\,\\s|\\s\\(|$)", "$4", "specific"),
+		// ", neutral membrane" somewhere
+		replaceAll("\\,\\sneutral\\s[a-z]+(\\,\\s|\\s\\(|$)", "$1", "neutral"),
+		// "precursor" or ", xyz precursor" somewhere
+		replaceAll("\\,\\s([a-z\\-]+\\s)?precursor(\\,\\s|\\s\\(|$)", "$2", "precursor"),
+		replaceAll("\\sprecursor", "", "precursor"),
+		// ", mitochondrial" at end of name
+		replaceAll("\\,\\s([a-z]+al|[a-z]+ic)$", "", ","),
+		// "pseudogene" / "preprotein" at end of name
+		replaceAll("(\\,\\s)?(pseudogene|preprotein|polypeptide)$", "", "pseudogene", "preprotein", "polypeptide")
+	};
+
+	/** Expressions in brackets, and everything after a semicolon. */
+	private static final Rule[] bracketRules = {
+		// TODO: might contain additional synonyms!
+		replaceAll("\\s\\[.+\\]([\\,\\;\\s]|$)", "", "["),
+		replaceAll("\\s\\(.+\\)([\\,\\;\\s]|$)", "", "("),
+		replaceFirst("^(.+?)\\;\\s.+$", "$1", ";")
+	};
+
+	/** "synuclein, alpha" */
+	private static final Pattern greekSuffixPattern = Pattern.compile("^(.+)\\,\\s(" + GREEK_WORDLETTER_REGEX + ")$");
+	/** "xyz antigen" */
+	private static final Pattern antigenSuffixPattern = Pattern.compile("^(.+)[\\-\\s]?anti(gen|body)$");
+	/** "nuclear factor NF bla", in lower case */
+	private static final Pattern nuclearFactorNfPattern = Pattern.compile("nuclear\\sfactor\\snf.+");
+	private static final Pattern nfPattern = Pattern.compile("\\s(NF|Nf|nf|nF)");
+	private static final Pattern nuclearFactorPattern = Pattern.compile("[Nn]uclear\\s[Ff]actor\\s");
+	/** "xyz, isoform 2" */
+	private static final Pattern isoformPattern = Pattern.compile(".+\\,?\\siso(form|zyme)\\s[A-Za-z0-9]");
+	private static final Pattern isoformSplitPattern = Pattern.compile("^(.+?)\\,?\\s(iso(?:form|zyme)\\s[A-Za-z0-9])$");
+
+
 	/**
 	 * Analyzes a protein name (compound name) and returns a list
 	 * of potential name variations to actually appear in text.
@@ -175,50 +325,26 @@ public class Term2Regex{
 		if (verbosity > 1)
 			System.out.println("0) '" + name + "'");
 
-		name = name.replaceAll("([\\d\\.]+)\\s*([Kk][Dd][Aa])", "$1kDa");
+		name = kDaRule.apply(name);
 
-		name = name.replaceFirst("^[Hh]ypothetical protein (.+)", "$1");
+		name = hypotheticalRule.apply(name);
 		if (verbosity > 1)
 			System.out.println("1) '" + name + "'");
 
 		// remove all species from names
-		name = name.replaceAll("\\s\\((S(accharomyces|\\.)\\s?cerevisiae|[Dd]rosophila|X(enopus|\\.)\\s?laevis"
-				+ "|mouse|rat|yeast|human|bacterial|M(us|\\.)\\s?musculus|E(scherichia|\\.)\\s?coli"
-				+ "|C(aenorhabditis|\\.)\\s?elegans|S\\.\\s?pombe|H(\\.|omo)\\s?sapiens"
-				+ "|Arabidopsis|A(\\.|rabidopsis)\\s?thaliana)([\\s\\-]homolog)\\)", "");
-		name = name.replaceAll("\\s\\(homolog of (S(accharomyces|\\.)\\s?cerevisiae|[Dd]rosophila|X(enopus|\\.)\\s?laevis"
-				+ "|mouse|rat|yeast|human|bacterial|M(us|\\.)\\s?musculus|E(scherichia|\\.)\\s?coli"
-				+ "|C(aenorhabditis|\\.)\\s?elegans|S\\.\\s?pombe|H(\\.|omo)\\s?sapiens"
-				+ "|Arabidopsis|A(\\.|rabidopsis)\\s?thaliana)(\\s[A-Za-z0-9\\.\\-]+)?\\)", "");
+		name = apply(speciesRules, name);
 
 		if (verbosity > 1)
 			System.out.println("2) '" + name + "'");
 
-		// remove all "mitochondrial precursor", "short-chain specific" somewhere
-		// but beware of: "testis specific, 10"
-		name = name.replaceAll("(\\,\\s[a-z\\-\\/\\s]+[\\s\\-]specific)(\\,\\s|\\s\\(|$)", "$2");
-		name = name.replaceAll("((\\,\\s)?([a-z\\-]+[\\s\\-])?specific)(\\,\\s|\\s\\(|$)", "$4");
-		// ", neutral membrane" somewhere
-		name = name.replaceAll("\\,\\sneutral\\s[a-z]+(\\,\\s|\\s\\(|$)", "$1");
-		// "precursor" or ", xyz precursor" somewhere
-		name = name.replaceAll("\\,\\s([a-z\\-]+\\s)?precursor(\\,\\s|\\s\\(|$)", "$2");
-		name = name.replaceAll("\\sprecursor", "");
-		// ", mitochondrial" at end of name
-		name = name.replaceAll("\\,\\s([a-z]+al|[a-z]+ic)$", "");
-		// "pseudogene" / "preprotein" at end of name
-		name = name.replaceAll("(\\,\\s)?(pseudogene|preprotein|polypeptide)$", "");
+		// remove all "mitochondrial precursor", "short-chain specific", ", mitochondrial", "pseudogene", etc.
+		name = apply(suffixRules, name);
 		if (verbosity > 1)
 			System.out.println("3) '" + name + "'");
 
 		// remove all expressions in brackets
-		// TODO: might contain additional synonyms!
-		name = name.replaceAll("\\s\\[.+\\]([\\,\\;\\s]|$)", "");
-		name = name.replaceAll("\\s\\(.+\\)([\\,\\;\\s]|$)", "");
-		//if (verbosity > 1)
-		//	System.out.println("4) '" + name +"'");
-
 		// remove everything after a semicolon
-		name = name.replaceFirst("^(.+?)\\;\\s.+$", "$1");
+		name = apply(bracketRules, name);
 		if (verbosity > 1)
 			System.out.println("4b) '" + name +"'");
 
@@ -226,16 +352,16 @@ public class Term2Regex{
 
 
 		// "synuclein, alpha" => "alpha synuclein"
-		if (name.matches("^(.+)\\,\\s" + GREEK_WORDLETTER_REGEX + "$")) {
-			String inv = name.replaceAll("^(.+)\\,\\s(" + GREEK_WORDLETTER_REGEX + ")$", "$2 $1");
+		if (name.indexOf(',') >= 0 && greekSuffixPattern.matcher(name).matches()) {
+			String inv = greekSuffixPattern.matcher(name).replaceAll("$2 $1");
 			variations.add(inv);
 			if (verbosity > 1)
 				System.out.println("5) '" + inv + "'");
 		}
 		
 		// xyz antigen -> Anti-xyz
-		if (name.matches("(.+)[\\-\\s]?anti(gen|body)")) {
-			String n = name.replaceFirst("^(.+)[\\-\\s]?anti(gen|body)$", "Anti-$1");
+		if (name.indexOf("anti") >= 0 && antigenSuffixPattern.matcher(name).matches()) {
+			String n = antigenSuffixPattern.matcher(name).replaceFirst("Anti-$1");
 			variations.add(n);
 			if (verbosity > 1)
 				System.out.println("8) '" + n + "'");
@@ -243,23 +369,23 @@ public class Term2Regex{
 
 		// "nuclear factor NF bla" => "NF bla" OR "nuclear factor bla"
 		// TODO generalize: long form abbrev => lf OR abbrev
-		if (name.toLowerCase().matches("nuclear\\sfactor\\snf.+")) {
-			String lf = name.replaceFirst("\\s(NF|Nf|nf|nF)", "");
+		if ((name.startsWith("N") || name.startsWith("n")) && nuclearFactorNfPattern.matcher(name.toLowerCase()).matches()) {
+			String lf = nfPattern.matcher(name).replaceFirst("");
 			if (verbosity > 1)
 				System.out.println("6a) " + lf);
 			variations.add(lf);
-			String sf = name.replaceFirst("[Nn]uclear\\s[Ff]actor\\s", "");
+			String sf = nuclearFactorPattern.matcher(name).replaceFirst("");
 			if (verbosity > 1)
 				System.out.println("6b) " + sf);
 			variations.add(sf);
 		}
 
-		if (name.matches(".+\\,?\\siso(form|zyme)\\s[A-Za-z0-9]")) {
-			String inv = name.replaceFirst("^(.+?)\\,?\\s(iso(?:form|zyme)\\s[A-Za-z0-9])$", "$1");
+		if (name.indexOf("iso") >= 0 && isoformPattern.matcher(name).matches()) {
+			String inv = isoformSplitPattern.matcher(name).replaceFirst("$1");
 			variations.add(inv);
 			if (verbosity > 1)
 				System.out.println("7a) '" + inv + "'");
-			inv = name.replaceFirst("^(.+?)\\,?\\s(iso(?:form|zyme)\\s[A-Za-z0-9])$", "$2 of $1");
+			inv = isoformSplitPattern.matcher(name).replaceFirst("$2 of $1");
 			variations.add(inv);
 			if (verbosity > 1)
 				System.out.println("7b) '" + inv + "'");
@@ -269,6 +395,15 @@ public class Term2Regex{
 	}
 
 
+	private static final Pattern upperCasePattern = Pattern.compile("[A-Z]+");
+	private static final Pattern lowerCasePattern = Pattern.compile("[a-z]+");
+	private static final Pattern capitalizedPattern = Pattern.compile("[A-Z][a-z]+");
+	private static final Pattern lettersPattern = Pattern.compile("[a-zA-Z]+");
+	private static final Pattern digitsPattern = Pattern.compile("\\d+");
+	private static final Pattern lettersDigitsPattern = Pattern.compile("([A-Za-z]+)(\\d+)");
+	private static final Pattern lettersDigitsLetterPattern = Pattern.compile("([A-Za-z]+)(\\d+)([A-Za-z])");
+	private static final Pattern emptyPattern = Pattern.compile("");
+
 
 	/**
 	 *
@@ -283,20 +418,21 @@ public class Term2Regex{
 
 		// single character
 		// A => empty, A => alpha, I => 1, L => ligand, R => receptor
-		if (token.matches("[A-Za-z]")) {
-			if (token.matches("[Aa]"))
+		if (token.length() == 1 && isLetter(token.charAt(0))) {
+			char c = token.charAt(0);
+			if (c == 'A' || c == 'a')
 				//return "([Aa](lpha)?)?";
 				return "[Aa](lpha)?";
-			if (token.matches("[Bb]"))
+			if (c == 'B' || c == 'b')
 				return "[Bb](eta)?";
-			if (token.matches("[Ii]"))
+			if (c == 'I' || c == 'i')
 				if (position == 0) return token;
 				else return "[Ii1]";
 			//if (token.matches("[Ii]"))
 			//	return "[Ii1]?";
-			if (token.matches("[Rr]"))
+			if (c == 'R' || c == 'r')
 				return "[Rr](eceptor)?";
-			if (token.matches("[Ll]"))
+			if (c == 'L' || c == 'l')
 				return "[Ll](igand)?";
 
 			return "[" + token.toUpperCase() + token.toLowerCase() + "]";
@@ -304,7 +440,7 @@ public class Term2Regex{
 
 		// multiple upper case characters:
 		// FAS => Fas
-		if (token.matches("[A-Z]+")) {
+		if (upperCasePattern.matcher(token).matches()) {
 			//System.out.println("# multiple upper");
 			if (token.equals("II"))
 				if (position == 0) return "II";
@@ -314,7 +450,7 @@ public class Term2Regex{
 				if (position == 0) return "III";
 				else return "(II|ii|3)";
 
-			chars = token.split("");
+			chars = emptyPattern.split(token);
 			//System.out.println("# has " + chars.length + "-1 characters");
 			//for (int c = 0; c < chars.length; c++) {
 			//	System.out.println("#   '" + chars[c] + "'");
@@ -350,7 +486,7 @@ public class Term2Regex{
 		}
 
 		// multiple lower case characters
-		if (token.matches("[a-z]+")) {
+		if (lowerCasePattern.matcher(token).matches()) {
 			if (token.equals("ii"))
 				if (position == 0) return "ii";
 				else return "(II|ii|2)";
@@ -373,13 +509,13 @@ public class Term2Regex{
 		}
 
 		// Erbb => ErbB
-		if (token.matches("[A-Z][a-z]+")) {
+		if (capitalizedPattern.matcher(token).matches()) {
 			//System.out.println("# upper than lower");
 			return getTokenVariations(token.toUpperCase(), position);
 		}
 
 		// 95 => 95, 1 => i
-		if (token.matches("\\d+")) {
+		if (digitsPattern.matcher(token).matches()) {
 			//System.out.println("# number");
 			if (token.equals("1"))
 				//return "[Ii1]?";
@@ -391,35 +527,28 @@ public class Term2Regex{
 		}
 
 		// Abbreviation followed by number
-		if (token.matches("([A-Z]+)(\\d+)")) {
-			String string = token.replaceFirst("^([A-Za-z]+)(\\d+)$", "$1");
-			String number = token.replaceFirst("^([A-Za-z]+)(\\d+)$", "$2");
-			return getTokenVariations(string, position) + tokenDelimiterNoWhitespace + getTokenVariations(number, position);
-		}
-
-		// Abbreviation followed by number
-		if (token.matches("([A-Za-z]+)(\\d+)")) {
-			String string = token.replaceFirst("^([A-Za-z]+)(\\d+)$", "$1");
-			String number = token.replaceFirst("^([A-Za-z]+)(\\d+)$", "$2");
+		Matcher matcher = lettersDigitsPattern.matcher(token);
+		if (matcher.matches()) {
+			String string = matcher.group(1);
+			String number = matcher.group(2);
 			return getTokenVariations(string, position) + tokenDelimiterNoWhitespace + getTokenVariations(number, position);
 		}
 
 		// Abbreviation followed by number and ending with letters
-		if (token.matches("([A-Za-z]+)(\\d+)([A-Za-z])")) {
-			String string = token.replaceFirst("^([A-Za-z]+)(\\d+)([A-Za-z]+)$", "$1");
-			String number = token.replaceFirst("^([A-Za-z]+)(\\d+)([A-Za-z]+)$", "$2");
-			String string2 = token.replaceFirst("^([A-Za-z]+)(\\d+)([A-Za-z]+)$", "$3");
+		matcher = lettersDigitsLetterPattern.matcher(token);
+		if (matcher.matches()) {
+			String string = matcher.group(1);
+			String number = matcher.group(2);
+			String string2 = matcher.group(3);
 			return getTokenVariations(string, position)
 				+ tokenDelimiterWithWhitespace + getTokenVariations(number, position)
 				+ tokenDelimiterWithWhitespace + getTokenVariations(string2, position);
 		}
 
 		// erbB
-		if (token.matches("[a-z]+[A-Z]")) return getTokenVariations(token.toUpperCase(), position);
-
 		// MyD
 		//if (token.matches("[A-Z][a-zA-Z]+[A-Z]")) return getTokenVariations(token.toUpperCase());
-		if (token.matches("[a-zA-Z]+")) return getTokenVariations(token.toUpperCase(), position);
+		if (lettersPattern.matcher(token).matches()) return getTokenVariations(token.toUpperCase(), position);
 
 		if (!token.contains("."))
 			System.err.println("# Term2Regex: unhandled token '" + token + "'");
@@ -427,6 +556,17 @@ public class Term2Regex{
 	}
 
 
+	private static boolean isLetter (char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+
+
+	private static final Pattern singularYPattern = Pattern.compile("^(.*)y$");
+	private static final Pattern singularUsPattern = Pattern.compile("^(.*)us$");
+	private static final Pattern singularAPattern = Pattern.compile("^(.*)a$");
+	private static final Pattern upperCaseEndPattern = Pattern.compile(".*[A-Z]");
+
+
 	/**
 	 *
 	 * @param token
@@ -437,12 +577,12 @@ public class Term2Regex{
 		if (token.endsWith("ss"))
 			return token + "(es)?";//token.replaceFirst("^(.*)ss$", "$1(ss|sses)");
 		if (token.endsWith("y"))
-			return token.replaceFirst("^(.*)y$", "$1(y|ies)");
+			return singularYPattern.matcher(token).replaceFirst("$1(y|ies)");
 		if (token.endsWith("us"))
-			return token.replaceFirst("^(.*)us$", "$1(us|i)");
+			return singularUsPattern.matcher(token).replaceFirst("$1(us|i)");
 		if (token.endsWith("a"))
-			return token.replaceFirst("^(.*)a$", "$1(a|ae|as)");
-		if (token.matches(".*[A-Z]"))
+			return singularAPattern.matcher(token).replaceFirst("$1(a|ae|as)");
+		if (upperCaseEndPattern.matcher(token).matches())
 			return token + "s?";
 
 		// add singular forms when plural
@@ -479,40 +619,43 @@ public class Term2Regex{
 	}
 
 
+	private static final Pattern ionPattern = Pattern.compile("(Ca|Cl|Fe|H|HCO3|I|K|L|Li|Mg|Na|P)([23]?[\\+\\-]|\\([23]?[\\+\\-]\\))"
+		+ "|(NADP|NAD\\(P\\))([\\+\\-]|\\([\\+\\-]\\))");
+
+
 	/**
 	 * TODO use it. Variations: Na+ and Na(+)
 	 * @param term
 	 * @return
 	 */
 	public static boolean isIon (String term) {
-		if (term.matches("(Ca|Cl|Fe|H|HCO3|I|K|L|Li|Mg|Na|P)([23]?[\\+\\-]|\\([23]?[\\+\\-]\\))")) return true;
-		if (term.matches("(NADP|NAD\\(P\\))([\\+\\-]|\\([\\+\\-]\\))")) return true;
-		return false;
+		return ionPattern.matcher(term).matches();
 	}
 
 
+	private static final Pattern ecNumberPattern = Pattern.compile("EC\\s?(\\d{1,3}|\\-)(\\.(\\d{1,3}|\\-)){2,4}");
+	private static final Pattern upperCaseKiaaPattern = Pattern.compile("KIAA\\d+");
+	private static final Pattern proteinIdPattern = Pattern.compile(
+		"[OPQ][0-9]([A-Z0-9]{3})[0-9]([\\.\\-][0-9]{1,2})?" // UniProt ID + isoform
+		+ "|[A-Z0-9]{1,6}_(HUMAN|RAT|YEAST|CAEEL|MOUSE)"      // UniProt Accession
+		+ "|FLJ\\d+|LOC\\d+|MGC\\d+|ZNF\\d+|OTTHUMP\\d+|DKFZp\\d+");
+
+
 	/**
 	 *
 	 * @param term
 	 * @return
 	 */
 	public static boolean isProteinID (String term) {
-		if (term.matches("EC\\s?(\\d{1,3}|\\-)(\\.(\\d{1,3}|\\-)){2,4}")) {
+		if (term.startsWith("EC") && ecNumberPattern.matcher(term).matches()) {
 			return true;
 		}
 		
 		if (term.startsWith("HGNC:")
 			|| term.startsWith("PID:")
 			|| term.startsWith("GD:")
-			|| term.toUpperCase().matches("KIAA\\d+")                            // occurs as KIAA, Kiaa, ...
-			|| term.matches("[OPQ][0-9]([A-Z0-9]{3})[0-9]([\\.\\-][0-9]{1,2})?") // UniProt ID + isoform
-			|| term.matches("[A-Z0-9]{1,6}_(HUMAN|RAT|YEAST|CAEEL|MOUSE)")       // UniProt Accession
-			|| term.matches("FLJ\\d+")
-			|| term.matches("LOC\\d+")
-			|| term.matches("MGC\\d+")
-			|| term.matches("ZNF\\d+")
-			|| term.matches("OTTHUMP\\d+")
-			|| term.matches("DKFZp\\d+")
+			|| (term.regionMatches(true, 0, "KIAA", 0, 4) && upperCaseKiaaPattern.matcher(term.toUpperCase()).matches()) // occurs as KIAA, Kiaa, ...
+			|| proteinIdPattern.matcher(term).matches()
 			)
 			return true;
 
@@ -520,6 +663,11 @@ public class Term2Regex{
 	}
 
 
+	private static final Pattern prefixedTermPattern = Pattern.compile("([Pp]rotein|[Aa]ntigen|[Gg]ene)\\s.+");
+	private static final Pattern suffixedTermPattern = Pattern.compile(".+\\s([Pp]rotein|[Aa]ntigen|[Pp]recursor|[Gg]ene)");
+	private static final Pattern twoWordsPattern = Pattern.compile("([A-Za-z][a-z]+)\\s([A-Za-z][a-z]+)");
+
+
 	/**
 	 *
 	 * @param term
@@ -530,16 +678,19 @@ public class Term2Regex{
 		if (term.indexOf(" ") < term.lastIndexOf(" ")) return false;
 
 		// Antigen p53
-		if (term.matches("([Pp]rotein|[Aa]ntigen|[Gg]ene)\\s.+")) return false;
-		if (term.matches(".+\\s([Pp]rotein|[Aa]ntigen|[Pp]recursor|[Gg]ene)")) return false;
+		if (prefixedTermPattern.matcher(term).matches()) return false;
+		if (suffixedTermPattern.matcher(term).matches()) return false;
 
 		// Adrenodoxin reductase
-		if (term.matches("([A-Za-z][a-z]+)\\s([A-Za-z][a-z]+)")) return false;
+		if (twoWordsPattern.matcher(term).matches()) return false;
 
 		return true;
 	}
 
 
+	private static final Pattern upperCaseDigitBracketPattern = Pattern.compile(".*[A-Z0-9\\-\\(\\)].*");
+
+
 	/**
 	 *
 	 * @param term
@@ -549,21 +700,30 @@ public class Term2Regex{
 		// one token only?
 		if (term.indexOf(" ") == -1) {
 			// upper case, symbols, digits?
-			if (term.matches(".*[A-Z0-9\\-\\(\\)].*")) return false;
+			if (upperCaseDigitBracketPattern.matcher(term).matches()) return false;
 			else return true;
 		}
 		return true;
 	}
 
 
+	private static final Pattern prepositionAndDigitPattern = Pattern.compile(PREPOSITIONS_REGEX + " \\d+|\\d+ " + PREPOSITIONS_REGEX);
+	private static final Pattern digitPattern = Pattern.compile("(\\d*\\.)?\\d+");
+	private static final Pattern romanDigitPattern = Pattern.compile("([XVI]+|[xvi]+|[XVI][xvi]+)");
+	private static final Pattern digitsFromToPattern = Pattern.compile("\\d+\\-\\d+");
+	private static final Pattern digitAndLetterPattern = Pattern.compile("[A-Za-z] \\d+|\\d+ [A-Za-z]");
+	private static final Pattern prepositionsPattern = Pattern.compile(PREPOSITIONS_REGEX + "( " + PREPOSITIONS_REGEX + ")*");
+	private static final Pattern determinerAndDigitPattern = Pattern.compile("(the|an?) \\d+|\\d+ (the|an?)");
+
+	/** Names that match any of the matches* methods below, see {@link #getRegexes(List, Set, StringBuilder)}. */
+	private static final Pattern ignoredNamePattern = Pattern.compile("(?:" + digitPattern + ")|(?:" + romanDigitPattern
+		+ ")|(?:" + digitsFromToPattern + ")|(?:" + digitAndLetterPattern + ")|(?:" + determinerAndDigitPattern
+		+ ")|(?:" + prepositionAndDigitPattern + ")|(?:" + prepositionsPattern + ")");
 
 	/***/
 	public static boolean matchesPrepositionAndDigit(String name)
 	{
-		if (name.matches(PREPOSITIONS_REGEX + " \\d+")) {
-			return true;
-		}
-		if (name.matches("\\d+ " + PREPOSITIONS_REGEX)) {
+		if (prepositionAndDigitPattern.matcher(name).matches()) {
 			return true;
 		}
 		return false;
@@ -572,7 +732,7 @@ public class Term2Regex{
 	/***/
 	public static boolean matchesDigit(String name)
 	{
-		if (name.matches("(\\d*\\.)?\\d+")) {
+		if (digitPattern.matcher(name).matches()) {
 			return true;
 		}
 		return false;
@@ -581,14 +741,14 @@ public class Term2Regex{
 	/***/
 	public static boolean matchesRomanDigit(String name)
 	{
-		if (name.matches("([XVI]+|[xvi]+|[XVI][xvi]+)")) return true;
+		if (romanDigitPattern.matcher(name).matches()) return true;
 		return false;
 	}
 
 	/***/
 	public static boolean matchesDigitsFromTo(String name)
 	{
-		if (name.matches("\\d+\\-\\d+")) {
+		if (digitsFromToPattern.matcher(name).matches()) {
 			return true;
 		}
 		return false;
@@ -597,10 +757,7 @@ public class Term2Regex{
 	/***/
 	public static boolean matchesDigitAndLetter(String name)
 	{
-		if (name.matches("[A-Za-z] \\d+")) {
-			return true;
-		}
-		if (name.matches("\\d+ [A-Za-z]")) {
+		if (digitAndLetterPattern.matcher(name).matches()) {
 			return true;
 		}
 		return false;
@@ -609,7 +766,7 @@ public class Term2Regex{
 	/***/
 	public static boolean matchesPrepositions(String name)
 	{
-		if (name.matches(PREPOSITIONS_REGEX + "( " + PREPOSITIONS_REGEX + ")*")) {
+		if (prepositionsPattern.matcher(name).matches()) {
 			return true;
 		}
 		return false;
@@ -618,71 +775,42 @@ public class Term2Regex{
 	/***/
 	public static boolean matchesDeterminerAndDigit(String name)
 	{
-		if (name.matches("(the|an?) \\d+")) {
-			return true;
-		}
-		if (name.matches("\\d+ (the|an?)")) {
+		if (determinerAndDigitPattern.matcher(name).matches()) {
 			return true;
 		}
 		return false;
 	}
 
+	/** Names that are matched as they are, see {@link #generateRegex(String)}. */
+	private static final Pattern noRegexPattern = Pattern.compile(
+		"[Gg]ene \\d+(\\.\\d+){0,1}"+tokenDelimiterWithWhitespace+"[Pp]rotein"
+		+ "|[Gg]ene \\d+(\\-\\d+){0,1}"+tokenDelimiterWithWhitespace+"[Pp]rotein"
+		+ "|\\d+"+tokenDelimiterWithWhitespace+"([Aa]ntigen|[Pp]rotein|[Gg]ene)"
+		+ "|([Aa]ntigen|[Pp]rotein|[Gg]ene)"+tokenDelimiterWithWhitespace+"\\d+"
+		+ "|\\d+\\-\\d+"+tokenDelimiterWithWhitespace+"([Aa]ntigen|[Pp]rotein|[Gg]ene)"
+		+ "|\\d+\\.\\d+"+tokenDelimiterWithWhitespace+"([Aa]ntigen|[Pp]rotein|[Gg]ene)"
+		+ "|\\d+[Ii]"
+		+ "|[Ii]\\d+"
+		+ "|\\d+(II|ii)"
+		+ "|(II|ii)\\d+"
+		+ "|\\d+\\.(\\-)?\\d+"
+		+ "|([Pp]rotein|[Gg]ene|[Aa]ntigen) \\d+(\\.\\d+){0,1}"+tokenDelimiterWithWhitespace+"([Hh]omolog|[Pp]recursor)?"
+		+ "|([Pp]rotein|[Gg]ene|[Aa]ntigen) \\d+(\\-\\d+){0,1}"+tokenDelimiterWithWhitespace+"([Hh]omolog|[Pp]recursor)?"
+		+ "|([Pp]rotein|[Gg]ene|[Aa]ntigen) (I|II|III|IV|V|VI|VII|VIII|IX|X|XI|XII|XIII|XIV|XV)"+tokenDelimiterWithWhitespace+"([Pp]rotein|[Gg]ene|[Hh]omolog|[Pp]recursor)?"
+		+ "|([Pp]rotein|[Gg]ene|[Aa]ntigen) (I|II|III|IV|V|VI|VII|VIII|IX|X|XI|XII|XIII|XIV|XV)"+tokenDelimiterWithWhitespace+"\\d+"+tokenDelimiterWithWhitespace+"([Pp]rotein|[Gg]ene|[Hh]omolog|[Pp]recursor)?"
+		+ "|[A-Z]\\d");  // R1, L1
+
 	/***/
 	public static boolean generateRegex(String name)
 	{
-		if (name.matches("[Gg]ene \\d+(\\.\\d+){0,1}"+tokenDelimiterWithWhitespace+"[Pp]rotein")) {
-			return false;
-		}
-		if (name.matches("[Gg]ene \\d+(\\-\\d+){0,1}"+tokenDelimiterWithWhitespace+"[Pp]rotein")) {
-			return false;
-		}
-		if (name.matches("\\d+"+tokenDelimiterWithWhitespace+"([Aa]ntigen|[Pp]rotein|[Gg]ene)")) {
-			return false;
-		}
-		if (name.matches("([Aa]ntigen|[Pp]rotein|[Gg]ene)"+tokenDelimiterWithWhitespace+"\\d+")) {
-			return false;
-		}
-		if (name.matches("\\d+\\-\\d+"+tokenDelimiterWithWhitespace+"([Aa]ntigen|[Pp]rotein|[Gg]ene)")) {
-			return false;
-		}
-		if (name.matches("\\d+\\.\\d+"+tokenDelimiterWithWhitespace+"([Aa]ntigen|[Pp]rotein|[Gg]ene)")) {
-			return false;
-		}
-		if (name.matches("\\d+[Ii]")) {
-			return false;
-		}
-		if (name.matches("[Ii]\\d+")) {
-			return false;
-		}
-		if (name.matches("\\d+(II|ii)")) {
-			return false;
-		}
-		if (name.matches("(II|ii)\\d+")) {
-			return false;
-		}
-		if (name.matches("\\d+\\.(\\-)?\\d+")) {
+		if (noRegexPattern.matcher(name).matches()) {
 			return false;
 		}
-		if (name.matches("([Pp]rotein|[Gg]ene|[Aa]ntigen) \\d+(\\.\\d+){0,1}"+tokenDelimiterWithWhitespace+"([Hh]omolog|[Pp]recursor)?")) {
-			return false;
-		}
-		if (name.matches("([Pp]rotein|[Gg]ene|[Aa]ntigen) \\d+(\\-\\d+){0,1}"+tokenDelimiterWithWhitespace+"([Hh]omolog|[Pp]recursor)?")) {
-			return false;
-		}
-		if (name.matches("([Pp]rotein|[Gg]ene|[Aa]ntigen) (I|II|III|IV|V|VI|VII|VIII|IX|X|XI|XII|XIII|XIV|XV)"+tokenDelimiterWithWhitespace+"([Pp]rotein|[Gg]ene|[Hh]omolog|[Pp]recursor)?")) {
-			return false;
-		}
-		if (name.matches("([Pp]rotein|[Gg]ene|[Aa]ntigen) (I|II|III|IV|V|VI|VII|VIII|IX|X|XI|XII|XIII|XIV|XV)"+tokenDelimiterWithWhitespace+"\\d+"+tokenDelimiterWithWhitespace+"([Pp]rotein|[Gg]ene|[Hh]omolog|[Pp]recursor)?")) {
-			return false;
-		}
-		if (name.matches("[A-Z]\\d"))  // R1, L1
-			return false;
 
 		return true;
 	}
 
 
-
 	/**
 	 * Takes a map from names to IDs and generates a map of regular expressions to IDs.
 	 *
@@ -691,37 +819,126 @@ public class Term2Regex{
 	 */
 	public static Map<String, String> getMapFromRegexToIDs(Map<String, Set<String>> names2ids, Set<String> perfectMatchNames)
 	{
+		return getMapFromRegexToIDs(names2ids, perfectMatchNames, 1);
+	}
+
+
+	/**
+	 * Takes a map from names to IDs and generates a map of regular expressions to IDs. Generates the regular
+	 * expressions for batches of names in parallel; names and messages are handled in the same order as with
+	 * a single thread, so the result is the same.
+	 *
+	 * @param names2ids
+	 * @param perfectMatchNames
+	 * @param threads - number of threads that generate regular expressions
+	 * @return
+	 */
+	public static Map<String, String> getMapFromRegexToIDs(Map<String, Set<String>> names2ids, final Set<String> perfectMatchNames, int threads)
+	{
+		List<String> allnames = new ArrayList<String>(names2ids.keySet());
+
+		// the regex for each name, null for ignored names; and the messages for each batch of names
+		List<String[]> regexes = new ArrayList<String[]>();
+		List<String> messages = new ArrayList<String>();
+		if (threads <= 1 || allnames.size() <= REGEX_BATCH_SIZE) {
+			StringBuilder log = new StringBuilder();
+			regexes.add(getRegexes(allnames, perfectMatchNames, log));
+			messages.add(log.toString());
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Object[]>> futures = new ArrayList<Future<Object[]>>();
+				for (int from = 0; from < allnames.size(); from += REGEX_BATCH_SIZE) {
+					final List<String> batch = allnames.subList(from, Math.min(from + REGEX_BATCH_SIZE, allnames.size()));
+					futures.add(pool.submit(new Callable<Object[]>() {
+						public Object[] call () {
+							StringBuilder log = new StringBuilder();
+							String[] batchRegexes = getRegexes(batch, perfectMatchNames, log);
+							return new Object[]{batchRegexes, log.toString()};
+						}
+					}));
+				}
+				for (Future<Object[]> future: futures) {
+					Object[] result = future.get();
+					regexes.add((String[])result[0]);
+					messages.add((String)result[1]);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while generating regular expressions", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Error while generating regular expressions: " + e.getCause(), e.getCause());
+			} finally {
+				pool.shutdown();
+			}
+		}
+
 		// maps from regex to ID
 		HashMap<String, Set<String>> allVariations = new HashMap<String, Set<String>>();
-		// maps from regex to source name
-		// HashMap<String, String> allSources = new HashMap<String, String>();
+		int n = 0;
+		for (int b = 0; b < regexes.size(); b++) {
+			System.out.print(messages.get(b));
+			for (String regex: regexes.get(b)) {
+				Set<String> ID = names2ids.get(allnames.get(n++));
+				if (regex != null) {
+					if (allVariations.containsKey(regex)) {
+						Set<String> idSet = allVariations.get(regex);
+						idSet.addAll(ID);
+					}
+					else {
+						Set<String> idSet = new HashSet<String>();
+						idSet.addAll(ID);
+						allVariations.put(regex, idSet);
+					}
+				}
+			}
+		}
 
-		Set<String> allnames = names2ids.keySet();
+		Map<String, String> regexToIdString = new HashMap<String, String>();
+		for (String regex : allVariations.keySet()) {
+			Set<String> idset = allVariations.get(regex);
+			String idString = ArrayHelper.joinStringArray(ArrayHelper.set2StringArray(idset), ";");
+			regexToIdString.put(regex, idString);
+		}
 
-		int category = 1;
-		Iterator<String> allnamesIt = allnames.iterator();
-		while (allnamesIt.hasNext()) {
-			String regex = "";
-			String name = (String) allnamesIt.next();
-			Set<String> ID = names2ids.get(name);
+		return regexToIdString;
+	}
 
-			if (matchesDigit(name) || matchesRomanDigit(name) || matchesDigitsFromTo(name) || matchesDigitAndLetter(name) || matchesDeterminerAndDigit(name) || matchesPrepositionAndDigit(name) || matchesPrepositions(name)) {
-				System.out.println("Term2Regex: Ignoring name " + name);
-				continue;
+
+	/** IDs for which a regex is generated nevertheless. */
+	private static final Pattern ecKiaaPattern = Pattern.compile("^(EC|KIAA|Kiaa).+$");
+
+
+	/**
+	 * Returns the regular expression for each name, null for names that are ignored.
+	 *
+	 * @param names
+	 * @param perfectMatchNames - names that are matched as they are
+	 * @param messages - gets a line for each name that is ignored or matched as it is
+	 * @return
+	 */
+	static String[] getRegexes(List<String> names, Set<String> perfectMatchNames, StringBuilder messages)
+	{
+		String[] regexes = new String[names.size()];
+		int n = 0;
+		for (String name: names) {
+			String regex = null;
+
+			if (ignoredNamePattern.matcher(name).matches()) {
+				messages.append("Term2Regex: Ignoring name " + name + "\n");
 			}
 
-			if (isProteinID(name) && !name.matches("^(EC|KIAA|Kiaa).+$")) {
-				System.out.println("Term2Regex: Ignoring ID " + name);
-				continue;
+			else if (isProteinID(name) && !ecKiaaPattern.matcher(name).matches()) {
+				messages.append("Term2Regex: Ignoring ID " + name + "\n");
 			}
 
 			// categorize the current name
-			if (perfectMatchNames.contains(name) || !generateRegex(name)) {
+			else if (perfectMatchNames.contains(name) || !generateRegex(name)) {
 				regex = name;
-				System.out.println("Term2Regex: Perfect match regex for name " + name);
+				messages.append("Term2Regex: Perfect match regex for name " + name + "\n");
 			}
 			else {
-				category = getProteinNameCategory(name);
+				int category = getProteinNameCategory(name);
 				switch (category) {
 				case 0: {
 					regex = getRegexForProteinID(name);
@@ -739,28 +956,35 @@ public class Term2Regex{
 				// regex = "("+name+"|"+name.toLowerCase()+"|"+name.toUpperCase()+")";
 			}
 
-			if (regex != null) {
-				if (allVariations.containsKey(regex)) {
-					Set<String> idSet = allVariations.get(regex);
-					idSet.addAll(ID);
-				}
-				else {
-					Set<String> idSet = new HashSet<String>();
-					idSet.addAll(ID);
-					allVariations.put(regex, idSet);
-				}
-			}
+			regexes[n++] = regex;
 		}
+		return regexes;
+	}
 
-		Map<String, String> regexToIdString = new HashMap<String, String>();
-		for (String regex : allVariations.keySet()) {
-			Set<String> idset = allVariations.get(regex);
-			String idString = ArrayHelper.joinStringArray(ArrayHelper.set2StringArray(idset), ";");
-			regexToIdString.put(regex, idString);
-		}
 
-		return regexToIdString;
-	}
+	/** Variations that consist of digits, punctuation, and white space only. */
+	private static final Pattern separatorsOnlyPattern = Pattern.compile("[\\d+\\,\\-\\/\\_\\.\\;\\(\\)\\[\\]\\s]+");
+	private static final Rule[] hyphenRules = {
+		replaceAll("\\-\\s", "-", "-"),
+		replaceAll("\\-\\-", "-", "--")
+	};
+	private static final Pattern optionalLastPartPattern = Pattern.compile("([Pp]rotein|[Aa]ntigen|[Pp]recursor|[Pp]seudogene|[Gg]ene|[Hh]omolog)");
+	private static final Pattern optionalFirstPartPattern = Pattern.compile("([Pp]rotein|[Aa]ntigen|[Gg]ene)");
+	private static final Pattern optionalPartPattern = Pattern.compile("([Cc]hain|[Ii]sozyme|[Ii]soform|[Mm]ember|[Tt]ype|[Ss]ubunit)");
+	private static final Pattern alphanumericPattern = Pattern.compile("[A-Za-z0-9]");
+
+	/** N-cadherin 1 in masterlist => N-cadherin in text */
+	private static final Rule optionalOneRule = replaceFirst("^(.+)\\[\\s\\\\-\\]\\?\\[Ii1\\]$", "$1([ \\\\-]?[Ii1])?");
+	/** retinoid X receptor alpha => retinoid X receptor */
+	private static final Rule optionalAlphaRule = replaceFirst("^(.+)\\[\\s\\\\-\\]\\?\\[Aa\\]\\(lpha\\)\\?$", "$1([ \\\\-]?[Aa](lpha)?)?");
+	private static final Rule receptorRule = replaceFirst("\\[Rr\\]eceptor", "[Rr](eceptor)?", "[Rr]eceptor");
+	private static final Rule ligandRule = replaceFirst("^\\[Ll\\]igand", "[Ll](igand)?", "[Ll]igand");
+	private static final Pattern kinasePattern = Pattern.compile(".+\\[\\s\\\\-\\]\\?\\[Kk\\]inase\\[\\s\\\\-\\]\\?.+");
+	private static final Rule kinaseRule = replaceFirst("(.+)(\\[\\s\\\\-\\]\\?)(\\[Kk\\]inase)(\\[\\s\\\\-\\]\\?)(.+)", "$1($2$3)?$4$5");
+	private static final Rule glycineRule = replaceAll("\\[Gg\\]lycine", "(\\[Gg\\]lycine|GLY|Gly)", "[Gg]lycine");
+	private static final Pattern nuclearFactorPrefixPattern = Pattern.compile("((\\[Nn\\]uclear|\\[Ff\\]actor)\\[\\s\\\\-\\]\\?)+(.+)");
+	private static final Rule nuclearFactorPrefixRule = replaceFirst("^(((\\[Nn\\]uclear|\\[Ff\\]actor)\\[\\s\\\\-\\]\\?)+)(.+)$", "($1)?$4");
+	private static final Rule commaRule = replaceAll("\\,(\\[\\s|\\(\\[\\s)", ",?$1", ",");
 
 
 	/**
@@ -796,7 +1020,7 @@ public class Term2Regex{
 		int current = 0;
 		//
 		for (String variation : variations) {
-			if (variation.matches("[\\d+\\,\\-\\/\\_\\.\\;\\(\\)\\[\\]\\s]+")) {
+			if (separatorsOnlyPattern.matcher(variation).matches()) {
 				continue;
 			}
 			
@@ -804,10 +1028,9 @@ public class Term2Regex{
 				regex += "|";
 
 			// split name into parts: English words, abbreviations, numbers
-			variation = variation.replaceAll("\\-\\s", "-");
-			variation = variation.replaceAll("\\-\\-", "-");
+			variation = apply(hyphenRules, variation);
 
-			String[] parts = variation.split("[\\s\\-]");
+			String[] parts = tokenDelimiterPattern.split(variation);
 			boolean[] optional = new boolean[parts.length];
 
 			for (int p = 0; p < parts.length; p++) {
@@ -815,19 +1038,19 @@ public class Term2Regex{
 				optional[p] = false;
 				
 				// last part is sometimes optional
-				if (p == parts.length - 1 && parts[p].matches("([Pp]rotein|[Aa]ntigen|[Pp]recursor|[Pp]seudogene|[Gg]ene|[Hh]omolog)")) {
+				if (p == parts.length - 1 && optionalLastPartPattern.matcher(parts[p]).matches()) {
 					// do not make 'protein' in "D protein" optional
-					if (p > 0 && !parts[p-1].matches("[A-Za-z0-9]"))
+					if (p > 0 && !alphanumericPattern.matcher(parts[p-1]).matches())
 						optional[p] = true;
 					
 				// first part is sometimes optional
-				} else if (p == 0 && parts[p].matches("([Pp]rotein|[Aa]ntigen|[Gg]ene)")) {
+				} else if (p == 0 && optionalFirstPartPattern.matcher(parts[p]).matches()) {
 					// do not make 'protein' in "protein D" optional
-					if (parts.length > 1 && !parts[p+1].matches("[A-Za-z0-9]"))
+					if (parts.length > 1 && !alphanumericPattern.matcher(parts[p+1]).matches())
 						optional[p] = true;
 					
 				// some parts are always optional
-				} else if (parts[p].matches("([Cc]hain|[Ii]sozyme|[Ii]soform|[Mm]ember|[Tt]ype|[Ss]ubunit)"))
+				} else if (optionalPartPattern.matcher(parts[p]).matches())
 					optional[p] = true;
 
 				String pRegex = getRegexForProteinNamePart(parts[p]);
@@ -861,40 +1084,46 @@ public class Term2Regex{
 		// if (regex.endsWith("[Ii1]")) regex += "?";
 		if (regex.endsWith("[Ii1]")) {
 			// System.err.println("# Found [Ii1]");
-			regex = regex.replaceFirst("^(.+)\\[\\s\\\\-\\]\\?\\[Ii1\\]$", "$1([ \\\\-]?[Ii1])?");
+			regex = optionalOneRule.apply(regex);
 		}
 
 		// retinoid X receptor alpha => retinoid X receptor
 		if (regex.endsWith("[ \\-]?[Aa](lpha)?")) {
 			// System.err.println("# Found alpha");
-			regex = regex.replaceFirst("^(.+)\\[\\s\\\\-\\]\\?\\[Aa\\]\\(lpha\\)\\?$", "$1([ \\\\-]?[Aa](lpha)?)?");
+			regex = optionalAlphaRule.apply(regex);
 		}
 
 		// if (regex.endsWith("[Rr]eceptor"))
 		// regex = regex.replaceFirst("^(.+)\\[Rr\\]eceptor$", "$1[Rr](eceptor)?");
-		regex = regex.replaceFirst("\\[Rr\\]eceptor", "[Rr](eceptor)?");
+		regex = receptorRule.apply(regex);
 		// if (regex.endsWith("[Ll]igand"))
 		// regex = regex.replaceFirst("^(.+)\\[Ll\\]igand$", "$1[Ll](igand)?");
-		regex = regex.replaceFirst("^\\[Ll\\]igand", "[Ll](igand)?");
+		regex = ligandRule.apply(regex);
 
-		if (regex.matches(".+\\[\\s\\\\-\\]\\?\\[Kk\\]inase\\[\\s\\\\-\\]\\?.+")) {
-			regex = regex.replaceFirst("(.+)(\\[\\s\\\\-\\]\\?)(\\[Kk\\]inase)(\\[\\s\\\\-\\]\\?)(.+)", "$1($2$3)?$4$5");
+		if (regex.indexOf("[Kk]inase") >= 0 && kinasePattern.matcher(regex).matches()) {
+			regex = kinaseRule.apply(regex);
 			// System.err.println("YES");
 		}
 
-		regex = regex.replaceAll("\\[Gg\\]lycine", "(\\[Gg\\]lycine|GLY|Gly)");
+		regex = glycineRule.apply(regex);
 
-		if (regex.matches("((\\[Nn\\]uclear|\\[Ff\\]actor)\\[\\s\\\\-\\]\\?)+(.+)")) {
-			regex = regex.replaceFirst("^(((\\[Nn\\]uclear|\\[Ff\\]actor)\\[\\s\\\\-\\]\\?)+)(.+)$", "($1)?$4");
+		if ((regex.startsWith("[Nn]uclear") || regex.startsWith("[Ff]actor")) && nuclearFactorPrefixPattern.matcher(regex).matches()) {
+			regex = nuclearFactorPrefixRule.apply(regex);
 		}
 
-		regex = regex.replaceAll("\\,(\\[\\s|\\(\\[\\s)", ",?$1");
+		regex = commaRule.apply(regex);
 
 		// System.err.println("# New: '" + regex + "'");
 
 		return regex;
 	}
 
+
+	private static final Pattern wordPattern = Pattern.compile("[A-Za-z][a-z]+");
+	private static final Pattern molecularWeightPattern = Pattern.compile("[\\d+\\.]+[Kk][Dd][Aa]?");
+	private static final Rule molecularWeightRule = replaceFirst("([\\d+\\.]+)[Kk][Dd][Aa]?", "($1[ \\\\-]?[Kk][Dd][Aa]?)?");
+
+
 	/**
 	 * @param part
 	 * @return
@@ -902,12 +1131,12 @@ public class Term2Regex{
 	public static String getRegexForProteinNamePart(String part)
 	{
 		if (part.length() >= 4) {
-			if (part.matches("[A-Za-z][a-z]+") && !isNumeral(part)) {
+			if (wordPattern.matcher(part).matches() && !isNumeral(part)) {
 				String first = part.substring(0, 1);
 				return "[" + first.toUpperCase() + first.toLowerCase() + "]" + part.substring(1);
 			}
-			if (part.matches("[\\d+\\.]+[Kk][Dd][Aa]?")) {
-				return part.replaceFirst("([\\d+\\.]+)[Kk][Dd][Aa]?", "($1[ \\\\-]?[Kk][Dd][Aa]?)?");
+			if (molecularWeightPattern.matcher(part).matches()) {
+				return molecularWeightRule.apply(part);
 			}
 		}
 
@@ -928,6 +1157,103 @@ public class Term2Regex{
 		return getRegexForProteinAbbreviation(abbreviation, true);
 	}
 
+
+	/** L1, R1, P1, V-1 */
+	private static final Pattern letterNumberPattern = Pattern.compile("([A-Za-z])([\\-\\s]?)(\\d+)");
+
+	/** Replaces reg.ex. markup symbols, see {@link #unescapeRules}. */
+	private static final Rule[] escapeRules = {
+		replaceAll("\\(\\-\\)", "__LRB____MINUS____RRB__", "(-)"),
+		replaceAll("\\(", "__LRB__", "("),
+		replaceAll("\\)", "__RRB__", ")"),
+		replaceAll("\\[", "__LSB__", "["),
+		replaceAll("\\]", "__RSB__", "]"),
+		replaceAll("\\{", "__LCB__", "{"),
+		replaceAll("\\}", "__RCB__", "}"),
+		replaceAll("\\<", "__LT__", "<"),
+		replaceAll("\\>", "__GT__", ">"),
+		replaceAll("\\.", "__DOT__", "."),
+		replaceAll("\\+", "__PLUS__", "+"),
+		replaceAll("\\*", "__ASTERISK__", "*")
+		// replaceAll("\\_", "__UNDERSCORE__", "_")
+	};
+
+	/** Strong bonds between letters and digits: CD95 => CD-95, HER2 => HER-2; only for terms with digits. */
+	private static final Rule[] digitBondRules = {
+		replaceAll("([A-Za-z])(\\d+)", "$1-$2"),
+		replaceAll("(\\d+)([A-Za-z])", "$1-$2")
+	};
+
+	/** Strong bonds where the case changes; only for terms with upper and lower case letters. */
+	private static final Rule[] caseBondRules = {
+		replaceAll("([a-z])([A-Z])([a-z])", "$1-$2-$3"),
+		replaceAll("([A-Z])([a-z])([A-Z])", "$1-$2-$3"),
+		replaceAll("([a-z])([A-Z])", "$1-$2"),
+		replaceAll("([A-Z])([a-z])", "$1-$2")
+	};
+
+	private static final Rule[] fixedSuffixRules = {
+		replaceFirst("R$", " receptor", "R"),
+		replaceFirst("L$", " ligand", "L"),
+		// special case: separate KV from name
+		replaceFirst("^KV([^\\s])", "Kv $1", "KV")
+	};
+
+	/** Weak bonds before ligands and receptors; only for terms with digits. */
+	private static final Rule[] weakBondRules = {
+		replaceAll("([0-9])\\-?([lLrR])(.*)", "$1 $2 $3"),
+		replaceAll("([A-Z])([lLrR])(?:\\-?(\\d+))", "$1 $2 $3")
+	};
+
+	private static final Rule[] wordRules = {
+		replaceAll("A\\-?ntigen", "antigen", "ntigen"),
+		replaceAll("R\\-?eceptor", "receptor", "eceptor"),
+		replaceAll("L\\-?igand", "ligand", "igand"),
+		replaceAll("Precursor", "precursor", "Precursor"),
+		replaceAll("\\-([alpha|beta|gamma|delta|epsilon])$", " $1", "-"),
+		replaceFirst("^([Pp]rotein)\\s", "([Pp]rotein )?", "rotein")
+	};
+
+	private static final Pattern keywordPattern = Pattern.compile("(receptor|ligand|antigen|precursor)");
+	private static final Pattern noUpperCasePattern = Pattern.compile("(.+(ase|tive|sine|nal|son|rols?|rant|dant|sent|box"
+		+ "|sic|cic|dic|ion|ated|ate|ory|ates|xin|nin|ilin)|type|major)");
+
+	/** Some common abbreviations and words that can be omitted. */
+	private static final Rule[] omissionRules = {
+		replaceAll("receptor", "[Rr](eceptor)?", "receptor"),
+		replaceAll("ligand", "[Ll](igand)?", "ligand"),
+		replaceAll(" antigen", " [Aa]ntigen", " antigen"),
+		replaceAll("^antigen ", "([Aa]ntigen )?", "antigen "),
+		replaceAll(" precursor", "( [Pp]recursor)?", " precursor")
+	};
+
+	/** Escapes the reg.ex. markup symbols replaced by {@link #escapeRules}. */
+	private static final Rule[] unescapeRules = {
+		replaceAll("([<>])", "\\\\$1", "<", ">"),
+		replaceAll("__LRB____MINUS____RRB__", "\\\\(\\\\-\\\\)", "__LRB____MINUS____RRB__"),
+		replaceAll("__LRB__", "\\\\(", "__LRB__"),
+		replaceAll("__RRB__", "\\\\)", "__RRB__"),
+		replaceAll("__LSB__", "\\\\[", "__LSB__"),
+		replaceAll("__RSB__", "\\\\]", "__RSB__"),
+		replaceAll("__LCB__", "\\\\{", "__LCB__"),
+		replaceAll("__RCB__", "\\\\}", "__RCB__"),
+		replaceAll("__LT__", "\\\\<", "__LT__"),
+		replaceAll("__GT__", "\\\\>", "__GT__"),
+		replaceAll("__DOT__", "\\\\.", "__DOT__"),
+		replaceAll("__PLUS__", "\\\\+", "__PLUS__"),
+		replaceAll("__MINUS__", "\\\\-", "__MINUS__"),
+		replaceAll("__ASTERISK__", "\\\\*", "__ASTERISK__")
+	};
+
+	/** Bonds between tokens. */
+	private static final Rule[] delimiterRules = {
+		// replaceAll("([^\\\\])\\-", "$1" + tokenDelimiterNoWhitespaceR, "-"),
+		replaceAll("\\s", tokenDelimiterWithWhitespaceR, WHITESPACE),
+		replaceAll("([^\\\\])\\-", "$1" + tokenDelimiterWithWhitespaceR, "-"),
+		replaceAll("_", tokenDelimiterWithWhitespaceUnderscoreR, "_")
+	};
+
+
 	/**
 	 * Generates variations of abbreviated protein names (Fas, CD95, C-ErbB2)
 	 *
@@ -943,26 +1269,15 @@ public class Term2Regex{
 		
 		//if (term.matches("[A-Za-z]\\d+")) // L1, P1, R1
 		//	return term;
-		if (term.matches("([A-Za-z])([\\-\\s]?)(\\d+)")) { // L1, R1, P1, V-1
-			String letter = term.replaceFirst("^([A-Za-z])([\\-\\s]?)(\\d+)$", "$1");
-			String number = term.replaceFirst("^([A-Za-z])([\\-\\s]?)(\\d+)$", "$3");
+		Matcher letterNumber = letterNumberPattern.matcher(term);
+		if (letterNumber.matches()) { // L1, R1, P1, V-1
+			String letter = letterNumber.group(1);
+			String number = letterNumber.group(3);
 			return "[" + letter.toUpperCase() + letter.toLowerCase() + "][ \\-]?" + number;
 		}
 
 		// escape some RegEx markup symbols
-		term = term.replaceAll("\\(\\-\\)", "__LRB____MINUS____RRB__");
-		term = term.replaceAll("\\(", "__LRB__");
-		term = term.replaceAll("\\)", "__RRB__");
-		term = term.replaceAll("\\[", "__LSB__");
-		term = term.replaceAll("\\]", "__RSB__");
-		term = term.replaceAll("\\{", "__LCB__");
-		term = term.replaceAll("\\}", "__RCB__");
-		term = term.replaceAll("\\<", "__LT__");
-		term = term.replaceAll("\\>", "__GT__");
-		term = term.replaceAll("\\.", "__DOT__");
-		term = term.replaceAll("\\+", "__PLUS__");
-		term = term.replaceAll("\\*", "__ASTERISK__");
-		// term = term.replaceAll("\\_", "__UNDERSCORE__");
+		term = apply(escapeRules, term);
 
 		// System.err.println("# Term: '" + term + "'");
 
@@ -979,17 +1294,13 @@ public class Term2Regex{
 
 		// check for strong bonds
 		// CD95 => CD-95, HER2 => HER-2
-		term = term.replaceAll("([A-Za-z])(\\d+)", "$1-$2");
-		term = term.replaceAll("(\\d+)([A-Za-z])", "$1-$2");
-		term = term.replaceAll("([a-z])([A-Z])([a-z])", "$1-$2-$3");
-		term = term.replaceAll("([A-Z])([a-z])([A-Z])", "$1-$2-$3");
-		term = term.replaceAll("([a-z])([A-Z])", "$1-$2");
-		term = term.replaceAll("([A-Z])([a-z])", "$1-$2");
+		boolean hasDigits = containsRange(term, '0', '9');
+		if (hasDigits)
+			term = apply(digitBondRules, term);
+		if (containsRange(term, 'a', 'z') && containsRange(term, 'A', 'Z'))
+			term = apply(caseBondRules, term);
 		// fixed suffixes
-		term = term.replaceFirst("R$", " receptor");
-		term = term.replaceFirst("L$", " ligand");
-		// special case: separate KV from name
-		term = term.replaceFirst("^KV([^\\s])", "Kv $1");
+		term = apply(fixedSuffixRules, term);
 
 		term = term.trim();
 		// System.err.println("# Term: '" + term + "'");
@@ -1005,8 +1316,8 @@ public class Term2Regex{
 		 * ligand"); term = term.replaceAll("([a-z])\\-?R$", "$1 receptor");
 		 */
 
-		term = term.replaceAll("([0-9])\\-?([lLrR])(.*)", "$1 $2 $3");
-		term = term.replaceAll("([A-Z])([lLrR])(?:\\-?(\\d+))", "$1 $2 $3");
+		if (hasDigits)
+			term = apply(weakBondRules, term);
 
 		term = term.trim();
 		// System.err.println("# Term: '" + term + "'");
@@ -1016,13 +1327,7 @@ public class Term2Regex{
 		 * term.replaceAll(" [rR]$", " receptor"); term = term.replaceAll(" [lL]$", " ligand");
 		 */
 
-		term = term.replaceAll("A\\-?ntigen", "antigen");
-		term = term.replaceAll("R\\-?eceptor", "receptor");
-		term = term.replaceAll("L\\-?igand", "ligand");
-		term = term.replaceAll("Precursor", "precursor");
-
-		term = term.replaceAll("\\-([alpha|beta|gamma|delta|epsilon])$", " $1");
-		term = term.replaceFirst("^([Pp]rotein)\\s", "([Pp]rotein )?");
+		term = apply(wordRules, term);
 
 		term = term.trim();
 
@@ -1070,7 +1375,8 @@ public class Term2Regex{
 				}
 			}
 
-			if (part.matches("[LlRr]")) {
+			boolean singleLetter = part.length() == 1 && isLetter(part.charAt(0));
+			if (singleLetter && "LlRr".indexOf(part.charAt(0)) >= 0) {
 				if (part.equalsIgnoreCase("l")) {
 					combined += "ligand";
 					parts.add("ligand");
@@ -1083,7 +1389,7 @@ public class Term2Regex{
 			}
 
 			// single letter => upper or lower case
-			if (part.matches("[A-Za-z]")) {
+			if (singleLetter) {
 				// parts[p] = "[" + part.toUpperCase() + part.toLowerCase() + "]";
 				combined += tokens[p] = "[" + part.toUpperCase() + part.toLowerCase() + "]";
 				parts.add("[" + part.toUpperCase() + part.toLowerCase() + "]");
@@ -1091,7 +1397,7 @@ public class Term2Regex{
 			}
 
 			// upper case only => XXXX, Xxxx, xxxx, XxxX
-			if (part.matches("[A-Z]+")) {
+			if (upperCasePattern.matcher(part).matches()) {
 				// parts[p] = "(" + part
 				// + "|" + part.charAt(0) + part.substring(1, part.length()).toLowerCase()
 				// + "|" + part.toLowerCase() + ")";
@@ -1101,10 +1407,10 @@ public class Term2Regex{
 			}
 
 			// lower case only => xxxx or Xxxx or XXXX
-			if (part.matches("[a-z]+")) {
+			if (lowerCasePattern.matcher(part).matches()) {
 				// parts[p] = "(" + part.substring(0, 1).toUpperCase() + part.substring(1, part.length())
 				// + "|" + part + ")";
-				if (part.matches("(receptor|ligand|antigen|precursor)")) {
+				if (keywordPattern.matcher(part).matches()) {
 					combined += part;
 					parts.add(part);
 				}
@@ -1116,8 +1422,8 @@ public class Term2Regex{
 			}
 
 			// one upper case then lower => XXXX, Xxxx, xxxx; for some, only Xxxx, xxxx
-			if (part.matches("[A-Z][a-z]+")) {
-				if (part.matches("(.+(ase|tive|sine|nal|son|rols?|rant|dant|sent|box" + "|sic|cic|dic|ion|ated|ate|ory|ates|xin|nin|ilin)|type|major)")) {
+			if (capitalizedPattern.matcher(part).matches()) {
+				if (noUpperCasePattern.matcher(part).matches()) {
 					combined += tokens[p] = "(" + part + "|" + part.substring(0, 1).toLowerCase() + part.substring(1, part.length()) + ")";
 					parts.add("(" + part + "|" + part.substring(0, 1).toLowerCase() + part.substring(1, part.length()) + ")");
 				}
@@ -1136,34 +1442,13 @@ public class Term2Regex{
 		term = combined;
 
 		// some common abbreviations and words that can be omitted
-		term = term.replaceAll("receptor", "[Rr](eceptor)?");
-		term = term.replaceAll("ligand", "[Ll](igand)?");
-		term = term.replaceAll(" antigen", " [Aa]ntigen");
-		term = term.replaceAll("^antigen ", "([Aa]ntigen )?");
-		term = term.replaceAll(" precursor", "( [Pp]recursor)?");
+		term = apply(omissionRules, term);
 		// hypothetical protein
 		// Probable serine/threonine-protein kinase zyg-1
 
-		term = term.replaceAll("([<>])", "\\\\$1");
-
-		term = term.replaceAll("__LRB____MINUS____RRB__", "\\\\(\\\\-\\\\)");
-		term = term.replaceAll("__LRB__", "\\\\(");
-		term = term.replaceAll("__RRB__", "\\\\)");
-		term = term.replaceAll("__LSB__", "\\\\[");
-		term = term.replaceAll("__RSB__", "\\\\]");
-		term = term.replaceAll("__LCB__", "\\\\{");
-		term = term.replaceAll("__RCB__", "\\\\}");
-		term = term.replaceAll("__LT__", "\\\\<");
-		term = term.replaceAll("__GT__", "\\\\>");
-		term = term.replaceAll("__DOT__", "\\\\.");
-		term = term.replaceAll("__PLUS__", "\\\\+");
-		term = term.replaceAll("__MINUS__", "\\\\-");
-		term = term.replaceAll("__ASTERISK__", "\\\\*");
-
-		// term = term.replaceAll("([^\\\\])\\-", "$1" + tokenDelimiterNoWhitespaceR);
-		term = term.replaceAll("\\s", tokenDelimiterWithWhitespaceR);
-		term = term.replaceAll("([^\\\\])\\-", "$1" + tokenDelimiterWithWhitespaceR);
-		term = term.replaceAll("_", tokenDelimiterWithWhitespaceUnderscoreR);
+		term = apply(unescapeRules, term);
+
+		term = apply(delimiterRules, term);
 
 		/*
 		 * String[] allparts = new String[parts.size()]; parts.toArray(allparts); for (String a: allparts)
@@ -1173,7 +1458,7 @@ public class Term2Regex{
 		// System.err.println("# single word, before: '" + term + "'");
 		if (singleWord) {
 			if (term.endsWith("[Ii1]")) {
-				term = term.replaceFirst("^(.+)\\[\\s\\\\-\\]\\?\\[Ii1\\]$", "$1([ \\\\-]?[Ii1])?");
+				term = optionalOneRule.apply(term);
 			}
 		}
 		// System.err.println("# Expression: '" + term + "'");
@@ -1181,4 +1466,3 @@ public class Term2Regex{
 	}
 
 }
-
@@ -0,0 +1,121 @@
+package gnat.tests;
+
+import gnat.ISGNProperties;
+import gnat.client.AnnotateMedline;
+import gnat.client.CheckpointManifest;
+import gnat.filter.nei.StopWordFilter;
+import gnat.filter.ner.RunAllGeneDictionaries;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Checks that {@link AnnotateMedline} does not mark a file as completed in its checkpoint manifest when
+ * the dictionary server fails: a local stub accepts connections, so that the server counts as available,
+ * but closes each connection at once. Without that server, the same file is marked as completed.
+ * <br><br>
+ * Call: AnnotateMedlineCheckpointTest
+ *
+ */
+public class AnnotateMedlineCheckpointTest {
+
+	static final String MEDLINE_FILE = "medline12n0001.xml";
+
+
+	static void check (boolean condition, String message) {
+		System.out.println((condition ? "OK     " : "FAILED ") + message);
+		if (!condition) throw new IllegalStateException("failed: " + message);
+	}
+
+
+	static void write (File file, String content) throws IOException {
+		Writer out = new FileWriter(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+
+	static void delete (File file) {
+		File[] files = file.listFiles();
+		if (files != null)
+			for (File child: files)
+				delete(child);
+		file.delete();
+	}
+
+
+	/**
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main (String[] args) throws IOException {
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+		Thread stub = new Thread() {
+			public void run () {
+				while (!server.isClosed()) {
+					try {
+						Socket socket = server.accept();
+						socket.close();
+					} catch (IOException ioe) {
+						// server closed
+					}
+				}
+			}
+		};
+		stub.setDaemon(true);
+		stub.start();
+
+		File dir = File.createTempFile("annotatemedline", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			File input = new File(dir, MEDLINE_FILE);
+			write(input, "<?xml version=\"1.0\"?>\n<MedlineCitationSet>\n<MedlineCitation Owner=\"NLM\" Status=\"MEDLINE\">\n" +
+					"<PMID Version=\"1\">1001</PMID>\n<Article>\n<ArticleTitle>TP53 binds to MDM2.</ArticleTitle>\n" +
+					"<Abstract><AbstractText>The tumor suppressor p53 is regulated by MDM2 in human cells.</AbstractText></Abstract>\n" +
+					"</Article>\n</MedlineCitation>\n</MedlineCitationSet>\n");
+			File outDir = new File(dir, "out");
+			outDir.mkdirs();
+			File taxon2port = new File(dir, "taxonToServerPort.txt");
+			write(taxon2port, "9606\t" + server.getLocalPort() + "\n");
+			ISGNProperties.set("taxon2port", taxon2port.getPath());
+			ISGNProperties.set("dictionaryServer", "localhost");
+
+			RunAllGeneDictionaries dictionaries = new RunAllGeneDictionaries();
+			dictionaries.setLimitToTaxons(9606);
+			dictionaries.setFailOnServerError(true);
+			StopWordFilter stopWordFilter = new StopWordFilter(ISGNProperties.get("stopWords"));
+			String checkpoint = new File(outDir, "annotateMedline.checkpoint").getPath();
+
+			// the dictionary server closes the connection: the file failed
+			CheckpointManifest manifest = new CheckpointManifest(checkpoint);
+			AnnotateMedline.Annotator annotator = new AnnotateMedline.Annotator(dir.getPath(), outDir.getPath(), 0, false, false, 1000,
+					dictionaries, stopWordFilter, manifest, 1);
+			annotator.annotate(MEDLINE_FILE);
+			check(annotator.getFailed() == 1, "file counts as failed when the dictionary server fails");
+			check(!manifest.isCompleted(input), "file is not marked as completed");
+			check(!new CheckpointManifest(checkpoint).isCompleted(input), "file is not in the manifest on disk");
+
+			// no dictionary for this species: nothing failed, the file is completed
+			dictionaries.setLimitToTaxons(10090);
+			annotator = new AnnotateMedline.Annotator(dir.getPath(), outDir.getPath(), 0, false, false, 1000,
+					dictionaries, stopWordFilter, manifest, 1);
+			annotator.annotate(MEDLINE_FILE);
+			check(annotator.getFailed() == 0, "file annotated without a dictionary server");
+			check(new CheckpointManifest(checkpoint).isCompleted(input), "file is in the manifest on disk");
+		} finally {
+			server.close();
+			delete(dir);
+		}
+	}
+
+}
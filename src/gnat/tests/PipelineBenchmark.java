@@ -0,0 +1,545 @@
+package gnat.tests;
+
+import gnat.ConstantsNei;
+import gnat.ISGNProperties;
+import gnat.client.Run;
+import gnat.database.go.GOAccess;
+import gnat.filter.Filter;
+import gnat.filter.nei.ImmediateContextFilter;
+import gnat.filter.nei.LeftRightContextFilter;
+import gnat.filter.nei.MultiSpeciesDisambiguationFilter;
+import gnat.filter.nei.RecognizedEntityUnifier;
+import gnat.filter.nei.StopWordFilter;
+import gnat.filter.nei.UnambiguousMatchFilter;
+import gnat.filter.nei.UnspecificNameFilter;
+import gnat.filter.ner.DefaultSpeciesRecognitionFilter;
+import gnat.filter.ner.RunAllGeneDictionaries;
+import gnat.preprocessing.NameRangeExpander;
+import gnat.representation.Context;
+import gnat.representation.Gene;
+import gnat.representation.GeneContextModel;
+import gnat.representation.GeneFactory;
+import gnat.representation.GeneRepository;
+import gnat.representation.RecognizedEntity;
+import gnat.representation.Text;
+import gnat.representation.TextFactory;
+import gnat.representation.TextRepository;
+import gnat.server.dictionary.Dictionary;
+import gnat.server.dictionary.DictionaryClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Measures the throughput of the GNAT pipeline on a local corpus, by default texts/test100, to spot
+ * performance regressions from one commit to the next.
+ * <br><br>
+ * Runs offline: gene names are recognized by an in-process {@link Dictionary} instead of a
+ * DictionaryServer, and gene information comes from a local {@link GeneRepository} instead of
+ * the database or service. GO term distances come from the GO graph (entry <tt>goGraph</tt>) and
+ * data/go2go.object only, the GO database is never contacted. The dictionary is either a directory with serialized automata (as used by
+ * the DictionaryServer) or, by default, built from the gene names in the gold standard list of the corpus.
+ * The gene repository is loaded from the file given by the entry <tt>geneRepositoryFile</tt> if
+ * that exists, otherwise it contains one gene per entry in the gold standard list.
+ * <br><br>
+ * Benchmarks:<br>
+ * - <tt>dictionary</tt>: dictionary lookup on all texts;<br>
+ * - one benchmark per filter of the pipeline, named after the filter's class: the filters before it are
+ *   run first, only the filter itself is timed;<br>
+ * - <tt>pipeline</tt>: {@link Run#runFilters()} with all filters.<br>
+ * Each benchmark runs a number of warm-up iterations, which are not reported, and then a number of
+ * measured iterations. For each benchmark, prints a tab-separated line with the mean, standard
+ * deviation, and minimum time per iteration in ms, and the number of texts per second. With
+ * <tt>-baseline</tt>, the results of an earlier run are compared and benchmarks that became slower by
+ * more than the tolerance are marked as regressions; the exit code is 1 in that case.
+ * <br><br>
+ * Call:<br>
+ * java -cp lib/gnat.jar gnat.tests.PipelineBenchmark [-warmup=3] [-iterations=5] [-benchmark=name,..]
+ * [-dictionary=dir] [-out=file] [-baseline=file] [-tolerance=0.2] [textDirectory [goldList]]
+ *
+ */
+public class PipelineBenchmark {
+
+	/** Directory with the texts. */
+	String textDirectory = "texts/test100";
+
+	/** Gold standard list for the texts: PubMed ID, gene ID, names. */
+	String goldList = "texts/test100/test100.genelist";
+
+	int warmupIterations = 3;
+
+	int measuredIterations = 5;
+
+	/** In-process dictionary for gene names. */
+	Dictionary dictionary;
+
+	/** All genes that the dictionary can recognize. */
+	GeneRepository localGeneRepository;
+
+	/** Number of texts in the corpus. */
+	int numberOfTexts;
+
+
+	/**
+	 * One benchmark: prepares an iteration, which is not timed, and runs it.
+	 */
+	static abstract class Benchmark {
+		final String name;
+
+		Benchmark (String name) {
+			this.name = name;
+		}
+
+		void setUp () {
+		}
+
+		abstract void run ();
+	}
+
+
+	/**
+	 * Result of one benchmark, times in nanoseconds.
+	 */
+	static class Result {
+		String name;
+		double mean;
+		double deviation;
+		long min;
+		double textsPerSecond;
+
+		@Override public String toString () {
+			return name + "\t" + format(mean / 1e6) + "\t" + format(deviation / 1e6) + "\t" + format(min / 1e6) + "\t" + format(textsPerSecond);
+		}
+
+		static String format (double value) {
+			return String.format("%.3f", value);
+		}
+	}
+
+
+	/**
+	 * Recognizes gene names with an in-process dictionary, the same way {@link RunAllGeneDictionaries}
+	 * does with a DictionaryServer.
+	 */
+	static class LocalDictionaryFilter implements Filter {
+		private final Dictionary dictionary;
+
+		LocalDictionaryFilter (Dictionary dictionary) {
+			this.dictionary = dictionary;
+		}
+
+		public void filter (Context context, TextRepository textRepository, GeneRepository geneRepository) {
+			for (Text text: textRepository.getTexts()) {
+				String plainText = text.getPlainText().replaceAll("[\\n\\r]", " ");
+				StringBuilder response = new StringBuilder("<text>");
+				for (String entity: dictionary.getIdentifiedEntries(plainText))
+					response.append(entity);
+				response.append("</text>");
+				try {
+					RunAllGeneDictionaries.addRecognizedEntities(context, text, DictionaryClient.parseResponse(response.toString()).get(0));
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * GO database access that never connects; distances that are not known otherwise are missing,
+	 * as with a database that cannot be reached. Identical terms have distance 0, as in {@link GOAccess}.
+	 */
+	static class OfflineGOAccess extends GOAccess {
+		OfflineGOAccess () {
+			super(null, null, null, null, false);
+		}
+
+		@Override public float getDistance (String acc1, String acc2) {
+			if (makeGOAccessionNumeral(acc1) == makeGOAccessionNumeral(acc2))
+				return 0.0f;
+			return Float.POSITIVE_INFINITY;
+		}
+	}
+
+
+	/**
+	 * Adds the genes for all candidate IDs from the local gene repository, instead of
+	 * the {@link gnat.filter.nei.GeneRepositoryLoader}.
+	 */
+	static class LocalGeneRepositoryLoader implements Filter {
+		private final GeneRepository localGeneRepository;
+
+		LocalGeneRepositoryLoader (GeneRepository localGeneRepository) {
+			this.localGeneRepository = localGeneRepository;
+		}
+
+		public void filter (Context context, TextRepository textRepository, GeneRepository geneRepository) {
+			for (RecognizedEntity entity: context.getUnidentifiedEntities()) {
+				for (String id: context.getIdCandidates(entity)) {
+					Gene gene = localGeneRepository.getGene(id);
+					if (gene != null && geneRepository.getGene(id) == null)
+						geneRepository.addGene(gene);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Loads the dictionary from a directory with serialized automata, or, if <tt>dictionaryDirectory</tt> is null,
+	 * builds one from the gold standard list. Loads or builds the gene repository.
+	 * @param dictionaryDirectory
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	void setUpLocalResources (String dictionaryDirectory) throws IOException, ClassNotFoundException {
+		// gene IDs and names from the gold standard list
+		Map<String, Set<String>> namesPerGene = new LinkedHashMap<String, Set<String>>();
+		BufferedReader br = new BufferedReader(new FileReader(goldList));
+		String line;
+		while ((line = br.readLine()) != null) {
+			String[] cols = line.split("\t");
+			if (line.startsWith("#") || cols.length < 3 || !cols[1].matches("\\d+")) continue;
+			Set<String> names = namesPerGene.get(cols[1]);
+			if (names == null) {
+				names = new HashSet<String>();
+				namesPerGene.put(cols[1], names);
+			}
+			for (int c = 2; c < cols.length; c++)
+				if (cols[c].trim().length() > 0)
+					names.add(cols[c].trim());
+		}
+		br.close();
+
+		if (dictionaryDirectory != null) {
+			dictionary = new Dictionary(dictionaryDirectory);
+		} else {
+			// one entry per name, with the IDs of all genes of that name
+			Map<String, Set<String>> genesPerName = new LinkedHashMap<String, Set<String>>();
+			for (Map.Entry<String, Set<String>> entry: namesPerGene.entrySet()) {
+				for (String name: entry.getValue()) {
+					Set<String> ids = genesPerName.get(name);
+					if (ids == null) {
+						ids = new HashSet<String>();
+						genesPerName.put(name, ids);
+					}
+					ids.add(entry.getKey());
+				}
+			}
+			List<String> ids = new ArrayList<String>(genesPerName.size());
+			List<String> regexes = new ArrayList<String>(genesPerName.size());
+			for (Map.Entry<String, Set<String>> entry: genesPerName.entrySet()) {
+				StringBuilder id = new StringBuilder();
+				for (String geneId: entry.getValue()) {
+					if (id.length() > 0) id.append(";");
+					id.append(geneId);
+				}
+				ids.add(id.toString());
+				regexes.add(toLiteralRegex(entry.getKey()));
+			}
+			dictionary = new Dictionary(ids, regexes);
+		}
+
+		String geneRepositoryFile = ISGNProperties.get("geneRepositoryFile");
+		if (geneRepositoryFile != null && new File(geneRepositoryFile).exists()) {
+			localGeneRepository = GeneFactory.loadGeneRepositoryFromFile(new File(geneRepositoryFile));
+		} else {
+			localGeneRepository = new GeneRepository();
+			for (Map.Entry<String, Set<String>> entry: namesPerGene.entrySet()) {
+				Gene gene = new Gene(entry.getKey(), new GeneContextModel(entry.getKey()));
+				gene.setNames(entry.getValue());
+				gene.setTaxon(9606);
+				localGeneRepository.addGene(gene);
+			}
+		}
+	}
+
+
+	/**
+	 * Returns a regular expression (dk.brics syntax) that matches the name literally.
+	 * @param name
+	 * @return
+	 */
+	static String toLiteralRegex (String name) {
+		StringBuilder regex = new StringBuilder(name.length() * 2);
+		for (char c: name.toCharArray()) {
+			if (!Character.isLetterOrDigit(c))
+				regex.append('\\');
+			regex.append(c);
+		}
+		return regex.toString();
+	}
+
+
+	/**
+	 * Returns a new text repository with all texts (*.txt) of the corpus, as filters change the texts.
+	 * @return
+	 */
+	TextRepository loadTexts () {
+		TextRepository textRepository = new TextRepository();
+		String[] files = new File(textDirectory).list();
+		Arrays.sort(files);
+		for (String filename: files)
+			if (filename.endsWith(".txt"))
+				textRepository.addText(TextFactory.loadTextFromFile(new File(textDirectory, filename).getPath()));
+		return textRepository;
+	}
+
+
+	/**
+	 * Returns the filters of the pipeline; the same instances are used for all iterations, like in a
+	 * client that annotates several batches of texts.
+	 * @return
+	 */
+	List<Filter> createPipeline () {
+		List<Filter> pipeline = new LinkedList<Filter>();
+		pipeline.add(new NameRangeExpander());
+		pipeline.add(new DefaultSpeciesRecognitionFilter());
+		pipeline.add(new LocalDictionaryFilter(dictionary));
+		pipeline.add(new RecognizedEntityUnifier());
+		pipeline.add(new ImmediateContextFilter());
+		pipeline.add(new LeftRightContextFilter("data/strictFPs_2_2_context_all.object", "data/nonStrictFPs_2_2_context_all.object", 0d, 2, 2));
+		pipeline.add(new LocalGeneRepositoryLoader(localGeneRepository));
+		if (ISGNProperties.get("stopWords") != null)
+			pipeline.add(new StopWordFilter(ISGNProperties.get("stopWords")));
+		pipeline.add(new UnambiguousMatchFilter());
+		pipeline.add(new UnspecificNameFilter());
+		pipeline.add(new MultiSpeciesDisambiguationFilter(
+				getIntProperty("disambiguationThreshold", 3),
+				getIntProperty("maxIdsForCandidatePrediction", 1),
+				new OfflineGOAccess()));
+		return pipeline;
+	}
+
+
+	static int getIntProperty (String key, int defaultValue) {
+		String value = ISGNProperties.get(key);
+		if (value == null || !value.trim().matches("\\d+"))
+			return defaultValue;
+		return Integer.parseInt(value.trim());
+	}
+
+
+	/**
+	 * Returns all benchmarks: dictionary lookup, each filter, and the entire pipeline.
+	 * @return
+	 */
+	List<Benchmark> createBenchmarks () {
+		List<Benchmark> benchmarks = new LinkedList<Benchmark>();
+
+		benchmarks.add(new Benchmark("dictionary") {
+			List<String> texts;
+			@Override void setUp () {
+				texts = new ArrayList<String>();
+				for (Text text: loadTexts().getTexts())
+					texts.add(text.getPlainText().replaceAll("[\\n\\r]", " "));
+			}
+			@Override void run () {
+				for (String text: texts)
+					dictionary.getIdentifiedEntries(text);
+			}
+		});
+
+		final List<Filter> pipeline = createPipeline();
+		for (int f = 0; f < pipeline.size(); f++) {
+			final int filterIndex = f;
+			final Filter filter = pipeline.get(f);
+			benchmarks.add(new Benchmark(filter.getClass().getSimpleName()) {
+				Run run;
+				@Override void setUp () {
+					run = new Run();
+					run.setTextRepository(loadTexts());
+					for (Filter before: pipeline.subList(0, filterIndex))
+						run.addFilter(before);
+					run.runFilters();
+				}
+				@Override void run () {
+					filter.filter(run.context, run.getTextRepository(), run.getGeneRepository());
+				}
+			});
+		}
+
+		benchmarks.add(new Benchmark("pipeline") {
+			Run run;
+			@Override void setUp () {
+				run = new Run();
+				run.setTextRepository(loadTexts());
+				for (Filter filter: pipeline)
+					run.addFilter(filter);
+			}
+			@Override void run () {
+				run.runFilters();
+			}
+		});
+
+		return benchmarks;
+	}
+
+
+	/**
+	 * Runs the warm-up and measured iterations of a benchmark.
+	 * @param benchmark
+	 * @return
+	 */
+	Result measure (Benchmark benchmark) {
+		for (int i = 0; i < warmupIterations; i++) {
+			benchmark.setUp();
+			benchmark.run();
+		}
+
+		long[] times = new long[measuredIterations];
+		for (int i = 0; i < measuredIterations; i++) {
+			benchmark.setUp();
+			System.gc();
+			long start = System.nanoTime();
+			benchmark.run();
+			times[i] = System.nanoTime() - start;
+		}
+
+		Result result = new Result();
+		result.name = benchmark.name;
+		result.min = Long.MAX_VALUE;
+		for (long time: times) {
+			result.mean += (double)time / times.length;
+			result.min = Math.min(result.min, time);
+		}
+		for (long time: times)
+			result.deviation += (time - result.mean) * (time - result.mean) / times.length;
+		result.deviation = Math.sqrt(result.deviation);
+		result.textsPerSecond = numberOfTexts / (result.mean / 1e9);
+		return result;
+	}
+
+
+	/**
+	 * Reads the mean time per benchmark from the output of an earlier run.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	static Map<String, Double> readBaseline (String filename) throws IOException {
+		Map<String, Double> means = new HashMap<String, Double>();
+		BufferedReader br = new BufferedReader(new FileReader(filename));
+		String line;
+		while ((line = br.readLine()) != null) {
+			String[] cols = line.split("\t");
+			if (line.startsWith("#") || cols.length < 2) continue;
+			try {
+				means.put(cols[0], Double.parseDouble(cols[1]));
+			} catch (NumberFormatException nfe) {
+				// header or comment
+			}
+		}
+		br.close();
+		return means;
+	}
+
+
+	/**
+	 *
+	 * @param args
+	 */
+	public static void main (String[] args) {
+		PipelineBenchmark benchmark = new PipelineBenchmark();
+		Set<String> selected = null;
+		String dictionaryDirectory = null;
+		String outfile = null;
+		String baselineFile = null;
+		double tolerance = 0.2d;
+
+		List<String> files = new LinkedList<String>();
+		for (String arg: args) {
+			if (arg.startsWith("-warmup="))
+				benchmark.warmupIterations = Integer.parseInt(arg.substring(8));
+			else if (arg.startsWith("-iterations="))
+				benchmark.measuredIterations = Integer.parseInt(arg.substring(12));
+			else if (arg.startsWith("-benchmark=")) {
+				selected = new HashSet<String>();
+				for (String name: arg.substring(11).split(","))
+					selected.add(name.trim());
+			} else if (arg.startsWith("-dictionary="))
+				dictionaryDirectory = arg.substring(12);
+			else if (arg.startsWith("-out="))
+				outfile = arg.substring(5);
+			else if (arg.startsWith("-baseline="))
+				baselineFile = arg.substring(10);
+			else if (arg.startsWith("-tolerance="))
+				tolerance = Double.parseDouble(arg.substring(11));
+			else if (arg.startsWith("-")) {
+				System.err.println("Usage: java gnat.tests.PipelineBenchmark [-warmup=3] [-iterations=5] [-benchmark=name,..] " +
+						"[-dictionary=dir] [-out=file] [-baseline=file] [-tolerance=0.2] [textDirectory [goldList]]");
+				System.exit(2);
+			} else
+				files.add(arg);
+		}
+		if (files.size() > 0) benchmark.textDirectory = files.get(0);
+		if (files.size() > 1) benchmark.goldList = files.get(1);
+
+		// keep the filters quiet, output would be part of the measurement
+		ConstantsNei.OUTPUT_LEVEL = ConstantsNei.OUTPUT_LEVELS.NOOUTPUT;
+
+		try {
+			benchmark.setUpLocalResources(dictionaryDirectory);
+			benchmark.numberOfTexts = benchmark.loadTexts().size();
+
+			Map<String, Double> baseline = null;
+			if (baselineFile != null)
+				baseline = readBaseline(baselineFile);
+
+			List<String> lines = new LinkedList<String>();
+			lines.add("#benchmark\tmean ms\tstddev ms\tmin ms\ttexts/s");
+			System.out.println("# " + benchmark.numberOfTexts + " texts from " + benchmark.textDirectory
+					+ ", " + benchmark.warmupIterations + " warm-up and " + benchmark.measuredIterations + " measured iterations");
+			System.out.println(lines.get(0));
+
+			boolean regression = false;
+			for (Benchmark b: benchmark.createBenchmarks()) {
+				if (selected != null && !selected.contains(b.name)) continue;
+				Result result = benchmark.measure(b);
+				lines.add(result.toString());
+
+				String output = result.toString();
+				if (baseline != null && baseline.containsKey(result.name)) {
+					double before = baseline.get(result.name);
+					double change = (result.mean / 1e6 - before) / before;
+					output += "\t" + (change >= 0 ? "+" : "") + String.format("%.1f", change * 100) + "%";
+					if (change > tolerance) {
+						output += "\tREGRESSION";
+						regression = true;
+					}
+				}
+				System.out.println(output);
+			}
+
+			if (outfile != null) {
+				FileWriter writer = new FileWriter(outfile);
+				for (String line: lines)
+					writer.write(line + "\n");
+				writer.close();
+			}
+
+			if (regression)
+				System.exit(1);
+
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+			System.exit(2);
+		} catch (ClassNotFoundException cnfe) {
+			cnfe.printStackTrace();
+			System.exit(2);
+		}
+	}
+
+}
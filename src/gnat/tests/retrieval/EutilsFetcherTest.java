@@ -0,0 +1,182 @@
+package gnat.tests.retrieval;
+
+import gnat.retrieval.EutilsFetcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks the {@link EutilsFetcher} against a local stub of eUtils and PMC OAI: IDs are split into batches,
+ * all citations and articles are returned in the order of the request, and repeated requests are answered
+ * from the local cache without contacting the server.
+ * <br><br>
+ * Call: EutilsFetcherTest [cache directory]; default: a new directory in java.io.tmpdir, deleted afterwards
+ *
+ */
+public class EutilsFetcherTest {
+
+	/** Number of requests the stub server received. */
+	static AtomicInteger requests = new AtomicInteger();
+
+
+	/**
+	 * Returns a PubmedArticleSet with one citation for each ID in the request; ID 404 is unknown,
+	 * IDs from 2000 on have version 2.
+	 */
+	static class EfetchStub implements HttpHandler {
+		public void handle (HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			String query = exchange.getRequestURI().getQuery();
+			String ids = query.replaceFirst("^.*id=([\\d,]+).*$", "$1");
+			StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<!DOCTYPE PubmedArticleSet PUBLIC \"-//NLM//DTD PubMedArticle//EN\" \"http://localhost/none.dtd\">\n<PubmedArticleSet>\n");
+			for (String id: ids.split(",")) {
+				if (id.equals("404")) continue;
+				String version = (Integer.parseInt(id) >= 2000) ? "2" : "1";
+				xml.append("<PubmedArticle>\n<MedlineCitation Owner=\"NLM\">\n<PMID Version=\"").append(version).append("\">").append(id).append("</PMID>\n")
+				   .append("<Article>\n<ArticleTitle>Title of ").append(id).append(" &amp; more.</ArticleTitle>\n")
+				   .append("<Abstract><AbstractText>Abstract of ").append(id).append(".</AbstractText></Abstract>\n</Article>\n")
+				   .append("</MedlineCitation>\n</PubmedArticle>\n");
+			}
+			xml.append("</PubmedArticleSet>\n");
+			respond(exchange, xml.toString());
+		}
+	}
+
+
+	/**
+	 * Returns an OAI record for each PMC ID; ID 404 is not open access.
+	 */
+	static class OaiStub implements HttpHandler {
+		public void handle (HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			String id = exchange.getRequestURI().getQuery().replaceFirst("^.*pubmedcentral\\.nih\\.gov:(\\d+).*$", "$1");
+			if (id.equals("404"))
+				respond(exchange, "<OAI-PMH><error code=\"cannotDisseminateFormat\">Not open access</error></OAI-PMH>\n");
+			else
+				respond(exchange, "<OAI-PMH><GetRecord><record><metadata><article>PMC" + id + "</article></metadata></record></GetRecord></OAI-PMH>\n");
+		}
+	}
+
+
+	static void respond (HttpExchange exchange, String content) throws IOException {
+		byte[] bytes = content.getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+
+	/**
+	 * Prints the result of a check; a failed check ends the test, after the cache is deleted.
+	 */
+	static void check (boolean condition, String message) {
+		System.out.println((condition ? "OK     " : "FAILED ") + message);
+		if (!condition) throw new IllegalStateException("failed: " + message);
+	}
+
+
+	/**
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main (String[] args) throws IOException {
+		File cacheDir;
+		boolean temporaryCache = args.length == 0;
+		if (!temporaryCache)
+			cacheDir = new File(args[0]);
+		else {
+			cacheDir = File.createTempFile("eutilscache", "");
+			cacheDir.delete();
+		}
+
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/entrez/eutils/efetch.fcgi", new EfetchStub());
+		server.createContext("/oai/oai.cgi", new OaiStub());
+		server.start();
+		String baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+		try {
+			EutilsFetcher fetcher = new EutilsFetcher(baseUrl, baseUrl, cacheDir.getPath(), 3, 10, 0, null);
+
+			// 25 IDs in batches of 10: 3 requests
+			List<String> pmids = new LinkedList<String>();
+			for (int p = 1; p <= 24; p++)
+				pmids.add(String.valueOf(1000 + p * 7));
+			pmids.add(5, "404");
+			Map<String, String> citations = fetcher.getCitations(pmids);
+			check(requests.get() == 3, "3 requests for 25 PubMed IDs (" + requests.get() + ")");
+			check(citations.size() == 24, "24 citations, unknown ID missing (" + citations.size() + ")");
+			pmids.remove("404");
+			check(new LinkedList<String>(citations.keySet()).equals(pmids), "citations in the order of the request");
+			check(citations.get("1021").contains("<ArticleTitle>Title of 1021 &amp; more.</ArticleTitle>"), "citation XML as in the response");
+
+			// again, with one new ID: one request for that ID only
+			requests.set(0);
+			pmids.add("999");
+			citations = fetcher.getCitations(pmids);
+			check(requests.get() == 1 && citations.size() == 25, "cached citations are not fetched again (" + requests.get() + " request)");
+
+			// a new fetcher with the same cache does not contact the server
+			requests.set(0);
+			EutilsFetcher secondFetcher = new EutilsFetcher(baseUrl, baseUrl, cacheDir.getPath(), 3, 10, 0, null);
+			citations = secondFetcher.getCitations(pmids);
+			check(requests.get() == 0 && citations.size() == 25, "citations from the cache on disk (" + requests.get() + " requests)");
+
+			// a citation cached with version 2 only is found in the cache
+			requests.set(0);
+			fetcher.getCitations(Arrays.asList("2002"));
+			citations = secondFetcher.getCitations(Arrays.asList("2002"));
+			check(requests.get() == 1 && citations.size() == 1 && citations.get("2002").contains("<PMID Version=\"2\">2002</PMID>"),
+					"version 2 from the cache on disk (" + requests.get() + " request)");
+
+			// PMC articles, several at a time; errors are returned but not cached
+			requests.set(0);
+			Map<String, String> articles = fetcher.getPmcArticles(Arrays.asList("PMC101", "102", "404"));
+			check(requests.get() == 3 && articles.size() == 3, "3 PMC articles fetched");
+			check(articles.get("PMC101").contains("PMC101"), "PMC article XML as in the response");
+			requests.set(0);
+			articles = secondFetcher.getPmcArticles(Arrays.asList("PMC101", "102", "404"));
+			check(requests.get() == 1, "only the error response is fetched again (" + requests.get() + " request)");
+
+			// rate limit: 5 requests at 10 per second take at least 0.4 sec
+			requests.set(0);
+			EutilsFetcher limitedFetcher = new EutilsFetcher(baseUrl, baseUrl, null, 3, 1, 10, null);
+			long start = System.currentTimeMillis();
+			limitedFetcher.getCitations(Arrays.asList("1", "2", "3", "4", "5"));
+			long time = System.currentTimeMillis() - start;
+			check(requests.get() == 5 && time >= 400, "5 requests at 10 per second (" + time + " ms)");
+
+			System.out.println("Cache: " + cacheDir + ", " + fetcher.getCacheSize() + " files");
+		} finally {
+			server.stop(0);
+			if (temporaryCache)
+				delete(cacheDir);
+		}
+	}
+
+
+	/**
+	 * Deletes a file, or a directory with all its contents.
+	 */
+	static void delete (File file) {
+		File[] files = file.listFiles();
+		if (files != null)
+			for (File child: files)
+				delete(child);
+		file.delete();
+	}
+
+}
@@ -1,12 +1,14 @@
 package gnat.utils;
 
 import gnat.alignment.Alignment;
+import gnat.alignment.CharAlignment;
 import gnat.alignment.CharSubstitutionMatrix;
 import gnat.alignment.LocalAlignment;
 import gnat.alignment.Phrase;
 import gnat.representation.Gene;
 import gnat.representation.RecognizedEntity;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -25,9 +27,15 @@ public class AlignmentHelper {
 	// the global alignment algorithm by Needleman-Wunsch
 	public static Alignment globalAlignment = new Alignment(new CharSubstitutionMatrix());
 
-	// an extension to the global alignment
+	// an extension to the global alignment; align() keeps state in the instance, do not share it between threads
 	public static LocalAlignment localAlignment = new LocalAlignment(new CharSubstitutionMatrix());
 
+	// the global alignment for strings, immutable and thread-safe; same scores as globalAlignment
+	public static final CharAlignment charAlignment = new CharAlignment(new CharSubstitutionMatrix());
+
+	// the local alignment for strings, immutable and thread-safe
+	public static final CharAlignment localCharAlignment = new CharAlignment(new CharSubstitutionMatrix(), true, 0);
+
 
 
 	/**
@@ -41,7 +49,7 @@ public class AlignmentHelper {
 		Iterator<String> stringListIt = stringSet.iterator();
 		while (stringListIt.hasNext()) {
 			String aString = stringListIt.next();
-			float matchScore = getMatchScore(alignment, stringPhrase, toPhrase(aString), stringPhraseSelfAlignedScore, 1.5f);
+			float matchScore = getMatchScore(alignment, stringPhrase, toPhrase(aString), stringPhraseSelfAlignedScore, 1.5f, minMatchValue);
 			if (matchScore >= minMatchValue) {
 				bestMatchingStrings.add(aString);
 			}
@@ -60,7 +68,7 @@ public class AlignmentHelper {
 		Iterator<Phrase> phraseIterator = phraseSet.iterator();
 		while (phraseIterator.hasNext()) {
 			Phrase aPhrase = phraseIterator.next();
-			float matchScore = getMatchScore(alignment, stringPhrase, aPhrase, stringPhraseSelfAlignedScore, 1.5f);
+			float matchScore = getMatchScore(alignment, stringPhrase, aPhrase, stringPhraseSelfAlignedScore, 1.5f, minMatchValue);
 			if (matchScore >= minMatchValue) {
 				bestMatchingStrings.add(aPhrase.toSingleWordString());
 			}
@@ -81,8 +89,32 @@ public class AlignmentHelper {
 		Iterator<Gene> geneListIt = geneList.iterator();
 		while (geneListIt.hasNext()) {
 			Gene aGene = (Gene) geneListIt.next();
-			float matchScore = getMatchScore(alignment, aGene, geneNamePhrase, geneNameSelfAlignedScore, 1.5f);
+			float matchScore = getMatchScore(alignment, aGene, geneNamePhrase, geneNameSelfAlignedScore, 1.5f, minMatchValue);
+
+			if (matchScore >= minMatchValue) {
+				bestMatchingGenes.add(aGene);
+			}
+		}
+		return bestMatchingGenes;
+	}
 
+
+	/**
+	 * Returns a list of genes that align to the gene name with a score above the given threshold,
+	 * using a thread-safe alignment of strings; same result as {@link #getAlignedGenes(Alignment, RecognizedEntity, Collection, float)}.
+	 * @param workspace - for all alignments of this call; one per thread
+	 * */
+	public static List<Gene> getAlignedGenes(CharAlignment alignment, RecognizedEntity geneName, Collection<Gene> geneList, float minMatchValue, Alignment.Workspace workspace)
+	{
+		List<Gene> bestMatchingGenes = new LinkedList<Gene>();
+		String sortedGeneName = StringHelper.splitAndSort(geneName.getName());
+		float geneNameSelfAlignedScore = alignment.getAlignmentScore(sortedGeneName, sortedGeneName, Float.NEGATIVE_INFINITY, workspace);
+		List<String> sortedSynonyms = new ArrayList<String>();
+		for (Gene aGene: geneList) {
+			sortedSynonyms.clear();
+			for (String synonym: aGene.getNames())
+				sortedSynonyms.add(StringHelper.splitAndSort(synonym));
+			float matchScore = alignment.getBestMatchScore(sortedGeneName, geneNameSelfAlignedScore, sortedSynonyms, 1.5f, minMatchValue, workspace);
 			if (matchScore >= minMatchValue) {
 				bestMatchingGenes.add(aGene);
 			}
@@ -99,6 +131,18 @@ public class AlignmentHelper {
 	 * This factor is to avoid aligning long gene names against short acronyms and therefore saves a lot of computation time.
 	 * */
 	public static float getMatchScore(Alignment alignment, Gene aGene, Phrase geneNamePhrase, float geneNameSelfAlignedScore, float lengthFactor)
+	{
+		return getMatchScore(alignment, aGene, geneNamePhrase, geneNameSelfAlignedScore, lengthFactor, Float.NEGATIVE_INFINITY);
+	}
+
+
+	/**
+	 * Returns the maximum pairwise alignment score of a gene name phrase against all synonyms known to a gene,
+	 * as {@link #getMatchScore(Alignment, Gene, Phrase, float, float)}, if it is at least <tt>minMatchValue</tt>.
+	 * Otherwise, the result is some score below <tt>minMatchValue</tt>: alignments stop as soon as they cannot
+	 * reach it, and the remaining synonyms are skipped once one synonym reached it.
+	 * */
+	public static float getMatchScore(Alignment alignment, Gene aGene, Phrase geneNamePhrase, float geneNameSelfAlignedScore, float lengthFactor, float minMatchValue)
 	{
 		float score = Integer.MIN_VALUE;
 		Iterator<String> synIterator = aGene.getNames().iterator();
@@ -109,8 +153,6 @@ public class AlignmentHelper {
 				continue;
 			}
 
-			Float alignmentScore = alignment.getAlignmentScore(geneNamePhrase, synonymPhrase);
-
 			float maxScore;
 			if (synonymPhrase.length() > geneNamePhrase.length()) {
 				maxScore = alignment.getAlignmentScore(synonymPhrase, synonymPhrase);
@@ -118,9 +160,13 @@ public class AlignmentHelper {
 			else {
 				maxScore = geneNameSelfAlignedScore;
 			}
+
+			float alignmentScore = alignment.getAlignmentScore(geneNamePhrase, synonymPhrase, getMinScore(minMatchValue, maxScore));
 			alignmentScore /= maxScore; // normalize score
 			if (alignmentScore > score) {
 				score = alignmentScore;
+				if (score >= minMatchValue && minMatchValue > Float.NEGATIVE_INFINITY)
+					break;
 			}
 		}
 		return score;
@@ -135,13 +181,22 @@ public class AlignmentHelper {
 	 * This factor is to avoid aligning long strings against short ones and therefore saves a lot of computation time.
 	 * */
 	public static float getMatchScore(Alignment alignment, Phrase stringPhrase, Phrase anotherStringPhrase, float stringPhraseSelfAlignedScore, float lengthFactor)
+	{
+		return getMatchScore(alignment, stringPhrase, anotherStringPhrase, stringPhraseSelfAlignedScore, lengthFactor, Float.NEGATIVE_INFINITY);
+	}
+
+
+	/**
+	 * Returns the pairwise alignment score of a string phrase against another string phrase,
+	 * as {@link #getMatchScore(Alignment, Phrase, Phrase, float, float)}, if it is at least <tt>minMatchValue</tt>.
+	 * Otherwise, the result is some score below <tt>minMatchValue</tt>, as the alignment stops as soon as it cannot reach it.
+	 * */
+	public static float getMatchScore(Alignment alignment, Phrase stringPhrase, Phrase anotherStringPhrase, float stringPhraseSelfAlignedScore, float lengthFactor, float minMatchValue)
 	{
 		if (stringPhrase.length() > lengthFactor * anotherStringPhrase.length() || anotherStringPhrase.length() > lengthFactor * stringPhrase.length()) {
 			return Integer.MIN_VALUE;
 		}
 
-		float alignmentScore = alignment.getAlignmentScore(stringPhrase, anotherStringPhrase);
-
 		float maxScore;
 		if (anotherStringPhrase.length() > stringPhrase.length()) {
 			maxScore = alignment.getAlignmentScore(anotherStringPhrase, anotherStringPhrase);
@@ -149,11 +204,25 @@ public class AlignmentHelper {
 		else {
 			maxScore = stringPhraseSelfAlignedScore;
 		}
+
+		float alignmentScore = alignment.getAlignmentScore(stringPhrase, anotherStringPhrase, getMinScore(minMatchValue, maxScore));
 		alignmentScore /= maxScore; // normalize score
 		return alignmentScore;
 	}
 
 
+	/**
+	 * Returns the minimum alignment score for a normalized score of <tt>minMatchValue</tt>; no minimum if
+	 * the score used for normalization is not positive.
+	 * */
+	private static float getMinScore(float minMatchValue, float maxScore)
+	{
+		if (maxScore <= 0 || minMatchValue == Float.NEGATIVE_INFINITY)
+			return Float.NEGATIVE_INFINITY;
+		return minMatchValue * maxScore;
+	}
+
+
 	/**
 	 * Transforms a string to a character phrase. Each character becomes a phrase element with a 'CHAR' tag.
 	 * Before this, the string is splitted at whitespaces and tokens are sorted alphabetically.
@@ -42,6 +42,9 @@ import java.util.Set;
 
 /**
  * A helper offering various methods useful for generating gene profiles used in the Biocreative GN task.
+ * <br><br>
+ * Methods that read NCBI's gene_info or generifs_basic look up the genes or taxa in an {@link NcbiGeneFileIndex}
+ * of the file, which is built when the file is first used, instead of reading the whole file each time.
  */
 public class BiocreativeHelper {
 
@@ -245,22 +248,15 @@ public class BiocreativeHelper {
 	/**
 	 * @throws IOException */
 	public static void generateEntrezGeneSummaryObject(Set<String> geneIds, String geneInfoFile, String outfile) throws IOException{
-		BufferedReader reader = new BufferedReader(new FileReader(new File(geneInfoFile)));
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(geneInfoFile);
 
 		Map<String, String[]> geneToSummary = new HashMap<String, String[]>();
 
-		String line;
-		while((line=reader.readLine())!=null){
-			if(!line.startsWith("#")){
-				String[] columns = line.split("\t");
-				String geneId = columns[1];
-		        String summary = columns[8];
-		        if(geneIds.contains(geneId)){
-		        	geneToSummary.put(geneId, new String[]{summary});
-		        }
-			}
+		for (int row : geneInfo.getRowsForGenes(toIntegers(geneIds))) {
+			String geneId = String.valueOf(geneInfo.getGeneId(row));
+			String summary = geneInfo.get(row, 8);
+			geneToSummary.put(geneId, new String[]{summary});
 		}
-		reader.close();
 
 		FileHelper.writeObjectToFile(geneToSummary, new File(outfile));
 	}
@@ -269,28 +265,22 @@ public class BiocreativeHelper {
 	/**
 	 * @throws IOException */
 	public static void generateEntrezGeneGeneRifObject(Set<String> geneIds, String generifsFile, String outfile) throws IOException{
-		BufferedReader reader = new BufferedReader(new FileReader(new File(generifsFile)));
+		NcbiGeneFileIndex generifs = NcbiGeneFileIndex.open(generifsFile);
 
 		Map<String, Set<String>> geneToGeneRIF = new HashMap<String, Set<String>>();
 
-
-		String line;
-		while((line=reader.readLine())!=null){
-			if(!line.startsWith("#")){
-				String[] columns = line.split("\t");
-				String geneId = columns[1];
-		        String geneRif = columns[4];
-		        if(geneIds.contains(geneId)){
-		        	Set<String> geneRifs = geneToGeneRIF.get(geneId);
-		        	if(geneRifs==null){
-		        		geneRifs = new HashSet<String>();
-		        		geneToGeneRIF.put(geneId, geneRifs);
-		        	}
-		        	geneRifs.add(geneRif);
-		        }
+		for (int row : generifs.getRowsForGenes(toIntegers(geneIds))) {
+			String geneId = String.valueOf(generifs.getGeneId(row));
+			String geneRif = generifs.get(row, 4);
+			if (geneRif == null)
+				continue;
+			Set<String> geneRifs = geneToGeneRIF.get(geneId);
+			if(geneRifs==null){
+				geneRifs = new HashSet<String>();
+				geneToGeneRIF.put(geneId, geneRifs);
 			}
+			geneRifs.add(geneRif);
 		}
-		reader.close();
 
 		Map<String, String[]> geneIdToGeneRIFArray = new HashMap<String, String[]>();
 
@@ -303,6 +293,19 @@ public class BiocreativeHelper {
 	}
 
 
+	/**
+	 * Returns the gene IDs given as strings as integers; skips those that are not a number as written in NCBI's files.
+	 */
+	private static Set<Integer> toIntegers(Set<String> geneIds){
+		Set<Integer> integers = new HashSet<Integer>();
+		for (String geneId : geneIds) {
+			if (geneId.matches("[1-9]\\d{0,8}"))
+				integers.add(Integer.parseInt(geneId));
+		}
+		return integers;
+	}
+
+
 	/**
 	 * @throws IOException */
 	public static void generateEntrezGeneToUniprotObject(Set<Integer> geneIds, String gene2accessionFile, String outfile) throws IOException{
@@ -709,93 +712,53 @@ public class BiocreativeHelper {
 	public static Map<Integer, Set<String>> getEntrezGeneSynonyms(String entrezGeneInfoFile, Set<Integer> taxIds) throws IOException{
 		Map<Integer, Set<String>> entrezGeneIdToSynonyms = new HashMap<Integer, Set<String>>();
 
-		BufferedReader reader = new BufferedReader(new FileReader(entrezGeneInfoFile));
-		String line;
-		while((line=reader.readLine())!=null){
-			if(line.startsWith("#")){
-				continue;
-			}
-
-			String[] columns = line.split("\t");
-
-			Integer taxId = Integer.parseInt(columns[0]);
-			if(taxIds!=null && !taxIds.contains(taxId)){
-				continue;
-			}
-
-			Integer entrezGeneId = Integer.parseInt(columns[1]);
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneInfoFile);
+		for (int row : geneInfo.getRowsForTaxa(taxIds)) {
+			Integer entrezGeneId = geneInfo.getGeneId(row);
 			Set<String> synonyms = entrezGeneIdToSynonyms.get(entrezGeneId);
 			if(synonyms==null){
 				synonyms = new HashSet<String>();
 				entrezGeneIdToSynonyms.put(entrezGeneId, synonyms);
 			}
 
-			String symbol = columns[2];
-			String[] symbolArray = symbol.split("[\\|;]");
-			for (String string : symbolArray) {
-				synonyms.add(string.trim());
-            }
-
-			String[] synonymArray = columns[4].split("[\\|;]");
-			for (String string : synonymArray) {
-				synonyms.add(string.trim());
-            }
-
-			String[] descriptionArray = columns[8].split("[\\|;]");
-			for (String string : descriptionArray) {
-				synonyms.add(string.trim());
-            }
-
-			String symbolFromNomenclature = columns[10];
-			String[] symbolFromNomenclatureArray = symbolFromNomenclature.split("[\\|;]");
-			for (String string : symbolFromNomenclatureArray) {
-				synonyms.add(string.trim());
-            }
-
-			String fullNameFromNomenclature = columns[11];
-			String[] fullNameFromNomenclatureArray = fullNameFromNomenclature.split("[\\|;]");
-			for (String string : fullNameFromNomenclatureArray) {
-				synonyms.add(string.trim());
-            }
-
-			String otherDesignation = columns[13];
-			String[] otherDesignationArray = otherDesignation.split("[\\|;]");
-			for (String string : otherDesignationArray) {
-				synonyms.add(string.trim());
-            }
+			// symbol, synonyms, description, symbol and full name from nomenclature, other designations
+			addNames(synonyms, geneInfo.get(row, 2));
+			addNames(synonyms, geneInfo.get(row, 4));
+			addNames(synonyms, geneInfo.get(row, 8));
+			addNames(synonyms, geneInfo.get(row, 10));
+			addNames(synonyms, geneInfo.get(row, 11));
+			addNames(synonyms, geneInfo.get(row, 13));
 
 			synonyms.remove("-");
-
 		}
-		reader.close();
 
 		return entrezGeneIdToSynonyms;
 	}
 
+
+	/**
+	 * Adds the names in a column of gene_info, separated by '|' or ';'.
+	 */
+	private static void addNames(Set<String> names, String column){
+		if (column == null)
+			return;
+		for (String name : column.split("[\\|;]")) {
+			names.add(name.trim());
+		}
+	}
+
 	/**
 	 * Returns a mapping from EntrezGene Id to synonyms.
 	 * */
 	public static Map<Integer, String> getEntrezGeneSymbols(String entrezGeneInfoFile, Set<Integer> geneIds) throws IOException{
 		Map<Integer, String> entrezGeneIdToSymbol = new HashMap<Integer, String>();
 
-		BufferedReader reader = new BufferedReader(new FileReader(entrezGeneInfoFile));
-		String line;
-		while((line=reader.readLine())!=null){
-			if(line.startsWith("#")){
-				continue;
-			}
-
-			String[] columns = line.split("\t");
-
-			Integer entrezGeneId = Integer.parseInt(columns[1]);
-			if(!geneIds.contains(entrezGeneId))
-				continue;
-
-			String symbol = columns[2];
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneInfoFile);
+		for (int row : geneInfo.getRowsForGenes(geneIds)) {
+			Integer entrezGeneId = geneInfo.getGeneId(row);
+			String symbol = geneInfo.get(row, 2);
 			entrezGeneIdToSymbol.put(entrezGeneId, symbol);
-
 		}
-		reader.close();
 
 		return entrezGeneIdToSymbol;
 	}
@@ -807,54 +770,18 @@ public class BiocreativeHelper {
 	public static Set<String> getEntrezGeneSynonymsForGeneId(String entrezGeneInfoFile, String geneId) throws IOException{
 		Set<String> synonyms = new HashSet<String>();
 
-		BufferedReader reader = new BufferedReader(new FileReader(entrezGeneInfoFile));
-		String line;
-		while((line=reader.readLine())!=null){
-			if(line.startsWith("#")){
-				continue;
-			}
-
-			String[] columns = line.split("\t");
-
-			String entrezGeneId = columns[1];
-
-			if(entrezGeneId.equals(geneId)){
-
-				String symbol = columns[2];
-				String[] symbolArray = symbol.split("[\\|;]");
-				for (String string : symbolArray) {
-					synonyms.add(string.trim());
-	            }
-
-				String[] synonymArray = columns[4].split("[\\|;]");
-				for (String string : synonymArray) {
-					synonyms.add(string.trim());
-	            }
-
-				String symbolFromNomenclature = columns[10];
-				String[] symbolFromNomenclatureArray = symbolFromNomenclature.split("[\\|;]");
-				for (String string : symbolFromNomenclatureArray) {
-					synonyms.add(string.trim());
-	            }
-
-				String fullNameFromNomenclature = columns[11];
-				String[] fullNameFromNomenclatureArray = fullNameFromNomenclature.split("[\\|;]");
-				for (String string : fullNameFromNomenclatureArray) {
-					synonyms.add(string.trim());
-	            }
-
-				String otherDesignation = columns[13];
-				String[] otherDesignationArray = otherDesignation.split("[\\|;]");
-				for (String string : otherDesignationArray) {
-					synonyms.add(string.trim());
-	            }
-
-				synonyms.remove("-");
-				break;
-			}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneInfoFile);
+		for (int row : geneInfo.getRowsForGenes(toIntegers(Collections.singleton(geneId)))) {
+			// symbol, synonyms, symbol and full name from nomenclature, other designations
+			addNames(synonyms, geneInfo.get(row, 2));
+			addNames(synonyms, geneInfo.get(row, 4));
+			addNames(synonyms, geneInfo.get(row, 10));
+			addNames(synonyms, geneInfo.get(row, 11));
+			addNames(synonyms, geneInfo.get(row, 13));
 
+			synonyms.remove("-");
+			break;
 		}
-		reader.close();
 
 		return synonyms;
 	}
@@ -867,27 +794,17 @@ public class BiocreativeHelper {
 		Map<String,String> entrezGeneIdToSynonyms = new HashMap<String, String>();
 
 		try {
-	        BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-	        String line;
-	        while((line=reader.readLine())!=null){
-	        	if(line.startsWith("#")){
-	        		continue;
-	        	}
-	        	String[] columns = line.split("\t");
-	        	String taxId = columns[0];
-	        	String entrezGeneId = columns[1];
-	        	entrezGeneIdToSynonyms.put(entrezGeneId, taxId);
-	        }
-	        reader.close();
-        }
-        catch (FileNotFoundException e) {
-	        // TODO Auto-generated catch block
-	        e.printStackTrace();
-        }
-        catch (IOException e) {
-	        // TODO Auto-generated catch block
-	        e.printStackTrace();
-        }
+			NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+			for (int row = 0; row < geneInfo.size(); row++) {
+				String taxId = String.valueOf(geneInfo.getTaxon(row));
+				String entrezGeneId = String.valueOf(geneInfo.getGeneId(row));
+				entrezGeneIdToSynonyms.put(entrezGeneId, taxId);
+			}
+		}
+		catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
 
 		return entrezGeneIdToSynonyms;
 	}
@@ -899,23 +816,13 @@ public class BiocreativeHelper {
 	public static Map<Integer, String> getEntrezGeneToDescription(Set<Integer> geneIds, String entrezGeneFile) throws IOException {
 		Map<Integer,String> entrezGeneIdToDescription = new HashMap<Integer, String>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer entrezGeneId = Integer.parseInt(columns[1]);
-			if (geneIds == null || geneIds.contains(entrezGeneId)) {
-				String description = columns[8];
-				if (!description.equals("-")) {
-					entrezGeneIdToDescription.put(entrezGeneId, description);
-				}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+		for (int row : geneInfo.getRowsForGenes(geneIds)) {
+			String description = geneInfo.get(row, 8);
+			if (description != null && !description.equals("-")) {
+				entrezGeneIdToDescription.put(geneInfo.getGeneId(row), description);
 			}
 		}
-		reader.close();
-
 
 		return entrezGeneIdToDescription;
 	}
@@ -928,24 +835,13 @@ public class BiocreativeHelper {
 	public static Map<Integer, String> getEntrezGeneToDescriptionByTaxIds(Set<Integer> taxIds, String entrezGeneFile) throws IOException {
 		Map<Integer,String> entrezGeneIdToDescription = new HashMap<Integer, String>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer taxId = Integer.parseInt(columns[0]);
-			if (taxIds.contains(taxId)) {
-				Integer entrezGeneId = Integer.parseInt(columns[1]);
-				String description = columns[8];
-				if (!description.equals("-")) {
-					entrezGeneIdToDescription.put(entrezGeneId, description);
-				}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+		for (int row : geneInfo.getRowsForTaxa(taxIds)) {
+			String description = geneInfo.get(row, 8);
+			if (description != null && !description.equals("-")) {
+				entrezGeneIdToDescription.put(geneInfo.getGeneId(row), description);
 			}
 		}
-		reader.close();
-
 
 		return entrezGeneIdToDescription;
 	}
@@ -958,20 +854,10 @@ public class BiocreativeHelper {
 	public static Set<Integer> getEntrezGeneIds(Set<Integer> taxIds, String entrezGeneFile) throws IOException {
 		Set<Integer> entrezGeneIds = new HashSet<Integer>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer taxId = Integer.parseInt(columns[0]);
-			if (taxIds.contains(taxId)) {
-				Integer entrezGeneId = Integer.parseInt(columns[1]);
-				entrezGeneIds.add(entrezGeneId);
-			}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+		for (int row : geneInfo.getRowsForTaxa(taxIds)) {
+			entrezGeneIds.add(geneInfo.getGeneId(row));
 		}
-		reader.close();
 
 		return entrezGeneIds;
 	}
@@ -984,20 +870,10 @@ public class BiocreativeHelper {
 	public static List<Integer> getEntrezGeneIdsAsList(Set<Integer> taxIds, String entrezGeneFile) throws IOException {
 		List<Integer> entrezGeneIds = new LinkedList<Integer>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer taxId = Integer.parseInt(columns[0]);
-			if (taxIds.contains(taxId)) {
-				Integer entrezGeneId = Integer.parseInt(columns[1]);
-				entrezGeneIds.add(entrezGeneId);
-			}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+		for (int row : geneInfo.getRowsForTaxa(taxIds)) {
+			entrezGeneIds.add(geneInfo.getGeneId(row));
 		}
-		reader.close();
 
 		return entrezGeneIds;
 	}
@@ -1010,18 +886,12 @@ public class BiocreativeHelper {
 	public static Map<Integer,Map<Integer, String>> getEntrezGeneToGeneRifsByTaxIds(Set<Integer> taxIds, String generifsFile) throws IOException {
 		Map<Integer,Map<Integer, String>> gene2generifs = new HashMap<Integer,Map<Integer, String>>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(generifsFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer taxId = Integer.parseInt(columns[0]);
-			if (taxIds.contains(taxId) && columns.length==5) {
-				Integer geneId = Integer.parseInt(columns[1]);
-				String[] pmIds = columns[2].split("\\,");
-				String text = columns[4];
+		NcbiGeneFileIndex generifs = NcbiGeneFileIndex.open(generifsFile);
+		for (int row : generifs.getRowsForTaxa(taxIds)) {
+			if (generifs.getColumnCount(row)==5) {
+				Integer geneId = generifs.getGeneId(row);
+				String[] pmIds = generifs.get(row, 2).split("\\,");
+				String text = generifs.get(row, 4);
 				Map<Integer, String> geneRifsMapForGene = gene2generifs.get(geneId);
 				if(geneRifsMapForGene==null){
 					geneRifsMapForGene = new HashMap<Integer, String>();
@@ -1032,8 +902,6 @@ public class BiocreativeHelper {
                 }
 			}
 		}
-		reader.close();
-
 
 		return gene2generifs;
 	}
@@ -1046,21 +914,10 @@ public class BiocreativeHelper {
 	public static Map<Integer, Integer> getEntrezGeneToTaxonomy(Set<Integer> geneIds, String entrezGeneFile) throws IOException {
 		Map<Integer,Integer> gene2taxonomy = new HashMap<Integer, Integer>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer entrezGeneId = Integer.parseInt(columns[1]);
-			if (geneIds == null || geneIds.contains(entrezGeneId)) {
-				Integer taxonomyId = Integer.parseInt(columns[0]);
-				gene2taxonomy.put(entrezGeneId, taxonomyId);
-			}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+		for (int row : geneInfo.getRowsForGenes(geneIds)) {
+			gene2taxonomy.put(geneInfo.getGeneId(row), geneInfo.getTaxon(row));
 		}
-		reader.close();
-
 
 		return gene2taxonomy;
 	}
@@ -1072,21 +929,10 @@ public class BiocreativeHelper {
 	public static Map<Integer, Integer> getEntrezGeneToTaxonomyForTaxIds(Set<Integer> taxIds, String entrezGeneFile) throws IOException {
 		Map<Integer,Integer> gene2taxonomy = new HashMap<Integer, Integer>();
 
-	    BufferedReader reader = new BufferedReader(new FileReader(entrezGeneFile));
-		String line;
-		while ((line = reader.readLine()) != null) {
-			if (line.startsWith("#")) {
-				continue;
-			}
-			String[] columns = line.split("\t");
-			Integer taxId = Integer.parseInt(columns[0]);
-			if(taxIds.contains(taxId)){
-				Integer entrezGeneId = Integer.parseInt(columns[1]);
-				gene2taxonomy.put(entrezGeneId, taxId);
-			}
+		NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(entrezGeneFile);
+		for (int row : geneInfo.getRowsForTaxa(taxIds)) {
+			gene2taxonomy.put(geneInfo.getGeneId(row), geneInfo.getTaxon(row));
 		}
-		reader.close();
-
 
 		return gene2taxonomy;
 	}
@@ -1098,34 +944,23 @@ public class BiocreativeHelper {
 		Map<Integer,Integer> entrezGeneIdToOMIMId = new HashMap<Integer, Integer>();
 
 		try {
-	        BufferedReader reader = new BufferedReader(new FileReader(geneinfoFile));
-	        String line;
-	        while((line=reader.readLine())!=null){
-	        	if(line.startsWith("#")){
-	        		continue;
-	        	}
-	        	String[] columns = line.split("\t");
-	        	Integer entrezGeneId = Integer.parseInt(columns[1]);
-	        	String xrefs = columns[5];
-	        	if(!xrefs.equals("-")){
-	        		for (String string : xrefs.split("\\|")) {
-	        			if(string.startsWith("MIM:")){
-	        				entrezGeneIdToOMIMId.put( entrezGeneId,
-	        								Integer.parseInt(string.substring(string.indexOf(':')+1)) );
-	        			}
-                    }
-	        	}
-	        }
-	        reader.close();
-        }
-        catch (FileNotFoundException e) {
-	        // TODO Auto-generated catch block
-	        e.printStackTrace();
-        }
-        catch (IOException e) {
-	        // TODO Auto-generated catch block
-	        e.printStackTrace();
-        }
+			NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open(geneinfoFile);
+			for (int row = 0; row < geneInfo.size(); row++) {
+				String xrefs = geneInfo.get(row, 5);
+				if(xrefs != null && !xrefs.equals("-")){
+					for (String string : xrefs.split("\\|")) {
+						if(string.startsWith("MIM:")){
+							entrezGeneIdToOMIMId.put( geneInfo.getGeneId(row),
+											Integer.parseInt(string.substring(string.indexOf(':')+1)) );
+						}
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
 
 		return entrezGeneIdToOMIMId;
 	}
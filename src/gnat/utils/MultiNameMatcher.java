@@ -0,0 +1,164 @@
+package gnat.utils;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import brics.automaton.Automaton;
+import brics.automaton.BasicAutomata;
+import brics.automaton.BasicOperations;
+import brics.automaton.RunAutomaton;
+
+/**
+ * Finds occurrences of many names in a text with a single scan, using a deterministic
+ * automaton built from the union of all names.
+ * <br><br>
+ * A name is reported as occurring if it appears in the text (case-sensitive, literal match),
+ * the character before it is either the start of the text or one of the given left boundary
+ * characters, and the character after it is the end of the text or one of the given right
+ * boundary characters. This is equivalent to testing each name with
+ * <tt>text.matches(".*(^|[left])" + name + "([right]|$).*")</tt>, but avoids compiling one
+ * pattern per name and rescanning the text for each of them.
+ * <br><br>
+ * Only literal names should be added; use {@link #isLiteral(String)} to check names that
+ * might otherwise be used as regular expressions, and {@link #isSingleLine(String)} to check
+ * texts where the <tt>.*</tt> of such an expression would otherwise stop at a line break.
+ * <br><br>
+ * Example:<br>
+ * <tt>MultiNameMatcher m = new MultiNameMatcher(names, " \t\n([", " \t\n,.)];:");</tt><br>
+ * <tt>Set&lt;String&gt; found = m.findOccurringNames(text);</tt>
+ */
+public class MultiNameMatcher {
+
+	/** White space characters, as matched by <tt>\s</tt> in a regular expression. */
+	public static final String WHITESPACE = " \t\n\u000B\f\r";
+
+	/** Characters that have a special meaning in a regular expression. */
+	private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+	/** Characters at which <tt>.</tt> in a regular expression will not match. */
+	private static final String LINE_TERMINATORS = "\n\r\u0085\u2028\u2029";
+
+	private final RunAutomaton automaton;
+	private final String leftBoundary;
+	private final String rightBoundary;
+	private final boolean matchAtTextBoundaries;
+
+
+	/**
+	 * Builds a matcher for the given names. Names may also occur at the very start
+	 * and end of the text.
+	 * @param names - literal names to search for; empty names are ignored
+	 * @param leftBoundary - characters that may precede a name
+	 * @param rightBoundary - characters that may follow a name
+	 */
+	public MultiNameMatcher (Collection<String> names, String leftBoundary, String rightBoundary) {
+		this(names, leftBoundary, rightBoundary, true);
+	}
+
+
+	/**
+	 * Builds a matcher for the given names.
+	 * @param names - literal names to search for; empty names are ignored
+	 * @param leftBoundary - characters that may precede a name
+	 * @param rightBoundary - characters that may follow a name
+	 * @param matchAtTextBoundaries - if false, a name has to be preceded and followed by boundary
+	 *  characters, and cannot occur at the very start or end of the text
+	 */
+	public MultiNameMatcher (Collection<String> names, String leftBoundary, String rightBoundary, boolean matchAtTextBoundaries) {
+		this.leftBoundary = leftBoundary;
+		this.rightBoundary = rightBoundary;
+		this.matchAtTextBoundaries = matchAtTextBoundaries;
+
+		List<Automaton> automata = new LinkedList<Automaton>();
+		for (String name: names) {
+			if (name.length() > 0)
+				automata.add(BasicAutomata.makeString(name));
+		}
+
+		if (automata.size() == 0) {
+			this.automaton = null;
+		} else {
+			Automaton union = BasicOperations.union(automata);
+			union.determinize();
+			this.automaton = new RunAutomaton(union);
+		}
+	}
+
+
+	/**
+	 * Returns all names that occur in the given text, bounded by the left and right
+	 * boundary characters.
+	 * @param text
+	 * @return set of names found in the text, empty if none occurred
+	 */
+	public Set<String> findOccurringNames (String text) {
+		Set<String> found = new HashSet<String>();
+		if (automaton == null) return found;
+
+		int length = text.length();
+		int initial = automaton.getInitialState();
+		for (int start = 0; start < length; start++) {
+			if (start == 0 ? !matchAtTextBoundaries : leftBoundary.indexOf(text.charAt(start - 1)) < 0)
+				continue;
+
+			int state = initial;
+			for (int pos = start; pos < length; pos++) {
+				state = automaton.step(state, text.charAt(pos));
+				if (state == -1)
+					break;
+				if (automaton.isAccept(state)
+						&& (pos + 1 == length ? matchAtTextBoundaries : rightBoundary.indexOf(text.charAt(pos + 1)) >= 0))
+					found.add(text.substring(start, pos + 1));
+			}
+		}
+
+		return found;
+	}
+
+
+	/**
+	 * Checks whether the given name contains no characters that would have a special
+	 * meaning when used in a regular expression.
+	 * @param name
+	 * @return true if the name matches itself only
+	 */
+	public static boolean isLiteral (String name) {
+		for (int c = 0; c < name.length(); c++)
+			if (REGEX_META_CHARACTERS.indexOf(name.charAt(c)) >= 0)
+				return false;
+		return true;
+	}
+
+
+	/**
+	 * Checks whether the given name would match itself only when used in a regular
+	 * expression after being escaped with {@link StringHelper#espaceString(String)}.
+	 * @param name
+	 * @return true if the escaped name matches the name itself only
+	 */
+	public static boolean isLiteralWhenEscaped (String name) {
+		for (int c = 0; c < name.length(); c++) {
+			char ch = name.charAt(c);
+			if (ch == '^' || ch == '$' || ch == '.' || ch == '|' || ch == '?')
+				return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Checks whether the text contains no line terminators.
+	 * @param text
+	 * @return true if <tt>.*</tt> would match the entire text
+	 */
+	public static boolean isSingleLine (String text) {
+		for (int c = 0; c < text.length(); c++)
+			if (LINE_TERMINATORS.indexOf(text.charAt(c)) >= 0)
+				return false;
+		return true;
+	}
+
+}
@@ -0,0 +1,483 @@
+package gnat.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A columnar index of a tab-separated NCBI Gene file whose first two columns are taxon and gene ID, such as
+ * <tt>gene_info</tt> or <tt>generifs_basic</tt>, so that the rows of some genes or taxa can be looked up without
+ * reading and splitting the whole file each time.
+ * <br><br>
+ * The index is built in a single pass over the file and stored next to it, in the directory <tt>&lt;file&gt;.index</tt>;
+ * {@link #open(String)} builds it if it does not exist or the file has changed since, and memory-maps it. Each column is
+ * stored on its own, so that reading, for instance, only the descriptions of all human genes touches only that column:
+ * <ul>
+ * <li><tt>taxa.int</tt>, <tt>genes.int</tt> - taxon and gene ID of each row, in the order of the file
+ * <li><tt>byTaxon.int</tt>, <tt>byGene.int</tt> - the rows sorted by taxon and by gene ID, in the order of the file for the same ID
+ * <li><tt>fields.byte</tt> - number of columns of each row, as <tt>line.split("\t")</tt> counts them (no empty columns at the end)
+ * <li><tt>c&lt;k&gt;.off</tt>, <tt>c&lt;k&gt;.dat</tt> - for each further column <tt>k</tt>, the start of the value of each
+ * row plus the end of the last, and the values in UTF-8
+ * </ul>
+ * Comment lines (#) and rows without numeric taxon and gene ID are skipped. Row numbers returned by the lookups are
+ * in the order of the file. An open index is thread-safe.
+ * <br><br>
+ * Usage:<br>
+ * <tt>NcbiGeneFileIndex geneInfo = NcbiGeneFileIndex.open("data/gene_info");</tt><br>
+ * <tt>for (int row: geneInfo.getRowsForTaxa(taxa)) { int geneId = geneInfo.getGeneId(row); String symbol = geneInfo.get(row, 2); ... }</tt>
+ * <br><br>
+ * Call: NcbiGeneFileIndex &lt;file&gt;+ to build the indexes ahead of time.
+ *
+ */
+public class NcbiGeneFileIndex {
+
+	private static final int MAGIC = 0x4e474649; // "NGFI"
+	private static final int VERSION = 1;
+
+	/** Size of the memory-mapped segments of a column's values. */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	/** Indexes opened so far, by the canonical path of their file. */
+	private static final Map<String, NcbiGeneFileIndex> indexes = new HashMap<String, NcbiGeneFileIndex>();
+
+	private final File source;
+	private final long sourceSize;
+	private final long sourceModified;
+
+	/** Number of rows, and the highest number of columns of any row. */
+	private final int rows;
+	private final int columns;
+
+	private final IntBuffer taxa;
+	private final IntBuffer genes;
+	private final IntBuffer byTaxon;
+	private final IntBuffer byGene;
+	private final ByteBuffer fields;
+
+	/** Start of the value of each row, per column; null for columns 0 and 1. */
+	private final LongBuffer[] offsets;
+	/** Values of each column, in segments of {@link #SEGMENT_SIZE}; null for columns 0 and 1. */
+	private final ByteBuffer[][] values;
+
+
+	/**
+	 * Maps an existing index.
+	 */
+	private NcbiGeneFileIndex (File source, File dir) throws IOException {
+		this.source = source;
+		DataInputStream header = new DataInputStream(new FileInputStream(new File(dir, "header")));
+		try {
+			header.readInt();
+			header.readInt();
+			sourceSize = header.readLong();
+			sourceModified = header.readLong();
+			rows = header.readInt();
+			columns = header.readInt();
+		} finally {
+			header.close();
+		}
+
+		taxa = map(new File(dir, "taxa.int"))[0].asIntBuffer();
+		genes = map(new File(dir, "genes.int"))[0].asIntBuffer();
+		byTaxon = map(new File(dir, "byTaxon.int"))[0].asIntBuffer();
+		byGene = map(new File(dir, "byGene.int"))[0].asIntBuffer();
+		fields = map(new File(dir, "fields.byte"))[0];
+
+		offsets = new LongBuffer[columns];
+		values = new ByteBuffer[columns][];
+		for (int c = 2; c < columns; c++) {
+			offsets[c] = map(new File(dir, "c" + c + ".off"))[0].asLongBuffer();
+			values[c] = map(new File(dir, "c" + c + ".dat"));
+		}
+	}
+
+
+	/**
+	 * Returns the index of the given file; builds the index first if there is none, or if the file was modified
+	 * after the index was built.
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public static synchronized NcbiGeneFileIndex open (String filename) throws IOException {
+		File source = new File(filename).getCanonicalFile();
+		if (!source.exists())
+			throw new IOException("File not found: " + filename);
+
+		NcbiGeneFileIndex index = indexes.get(source.getPath());
+		if (index != null && index.sourceSize == source.length() && index.sourceModified == source.lastModified())
+			return index;
+
+		File dir = new File(source.getPath() + ".index");
+		if (!isCurrent(source, dir))
+			build(source, dir);
+		index = new NcbiGeneFileIndex(source, dir);
+		indexes.put(source.getPath(), index);
+		return index;
+	}
+
+
+	/**
+	 * Checks that the header of the index matches the file.
+	 */
+	private static boolean isCurrent (File source, File dir) {
+		File headerFile = new File(dir, "header");
+		if (!headerFile.exists())
+			return false;
+		try {
+			DataInputStream header = new DataInputStream(new FileInputStream(headerFile));
+			try {
+				return header.readInt() == MAGIC && header.readInt() == VERSION
+					&& header.readLong() == source.length() && header.readLong() == source.lastModified();
+			} finally {
+				header.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Builds the index of a file in a single pass, in a temporary directory that then replaces <tt>dir</tt>.
+	 * @param source - the file, may be gzipped
+	 * @param dir
+	 * @throws IOException
+	 */
+	public static void build (File source, File dir) throws IOException {
+		long started = System.currentTimeMillis();
+		File temp = new File(dir.getPath() + ".tmp");
+		deleteDirectory(temp);
+		if (!temp.mkdirs())
+			throw new IOException("Cannot create the directory " + temp);
+
+		DataOutputStream taxaOut = open(new File(temp, "taxa.int"));
+		DataOutputStream genesOut = open(new File(temp, "genes.int"));
+		DataOutputStream fieldsOut = open(new File(temp, "fields.byte"));
+		List<DataOutputStream> offsetsOut = new ArrayList<DataOutputStream>();
+		List<DataOutputStream> valuesOut = new ArrayList<DataOutputStream>();
+		List<Long> positions = new ArrayList<Long>();
+
+		InputStream stream = new FileInputStream(source);
+		if (source.getName().endsWith(".gz"))
+			stream = new GZIPInputStream(stream, 65536);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"), 65536);
+		int rows = 0;
+		int skipped = 0;
+		try {
+			String line;
+			List<String> cols = new ArrayList<String>(16);
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#"))
+					continue;
+				split(line, cols);
+				int taxon, gene;
+				try {
+					taxon = Integer.parseInt(cols.get(0));
+					gene = Integer.parseInt(cols.get(1));
+				} catch (RuntimeException e) {
+					// NumberFormatException, or less than two columns
+					skipped++;
+					continue;
+				}
+				taxaOut.writeInt(taxon);
+				genesOut.writeInt(gene);
+
+				// number of columns without the empty ones at the end, as in String.split
+				int fields = cols.size();
+				while (fields > 0 && cols.get(fields - 1).length() == 0)
+					fields--;
+				fieldsOut.writeByte(Math.min(fields, 255));
+
+				// a column that appears for the first time is empty for all previous rows
+				while (offsetsOut.size() + 2 < cols.size()) {
+					int c = offsetsOut.size() + 2;
+					DataOutputStream offsetOut = open(new File(temp, "c" + c + ".off"));
+					for (int r = 0; r < rows; r++)
+						offsetOut.writeLong(0);
+					offsetsOut.add(offsetOut);
+					valuesOut.add(open(new File(temp, "c" + c + ".dat")));
+					positions.add(0L);
+				}
+				for (int c = 2; c < offsetsOut.size() + 2; c++) {
+					long position = positions.get(c - 2);
+					offsetsOut.get(c - 2).writeLong(position);
+					if (c < cols.size()) {
+						byte[] bytes = cols.get(c).getBytes("UTF-8");
+						valuesOut.get(c - 2).write(bytes);
+						positions.set(c - 2, position + bytes.length);
+					}
+				}
+				rows++;
+			}
+		} finally {
+			reader.close();
+			taxaOut.close();
+			genesOut.close();
+			fieldsOut.close();
+			for (int c = 0; c < offsetsOut.size(); c++) {
+				offsetsOut.get(c).writeLong(positions.get(c));
+				offsetsOut.get(c).close();
+				valuesOut.get(c).close();
+			}
+		}
+
+		writeSortedRows(new File(temp, "taxa.int"), new File(temp, "byTaxon.int"), rows);
+		writeSortedRows(new File(temp, "genes.int"), new File(temp, "byGene.int"), rows);
+
+		// the header comes last: an index without one is incomplete
+		DataOutputStream header = open(new File(temp, "header"));
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeLong(source.length());
+		header.writeLong(source.lastModified());
+		header.writeInt(rows);
+		header.writeInt(offsetsOut.size() + 2);
+		header.close();
+
+		deleteDirectory(dir);
+		if (!temp.renameTo(dir))
+			throw new IOException("Cannot move the index from " + temp + " to " + dir);
+
+		System.out.println("#Indexed " + rows + " rows of " + source + " in " + ((System.currentTimeMillis() - started) / 1000) + "sec"
+				+ (skipped > 0 ? ", skipped " + skipped + " rows without taxon and gene ID" : ""));
+	}
+
+
+	/**
+	 * Splits a line at tabs, keeping empty columns.
+	 */
+	private static void split (String line, List<String> cols) {
+		cols.clear();
+		int start = 0;
+		int tab;
+		while ((tab = line.indexOf('\t', start)) >= 0) {
+			cols.add(line.substring(start, tab));
+			start = tab + 1;
+		}
+		cols.add(line.substring(start));
+	}
+
+
+	/**
+	 * Writes the row numbers sorted by the IDs in the given column, in the order of the rows for the same ID.
+	 */
+	private static void writeSortedRows (File idFile, File sortedFile, int rows) throws IOException {
+		IntBuffer ids = map(idFile)[0].asIntBuffer();
+		// ID in the upper, row in the lower half; IDs are not negative
+		long[] keys = new long[rows];
+		for (int r = 0; r < rows; r++)
+			keys[r] = ((long)ids.get(r) << 32) | r;
+		Arrays.sort(keys);
+		DataOutputStream out = open(sortedFile);
+		for (long key: keys)
+			out.writeInt((int)key);
+		out.close();
+	}
+
+
+	private static DataOutputStream open (File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+	}
+
+
+	/**
+	 * Maps a file read-only, in segments of at most {@link #SEGMENT_SIZE} bytes.
+	 */
+	private static ByteBuffer[] map (File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			ByteBuffer[] segments = new ByteBuffer[(int)Math.max(1, (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for (int s = 0; s < segments.length; s++) {
+				long start = (long)s * SEGMENT_SIZE;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+			return segments;
+		} finally {
+			raf.close();
+		}
+	}
+
+
+	private static void deleteDirectory (File dir) {
+		File[] files = dir.listFiles();
+		if (files != null)
+			for (File file: files)
+				file.delete();
+		dir.delete();
+	}
+
+
+	/**
+	 * Returns the number of rows.
+	 * @return
+	 */
+	public int size () {
+		return rows;
+	}
+
+
+	public int getTaxon (int row) {
+		return taxa.get(row);
+	}
+
+
+	public int getGeneId (int row) {
+		return genes.get(row);
+	}
+
+
+	/**
+	 * Returns the number of columns of the row, without empty columns at the end.
+	 * @param row
+	 * @return
+	 */
+	public int getColumnCount (int row) {
+		return fields.get(row) & 0xff;
+	}
+
+
+	/**
+	 * Returns the value of a column in a row.
+	 * @param row
+	 * @param column - 0 for the taxon, 1 for the gene ID, ...
+	 * @return null if the row has no such column
+	 */
+	public String get (int row, int column) {
+		if (column == 0)
+			return String.valueOf(taxa.get(row));
+		if (column == 1)
+			return String.valueOf(genes.get(row));
+		if (column >= columns)
+			return null;
+
+		long start = offsets[column].get(row);
+		long end = offsets[column].get(row + 1);
+		if (start == end && column >= getColumnCount(row))
+			return null;
+
+		byte[] bytes = new byte[(int)(end - start)];
+		int read = 0;
+		while (read < bytes.length) {
+			long position = start + read;
+			ByteBuffer segment = values[column][(int)(position / SEGMENT_SIZE)].duplicate();
+			segment.position((int)(position % SEGMENT_SIZE));
+			int length = Math.min(bytes.length - read, segment.remaining());
+			segment.get(bytes, read, length);
+			read += length;
+		}
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	/**
+	 * Returns the rows of the given genes, in the order of the file.
+	 * @param geneIds - null for all rows
+	 * @return
+	 */
+	public int[] getRowsForGenes (Collection<Integer> geneIds) {
+		return getRows(geneIds, genes, byGene);
+	}
+
+
+	/**
+	 * Returns the rows of the genes of the given taxa, in the order of the file.
+	 * @param taxIds - null for all rows
+	 * @return
+	 */
+	public int[] getRowsForTaxa (Collection<Integer> taxIds) {
+		return getRows(taxIds, taxa, byTaxon);
+	}
+
+
+	/**
+	 * Returns the rows that have any of the IDs in a column, using the rows sorted by that column.
+	 */
+	private int[] getRows (Collection<Integer> ids, IntBuffer column, IntBuffer sorted) {
+		if (ids == null) {
+			int[] all = new int[rows];
+			for (int r = 0; r < rows; r++)
+				all[r] = r;
+			return all;
+		}
+
+		int[] found = new int[16];
+		int count = 0;
+		for (int id: ids) {
+			// first row with this ID
+			int low = 0, high = rows;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (column.get(sorted.get(middle)) < id)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			for (int s = low; s < rows && column.get(sorted.get(s)) == id; s++) {
+				if (count == found.length)
+					found = Arrays.copyOf(found, count * 2);
+				found[count++] = sorted.get(s);
+			}
+		}
+		Arrays.sort(found, 0, count);
+		// the same ID given twice
+		int distinct = 0;
+		for (int f = 0; f < count; f++)
+			if (distinct == 0 || found[f] != found[distinct - 1])
+				found[distinct++] = found[f];
+		return Arrays.copyOf(found, distinct);
+	}
+
+
+	/**
+	 * Returns the file this index was built from.
+	 * @return
+	 */
+	public File getSource () {
+		return source;
+	}
+
+
+	/**
+	 * Builds the index of each file given as argument, unless it is up to date.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Builds a columnar index of NCBI Gene files such as gene_info and generifs_basic.");
+			System.out.println("Call: NcbiGeneFileIndex <file>+");
+			System.exit(1);
+		}
+		for (String filename: args) {
+			NcbiGeneFileIndex index = open(filename);
+			System.out.println(filename + ": " + index.size() + " rows, " + index.columns + " columns");
+		}
+	}
+
+}
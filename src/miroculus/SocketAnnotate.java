@@ -11,6 +11,7 @@ import java.util.List;
 import gnat.ConstantsNei;
 import gnat.ISGNProperties;
 import gnat.client.Run;
+import gnat.client.RunMetrics;
 import gnat.filter.nei.AlignmentFilter;
 import gnat.filter.nei.GeneRepositoryLoader;
 import gnat.filter.nei.IdentifyAllFilter;
@@ -34,6 +35,9 @@ public class SocketAnnotate implements Runnable {
 	
 
 	
+	/** Time, allocations, and entity counts of each filter, for the runs of all connections. */
+	private static final RunMetrics metrics = new RunMetrics();
+	
 	private Socket connection;
 	private int ID;
 	private Run run;
@@ -44,6 +48,7 @@ public class SocketAnnotate implements Runnable {
 		System.out.println("running process "+ this.ID);
 		run = new Run();
 		run.verbosity = 0;
+		run.setMetrics(metrics);
 		
 		ConstantsNei.setOutputLevel(run.verbosity);
 		
@@ -164,6 +169,15 @@ public class SocketAnnotate implements Runnable {
 					running = false;
 					continue;
 				}
+
+				// "metrics" returns the metrics of all filters in Prometheus text format, "metrics></-/><json" as JSON
+				if("metrics".equals(format[0])){
+					String dump = (format.length > 1 && "json".equals(format[1])) ? metrics.toJson() : metrics.toPrometheus();
+					OutputStreamWriter osw = new OutputStreamWriter(new BufferedOutputStream(connection.getOutputStream()), "US-ASCII");
+					osw.write(dump + (char)13);
+					osw.flush();
+					continue;
+				}
 				counter = 3;
 				run.context.clear();
 				run.getTextRepository().clear();